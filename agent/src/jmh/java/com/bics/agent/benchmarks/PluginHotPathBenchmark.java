@@ -0,0 +1,159 @@
+package com.bics.agent.benchmarks;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.models.connect.Customer;
+import com.bics.agent.models.mynumbers.PhoneNumber;
+import com.bics.agent.models.sms.SmsMessage;
+import com.bics.agent.plugins.ConnectApiPlugin;
+import com.bics.agent.plugins.MyNumbersApiPlugin;
+import com.bics.agent.plugins.SmsApiPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the full {@code BaseApiPlugin} request/response path against an in-process
+ * stub: URL building, header setup, request encoding, the pooled exchange, response decoding
+ * into the typed models and, for the not-found case, exception construction.
+ * The plugins report under their own names so that none of the configured response cache
+ * TTLs apply and every call reaches the stub. Run with the GC profiler, e.g.
+ * {@code mvn -Pjmh test-compile exec:exec}, to follow allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginHotPathBenchmark {
+    
+    private StubApiServer server;
+    private HttpTransport transport;
+    private ConnectApiPlugin connect;
+    private MyNumbersApiPlugin myNumbers;
+    private SmsApiPlugin sms;
+    private Customer newCustomer;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubApiServer(Runtime.getRuntime().availableProcessors());
+        AgentConfiguration configuration = AgentConfiguration.getInstance();
+        transport = new HttpTransport(configuration);
+        connect = new BenchConnectPlugin(configuration, transport, server.getBaseUrl());
+        myNumbers = new BenchMyNumbersPlugin(configuration, transport, server.getBaseUrl());
+        sms = new BenchSmsPlugin(configuration, transport, server.getBaseUrl());
+        newCustomer = new Customer(null, "Acme Telecom", "ops@acme.example", "+3221234567", "active");
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sms.close();
+        transport.close();
+        server.close();
+    }
+    
+    @Benchmark
+    public Customer getCustomer() throws PluginException {
+        return connect.getCustomer("c-1001");
+    }
+    
+    @Benchmark
+    public PhoneNumber getNumber() throws PluginException {
+        return myNumbers.getNumber("+3221234567");
+    }
+    
+    @Benchmark
+    public SmsMessage getSmsMessage() throws PluginException {
+        return sms.getSmsMessage("m-42");
+    }
+    
+    @Benchmark
+    public String sendSms() throws PluginException {
+        return sms.sendSms("BICS", "+3221234567", "Your code is 123456");
+    }
+    
+    @Benchmark
+    public String createCustomer() throws PluginException {
+        return connect.createCustomer(newCustomer);
+    }
+    
+    @Benchmark
+    public PluginException getMissingCustomer() {
+        try {
+            connect.getCustomer("c-missing");
+            throw new IllegalStateException("Expected a 404 from the stub");
+        } catch (PluginException e) {
+            return e;
+        }
+    }
+    
+    static class BenchConnectPlugin extends ConnectApiPlugin {
+        private final String baseUrl;
+        
+        BenchConnectPlugin(AgentConfiguration configuration, HttpTransport transport, String baseUrl) {
+            super(configuration, transport);
+            this.baseUrl = baseUrl;
+        }
+        
+        @Override
+        protected String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        @Override
+        protected String getPluginName() {
+            return "BenchConnectAPI";
+        }
+    }
+    
+    static class BenchMyNumbersPlugin extends MyNumbersApiPlugin {
+        private final String baseUrl;
+        
+        BenchMyNumbersPlugin(AgentConfiguration configuration, HttpTransport transport, String baseUrl) {
+            super(configuration, transport);
+            this.baseUrl = baseUrl;
+        }
+        
+        @Override
+        protected String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        @Override
+        protected String getPluginName() {
+            return "BenchMyNumbersAPI";
+        }
+    }
+    
+    static class BenchSmsPlugin extends SmsApiPlugin {
+        private final String baseUrl;
+        
+        BenchSmsPlugin(AgentConfiguration configuration, HttpTransport transport, String baseUrl) {
+            super(configuration, transport);
+            this.baseUrl = baseUrl;
+        }
+        
+        @Override
+        protected String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        @Override
+        protected String getPluginName() {
+            return "BenchSMSAPI";
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.bics.agent.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stub of the Connect, MyNumbers and SMS routes used by the benchmarks.
+ * Responses are canned byte arrays so that the stub adds as little work as possible
+ * to the measured client path. Any id ending in {@code missing} answers 404.
+ */
+class StubApiServer implements Closeable {
+    
+    static final byte[] CUSTOMER = bytes("{\"id\":\"c-1001\",\"name\":\"Acme Telecom\",\"email\":\"ops@acme.example\","
+            + "\"phone\":\"+3221234567\",\"status\":\"active\",\"created_at\":\"2024-01-15T09:30:00Z\","
+            + "\"updated_at\":\"2024-06-01T12:00:00Z\"}");
+    static final byte[] NUMBER = bytes("{\"number\":\"+3221234567\",\"country_code\":\"BE\",\"status\":\"active\","
+            + "\"type\":\"geographic\",\"assigned_customer_id\":\"c-1001\",\"activation_date\":\"2024-01-15\","
+            + "\"expiry_date\":\"2026-01-15\",\"features\":[\"voice\",\"sms\"]}");
+    static final byte[] SMS = bytes("{\"message_id\":\"m-42\",\"from\":\"BICS\",\"to\":\"+3221234567\","
+            + "\"message\":\"Your code is 123456\",\"status\":\"delivered\",\"sent_at\":\"2024-06-01T12:00:00Z\","
+            + "\"delivered_at\":\"2024-06-01T12:00:02Z\"}");
+    static final byte[] NOT_FOUND = bytes("{\"error\":\"not_found\",\"message\":\"Resource does not exist\"}");
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    StubApiServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/customers", exchange -> respond(exchange, CUSTOMER));
+        server.createContext("/numbers", exchange -> respond(exchange, NUMBER));
+        server.createContext("/sms/status", exchange -> respond(exchange, SMS));
+        server.createContext("/sms/send", exchange -> respond(exchange, SMS));
+        server.start();
+    }
+    
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            request.transferTo(OutputStream.nullOutputStream());
+        }
+        boolean missing = exchange.getRequestURI().getPath().endsWith("missing");
+        byte[] response = missing ? NOT_FOUND : body;
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(missing ? 404 : 200, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+    
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
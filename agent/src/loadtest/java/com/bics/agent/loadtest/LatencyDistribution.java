@@ -0,0 +1,91 @@
+package com.bics.agent.loadtest;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Response delay distribution of a stubbed route.
+ * Supported distributions, selected by the {@code distribution} key:
+ * <ul>
+ *   <li>{@code fixed} - always {@code medianMs}</li>
+ *   <li>{@code uniform} - between {@code minMs} and {@code maxMs}</li>
+ *   <li>{@code exponential} - with mean {@code meanMs}</li>
+ *   <li>{@code lognormal} - with median {@code medianMs} and 99th percentile {@code p99Ms}</li>
+ * </ul>
+ */
+final class LatencyDistribution {
+    
+    private static final double Z_99 = 2.3263;
+    
+    private enum Kind { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+    
+    private final Kind kind;
+    private final double first;
+    private final double second;
+    
+    private LatencyDistribution(Kind kind, double first, double second) {
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+    }
+    
+    /**
+     * Parses a distribution, falling back to another one for a missing spec.
+     * 
+     * @param spec the distribution settings, or null
+     * @param fallback the distribution used when {@code spec} is null
+     * @return the distribution
+     */
+    static LatencyDistribution parse(Map<?, ?> spec, LatencyDistribution fallback) {
+        if (spec == null) {
+            return fallback;
+        }
+        String distribution = String.valueOf(spec.containsKey("distribution") ? spec.get("distribution") : "lognormal");
+        switch (distribution.toLowerCase()) {
+            case "fixed":
+                return new LatencyDistribution(Kind.FIXED, number(spec, "medianMs", 0.0), 0.0);
+            case "uniform":
+                return new LatencyDistribution(Kind.UNIFORM, number(spec, "minMs", 0.0), number(spec, "maxMs", 0.0));
+            case "exponential":
+                return new LatencyDistribution(Kind.EXPONENTIAL, number(spec, "meanMs", 0.0), 0.0);
+            case "lognormal":
+                double median = Math.max(0.001, number(spec, "medianMs", 1.0));
+                double p99 = Math.max(median, number(spec, "p99Ms", median));
+                return new LatencyDistribution(Kind.LOGNORMAL, median, Math.log(p99 / median) / Z_99);
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + distribution);
+        }
+    }
+    
+    /**
+     * Draws a delay.
+     * 
+     * @param random the random source
+     * @return the delay in microseconds
+     */
+    long sampleMicros(Random random) {
+        double millis;
+        switch (kind) {
+            case UNIFORM:
+                millis = first + random.nextDouble() * (second - first);
+                break;
+            case EXPONENTIAL:
+                millis = -first * Math.log(1.0 - random.nextDouble());
+                break;
+            case LOGNORMAL:
+                millis = first * Math.exp(second * random.nextGaussian());
+                break;
+            default:
+                millis = first;
+        }
+        return Math.max(0L, (long) (millis * 1000.0));
+    }
+    
+    static double number(Map<?, ?> spec, String key, double defaultValue) {
+        Object value = spec.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value != null ? Double.parseDouble(value.toString().trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,113 @@
+package com.bics.agent.loadtest;
+
+import com.bics.agent.SemanticKernelAgent;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.models.connect.Customer;
+import com.bics.agent.plugins.ConnectApiPlugin;
+import com.bics.agent.plugins.MyNumbersAddressManagementApiPlugin;
+import com.bics.agent.plugins.MyNumbersApiPlugin;
+import com.bics.agent.plugins.MyNumbersCdrApiPlugin;
+import com.bics.agent.plugins.MyNumbersDisconnectionApiPlugin;
+import com.bics.agent.plugins.MyNumbersEmergencyServicesApiPlugin;
+import com.bics.agent.plugins.MyNumbersNumberPortingApiPlugin;
+import com.bics.agent.plugins.SmsApiPlugin;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Catalog of the plugin operations a load test can mix, named {@code <plugin>.<method>}.
+ * Blocking plugin methods are submitted through the agent's executor, exactly as the agent
+ * runs them; natively asynchronous methods are started directly.
+ */
+final class LoadTestOperations {
+    
+    private static final Map<String, Operation> CATALOG = new LinkedHashMap<>();
+    
+    static {
+        blocking("ConnectAPI.getCustomerList", ConnectApiPlugin.class, (p, key) -> p.getCustomerList("50", "0"));
+        blocking("ConnectAPI.getCustomer", ConnectApiPlugin.class, (p, key) -> p.getCustomer("c-" + key));
+        blocking("ConnectAPI.createCustomer", ConnectApiPlugin.class, (p, key) -> p.createCustomer(
+            new Customer(null, "Customer " + key, "customer" + key + "@example.com", number(key), "active")));
+        blocking("ConnectAPI.updateCustomer", ConnectApiPlugin.class, (p, key) -> p.updateCustomer("c-" + key,
+            new Customer("c-" + key, "Customer " + key, "customer" + key + "@example.com", number(key), "active")));
+        blocking("ConnectAPI.getProducts", ConnectApiPlugin.class, (p, key) -> p.getProducts("50", "0"));
+        blocking("MyNumbersAPI.getNumberList", MyNumbersApiPlugin.class, (p, key) -> p.getNumberList("50", "0"));
+        blocking("MyNumbersAPI.getNumber", MyNumbersApiPlugin.class, (p, key) -> p.getNumber(number(key)));
+        blocking("MyNumbersAPI.reserveNumber", MyNumbersApiPlugin.class,
+            (p, key) -> p.reserveNumber("{\"country_code\":\"BE\",\"type\":\"geographic\"}"));
+        blocking("MyNumbersAPI.activateNumber", MyNumbersApiPlugin.class,
+            (p, key) -> p.activateNumber(number(key), "{\"customer_id\":\"c-" + key + "\"}"));
+        blocking("MyNumbersAddressManagementAPI.getAddresses", MyNumbersAddressManagementApiPlugin.class,
+            (p, key) -> p.getAddresses(number(key)));
+        blocking("MyNumbersAddressManagementAPI.updateAddress", MyNumbersAddressManagementApiPlugin.class,
+            (p, key) -> p.updateAddress(number(key), "{\"street\":\"Rue Lebeau 4\",\"city\":\"Brussels\"}"));
+        blocking("MyNumbersCDRAPI.getCdrRecordList", MyNumbersCdrApiPlugin.class,
+            (p, key) -> p.getCdrRecordList(number(key), "2024-06-01", "2024-06-30"));
+        blocking("MyNumbersCDRAPI.getUsageSummary", MyNumbersCdrApiPlugin.class, (p, key) -> p.getUsageSummary(number(key)));
+        blocking("MyNumbersDisconnectionAPI.requestDisconnection", MyNumbersDisconnectionApiPlugin.class,
+            (p, key) -> p.requestDisconnection(number(key), "{\"reason\":\"customer request\"}"));
+        blocking("MyNumbersDisconnectionAPI.getDisconnectionStatus", MyNumbersDisconnectionApiPlugin.class,
+            (p, key) -> p.getDisconnectionStatus(number(key)));
+        blocking("MyNumbersEmergencyServicesAPI.getEmergencyServiceInfo", MyNumbersEmergencyServicesApiPlugin.class,
+            (p, key) -> p.getEmergencyServiceInfo(number(key)));
+        blocking("MyNumbersEmergencyServicesAPI.updateEmergencyService", MyNumbersEmergencyServicesApiPlugin.class,
+            (p, key) -> p.updateEmergencyService(number(key), "{\"address_id\":\"a-" + key + "\"}"));
+        blocking("MyNumbersNumberPortingAPI.requestPortIn", MyNumbersNumberPortingApiPlugin.class,
+            (p, key) -> p.requestPortIn(number(key), "{\"donor\":\"operator-a\"}"));
+        blocking("MyNumbersNumberPortingAPI.getPortingStatus", MyNumbersNumberPortingApiPlugin.class,
+            (p, key) -> p.getPortingStatus(number(key)));
+        blocking("SMSAPI.sendSms", SmsApiPlugin.class, (p, key) -> p.sendSms("BICS", number(key), "Load test"));
+        blocking("SMSAPI.getSmsMessage", SmsApiPlugin.class, (p, key) -> p.getSmsMessage("m-" + key));
+        blocking("SMSAPI.getSmsHistoryList", SmsApiPlugin.class, (p, key) -> p.getSmsHistoryList(number(key), "50"));
+        CATALOG.put("SMSAPI.submitSms", (agent, key) ->
+            plugin(agent, SmsApiPlugin.class).submitSms("BICS", number(key), "Load test"));
+    }
+    
+    private LoadTestOperations() {
+    }
+    
+    /**
+     * Gets all operations by name.
+     * 
+     * @return read-only map of operation names to operations
+     */
+    static Map<String, Operation> catalog() {
+        return Collections.unmodifiableMap(CATALOG);
+    }
+    
+    private static <P> void blocking(String name, Class<P> pluginType, Call<P> call) {
+        CATALOG.put(name, (agent, key) -> {
+            P plugin = plugin(agent, pluginType);
+            return agent.submit(() -> call.invoke(plugin, key));
+        });
+    }
+    
+    private static <P> P plugin(SemanticKernelAgent agent, Class<P> pluginType) {
+        for (Object plugin : agent.getAllPlugins().values()) {
+            if (pluginType.isInstance(plugin)) {
+                return pluginType.cast(plugin);
+            }
+        }
+        throw new IllegalStateException("No plugin of type " + pluginType.getSimpleName() + " is registered");
+    }
+    
+    private static String number(int key) {
+        return "+3221" + (100000 + key);
+    }
+    
+    /**
+     * One plugin operation, started against a running agent.
+     */
+    @FunctionalInterface
+    interface Operation {
+        CompletableFuture<?> start(SemanticKernelAgent agent, int key);
+    }
+    
+    @FunctionalInterface
+    private interface Call<P> {
+        Object invoke(P plugin, int key) throws PluginException;
+    }
+}
@@ -0,0 +1,183 @@
+package com.bics.agent.loadtest;
+
+import com.bics.agent.json.JsonMappers;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput and latency of every operation over the measured phase of a load test.
+ * Latencies are those of successful calls, measured from the intended arrival time.
+ */
+final class LoadTestReport {
+    
+    private final double targetRatePerSecond;
+    private final boolean poissonArrivals;
+    private final long durationMs;
+    private final long maxArrivalLagMicros;
+    private final boolean drained;
+    private final List<Row> operations;
+    
+    LoadTestReport(double targetRatePerSecond, boolean poissonArrivals, long durationMs, long maxArrivalLagMicros,
+                   boolean drained, List<Row> operations) {
+        this.targetRatePerSecond = targetRatePerSecond;
+        this.poissonArrivals = poissonArrivals;
+        this.durationMs = durationMs;
+        this.maxArrivalLagMicros = maxArrivalLagMicros;
+        this.drained = drained;
+        this.operations = operations;
+    }
+    
+    public double getTargetRatePerSecond() {
+        return targetRatePerSecond;
+    }
+    
+    public boolean isPoissonArrivals() {
+        return poissonArrivals;
+    }
+    
+    public long getDurationMs() {
+        return durationMs;
+    }
+    
+    /**
+     * Gets how far the generator fell behind its schedule; a large lag means the load
+     * generator itself, not the agent, limited the offered rate.
+     * 
+     * @return the largest delay of an arrival behind its intended time, in microseconds
+     */
+    public long getMaxArrivalLagMicros() {
+        return maxArrivalLagMicros;
+    }
+    
+    public boolean isDrained() {
+        return drained;
+    }
+    
+    public List<Row> getOperations() {
+        return operations;
+    }
+    
+    /**
+     * Prints the report as a table.
+     * 
+     * @param out the destination
+     */
+    void print(PrintStream out) {
+        out.printf("%nOpen-model load test: %.1f calls/s (%s arrivals) for %d s, max arrival lag %.1f ms%s%n",
+            targetRatePerSecond, poissonArrivals ? "Poisson" : "uniform", durationMs / 1000,
+            maxArrivalLagMicros / 1000.0, drained ? "" : ", NOT DRAINED");
+        out.printf("%-56s %9s %7s %7s %9s %9s %9s %9s %9s %9s%n",
+            "operation", "ok", "failed", "dropped", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long succeeded = 0L;
+        long failed = 0L;
+        long dropped = 0L;
+        for (Row row : operations) {
+            out.printf("%-56s %9d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                row.operation, row.succeeded, row.failed, row.dropped, row.throughputPerSecond,
+                row.p50Micros / 1000.0, row.p90Micros / 1000.0, row.p99Micros / 1000.0,
+                row.p999Micros / 1000.0, row.maxMicros / 1000.0);
+            for (Map.Entry<String, Long> failure : row.failures.entrySet()) {
+                out.printf("    %-52s %9d%n", failure.getKey(), failure.getValue());
+            }
+            succeeded += row.succeeded;
+            failed += row.failed;
+            dropped += row.dropped;
+        }
+        out.printf("%-56s %9d %7d %7d %9.1f%n", "total", succeeded, failed, dropped, succeeded * 1000.0 / durationMs);
+    }
+    
+    /**
+     * Writes the report as JSON.
+     * 
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        JsonMappers.mapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), this);
+    }
+    
+    /**
+     * Results of one operation.
+     */
+    static final class Row {
+        private final String operation;
+        private final long succeeded;
+        private final long failed;
+        private final long dropped;
+        private final double throughputPerSecond;
+        private final long p50Micros;
+        private final long p90Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+        private final long maxMicros;
+        private final Map<String, Long> failures;
+        
+        Row(String operation, long succeeded, long failed, long dropped, double throughputPerSecond,
+            long p50Micros, long p90Micros, long p99Micros, long p999Micros, long maxMicros,
+            Map<String, Long> failures) {
+            this.operation = operation;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.throughputPerSecond = throughputPerSecond;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+            this.maxMicros = maxMicros;
+            this.failures = failures;
+        }
+        
+        public String getOperation() {
+            return operation;
+        }
+        
+        public long getSucceeded() {
+            return succeeded;
+        }
+        
+        public long getFailed() {
+            return failed;
+        }
+        
+        public long getDropped() {
+            return dropped;
+        }
+        
+        public double getThroughputPerSecond() {
+            return throughputPerSecond;
+        }
+        
+        public long getP50Micros() {
+            return p50Micros;
+        }
+        
+        public long getP90Micros() {
+            return p90Micros;
+        }
+        
+        public long getP99Micros() {
+            return p99Micros;
+        }
+        
+        public long getP999Micros() {
+            return p999Micros;
+        }
+        
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+        
+        public Map<String, Long> getFailures() {
+            return failures;
+        }
+    }
+}
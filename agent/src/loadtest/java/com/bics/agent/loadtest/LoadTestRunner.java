@@ -0,0 +1,142 @@
+package com.bics.agent.loadtest;
+
+import com.bics.agent.SemanticKernelAgent;
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizes the agent without BICS access: starts the {@link StubBicsServer}, points every
+ * {@code api.endpoints} entry at it, starts a {@link SemanticKernelAgent} and drives it with
+ * an {@link OpenLoadGenerator}. Settings come from {@code loadtest.yml} on the classpath or
+ * from the file given as the first argument; its {@code agent} section is merged over
+ * {@code application.yml}, so pool sizes, limits or the execution mode can be varied per run.
+ * <p>
+ * Run with {@code mvn -Ploadtest test-compile exec:exec}.
+ */
+public final class LoadTestRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+    
+    private LoadTestRunner() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        ObjectMapper yaml = new ObjectMapper(new YAMLFactory());
+        Map<String, Object> settingsTree = args.length > 0
+            ? readTree(yaml, Files.newInputStream(Path.of(args[0])))
+            : readTree(yaml, LoadTestRunner.class.getClassLoader().getResourceAsStream("loadtest.yml"));
+        AgentConfiguration settings = AgentConfiguration.fromMap(settingsTree);
+        
+        try (StubBicsServer stub = new StubBicsServer(settings)) {
+            stub.start();
+            
+            Map<String, Object> agentTree = readTree(yaml,
+                LoadTestRunner.class.getClassLoader().getResourceAsStream("application.yml"));
+            Object overrides = settings.getValue("agent");
+            if (overrides instanceof Map) {
+                merge(agentTree, asTree(overrides));
+            }
+            pointEndpointsAt(agentTree, stub);
+            
+            SemanticKernelAgent agent = new SemanticKernelAgent(AgentConfiguration.fromMap(agentTree));
+            agent.start();
+            try {
+                agent.whenReady().join();
+                OpenLoadGenerator generator = new OpenLoadGenerator(agent, mix(settings),
+                    settings.getDouble("load.ratePerSecond", 100.0),
+                    !"uniform".equalsIgnoreCase(settings.getString("load.arrivals", "poisson")),
+                    settings.getInt("load.maxInFlight", 1000),
+                    settings.getInt("load.keySpace", 10000));
+                long warmupMs = settings.getLong("load.warmupSeconds", 5L) * 1000L;
+                long durationMs = settings.getLong("load.durationSeconds", 30L) * 1000L;
+                logger.info("Generating load for {} s after a {} s warm-up", durationMs / 1000, warmupMs / 1000);
+                
+                LoadTestReport report = generator.run(warmupMs, durationMs,
+                    settings.getLong("load.drainSeconds", 30L) * 1000L);
+                report.print(System.out);
+                printRoutes(stub);
+                
+                Path reportFile = Path.of(settings.getString("report.file", "target/loadtest-report.json"));
+                report.write(reportFile);
+                Path metricsFile = Path.of(settings.getString("report.metricsFile", "target/loadtest-metrics.txt"));
+                try (Writer writer = Files.newBufferedWriter(metricsFile, StandardCharsets.UTF_8)) {
+                    MetricsRegistry.getInstance().writeText(writer);
+                }
+                logger.info("Report written to {}, agent metrics to {}", reportFile, metricsFile);
+            } finally {
+                agent.stop();
+            }
+        }
+    }
+    
+    private static Map<String, Double> mix(AgentConfiguration settings) {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        Object configured = settings.getValue("load.mix");
+        if (configured instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) configured).entrySet()) {
+                mix.put(String.valueOf(entry.getKey()), Double.parseDouble(String.valueOf(entry.getValue())));
+            }
+        }
+        if (mix.isEmpty()) {
+            for (String operation : LoadTestOperations.catalog().keySet()) {
+                mix.put(operation, 1.0);
+            }
+        }
+        return mix;
+    }
+    
+    private static void printRoutes(StubBicsServer stub) {
+        System.out.printf("%nStub routes%n%-40s %9s %9s%n", "route", "served", "failed");
+        stub.getRouteCounts().forEach((route, counts) ->
+            System.out.printf("%-40s %9d %9d%n", route, counts[0], counts[1]));
+    }
+    
+    private static void pointEndpointsAt(Map<String, Object> agentTree, StubBicsServer stub) {
+        Map<String, Object> api = asTree(agentTree.computeIfAbsent("api", k -> new LinkedHashMap<String, Object>()));
+        Map<String, Object> endpoints = asTree(api.computeIfAbsent("endpoints", k -> new LinkedHashMap<String, Object>()));
+        for (String name : StubBicsServer.API_NAMES) {
+            endpoints.put(name, stub.getBaseUrl(name));
+        }
+    }
+    
+    /**
+     * Merges {@code overrides} into {@code target}, recursing into nested sections.
+     */
+    private static void merge(Map<String, Object> target, Map<String, Object> overrides) {
+        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+            Object existing = target.get(entry.getKey());
+            if (existing instanceof Map && entry.getValue() instanceof Map) {
+                merge(asTree(existing), asTree(entry.getValue()));
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asTree(Object value) {
+        return (Map<String, Object>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readTree(ObjectMapper yaml, InputStream in) throws IOException {
+        if (in == null) {
+            throw new IOException("Configuration resource not found");
+        }
+        try (InputStream stream = in) {
+            return yaml.readValue(stream, Map.class);
+        }
+    }
+}
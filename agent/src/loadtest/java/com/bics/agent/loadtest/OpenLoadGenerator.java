@@ -0,0 +1,202 @@
+package com.bics.agent.loadtest;
+
+import com.bics.agent.SemanticKernelAgent;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: calls arrive at a fixed average rate, with Poisson or evenly
+ * spaced inter-arrival times, independently of how fast earlier calls complete. Latency is
+ * measured from a call's intended arrival time, so a generator that falls behind still
+ * charges the delay to the system under test instead of hiding it (coordinated omission).
+ * Arrivals finding {@code maxInFlight} calls outstanding are counted as dropped.
+ */
+final class OpenLoadGenerator {
+    
+    private final SemanticKernelAgent agent;
+    private final List<String> names = new ArrayList<>();
+    private final List<LoadTestOperations.Operation> operations = new ArrayList<>();
+    private final double[] cumulativeWeights;
+    private final double ratePerSecond;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final int keySpace;
+    private final Semaphore inFlight;
+    
+    /**
+     * Creates a generator.
+     * 
+     * @param agent the running agent to drive
+     * @param mix operation names and their relative weights
+     * @param ratePerSecond the average arrival rate
+     * @param poisson whether inter-arrival times are exponential rather than constant
+     * @param maxInFlight the most calls outstanding at once
+     * @param keySpace the number of distinct customers, numbers and messages addressed
+     */
+    OpenLoadGenerator(SemanticKernelAgent agent, Map<String, Double> mix, double ratePerSecond, boolean poisson,
+                      int maxInFlight, int keySpace) {
+        this.agent = agent;
+        this.cumulativeWeights = new double[mix.size()];
+        double total = 0.0;
+        for (Map.Entry<String, Double> entry : mix.entrySet()) {
+            LoadTestOperations.Operation operation = LoadTestOperations.catalog().get(entry.getKey());
+            if (operation == null) {
+                throw new IllegalArgumentException("Unknown operation: " + entry.getKey()
+                    + "; known operations are " + LoadTestOperations.catalog().keySet());
+            }
+            total += entry.getValue();
+            cumulativeWeights[names.size()] = total;
+            names.add(entry.getKey());
+            operations.add(operation);
+        }
+        if (total <= 0.0) {
+            throw new IllegalArgumentException("The operation mix must have a positive total weight");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.poisson = poisson;
+        this.maxInFlight = maxInFlight;
+        this.keySpace = Math.max(1, keySpace);
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+    
+    /**
+     * Runs a warm-up phase followed by a measured phase, then waits for outstanding calls.
+     * 
+     * @param warmupMs the warm-up length, whose calls are not reported
+     * @param durationMs the measured phase length
+     * @param drainMs the longest wait for outstanding calls after the last arrival
+     * @return the report of the measured phase
+     * @throws InterruptedException if interrupted while generating load
+     */
+    LoadTestReport run(long warmupMs, long durationMs, long drainMs) throws InterruptedException {
+        OperationStats[] stats = new OperationStats[names.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new OperationStats();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMs);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long maxLag = 0L;
+        
+        for (long next = start; next < end; ) {
+            long now = System.nanoTime();
+            if (next > now) {
+                LockSupport.parkNanos(next - now);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                continue;
+            }
+            maxLag = Math.max(maxLag, now - next);
+            int index = pick(random);
+            fire(index, next, next >= measureStart ? stats[index] : null, random);
+            next += poisson ? (long) (-meanGapNanos * Math.log(1.0 - random.nextDouble())) : (long) meanGapNanos;
+        }
+        
+        boolean drained = inFlight.tryAcquire(maxInFlight, drainMs, TimeUnit.MILLISECONDS);
+        if (drained) {
+            inFlight.release(maxInFlight);
+        }
+        
+        List<LoadTestReport.Row> rows = new ArrayList<>();
+        for (int i = 0; i < stats.length; i++) {
+            rows.add(stats[i].toRow(names.get(i), durationMs));
+        }
+        return new LoadTestReport(ratePerSecond, poisson, durationMs, TimeUnit.NANOSECONDS.toMicros(maxLag),
+            drained, rows);
+    }
+    
+    private int pick(Random random) {
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (target < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+    
+    private void fire(int index, long intendedNanos, OperationStats stats, Random random) {
+        if (!inFlight.tryAcquire()) {
+            if (stats != null) {
+                stats.dropped.increment();
+            }
+            return;
+        }
+        CompletableFuture<?> call;
+        try {
+            call = operations.get(index).start(agent, random.nextInt(keySpace));
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((result, failure) -> {
+            inFlight.release();
+            if (stats != null) {
+                stats.record(System.nanoTime() - intendedNanos, failure);
+            }
+        });
+    }
+    
+    private static final class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        
+        void record(long latencyNanos, Throwable failure) {
+            if (failure == null) {
+                succeeded.increment();
+                latency.recordNanos(latencyNanos);
+                return;
+            }
+            failed.increment();
+            failures.computeIfAbsent(failureKind(failure), k -> new LongAdder()).increment();
+        }
+        
+        LoadTestReport.Row toRow(String name, long durationMs) {
+            Map<String, Long> failureCounts = new TreeMap<>();
+            failures.forEach((kind, count) -> failureCounts.put(kind, count.sum()));
+            return new LoadTestReport.Row(name, succeeded.sum(), failed.sum(), dropped.sum(),
+                succeeded.sum() * 1000.0 / durationMs,
+                latency.getPercentileMicros(50.0), latency.getPercentileMicros(90.0),
+                latency.getPercentileMicros(99.0), latency.getPercentileMicros(99.9),
+                latency.getMaxMicros(), failureCounts);
+        }
+        
+        /**
+         * Groups failures by the start of their message, e.g. {@code HTTP 503}.
+         */
+        private static String failureKind(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+            if (!(cause instanceof PluginException) || cause.getMessage() == null) {
+                return cause.getClass().getSimpleName();
+            }
+            String message = cause.getMessage();
+            int separator = message.indexOf("' failed: ");
+            if (separator >= 0) {
+                message = message.substring(separator + "' failed: ".length());
+            }
+            int end = message.indexOf(':');
+            message = end > 0 ? message.substring(0, end) : message;
+            return message.length() > 80 ? message.substring(0, 80) : message;
+        }
+    }
+}
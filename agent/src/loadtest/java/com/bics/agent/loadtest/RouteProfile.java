@@ -0,0 +1,68 @@
+package com.bics.agent.loadtest;
+
+import java.util.Map;
+
+/**
+ * Behaviour of one stubbed route, keyed by operation template such as
+ * {@code GET /customers/{id}}: its latency distribution, the fraction of calls answered with
+ * an error status, the minimum size of every returned object, and for collection routes the
+ * number of elements in the collection.
+ */
+final class RouteProfile {
+    
+    static final RouteProfile DEFAULT = new RouteProfile(
+        LatencyDistribution.parse(Map.of("distribution", "fixed", "medianMs", 5), null), 0.0, 503, 0, 20);
+    
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int errorStatus;
+    private final int payloadBytes;
+    private final int items;
+    
+    private RouteProfile(LatencyDistribution latency, double errorRate, int errorStatus, int payloadBytes, int items) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.payloadBytes = payloadBytes;
+        this.items = items;
+    }
+    
+    /**
+     * Parses a profile; settings missing from {@code spec} are taken from {@code defaults}.
+     * 
+     * @param spec the route settings, or null
+     * @param defaults the profile supplying missing settings
+     * @return the profile
+     */
+    static RouteProfile parse(Map<?, ?> spec, RouteProfile defaults) {
+        if (spec == null) {
+            return defaults;
+        }
+        return new RouteProfile(
+            LatencyDistribution.parse((Map<?, ?>) spec.get("latency"), defaults.latency),
+            LatencyDistribution.number(spec, "errorRate", defaults.errorRate),
+            (int) LatencyDistribution.number(spec, "errorStatus", defaults.errorStatus),
+            (int) LatencyDistribution.number(spec, "payloadBytes", defaults.payloadBytes),
+            (int) LatencyDistribution.number(spec, "items", defaults.items));
+    }
+    
+    LatencyDistribution getLatency() {
+        return latency;
+    }
+    
+    double getErrorRate() {
+        return errorRate;
+    }
+    
+    int getErrorStatus() {
+        return errorStatus;
+    }
+    
+    int getPayloadBytes() {
+        return payloadBytes;
+    }
+    
+    int getItems() {
+        return items;
+    }
+}
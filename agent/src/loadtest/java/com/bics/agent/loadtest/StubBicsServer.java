@@ -0,0 +1,305 @@
+package com.bics.agent.loadtest;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.http.EndpointTemplates;
+import com.bics.agent.json.JsonMappers;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.AsyncServerBootstrap;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded non-blocking stub of every route the BICS API plugins call, served on one port.
+ * Each request is matched to its operation template, e.g. {@code GET /numbers/{id}}, and
+ * answered after a delay drawn from the route's {@link RouteProfile}, either with a generated
+ * JSON payload or, at the configured error rate, with the error status. Delays are scheduled
+ * rather than slept, so a slow route does not tie up the I/O threads.
+ * Collection routes honour {@code limit} and {@code offset}, so whole-collection walks end.
+ * Every API is served under its own prefix, e.g. {@code /mynumbers-cdr/cdr/...}, so that each
+ * plugin keeps a distinct base URL and picks up the limits configured for its endpoint.
+ */
+final class StubBicsServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StubBicsServer.class);
+    static final List<String> API_NAMES = List.of("connect", "mynumbers", "mynumbers-address", "mynumbers-cdr",
+        "mynumbers-disconnection", "mynumbers-emergency", "mynumbers-porting", "sms");
+    private static final byte[] ERROR_BODY = "{\"error\":\"stubbed failure\"}".getBytes(StandardCharsets.UTF_8);
+    
+    private final String host;
+    private final int port;
+    private final int ioThreads;
+    private final RouteProfile defaults;
+    private final Map<String, RouteProfile> routes = new ConcurrentHashMap<>();
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private HttpAsyncServer server;
+    private InetSocketAddress address;
+    
+    /**
+     * Creates a stub from the {@code stub} section of the load test settings.
+     * 
+     * @param settings the load test settings
+     */
+    StubBicsServer(AgentConfiguration settings) {
+        this.host = settings.getString("stub.host", "127.0.0.1");
+        this.port = settings.getInt("stub.port", 0);
+        this.ioThreads = settings.getInt("stub.ioThreads", 2);
+        this.defaults = RouteProfile.parse((Map<?, ?>) settings.getValue("stub.defaults"), RouteProfile.DEFAULT);
+        Object configured = settings.getValue("stub.routes");
+        if (configured instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) configured).entrySet()) {
+                routes.put(String.valueOf(entry.getKey()), RouteProfile.parse((Map<?, ?>) entry.getValue(), defaults));
+            }
+        }
+        this.scheduler = Executors.newScheduledThreadPool(settings.getInt("stub.schedulerThreads", 2), runnable -> {
+            Thread thread = new Thread(runnable, "stub-responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts listening.
+     * 
+     * @throws IOException if the stub cannot be bound
+     */
+    synchronized void start() throws IOException {
+        HttpAsyncServer created = AsyncServerBootstrap.bootstrap()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads)
+                        .setSoReuseAddress(true)
+                        .setTcpNoDelay(true)
+                        .build())
+                .register("*", new StubHandler())
+                .create();
+        created.start();
+        try {
+            ListenerEndpoint endpoint = created.listen(new InetSocketAddress(host, port), URIScheme.HTTP).get();
+            address = (InetSocketAddress) endpoint.getAddress();
+        } catch (InterruptedException e) {
+            created.close(CloseMode.IMMEDIATE);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while binding stub server", e);
+        } catch (ExecutionException e) {
+            created.close(CloseMode.IMMEDIATE);
+            throw new IOException("Failed to bind stub server to " + host + ":" + port, e.getCause());
+        }
+        server = created;
+        logger.info("BICS API stub listening on {} ({} configured routes)", address, routes.size());
+    }
+    
+    /**
+     * Gets the base URL that the plugin of an API should use.
+     * 
+     * @param apiName the key of the API in {@code api.endpoints}
+     * @return the base URL of the API on the stub
+     */
+    synchronized String getBaseUrl(String apiName) {
+        return "http://" + address.getHostString() + ":" + address.getPort() + "/" + apiName;
+    }
+    
+    /**
+     * Gets the served and failed request counts per operation template.
+     * 
+     * @return sorted map of operation templates to {served, failed} counts
+     */
+    Map<String, long[]> getRouteCounts() {
+        Map<String, long[]> counts = new TreeMap<>();
+        stats.forEach((route, routeStats) ->
+            counts.put(route, new long[] {routeStats.served.sum(), routeStats.failed.sum()}));
+        return counts;
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.close(CloseMode.IMMEDIATE);
+            server = null;
+        }
+        scheduler.shutdownNow();
+    }
+    
+    private byte[] respond(String method, URI uri, String path, byte[] requestBody, RouteProfile profile)
+            throws IOException {
+        String[] segments = path.split("/");
+        String resource = segments.length > 1 ? segments[1] : "";
+        if (method.equals("POST") && path.equals("/sms/bulk")) {
+            int count = requestBody != null ? JsonMappers.mapper().readTree(requestBody).path("messages").size() : 0;
+            return collection("sms", count, profile.getPayloadBytes());
+        }
+        if (method.equals("GET") && isCollection(path, segments)) {
+            long offset = queryLong(uri, "offset", 0L);
+            long limit = queryLong(uri, "limit", profile.getItems());
+            int count = (int) Math.max(0L, Math.min(limit, profile.getItems() - offset));
+            return collection(resource, count, profile.getPayloadBytes());
+        }
+        String key = resource + " " + profile.getPayloadBytes();
+        return bodies.computeIfAbsent(key, k -> {
+            StringBuilder json = new StringBuilder("{");
+            appendItem(json, resource, 1, profile.getPayloadBytes());
+            return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+    
+    private byte[] collection(String resource, int count, int payloadBytes) {
+        return bodies.computeIfAbsent(resource + " " + payloadBytes + " " + count, k -> {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < count; i++) {
+                json.append(i > 0 ? ",{" : "{");
+                appendItem(json, resource, i + 1, payloadBytes);
+                json.append('}');
+            }
+            return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+    
+    private static boolean isCollection(String path, String[] segments) {
+        return path.equals("/customers") || path.equals("/products") || path.equals("/numbers")
+            || (segments.length == 3 && segments[1].equals("cdr"))
+            || (segments.length == 4 && segments[1].equals("sms") && segments[2].equals("history"));
+    }
+    
+    private static void appendItem(StringBuilder json, String resource, int n, int payloadBytes) {
+        int start = json.length();
+        switch (resource) {
+            case "customers":
+                json.append("\"id\":\"c-").append(n).append("\",\"name\":\"Customer ").append(n)
+                    .append("\",\"email\":\"customer").append(n).append("@example.com\",\"phone\":\"+3221")
+                    .append(100000 + n).append("\",\"status\":\"active\"");
+                break;
+            case "products":
+                json.append("\"id\":\"p-").append(n).append("\",\"name\":\"Product ").append(n)
+                    .append("\",\"status\":\"active\"");
+                break;
+            case "numbers":
+                json.append("\"number\":\"+3221").append(100000 + n)
+                    .append("\",\"country_code\":\"BE\",\"status\":\"active\",\"type\":\"geographic\"");
+                break;
+            case "cdr":
+                json.append("\"record_id\":\"r-").append(n).append("\",\"phone_number\":\"+3221100001\",")
+                    .append("\"call_type\":\"voice\",\"direction\":\"outbound\",\"destination\":\"+3222")
+                    .append(100000 + n).append("\",\"start_time\":\"2024-06-01T12:00:00Z\",")
+                    .append("\"end_time\":\"2024-06-01T12:01:00Z\",\"duration\":60,\"cost\":0.05,")
+                    .append("\"currency\":\"EUR\",\"status\":\"completed\"");
+                break;
+            case "sms":
+                json.append("\"message_id\":\"m-").append(n).append("\",\"from\":\"BICS\",\"to\":\"+3221")
+                    .append(100000 + n).append("\",\"message\":\"Load test\",\"status\":\"delivered\"");
+                break;
+            default:
+                json.append("\"id\":\"").append(n).append("\",\"status\":\"accepted\"");
+        }
+        int padding = payloadBytes - (json.length() - start) - 16;
+        if (padding > 0) {
+            json.append(",\"padding\":\"").append("x".repeat(padding)).append('"');
+        }
+    }
+    
+    private static String stripApiName(String path) {
+        int end = path.indexOf('/', 1);
+        if (end > 0 && API_NAMES.contains(path.substring(1, end))) {
+            return path.substring(end);
+        }
+        return path;
+    }
+    
+    private static long queryLong(URI uri, String name, long defaultValue) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0 && param.substring(0, eq).equals(name)) {
+                    try {
+                        return Long.parseLong(param.substring(eq + 1));
+                    } catch (NumberFormatException e) {
+                        return defaultValue;
+                    }
+                }
+            }
+        }
+        return defaultValue;
+    }
+    
+    private static final class RouteStats {
+        final LongAdder served = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+    
+    private final class StubHandler implements AsyncServerRequestHandler<Message<HttpRequest, byte[]>> {
+        
+        @Override
+        public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                            HttpContext context) {
+            return new BasicRequestConsumer<>(entityDetails != null ? new BasicAsyncEntityConsumer() : null);
+        }
+        
+        @Override
+        public void handle(Message<HttpRequest, byte[]> message, ResponseTrigger responseTrigger, HttpContext context)
+                throws HttpException, IOException {
+            HttpRequest request = message.getHead();
+            URI uri;
+            try {
+                uri = request.getUri();
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid request URI", e);
+            }
+            String path = stripApiName(uri.getPath());
+            String route = EndpointTemplates.operationKey(request.getMethod(), path);
+            RouteProfile profile = routes.getOrDefault(route, defaults);
+            RouteStats routeStats = stats.computeIfAbsent(route, k -> new RouteStats());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            
+            AsyncResponseBuilder response;
+            if (random.nextDouble() < profile.getErrorRate()) {
+                routeStats.failed.increment();
+                response = AsyncResponseBuilder.create(profile.getErrorStatus())
+                        .setEntity(ERROR_BODY, ContentType.APPLICATION_JSON);
+            } else {
+                routeStats.served.increment();
+                response = AsyncResponseBuilder.create(request.getMethod().equals("POST") ? 201 : 200)
+                        .setEntity(respond(request.getMethod(), uri, path, message.getBody(), profile),
+                            ContentType.APPLICATION_JSON);
+            }
+            long delayMicros = profile.getLatency().sampleMicros(random);
+            scheduler.schedule(() -> {
+                try {
+                    responseTrigger.submitResponse(response.build(), context);
+                } catch (HttpException | IOException e) {
+                    logger.debug("Failed to send stub response: {}", e.getMessage());
+                }
+            }, delayMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+}
@@ -1,24 +1,84 @@
 package com.bics.agent;
 
+import com.bics.agent.cdr.CdrStore;
+import com.bics.agent.cdr.UsageAggregator;
 import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.config.ConfigurationWatcher;
 import com.bics.agent.exceptions.AgentException;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.execution.PluginCall;
+import com.bics.agent.execution.PluginExecutor;
+import com.bics.agent.http.CircuitBreaker;
+import com.bics.agent.http.ConnectionWarmer;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.http.RequestGate;
+import com.bics.agent.metrics.MetricsEndpoint;
+import com.bics.agent.metrics.MetricsRegistry;
 import com.bics.agent.plugins.*;
+import com.bics.agent.sms.DeliveryReportReceiver;
+import org.apache.hc.core5.io.CloseMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Main Semantic Kernel Agent class that coordinates the initialization and operation
  * of all BICS API plugins. This class provides a framework ready for Semantic Kernel integration.
+ * Plugins are registered at startup but, by default, only created on first use. The
+ * connection pool is warmed up for the hot endpoints in parallel, and the agent reports
+ * itself ready once warm-up has finished.
+ * When the configuration comes from an external file, the file is watched and changes are
+ * applied to the running plugins and transport without a restart.
+ * The agent moves through the {@link State} lifecycle. Stopping it first drains: queued work
+ * such as batched SMS is sent, then new calls are refused while the calls in flight get up
+ * to {@code agent.shutdown.drainTimeoutMs} in total to finish. Then every plugin, client
+ * and connection pool is released.
  */
 public class SemanticKernelAgent {
     private static final Logger logger = LoggerFactory.getLogger(SemanticKernelAgent.class);
     
     private final AgentConfiguration configuration;
-    private final Map<String, Object> plugins = new HashMap<>();
-    private boolean isRunning = false;
+    private final Map<String, Supplier<Object>> pluginFactories = new ConcurrentHashMap<>();
+    private final Map<String, Object> plugins = new ConcurrentHashMap<>();
+    // Guards plugin creation against release, so no plugin is created after the others are closed
+    private final Object pluginLock = new Object();
+    private final AtomicReference<State> state = new AtomicReference<>(State.STOPPED);
+    private volatile HttpTransport transport;
+    private volatile PluginExecutor executor;
+    private volatile DeliveryReportReceiver deliveryReceiver;
+    private volatile MetricsEndpoint metricsEndpoint;
+    private volatile ConfigurationWatcher configurationWatcher;
+    private volatile CdrStore cdrStore;
+    private volatile UsageAggregator usageAggregator;
+    private volatile CompletableFuture<Void> warmup;
+    
+    /**
+     * Lifecycle states of the agent.
+     */
+    public enum State {
+        /** Plugins and clients are being initialized. */
+        STARTING,
+        /** Calls are accepted. */
+        RUNNING,
+        /** New calls are refused while the calls in flight finish. */
+        DRAINING,
+        /** Nothing is running and all resources are released. */
+        STOPPED
+    }
     
     public SemanticKernelAgent(AgentConfiguration configuration) {
         this.configuration = configuration;
@@ -27,32 +87,133 @@ public class SemanticKernelAgent {
     /**
      * Starts the Semantic Kernel Agent and initializes all plugins.
      * 
-     * @throws AgentException if the agent fails to start
+     * @throws AgentException if the agent fails to start or is not stopped
      */
     public void start() throws AgentException {
+        if (!state.compareAndSet(State.STOPPED, State.STARTING)) {
+            throw new AgentException("Agent cannot be started while " + state.get());
+        }
         try {
             logger.info("Initializing plugin framework...");
+            transport = new HttpTransport(configuration);
+            executor = new PluginExecutor(configuration);
             
             logger.info("Registering BICS API plugins...");
             registerPlugins();
+            warmup = new ConnectionWarmer(configuration).warmUp(transport);
+            startDeliveryReceiver();
+            startCdrStore();
+            startMetrics();
+            startConfigurationWatcher();
             
-            isRunning = true;
-            logger.info("Agent started successfully with {} plugins", plugins.size());
+            state.set(State.RUNNING);
+            logger.info("Agent started successfully with {} plugins", pluginFactories.size());
             
         } catch (Exception e) {
+            release(CloseMode.IMMEDIATE);
+            state.set(State.STOPPED);
             throw new AgentException("Failed to start Agent", e);
         }
     }
     
     /**
-     * Stops the Agent and cleans up resources.
+     * Stops the Agent, draining in-flight calls for up to {@code agent.shutdown.drainTimeoutMs}.
      */
     public void stop() {
-        if (isRunning) {
-            logger.info("Stopping Agent...");
-            // Cleanup resources if needed
-            isRunning = false;
-            logger.info("Agent stopped");
+        stop(Duration.ofMillis(configuration.getLong("agent.shutdown.drainTimeoutMs", 30000L)));
+    }
+    
+    /**
+     * Stops the Agent and cleans up resources. Queued work such as batched SMS is sent first,
+     * then new calls are refused; calls in flight are given until the drain timeout to finish,
+     * after which the remaining exchanges are aborted and every plugin, client and connection
+     * pool is released.
+     * 
+     * @param drainTimeout the maximum time to wait for in-flight calls
+     */
+    public void stop(Duration drainTimeout) {
+        if (!state.compareAndSet(State.RUNNING, State.DRAINING)) {
+            return;
+        }
+        logger.info("Stopping Agent...");
+        boolean drained = drain(drainTimeout);
+        release(drained ? CloseMode.GRACEFUL : CloseMode.IMMEDIATE);
+        state.set(State.STOPPED);
+        logger.info("Agent stopped");
+    }
+    
+    private boolean drain(Duration drainTimeout) {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        // Queued work, such as batched SMS, is sent while the gate still admits it
+        List<CompletableFuture<Void>> queued = new ArrayList<>();
+        for (Object plugin : plugins.values()) {
+            if (plugin instanceof BaseApiPlugin) {
+                queued.add(((BaseApiPlugin) plugin).drainQueued());
+            }
+        }
+        RequestGate gate = transport.getRequestGate();
+        try {
+            CompletableFuture.allOf(queued.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            logger.warn("Sending queued work failed while stopping: {}", e.getCause().toString());
+        } catch (TimeoutException e) {
+            logger.warn("Drain timeout elapsed while sending queued work");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        gate.close();
+        logger.info("Draining {} in-flight requests", gate.getInFlight());
+        try {
+            if (gate.awaitDrained(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Drain timeout of {} ms elapsed with {} requests in flight; aborting them",
+                drainTimeout.toMillis(), gate.getInFlight());
+        return false;
+    }
+    
+    private void release(CloseMode closeMode) {
+        if (configurationWatcher != null) {
+            configurationWatcher.close();
+            configurationWatcher = null;
+        }
+        if (deliveryReceiver != null) {
+            deliveryReceiver.close();
+            deliveryReceiver = null;
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+            metricsEndpoint = null;
+        }
+        if (cdrStore != null) {
+            cdrStore.close();
+            cdrStore = null;
+        }
+        usageAggregator = null;
+        List<Object> created;
+        synchronized (pluginLock) {
+            created = new ArrayList<>(plugins.values());
+            plugins.clear();
+            pluginFactories.clear();
+        }
+        for (Object plugin : created) {
+            if (plugin instanceof BaseApiPlugin) {
+                ((BaseApiPlugin) plugin).close();
+            }
+        }
+        warmup = null;
+        if (transport != null) {
+            transport.close(closeMode);
+            transport = null;
+        }
+        // Closed after the transport, so that calls still blocked on aborted exchanges return
+        if (executor != null) {
+            executor.close();
+            executor = null;
         }
     }
     
@@ -62,40 +223,205 @@ public class SemanticKernelAgent {
      * @return true if the agent is running, false otherwise
      */
     public boolean isRunning() {
-        return isRunning;
+        return state.get() == State.RUNNING;
+    }
+    
+    /**
+     * Gets the lifecycle state of the agent.
+     * 
+     * @return the current state
+     */
+    public State getState() {
+        return state.get();
+    }
+    
+    /**
+     * Checks if the agent is running and has finished warming up its connections.
+     * 
+     * @return true if the agent is ready to serve requests at steady-state latency
+     */
+    public boolean isReady() {
+        CompletableFuture<Void> current = warmup;
+        return isRunning() && current != null && current.isDone();
+    }
+    
+    /**
+     * Gets a future that completes once the agent is ready.
+     * 
+     * @return the warm-up future, or a failed future if the agent is not running
+     */
+    public CompletableFuture<Void> whenReady() {
+        CompletableFuture<Void> current = warmup;
+        if (!isRunning() || current == null) {
+            return CompletableFuture.failedFuture(new AgentException("Agent is not running"));
+        }
+        return current;
+    }
+    
+    /**
+     * Gets the HTTP transport shared by all plugins.
+     * 
+     * @return the shared transport, or null if the agent is not running
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+    
+    /**
+     * Gets the delivery report receiver.
+     * 
+     * @return the receiver, or null if it is disabled or the agent is not running
+     */
+    public DeliveryReportReceiver getDeliveryReceiver() {
+        return deliveryReceiver;
+    }
+    
+    /**
+     * Gets the local CDR store.
+     * 
+     * @return the store, or null if it is disabled or the agent is not running
+     */
+    public CdrStore getCdrStore() {
+        return cdrStore;
+    }
+    
+    /**
+     * Gets the usage aggregator, which is rebuilt from the CDR store at startup and fed by it.
+     * 
+     * @return the aggregator, or null if it is disabled or the agent is not running
+     */
+    public UsageAggregator getUsageAggregator() {
+        return usageAggregator;
+    }
+    
+    /**
+     * Gets the metrics scrape endpoint.
+     * 
+     * @return the endpoint, or null if it is disabled or the agent is not running
+     */
+    public MetricsEndpoint getMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+    
+    /**
+     * Gets the executor used for plugin invocations.
+     * 
+     * @return the plugin executor, or null if the agent is not running
+     */
+    public PluginExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * Runs a blocking plugin invocation on the configured execution mode
+     * (platform thread pool or virtual threads). The invocation is admitted as a whole: once
+     * accepted, all of its requests are let through and waited for when the agent is stopped.
+     * 
+     * @param call the plugin invocation, e.g. {@code () -> numbers.getNumberDetails(number)}
+     * @param <T> the result type
+     * @return a future completed with the invocation result, or failed if the agent is not running
+     */
+    public <T> CompletableFuture<T> submit(PluginCall<T> call) {
+        PluginExecutor current = executor;
+        HttpTransport shared = transport;
+        if (!isRunning() || current == null || shared == null) {
+            return CompletableFuture.failedFuture(new PluginException("Agent is not running"));
+        }
+        RequestGate gate = shared.getRequestGate();
+        RequestGate.Admission admission = gate.tryAdmit();
+        if (admission == null) {
+            return CompletableFuture.failedFuture(new PluginException("Agent is shutting down"));
+        }
+        CompletableFuture<T> result = current.submit(() -> gate.callAdmitted(admission, call));
+        result.whenComplete((value, failure) -> admission.release());
+        return result;
     }
     
     /**
-     * Gets a plugin by name.
+     * Gets the state of every circuit breaker of every plugin created so far.
+     * 
+     * @return map of breaker names (e.g. {@code MyNumbersAPI:GET /numbers/{id}}) to their states
+     */
+    public Map<String, CircuitBreaker.State> getCircuitBreakerStates() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        for (Object plugin : plugins.values()) {
+            if (plugin instanceof BaseApiPlugin) {
+                for (CircuitBreaker breaker : ((BaseApiPlugin) plugin).getCircuitBreakers().values()) {
+                    states.put(breaker.getName(), breaker.getState());
+                }
+            }
+        }
+        return states;
+    }
+    
+    /**
+     * Gets a plugin by name, creating it on first use. Safe to call concurrently; every
+     * caller gets the same instance. No plugins are created once the agent is draining.
      * 
      * @param pluginName the name of the plugin
      * @return the plugin instance or null if not found
+     * @throws IllegalStateException if the agent is stopped, or draining and the plugin was
+     *         never created
      */
     public Object getPlugin(String pluginName) {
-        return plugins.get(pluginName);
+        Object plugin = plugins.get(pluginName);
+        if (plugin != null) {
+            return plugin;
+        }
+        synchronized (pluginLock) {
+            State current = state.get();
+            if (current == State.STOPPED) {
+                throw new IllegalStateException("Agent is not running");
+            }
+            Supplier<Object> factory = pluginFactories.get(pluginName);
+            if (factory == null) {
+                return null;
+            }
+            plugin = plugins.get(pluginName);
+            if (plugin == null) {
+                if (current != State.STARTING && current != State.RUNNING) {
+                    throw new IllegalStateException("Agent is " + current + ", plugin " + pluginName + " is not created");
+                }
+                logger.debug("Creating plugin: {}", pluginName);
+                plugin = factory.get();
+                plugins.put(pluginName, plugin);
+            }
+            return plugin;
+        }
     }
     
     /**
-     * Gets all registered plugins.
+     * Gets all registered plugins, creating those that have not been used yet.
      * 
      * @return map of plugin names to plugin instances
      */
     public Map<String, Object> getAllPlugins() {
-        return new HashMap<>(plugins);
+        Map<String, Object> all = new HashMap<>();
+        for (String pluginName : pluginFactories.keySet()) {
+            Object plugin = getPlugin(pluginName);
+            if (plugin != null) {
+                all.put(pluginName, plugin);
+            }
+        }
+        return all;
     }
     
     private void registerPlugins() throws AgentException {
         try {
             // Register all BICS API plugins
-            registerPlugin("ConnectAPI", new ConnectApiPlugin(configuration));
-            registerPlugin("MyNumbersAPI", new MyNumbersApiPlugin(configuration));
-            registerPlugin("MyNumbersAddressManagementAPI", new MyNumbersAddressManagementApiPlugin(configuration));
-            registerPlugin("MyNumbersCDRAPI", new MyNumbersCdrApiPlugin(configuration));
-            registerPlugin("MyNumbersDisconnectionAPI", new MyNumbersDisconnectionApiPlugin(configuration));
-            registerPlugin("MyNumbersEmergencyServicesAPI", new MyNumbersEmergencyServicesApiPlugin(configuration));
-            registerPlugin("MyNumbersNumberPortingAPI", new MyNumbersNumberPortingApiPlugin(configuration));
-            registerPlugin("SMSAPI", new SmsApiPlugin(configuration));
+            HttpTransport shared = transport;
+            registerPlugin("ConnectAPI", () -> new ConnectApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersAPI", () -> new MyNumbersApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersAddressManagementAPI", () -> new MyNumbersAddressManagementApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersCDRAPI", () -> new MyNumbersCdrApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersDisconnectionAPI", () -> new MyNumbersDisconnectionApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersEmergencyServicesAPI", () -> new MyNumbersEmergencyServicesApiPlugin(configuration, shared));
+            registerPlugin("MyNumbersNumberPortingAPI", () -> new MyNumbersNumberPortingApiPlugin(configuration, shared));
+            registerPlugin("SMSAPI", () -> new SmsApiPlugin(configuration, shared));
             
+            if (!configuration.getBoolean("startup.lazyPlugins", true)) {
+                getAllPlugins();
+            }
             logger.info("All BICS API plugins registered successfully");
             
         } catch (Exception e) {
@@ -103,13 +429,81 @@ public class SemanticKernelAgent {
         }
     }
     
-    private void registerPlugin(String pluginName, Object pluginInstance) {
+    private void registerPlugin(String pluginName, Supplier<Object> pluginFactory) {
         try {
-            plugins.put(pluginName, pluginInstance);
+            pluginFactories.put(pluginName, pluginFactory);
             logger.debug("Registered plugin: {}", pluginName);
         } catch (Exception e) {
             logger.error("Failed to register plugin {}: {}", pluginName, e.getMessage(), e);
             throw new RuntimeException("Failed to register plugin: " + pluginName, e);
         }
     }
+    
+    private void startDeliveryReceiver() throws AgentException {
+        if (!configuration.getBoolean("sms.receiver.enabled", false)) {
+            return;
+        }
+        SmsApiPlugin smsPlugin = (SmsApiPlugin) getPlugin("SMSAPI");
+        DeliveryReportReceiver receiver;
+        try {
+            receiver = new DeliveryReportReceiver(configuration, smsPlugin::onDeliveryReport);
+            receiver.start();
+        } catch (IllegalArgumentException | IOException e) {
+            throw new AgentException("Failed to start delivery report receiver: " + e.getMessage(), e);
+        }
+        deliveryReceiver = receiver;
+    }
+    
+    private void startCdrStore() throws AgentException {
+        boolean aggregate = configuration.getBoolean("cdr.aggregation.enabled", false);
+        if (!configuration.getBoolean("cdr.store.enabled", false)) {
+            if (aggregate) {
+                // The aggregator only sees records through the store
+                throw new AgentException("cdr.aggregation requires cdr.store to be enabled");
+            }
+            return;
+        }
+        try {
+            cdrStore = new CdrStore(configuration);
+            if (aggregate) {
+                UsageAggregator aggregator = new UsageAggregator(configuration);
+                long counted = aggregator.rebuild(cdrStore);
+                logger.info("Usage aggregator rebuilt from {} stored CDRs", counted);
+                cdrStore.addListener(aggregator);
+                usageAggregator = aggregator;
+            }
+        } catch (IOException e) {
+            throw new AgentException("Failed to open CDR store", e);
+        }
+    }
+    
+    private void startMetrics() throws AgentException {
+        if (configuration.getBoolean("metrics.jmx.enabled", true)) {
+            MetricsRegistry.getInstance().enableJmx();
+        }
+        if (!configuration.getBoolean("metrics.scrape.enabled", false)) {
+            return;
+        }
+        MetricsEndpoint endpoint = new MetricsEndpoint(configuration, MetricsRegistry.getInstance());
+        endpoint.setReadinessCheck(this::isReady);
+        try {
+            endpoint.start();
+        } catch (IOException e) {
+            throw new AgentException("Failed to start metrics endpoint", e);
+        }
+        metricsEndpoint = endpoint;
+    }
+    
+    private void startConfigurationWatcher() throws AgentException {
+        if (configuration.getSource() == null || !configuration.getBoolean("config.watch.enabled", true)) {
+            return;
+        }
+        ConfigurationWatcher watcher = new ConfigurationWatcher(configuration);
+        try {
+            watcher.start();
+        } catch (IOException e) {
+            throw new AgentException("Failed to watch configuration file " + configuration.getSource(), e);
+        }
+        configurationWatcher = watcher;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.bics.agent.cdr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of time ranges whose CDRs have been downloaded for one phone number, kept as
+ * disjoint, merged half-open intervals in epoch milliseconds. Persisted as one
+ * {@code from to} line per interval. Not thread-safe; the store guards it per number.
+ */
+final class CdrCoverage {
+    
+    private final Path file;
+    private final TreeMap<Long, Long> intervals = new TreeMap<>();
+    
+    private CdrCoverage(Path file) {
+        this.file = file;
+    }
+    
+    static CdrCoverage load(Path file) throws IOException {
+        CdrCoverage coverage = new CdrCoverage(file);
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] bounds = line.trim().split("\\s+");
+                if (bounds.length == 2) {
+                    coverage.add(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+                }
+            }
+        }
+        return coverage;
+    }
+    
+    /**
+     * Gets the parts of {@code [from, to)} that are not covered yet.
+     */
+    List<long[]> missing(long from, long to) {
+        List<long[]> gaps = new ArrayList<>();
+        long cursor = from;
+        Map.Entry<Long, Long> previous = intervals.floorEntry(from);
+        if (previous != null && previous.getValue() > cursor) {
+            cursor = previous.getValue();
+        }
+        for (Map.Entry<Long, Long> interval : intervals.subMap(from, false, to, false).entrySet()) {
+            if (interval.getKey() > cursor) {
+                gaps.add(new long[] {cursor, interval.getKey()});
+            }
+            cursor = Math.max(cursor, interval.getValue());
+        }
+        if (cursor < to) {
+            gaps.add(new long[] {cursor, to});
+        }
+        return gaps;
+    }
+    
+    void add(long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        Map.Entry<Long, Long> previous = intervals.floorEntry(from);
+        if (previous != null && previous.getValue() >= from) {
+            from = previous.getKey();
+            to = Math.max(to, previous.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = intervals.ceilingEntry(from)) != null && next.getKey() <= to) {
+            to = Math.max(to, next.getValue());
+            intervals.remove(next.getKey());
+        }
+        intervals.put(from, to);
+    }
+    
+    void save() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        intervals.forEach((from, to) -> lines.append(from).append(' ').append(to).append('\n'));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
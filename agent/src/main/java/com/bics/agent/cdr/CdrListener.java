@@ -0,0 +1,21 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.models.cdr.CdrRecord;
+
+import java.util.List;
+
+/**
+ * Receives the records appended to a {@link CdrStore}.
+ */
+@FunctionalInterface
+public interface CdrListener {
+    
+    /**
+     * Called after a segment of records has been published, once per segment of an ingest.
+     * Runs on the ingesting thread and should return quickly.
+     * 
+     * @param phoneNumber the phone number the records belong to
+     * @param records the records just stored
+     */
+    void onCdrsStored(String phoneNumber, List<CdrRecord> records);
+}
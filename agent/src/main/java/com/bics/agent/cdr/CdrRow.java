@@ -0,0 +1,53 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.models.cdr.CdrRecord;
+
+/**
+ * Read-only view of the current row of a {@link CdrSegment} scan.
+ * The view is reused for every row, so values must be copied (for example with
+ * {@link #toRecord()}) to be kept after the scan moves on. String values of low-cardinality
+ * columns come from the segment dictionary and are not allocated per row.
+ */
+public interface CdrRow {
+    
+    String getPhoneNumber();
+    
+    String getRecordId();
+    
+    String getCustomerId();
+    
+    String getCallType();
+    
+    String getDirection();
+    
+    String getDestination();
+    
+    /**
+     * Gets the start time of the call.
+     * 
+     * @return the start time in epoch milliseconds
+     */
+    long getStartTimeMillis();
+    
+    /**
+     * Gets the end time of the call.
+     * 
+     * @return the end time in epoch milliseconds, or -1 if the record has none
+     */
+    long getEndTimeMillis();
+    
+    long getDuration();
+    
+    double getCost();
+    
+    String getCurrency();
+    
+    String getStatus();
+    
+    /**
+     * Copies the current row into a new record.
+     * 
+     * @return the record
+     */
+    CdrRecord toRecord();
+}
@@ -0,0 +1,462 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.models.cdr.CdrRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable, memory-mapped file holding the CDRs of one phone number, column by column.
+ * Rows are sorted by start time. Every column is compressed with a light-weight encoding
+ * that is scanned straight from the mapping, without inflating it on the heap first:
+ * <ul>
+ *   <li>start times as varint deltas from the previous row,</li>
+ *   <li>end times and durations as zigzag varints, end times relative to the start,</li>
+ *   <li>costs as varint micro-units when that is exact, as raw doubles otherwise,</li>
+ *   <li>strings through a per-segment dictionary with varint codes, or as length-prefixed
+ *       UTF-8 when most values are distinct (record IDs).</li>
+ * </ul>
+ * The header keeps the first and last start time, so scans skip segments outside their range.
+ */
+public final class CdrSegment {
+    private static final int MAGIC = 0x42434452; // "BCDR"
+    private static final byte VERSION = 1;
+    
+    private static final byte DELTA = 1;
+    private static final byte ZIGZAG = 2;
+    private static final byte DECIMAL6 = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte DICTIONARY = 5;
+    private static final byte PLAIN = 6;
+    
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int DURATION = 2;
+    private static final int COST = 3;
+    private static final int RECORD_ID = 4;
+    private static final int CUSTOMER_ID = 5;
+    private static final int CALL_TYPE = 6;
+    private static final int DIRECTION = 7;
+    private static final int DESTINATION = 8;
+    private static final int CURRENCY = 9;
+    private static final int STATUS = 10;
+    private static final int COLUMNS = 11;
+    
+    private final Path path;
+    private final String phoneNumber;
+    private final int rowCount;
+    private final long minStartMillis;
+    private final long maxStartMillis;
+    private final byte[] encodings = new byte[COLUMNS];
+    private final ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+    private final String[][] dictionaries = new String[COLUMNS][];
+    
+    private CdrSegment(Path path, MappedByteBuffer mapped) {
+        this.path = path;
+        ByteBuffer header = mapped.duplicate();
+        if (header.getInt() != MAGIC || header.get() != VERSION) {
+            throw new IllegalArgumentException("Not a CDR segment: " + path);
+        }
+        this.rowCount = header.getInt();
+        this.minStartMillis = header.getLong();
+        this.maxStartMillis = header.getLong();
+        this.phoneNumber = readString(header, header.getInt());
+        int[] lengths = new int[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            encodings[column] = header.get();
+            lengths[column] = header.getInt();
+        }
+        int offset = header.position();
+        for (int column = 0; column < COLUMNS; column++) {
+            ByteBuffer data = mapped.slice(offset, lengths[column]);
+            if (encodings[column] == DICTIONARY) {
+                String[] dictionary = new String[(int) readVarLong(data)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(data, (int) readVarLong(data));
+                }
+                dictionaries[column] = dictionary;
+                data = data.slice();
+            }
+            columns[column] = data;
+            offset += lengths[column];
+        }
+    }
+    
+    /**
+     * Maps a segment file for reading.
+     * 
+     * @param path the segment file
+     * @return the segment
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    public static CdrSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CdrSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Corrupt CDR segment " + path, e);
+        }
+    }
+    
+    /**
+     * Writes records into a new segment file. The file is written under a temporary name and
+     * moved into place atomically, so concurrent scans never see a partial segment.
+     * 
+     * @param path the segment file to create
+     * @param phoneNumber the phone number the records belong to
+     * @param records the records; each must have a start time
+     * @param startMillis extracts the start time of a record in epoch milliseconds
+     * @param endMillis extracts the end time of a record in epoch milliseconds, or -1
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, String phoneNumber, List<CdrRecord> records,
+                             ToLongFunction<CdrRecord> startMillis, ToLongFunction<CdrRecord> endMillis)
+            throws IOException {
+        int rows = records.size();
+        long[] starts = new long[rows];
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            starts[i] = startMillis.applyAsLong(records.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+        
+        ByteArrayOutputStream[] data = new ByteArrayOutputStream[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            data[column] = new ByteArrayOutputStream();
+        }
+        boolean exactCosts = true;
+        long previousStart = rows > 0 ? starts[order[0]] : 0L;
+        for (int i : order) {
+            CdrRecord record = records.get(i);
+            writeVarLong(data[START], starts[i] - previousStart);
+            previousStart = starts[i];
+            long end = endMillis.applyAsLong(record);
+            writeVarLong(data[END], end < 0 ? 0L : zigzag(end - starts[i]) + 1);
+            writeVarLong(data[DURATION], zigzag(record.getDuration()));
+            double micros = record.getCost() * 1_000_000d;
+            exactCosts &= Math.abs(micros) < 1e15 && Math.round(micros) / 1_000_000d == record.getCost();
+        }
+        byte costEncoding = exactCosts ? DECIMAL6 : DOUBLE;
+        for (int i : order) {
+            double cost = records.get(i).getCost();
+            if (exactCosts) {
+                writeVarLong(data[COST], zigzag(Math.round(cost * 1_000_000d)));
+            } else {
+                long bits = Double.doubleToRawLongBits(cost);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    data[COST].write((int) (bits >>> shift));
+                }
+            }
+        }
+        
+        byte[] encoding = new byte[COLUMNS];
+        encoding[START] = DELTA;
+        encoding[END] = ZIGZAG;
+        encoding[DURATION] = ZIGZAG;
+        encoding[COST] = costEncoding;
+        encoding[RECORD_ID] = writeStrings(data[RECORD_ID], records, order, CdrRecord::getRecordId);
+        encoding[CUSTOMER_ID] = writeStrings(data[CUSTOMER_ID], records, order, CdrRecord::getCustomerId);
+        encoding[CALL_TYPE] = writeStrings(data[CALL_TYPE], records, order, CdrRecord::getCallType);
+        encoding[DIRECTION] = writeStrings(data[DIRECTION], records, order, CdrRecord::getDirection);
+        encoding[DESTINATION] = writeStrings(data[DESTINATION], records, order, CdrRecord::getDestination);
+        encoding[CURRENCY] = writeStrings(data[CURRENCY], records, order, CdrRecord::getCurrency);
+        encoding[STATUS] = writeStrings(data[STATUS], records, order, CdrRecord::getStatus);
+        
+        byte[] number = phoneNumber.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(4 + 1 + 4 + 8 + 8 + 4 + number.length + COLUMNS * 5);
+        header.putInt(MAGIC).put(VERSION).putInt(rows)
+            .putLong(rows > 0 ? starts[order[0]] : 0L)
+            .putLong(rows > 0 ? starts[order[rows - 1]] : 0L)
+            .putInt(number.length).put(number);
+        for (int column = 0; column < COLUMNS; column++) {
+            header.put(encoding[column]).putInt(data[column].size());
+        }
+        
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            header.flip();
+            writeFully(channel, header);
+            for (ByteArrayOutputStream column : data) {
+                writeFully(channel, ByteBuffer.wrap(column.toByteArray()));
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public long getMinStartMillis() {
+        return minStartMillis;
+    }
+    
+    public long getMaxStartMillis() {
+        return maxStartMillis;
+    }
+    
+    /**
+     * Checks whether the segment can hold rows starting in the given range.
+     * 
+     * @param fromMillis start of the range (inclusive)
+     * @param toMillis end of the range (exclusive)
+     * @return false if every row of the segment is outside the range
+     */
+    public boolean overlaps(long fromMillis, long toMillis) {
+        return rowCount > 0 && minStartMillis < toMillis && maxStartMillis >= fromMillis;
+    }
+    
+    /**
+     * Starts a new scan over the rows in start time order. Scans are independent, so
+     * several threads can scan the same segment at once.
+     * 
+     * @return a cursor positioned before the first row
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+    
+    /**
+     * Sequential scan over the rows of a segment; the cursor is its own {@link CdrRow} view.
+     */
+    public final class Cursor implements CdrRow {
+        private final ByteBuffer[] buffers = new ByteBuffer[COLUMNS];
+        private final int[] codes = new int[COLUMNS];
+        private final int[] plainOffsets = new int[COLUMNS];
+        private final int[] plainLengths = new int[COLUMNS];
+        private int row = -1;
+        private long start = minStartMillis;
+        private long end;
+        private long duration;
+        private double cost;
+        
+        private Cursor() {
+            for (int column = 0; column < COLUMNS; column++) {
+                buffers[column] = columns[column].duplicate();
+            }
+        }
+        
+        /**
+         * Moves to the next row.
+         * 
+         * @return false if there are no more rows
+         */
+        public boolean next() {
+            if (row + 1 >= rowCount) {
+                return false;
+            }
+            row++;
+            start += readVarLong(buffers[START]);
+            long endCode = readVarLong(buffers[END]);
+            end = endCode == 0 ? -1L : start + unzigzag(endCode - 1);
+            duration = unzigzag(readVarLong(buffers[DURATION]));
+            cost = encodings[COST] == DECIMAL6
+                    ? unzigzag(readVarLong(buffers[COST])) / 1_000_000d
+                    : Double.longBitsToDouble(buffers[COST].getLong());
+            for (int column = RECORD_ID; column < COLUMNS; column++) {
+                ByteBuffer buffer = buffers[column];
+                if (encodings[column] == DICTIONARY) {
+                    codes[column] = (int) readVarLong(buffer);
+                } else {
+                    int length = (int) readVarLong(buffer) - 1;
+                    plainOffsets[column] = buffer.position();
+                    plainLengths[column] = length;
+                    if (length > 0) {
+                        buffer.position(buffer.position() + length);
+                    }
+                }
+            }
+            return true;
+        }
+        
+        private String string(int column) {
+            if (encodings[column] == DICTIONARY) {
+                int code = codes[column];
+                return code == 0 ? null : dictionaries[column][code - 1];
+            }
+            int length = plainLengths[column];
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffers[column].get(plainOffsets[column], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        @Override
+        public String getPhoneNumber() {
+            return phoneNumber;
+        }
+        
+        @Override
+        public String getRecordId() {
+            return string(RECORD_ID);
+        }
+        
+        @Override
+        public String getCustomerId() {
+            return string(CUSTOMER_ID);
+        }
+        
+        @Override
+        public String getCallType() {
+            return string(CALL_TYPE);
+        }
+        
+        @Override
+        public String getDirection() {
+            return string(DIRECTION);
+        }
+        
+        @Override
+        public String getDestination() {
+            return string(DESTINATION);
+        }
+        
+        @Override
+        public long getStartTimeMillis() {
+            return start;
+        }
+        
+        @Override
+        public long getEndTimeMillis() {
+            return end;
+        }
+        
+        @Override
+        public long getDuration() {
+            return duration;
+        }
+        
+        @Override
+        public double getCost() {
+            return cost;
+        }
+        
+        @Override
+        public String getCurrency() {
+            return string(CURRENCY);
+        }
+        
+        @Override
+        public String getStatus() {
+            return string(STATUS);
+        }
+        
+        @Override
+        public CdrRecord toRecord() {
+            CdrRecord record = new CdrRecord(getRecordId(), phoneNumber, getCallType(),
+                Instant.ofEpochMilli(start).toString(), duration);
+            record.setCustomerId(getCustomerId());
+            record.setDirection(getDirection());
+            record.setDestination(getDestination());
+            record.setEndTime(end < 0 ? null : Instant.ofEpochMilli(end).toString());
+            record.setCost(cost);
+            record.setCurrency(getCurrency());
+            record.setStatus(getStatus());
+            return record;
+        }
+    }
+    
+    private static byte writeStrings(ByteArrayOutputStream out, List<CdrRecord> records, Integer[] order,
+                                     Function<CdrRecord, String> column) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i : order) {
+            String value = column.apply(records.get(i));
+            if (value != null) {
+                codes.putIfAbsent(value, codes.size() + 1);
+            }
+        }
+        // Mostly distinct values gain nothing from a dictionary
+        if (codes.size() > 1 && codes.size() * 2 > records.size()) {
+            for (int i : order) {
+                String value = column.apply(records.get(i));
+                byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+                writeVarLong(out, bytes != null ? bytes.length + 1 : 0);
+                if (bytes != null) {
+                    out.writeBytes(bytes);
+                }
+            }
+            return PLAIN;
+        }
+        String[] dictionary = new String[codes.size()];
+        codes.forEach((value, code) -> dictionary[code - 1] = value);
+        writeVarLong(out, dictionary.length);
+        for (String value : dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        for (int i : order) {
+            String value = column.apply(records.get(i));
+            writeVarLong(out, value != null ? codes.get(value) : 0);
+        }
+        return DICTIONARY;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
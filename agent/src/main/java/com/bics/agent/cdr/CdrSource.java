@@ -0,0 +1,25 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.models.cdr.CdrRecord;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Downloads the CDRs of a time range for the {@link CdrStore} to ingest.
+ */
+@FunctionalInterface
+public interface CdrSource {
+    
+    /**
+     * Starts fetching the records of a phone number.
+     * 
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (inclusive)
+     * @return the records; closed by the caller
+     * @throws PluginException if the request fails
+     */
+    Stream<CdrRecord> fetch(String phoneNumber, Instant from, Instant to) throws PluginException;
+}
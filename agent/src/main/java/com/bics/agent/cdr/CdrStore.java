@@ -0,0 +1,489 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.models.cdr.CdrRecord;
+import com.bics.agent.plugins.MyNumbersCdrApiPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local, append-only store of call detail records for analytics, so that reports scan
+ * downloaded CDRs instead of fetching them from the API again.
+ * Records are partitioned by phone number and UTC day of their start time, as
+ * {@code <directory>/<number>/<yyyy-MM-dd>/<segment>.cdr}; every ingest appends new
+ * {@link CdrSegment} files, which are memory-mapped once and shared by all scans. Scans
+ * prune partitions and segments by start time and merge the segments of a day in time order.
+ * <p>
+ * Per number, the store remembers which time ranges have been downloaded. A top-up
+ * fetches only the missing parts of a range, and only up to {@code settleMs} before now,
+ * so that records still arriving for the most recent period are picked up by a later top-up.
+ * An ingest is all or nothing: its segments are staged and only published, and shown to
+ * {@link CdrListener}s such as a {@link UsageAggregator}, once the whole stream has been read.
+ */
+public class CdrStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CdrStore.class);
+    private static final String SEGMENT_SUFFIX = ".cdr";
+    private static final String STAGED_SUFFIX = ".staged";
+    private static final AtomicInteger sequence = new AtomicInteger();
+    
+    private final Path directory;
+    private final long settleMs;
+    private final int segmentRows;
+    private final Map<Path, CdrSegment> segments = new ConcurrentHashMap<>();
+    private final Map<String, CdrCoverage> coverages = new ConcurrentHashMap<>();
+    private final List<CdrListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Creates a store from the {@code cdr.store} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     * @throws IOException if the store directory cannot be created
+     */
+    public CdrStore(AgentConfiguration configuration) throws IOException {
+        this(Paths.get(configuration.getString("cdr.store.directory", "data/cdr-store")),
+             configuration.getLong("cdr.store.settleMs", 3600000L),
+             configuration.getInt("cdr.store.segmentRows", 100000));
+    }
+    
+    /**
+     * Creates a store with explicit settings.
+     * 
+     * @param directory the root directory of the store
+     * @param settleMs how long before now records are considered complete
+     * @param segmentRows the maximum number of rows written per segment
+     * @throws IOException if the store directory cannot be created
+     */
+    public CdrStore(Path directory, long settleMs, int segmentRows) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.settleMs = Math.max(0L, settleMs);
+        this.segmentRows = Math.max(1, segmentRows);
+    }
+    
+    /**
+     * Downloads the parts of a range that are not stored yet through the CDR plugin, using
+     * its windowed fetch mode.
+     * 
+     * @param plugin the CDR plugin
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the number of records ingested
+     * @throws PluginException if a download fails; ranges completed before it stay covered
+     * @throws IOException if the records cannot be stored
+     */
+    public long topUp(MyNumbersCdrApiPlugin plugin, String phoneNumber, Instant from, Instant to)
+            throws PluginException, IOException {
+        return topUp((number, gapFrom, gapTo) ->
+                plugin.streamCdrRecordsWindowed(number, gapFrom.toString(), gapTo.toString()),
+            phoneNumber, from, to);
+    }
+    
+    /**
+     * Downloads the parts of a range that are not stored yet.
+     * 
+     * @param source the source to download from
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the number of records ingested
+     * @throws PluginException if a download fails; ranges completed before it stay covered and
+     *         nothing of the failed range is stored
+     * @throws IOException if the records cannot be stored
+     */
+    public long topUp(CdrSource source, String phoneNumber, Instant from, Instant to)
+            throws PluginException, IOException {
+        long end = Math.min(to.toEpochMilli(), System.currentTimeMillis() - settleMs);
+        CdrCoverage coverage = coverage(phoneNumber);
+        long ingested = 0;
+        synchronized (coverage) {
+            for (long[] gap : coverage.missing(from.toEpochMilli(), end)) {
+                long gapFrom = gap[0];
+                long gapTo = gap[1];
+                logger.debug("Downloading CDRs of {} from {} to {}", phoneNumber,
+                    Instant.ofEpochMilli(gapFrom), Instant.ofEpochMilli(gapTo));
+                try (Stream<CdrRecord> records = source.fetch(phoneNumber,
+                        Instant.ofEpochMilli(gapFrom), Instant.ofEpochMilli(gapTo - 1))) {
+                    ingested += ingest(phoneNumber, records.filter(record -> {
+                        long start = epochMillis(record.getStartTime());
+                        return start >= gapFrom && start < gapTo;
+                    }));
+                } catch (RuntimeException e) {
+                    if (e.getCause() instanceof PluginException) {
+                        throw (PluginException) e.getCause();
+                    }
+                    throw e;
+                }
+                coverage.add(gapFrom, gapTo);
+                coverage.save();
+            }
+        }
+        return ingested;
+    }
+    
+    /**
+     * Appends records to the store. Records without a parsable start time are skipped.
+     * Ingesting a record twice stores it twice; use {@link #topUp} to download ranges once.
+     * The records become visible to scans and listeners only after the stream has been read
+     * to its end; if reading or writing fails, nothing of it is stored.
+     * 
+     * @param phoneNumber the phone number the records belong to
+     * @param records the records, preferably in time order
+     * @return the number of records stored
+     * @throws IOException if a segment cannot be written
+     */
+    public long ingest(String phoneNumber, Stream<CdrRecord> records) throws IOException {
+        // Loading the coverage removes segments left staged by an earlier process
+        coverage(phoneNumber);
+        List<Path> staged = new ArrayList<>();
+        boolean published = false;
+        try {
+            long stored = stage(phoneNumber, records, staged);
+            publish(phoneNumber, staged);
+            published = true;
+            return stored;
+        } finally {
+            if (!published) {
+                discard(staged);
+            }
+        }
+    }
+    
+    /**
+     * Scans the stored records of a phone number in time order.
+     * The row passed to the action is a reused view and is only valid during the call.
+     * 
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param filter selects the rows passed to the action
+     * @param action receives every selected row
+     * @return the number of selected rows
+     * @throws IOException if a segment cannot be read
+     */
+    public long scan(String phoneNumber, Instant from, Instant to, Predicate<CdrRow> filter,
+                     Consumer<CdrRow> action) throws IOException {
+        return scan(days(phoneNumber, from, to), from.toEpochMilli(), to.toEpochMilli(), filter, action);
+    }
+    
+    /**
+     * Scans all stored records of a phone number in time order.
+     * The row passed to the action is a reused view and is only valid during the call.
+     * 
+     * @param phoneNumber the phone number
+     * @param filter selects the rows passed to the action
+     * @param action receives every selected row
+     * @return the number of selected rows
+     * @throws IOException if a segment cannot be read
+     */
+    public long scan(String phoneNumber, Predicate<CdrRow> filter, Consumer<CdrRow> action) throws IOException {
+        return scan(days(phoneNumber, day -> true), Long.MIN_VALUE, Long.MAX_VALUE, filter, action);
+    }
+    
+    /**
+     * Gets the phone numbers that have records in the store.
+     * 
+     * @return the phone numbers, in no particular order
+     * @throws IOException if the store directory cannot be read
+     */
+    public List<String> getPhoneNumbers() throws IOException {
+        List<Path> numberDirectories;
+        try (Stream<Path> listing = Files.list(directory)) {
+            numberDirectories = listing.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+        // Directory names are sanitized, so the number is read from a segment header
+        List<String> phoneNumbers = new ArrayList<>(numberDirectories.size());
+        for (Path numberDirectory : numberDirectories) {
+            try (Stream<Path> days = Files.list(numberDirectory)) {
+                for (Path day : days.filter(Files::isDirectory).collect(Collectors.toList())) {
+                    List<CdrSegment> daySegments = segments(day);
+                    if (!daySegments.isEmpty()) {
+                        phoneNumbers.add(daySegments.get(0).getPhoneNumber());
+                        break;
+                    }
+                }
+            }
+        }
+        return phoneNumbers;
+    }
+    
+    private long scan(List<Path> days, long fromMillis, long toMillis, Predicate<CdrRow> filter,
+                      Consumer<CdrRow> action) throws IOException {
+        long selected = 0;
+        for (Path day : days) {
+            List<CdrSegment.Cursor> cursors = new ArrayList<>();
+            for (CdrSegment segment : segments(day)) {
+                CdrSegment.Cursor cursor = segment.cursor();
+                if (segment.overlaps(fromMillis, toMillis) && cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+            // Merge the segments of the day; each one is already sorted by start time
+            while (!cursors.isEmpty()) {
+                int earliest = 0;
+                for (int i = 1; i < cursors.size(); i++) {
+                    if (cursors.get(i).getStartTimeMillis() < cursors.get(earliest).getStartTimeMillis()) {
+                        earliest = i;
+                    }
+                }
+                CdrSegment.Cursor row = cursors.get(earliest);
+                long start = row.getStartTimeMillis();
+                if (start >= toMillis) {
+                    break;
+                }
+                if (start >= fromMillis && filter.test(row)) {
+                    action.accept(row);
+                    selected++;
+                }
+                if (!row.next()) {
+                    cursors.remove(earliest);
+                }
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Gets the stored records of a phone number that match a filter, in time order.
+     * 
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @param filter selects the records
+     * @return the matching records
+     * @throws IOException if a segment cannot be read
+     */
+    public List<CdrRecord> query(String phoneNumber, Instant from, Instant to, Predicate<CdrRow> filter)
+            throws IOException {
+        List<CdrRecord> records = new ArrayList<>();
+        scan(phoneNumber, from, to, filter, row -> records.add(row.toRecord()));
+        return records;
+    }
+    
+    /**
+     * Registers a listener for stored records.
+     * 
+     * @param listener the listener
+     */
+    public void addListener(CdrListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener the listener
+     */
+    public void removeListener(CdrListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Gets the root directory of the store.
+     * 
+     * @return the store directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Releases the mapped segments. Segment files stay on disk.
+     */
+    @Override
+    public void close() {
+        segments.clear();
+        coverages.clear();
+    }
+    
+    private long stage(String phoneNumber, Stream<CdrRecord> records, List<Path> staged) throws IOException {
+        Map<LocalDate, List<CdrRecord>> batches = new HashMap<>();
+        long stored = 0;
+        long skipped = 0;
+        Iterator<CdrRecord> iterator = records.iterator();
+        while (iterator.hasNext()) {
+            CdrRecord record = iterator.next();
+            long start = epochMillis(record.getStartTime());
+            if (start < 0) {
+                skipped++;
+                continue;
+            }
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(start), ZoneOffset.UTC);
+            List<CdrRecord> batch = batches.computeIfAbsent(day, key -> new ArrayList<>());
+            batch.add(record);
+            if (batch.size() >= segmentRows) {
+                stored += write(phoneNumber, day, batches.remove(day), staged);
+            }
+        }
+        for (Map.Entry<LocalDate, List<CdrRecord>> batch : batches.entrySet()) {
+            stored += write(phoneNumber, batch.getKey(), batch.getValue(), staged);
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} CDRs of {} without a valid start time", skipped, phoneNumber);
+        }
+        return stored;
+    }
+    
+    private long write(String phoneNumber, LocalDate day, List<CdrRecord> batch, List<Path> staged)
+            throws IOException {
+        Path partition = Files.createDirectories(numberDirectory(phoneNumber).resolve(day.toString()));
+        String name = String.format("%013d-%06d%s%s", System.currentTimeMillis(), sequence.incrementAndGet(),
+            SEGMENT_SUFFIX, STAGED_SUFFIX);
+        Path file = partition.resolve(name);
+        staged.add(file);
+        CdrSegment.write(file, phoneNumber, batch,
+            record -> epochMillis(record.getStartTime()), record -> epochMillis(record.getEndTime()));
+        return batch.size();
+    }
+    
+    /**
+     * Renames staged segments to their final names, then passes their rows to the listeners.
+     */
+    private void publish(String phoneNumber, List<Path> staged) throws IOException {
+        List<Path> published = new ArrayList<>(staged.size());
+        for (Path file : staged) {
+            String name = file.getFileName().toString();
+            Path target = file.resolveSibling(name.substring(0, name.length() - STAGED_SUFFIX.length()));
+            published.add(Files.move(file, target, StandardCopyOption.ATOMIC_MOVE));
+        }
+        staged.clear();
+        if (listeners.isEmpty()) {
+            return;
+        }
+        for (Path file : published) {
+            CdrSegment segment = segment(file);
+            List<CdrRecord> batch = new ArrayList<>(segment.getRowCount());
+            CdrSegment.Cursor cursor = segment.cursor();
+            while (cursor.next()) {
+                batch.add(cursor.toRecord());
+            }
+            for (CdrListener listener : listeners) {
+                listener.onCdrsStored(phoneNumber, batch);
+            }
+        }
+    }
+    
+    private static void discard(List<Path> staged) {
+        for (Path file : staged) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete staged segment {}: {}", file, e.toString());
+            }
+        }
+    }
+    
+    private static void discardStaged(Path numberDirectory) throws IOException {
+        try (Stream<Path> days = Files.list(numberDirectory)) {
+            for (Path day : days.filter(Files::isDirectory).collect(Collectors.toList())) {
+                try (Stream<Path> files = Files.list(day)) {
+                    discard(files.filter(file -> file.getFileName().toString().endsWith(STAGED_SUFFIX))
+                            .collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+    
+    private List<Path> days(String phoneNumber, Instant from, Instant to) throws IOException {
+        String first = LocalDate.ofInstant(from, ZoneOffset.UTC).toString();
+        String last = LocalDate.ofInstant(to, ZoneOffset.UTC).toString();
+        return days(phoneNumber, name -> name.compareTo(first) >= 0 && name.compareTo(last) <= 0);
+    }
+    
+    private List<Path> days(String phoneNumber, Predicate<String> selected) throws IOException {
+        Path numberDirectory = numberDirectory(phoneNumber);
+        if (!Files.isDirectory(numberDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> days = Files.list(numberDirectory)) {
+            return days.filter(Files::isDirectory)
+                    .filter(day -> selected.test(day.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    private List<CdrSegment> segments(Path day) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(day)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<CdrSegment> opened = new ArrayList<>(files.size());
+        for (Path file : files) {
+            opened.add(segment(file));
+        }
+        return opened;
+    }
+    
+    private CdrSegment segment(Path file) throws IOException {
+        try {
+            return segments.computeIfAbsent(file, path -> {
+                try {
+                    return CdrSegment.open(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private CdrCoverage coverage(String phoneNumber) throws IOException {
+        try {
+            return coverages.computeIfAbsent(phoneNumber, number -> {
+                try {
+                    Path numberDirectory = Files.createDirectories(numberDirectory(number));
+                    discardStaged(numberDirectory);
+                    return CdrCoverage.load(numberDirectory.resolve("coverage"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private Path numberDirectory(String phoneNumber) {
+        return directory.resolve(phoneNumber.replaceAll("[^0-9A-Za-z+_-]", "_"));
+    }
+    
+    static long epochMillis(String timestamp) {
+        if (timestamp == null) {
+            return -1L;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bics.agent.cdr;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense {@code int} IDs to strings such as phone numbers and customer IDs, so that
+ * usage tables can key on primitives. Open addressing over a {@code String[]} and an
+ * {@code int[]}, without boxed values or entry objects. Not thread-safe.
+ */
+final class StringIndex {
+    private static final float MAX_LOAD = 0.7f;
+    
+    private String[] keys;
+    private int[] ids;
+    private int size;
+    private int mask;
+    
+    StringIndex(int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedEntries / MAX_LOAD)) - 1) << 1;
+        keys = new String[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Gets the ID of a string, assigning the next free one if it has none yet.
+     */
+    int idOf(String key) {
+        int slot = slotOf(key);
+        if (keys[slot] == null) {
+            if (size + 1 > (int) (keys.length * MAX_LOAD)) {
+                rehash(keys.length << 1);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            ids[slot] = size++;
+        }
+        return ids[slot];
+    }
+    
+    /**
+     * Gets the ID of a string.
+     * 
+     * @return the ID, or -1 if the string has none
+     */
+    int find(String key) {
+        int slot = slotOf(key);
+        return keys[slot] == null ? -1 : ids[slot];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+    
+    private int slotOf(String key) {
+        int slot = mix(key.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new String[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+    
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
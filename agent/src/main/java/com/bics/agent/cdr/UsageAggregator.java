@@ -0,0 +1,284 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.models.cdr.CdrRecord;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory usage totals per phone number and per customer, overall and per time bucket,
+ * updated incrementally as CDRs are stored. Dashboards read summaries from here instead of
+ * calling {@code getUsageSummary} for every number.
+ * Numbers and customers are mapped to dense {@code int} IDs, and every table is a
+ * primitive open-addressing map keyed by {@code id << 32 | bucket}, so hundreds of
+ * thousands of numbers fit in a few tens of megabytes. A range query sums the buckets it
+ * spans, so ranges are widened to whole buckets ({@code cdr.aggregation.bucketMs}).
+ * <p>
+ * Attached to a {@link CdrStore} as a {@link CdrListener}, every record is counted once,
+ * because the store downloads each range only once. The records stored before the
+ * aggregator was attached, for example by an earlier process, are counted with
+ * {@link #rebuild(CdrStore)}.
+ */
+public class UsageAggregator implements CdrListener {
+    
+    private final long bucketMs;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StringIndex numbers;
+    private final StringIndex customers;
+    private final UsageTable numberTotals;
+    private final UsageTable customerTotals;
+    private final UsageTable numberBuckets;
+    private final UsageTable customerBuckets;
+    
+    /**
+     * Creates an aggregator from the {@code cdr.aggregation} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     */
+    public UsageAggregator(AgentConfiguration configuration) {
+        this(configuration.getLong("cdr.aggregation.bucketMs", 3600000L),
+             configuration.getInt("cdr.aggregation.expectedNumbers", 100000));
+    }
+    
+    /**
+     * Creates an aggregator with explicit settings.
+     * 
+     * @param bucketMs the length of a time bucket
+     * @param expectedNumbers the number of phone numbers to size the tables for
+     */
+    public UsageAggregator(long bucketMs, int expectedNumbers) {
+        this.bucketMs = Math.max(1L, bucketMs);
+        int expected = Math.max(16, expectedNumbers);
+        this.numbers = new StringIndex(expected);
+        this.customers = new StringIndex(expected / 16);
+        this.numberTotals = new UsageTable(expected);
+        this.customerTotals = new UsageTable(expected / 16);
+        this.numberBuckets = new UsageTable(expected);
+        this.customerBuckets = new UsageTable(expected / 16);
+    }
+    
+    /**
+     * Counts one record. Records without a valid start time are ignored.
+     * 
+     * @param record the record
+     */
+    public void add(CdrRecord record) {
+        add(null, List.of(record));
+    }
+    
+    /**
+     * Counts the records stored for a phone number.
+     */
+    @Override
+    public void onCdrsStored(String phoneNumber, List<CdrRecord> records) {
+        add(phoneNumber, records);
+    }
+    
+    /**
+     * Counts every record in a store. None of them must have been counted already, so this
+     * is called before the aggregator is attached to the store as a listener.
+     * 
+     * @param store the store to scan
+     * @return the number of records counted
+     * @throws IOException if the store cannot be read
+     */
+    public long rebuild(CdrStore store) throws IOException {
+        long counted = 0;
+        for (String phoneNumber : store.getPhoneNumbers()) {
+            lock.writeLock().lock();
+            try {
+                int number = numbers.idOf(phoneNumber);
+                counted += store.scan(phoneNumber, row -> true, row -> count(number, row));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return counted;
+    }
+    
+    /**
+     * Rebuilds the totals of a phone number from the records in a store. The range must not
+     * have been counted already.
+     * 
+     * @param store the store to scan
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the number of records counted
+     * @throws IOException if the store cannot be read
+     */
+    public long rebuild(CdrStore store, String phoneNumber, Instant from, Instant to) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int number = numbers.idOf(phoneNumber);
+            return store.scan(phoneNumber, from, to, row -> true, row -> count(number, row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the total usage of a phone number.
+     * 
+     * @param phoneNumber the phone number
+     * @return the usage, empty if the number has no records
+     */
+    public UsageSummary getNumberUsage(String phoneNumber) {
+        lock.readLock().lock();
+        try {
+            return total(numbers.find(phoneNumber), numberTotals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the usage of a phone number in a time range, widened to whole buckets.
+     * 
+     * @param phoneNumber the phone number
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the usage, empty if the number has no records in the range
+     */
+    public UsageSummary getNumberUsage(String phoneNumber, Instant from, Instant to) {
+        lock.readLock().lock();
+        try {
+            return range(numbers.find(phoneNumber), numberBuckets, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the total usage of a customer.
+     * 
+     * @param customerId the customer ID
+     * @return the usage, empty if the customer has no records
+     */
+    public UsageSummary getCustomerUsage(String customerId) {
+        lock.readLock().lock();
+        try {
+            return total(customers.find(customerId), customerTotals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the usage of a customer in a time range, widened to whole buckets.
+     * 
+     * @param customerId the customer ID
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     * @return the usage, empty if the customer has no records in the range
+     */
+    public UsageSummary getCustomerUsage(String customerId, Instant from, Instant to) {
+        lock.readLock().lock();
+        try {
+            return range(customers.find(customerId), customerBuckets, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the number of phone numbers with usage.
+     * 
+     * @return the number of phone numbers
+     */
+    public int getNumberCount() {
+        lock.readLock().lock();
+        try {
+            return numbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long getBucketMs() {
+        return bucketMs;
+    }
+    
+    /**
+     * Drops all totals.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            numbers.clear();
+            customers.clear();
+            numberTotals.clear();
+            customerTotals.clear();
+            numberBuckets.clear();
+            customerBuckets.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void add(String phoneNumber, List<CdrRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (CdrRecord record : records) {
+                String number = phoneNumber != null ? phoneNumber : record.getPhoneNumber();
+                long start = CdrStore.epochMillis(record.getStartTime());
+                if (number == null || start < 0) {
+                    continue;
+                }
+                count(numbers.idOf(number), record.getCustomerId(), start, record.getDuration(),
+                    Math.round(record.getCost() * 1_000_000d));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void count(int number, CdrRow row) {
+        count(number, row.getCustomerId(), row.getStartTimeMillis(), row.getDuration(),
+            Math.round(row.getCost() * 1_000_000d));
+    }
+    
+    private void count(int number, String customerId, long startMillis, long duration, long costMicros) {
+        long bucket = Math.floorDiv(startMillis, bucketMs);
+        numberTotals.add(number, 1L, duration, costMicros);
+        numberBuckets.add(key(number, bucket), 1L, duration, costMicros);
+        if (customerId != null) {
+            int customer = customers.idOf(customerId);
+            customerTotals.add(customer, 1L, duration, costMicros);
+            customerBuckets.add(key(customer, bucket), 1L, duration, costMicros);
+        }
+    }
+    
+    private UsageSummary range(int id, UsageTable buckets, Instant from, Instant to) {
+        if (id < 0 || !from.isBefore(to)) {
+            return UsageSummary.EMPTY;
+        }
+        long calls = 0;
+        long duration = 0;
+        long costMicros = 0;
+        long last = Math.floorDiv(to.toEpochMilli() - 1, bucketMs);
+        for (long bucket = Math.floorDiv(from.toEpochMilli(), bucketMs); bucket <= last; bucket++) {
+            int slot = buckets.slot(key(id, bucket));
+            if (slot >= 0) {
+                calls += buckets.calls(slot);
+                duration += buckets.duration(slot);
+                costMicros += buckets.costMicros(slot);
+            }
+        }
+        return new UsageSummary(calls, duration, costMicros);
+    }
+    
+    private static UsageSummary total(int id, UsageTable totals) {
+        int slot = id < 0 ? -1 : totals.slot(id);
+        return slot < 0 ? UsageSummary.EMPTY
+                : new UsageSummary(totals.calls(slot), totals.duration(slot), totals.costMicros(slot));
+    }
+    
+    private static long key(int id, long bucket) {
+        return ((long) id << 32) | (bucket & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,54 @@
+package com.bics.agent.cdr;
+
+/**
+ * Usage totals of a number or customer over a time range.
+ */
+public final class UsageSummary {
+    
+    public static final UsageSummary EMPTY = new UsageSummary(0L, 0L, 0L);
+    
+    private final long calls;
+    private final long duration;
+    private final long costMicros;
+    
+    public UsageSummary(long calls, long duration, long costMicros) {
+        this.calls = calls;
+        this.duration = duration;
+        this.costMicros = costMicros;
+    }
+    
+    public long getCalls() {
+        return calls;
+    }
+    
+    /**
+     * Gets the total call duration.
+     * 
+     * @return the summed {@code duration} of the records
+     */
+    public long getDuration() {
+        return duration;
+    }
+    
+    /**
+     * Gets the total cost in millionths of the currency unit, summed without rounding drift.
+     * 
+     * @return the total cost in micro-units
+     */
+    public long getCostMicros() {
+        return costMicros;
+    }
+    
+    public double getCost() {
+        return costMicros / 1_000_000d;
+    }
+    
+    @Override
+    public String toString() {
+        return "UsageSummary{" +
+                "calls=" + calls +
+                ", duration=" + duration +
+                ", cost=" + getCost() +
+                '}';
+    }
+}
@@ -0,0 +1,118 @@
+package com.bics.agent.cdr;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from a primitive {@code long} key to three {@code long}
+ * counters (calls, duration, cost in micro-units), stored in parallel arrays.
+ * Nothing is boxed: an entry costs 32 bytes at full load, against well over 100 bytes for
+ * a {@code HashMap<Long, long[]>} entry. Linear probing with a 0.7 maximum load factor;
+ * entries are never removed. Not thread-safe.
+ */
+final class UsageTable {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float MAX_LOAD = 0.7f;
+    
+    private long[] keys;
+    private long[] calls;
+    private long[] durations;
+    private long[] costs;
+    private int size;
+    private int mask;
+    
+    UsageTable(int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedEntries / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+    
+    /**
+     * Adds to the counters of a key, creating the entry if needed.
+     */
+    void add(long key, long callCount, long duration, long costMicros) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if (size + 1 > (int) (keys.length * MAX_LOAD)) {
+                rehash(keys.length << 1);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        calls[slot] += callCount;
+        durations[slot] += duration;
+        costs[slot] += costMicros;
+    }
+    
+    /**
+     * Gets the slot of a key.
+     * 
+     * @return the slot, or -1 if the key is absent
+     */
+    int slot(long key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? -1 : slot;
+    }
+    
+    long calls(int slot) {
+        return calls[slot];
+    }
+    
+    long duration(int slot) {
+        return durations[slot];
+    }
+    
+    long costMicros(int slot) {
+        return costs[slot];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(calls, 0L);
+        Arrays.fill(durations, 0L);
+        Arrays.fill(costs, 0L);
+        size = 0;
+    }
+    
+    private int find(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        calls = new long[capacity];
+        durations = new long[capacity];
+        costs = new long[capacity];
+        mask = capacity - 1;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldCalls = calls;
+        long[] oldDurations = durations;
+        long[] oldCosts = costs;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                calls[slot] = oldCalls[i];
+                durations[slot] = oldDurations[i];
+                costs[slot] = oldCosts[i];
+            }
+        }
+    }
+    
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
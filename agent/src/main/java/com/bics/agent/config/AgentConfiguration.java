@@ -7,23 +7,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Configuration management class for the BICS Semantic Kernel Agent.
  * This class loads and manages all configuration settings including API endpoints,
  * authentication details, and other runtime parameters.
+ * The settings are compiled into an immutable {@link ConfigSnapshot} published through an
+ * atomic reference, so reads are lock-free. The bundled {@code application.yml} can be
+ * overridden by an external file named by the {@code bics.config.file} system property or
+ * the {@code BICS_CONFIG_FILE} environment variable; {@link #reload()} swaps in a new
+ * snapshot and notifies the registered {@link ConfigurationListener}s.
  */
 public class AgentConfiguration {
     private static final Logger logger = LoggerFactory.getLogger(AgentConfiguration.class);
     private static final String DEFAULT_CONFIG_FILE = "application.yml";
+    private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
     
-    private static AgentConfiguration instance;
-    private Map<String, Object> config;
-    private ApiEndpoints apiEndpoints;
+    private static volatile AgentConfiguration instance;
+    private final AtomicReference<ConfigSnapshot> snapshot;
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Path source;
     
-    private AgentConfiguration() throws ConfigurationException {
-        loadConfiguration();
+    private AgentConfiguration(Path source) throws ConfigurationException {
+        this.source = source;
+        this.snapshot = new AtomicReference<>(ConfigSnapshot.compile(loadConfiguration(source)));
+    }
+    
+    private AgentConfiguration(Map<String, Object> config) {
+        this.source = null;
+        this.snapshot = new AtomicReference<>(ConfigSnapshot.compile(config));
     }
     
     /**
@@ -32,11 +51,114 @@ public class AgentConfiguration {
      * @return the AgentConfiguration instance
      * @throws ConfigurationException if configuration fails to load
      */
-    public static synchronized AgentConfiguration getInstance() throws ConfigurationException {
-        if (instance == null) {
-            instance = new AgentConfiguration();
+    public static AgentConfiguration getInstance() throws ConfigurationException {
+        AgentConfiguration current = instance;
+        if (current == null) {
+            synchronized (AgentConfiguration.class) {
+                current = instance;
+                if (current == null) {
+                    current = new AgentConfiguration(externalConfigFile());
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Creates a standalone configuration from an external YAML file layered over the bundled
+     * {@code application.yml}. The file can later be reloaded with {@link #reload()}.
+     * The singleton is not affected.
+     * 
+     * @param file the external configuration file
+     * @return a new configuration backed by the file
+     * @throws ConfigurationException if the configuration fails to load
+     */
+    public static AgentConfiguration fromFile(Path file) throws ConfigurationException {
+        return new AgentConfiguration(file);
+    }
+    
+    /**
+     * Creates a standalone configuration from an already parsed settings tree, for example
+     * to point the plugins of a test harness at a stub server. The singleton is not affected.
+     * 
+     * @param config the settings tree, as read from {@code application.yml}
+     * @return a new configuration backed by the given map
+     */
+    public static AgentConfiguration fromMap(Map<String, Object> config) {
+        return new AgentConfiguration(config);
+    }
+    
+    /**
+     * Gets the snapshot currently in effect.
+     * 
+     * @return the current configuration snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+    
+    /**
+     * Gets the external file this configuration is loaded from.
+     * 
+     * @return the external file, or null if only the bundled configuration is used
+     */
+    public Path getSource() {
+        return source;
+    }
+    
+    /**
+     * Registers a listener notified after every reload.
+     * 
+     * @param listener the listener
+     */
+    public void addListener(ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener the listener
+     */
+    public void removeListener(ConfigurationListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Reloads the configuration from its sources and publishes it if it changed.
+     * 
+     * @return true if a new snapshot was published
+     * @throws ConfigurationException if the configuration fails to load; the current
+     *         snapshot then stays in effect
+     */
+    public boolean reload() throws ConfigurationException {
+        return reload(loadConfiguration(source));
+    }
+    
+    /**
+     * Publishes a new settings tree if it differs from the current one, then notifies
+     * the listeners. Readers see either the old or the new snapshot, never a mix.
+     * 
+     * @param config the new settings tree
+     * @return true if a new snapshot was published
+     */
+    public boolean reload(Map<String, Object> config) {
+        ConfigSnapshot current = ConfigSnapshot.compile(config);
+        ConfigSnapshot previous = snapshot.get();
+        if (previous.getTree().equals(current.getTree())) {
+            return false;
         }
-        return instance;
+        snapshot.set(current);
+        logger.info("Configuration reloaded (version {})", current.getVersion());
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.onConfigurationChanged(previous, current);
+            } catch (RuntimeException e) {
+                logger.error("Configuration listener failed: {}", e.getMessage(), e);
+            }
+        }
+        return true;
     }
     
     /**
@@ -45,7 +167,7 @@ public class AgentConfiguration {
      * @return ApiEndpoints instance containing all API endpoint URLs
      */
     public ApiEndpoints getApiEndpoints() {
-        return apiEndpoints;
+        return snapshot.get().getApiEndpoints();
     }
     
     /**
@@ -55,7 +177,7 @@ public class AgentConfiguration {
      * @return the configuration value
      */
     public Object get(String key) {
-        return config.get(key);
+        return snapshot.get().getValue(key);
     }
     
     /**
@@ -67,84 +189,214 @@ public class AgentConfiguration {
      */
     @SuppressWarnings("unchecked")
     public <T> T get(String key, T defaultValue) {
-        return (T) config.getOrDefault(key, defaultValue);
+        Object value = snapshot.get().getValue(key);
+        return value != null ? (T) value : defaultValue;
     }
     
-    private void loadConfiguration() throws ConfigurationException {
+    /**
+     * Gets a nested configuration value using a dot-separated path,
+     * for example {@code http.timeout.connection}.
+     * 
+     * @param path the dot-separated configuration path
+     * @return the configuration value, or null if any segment is missing
+     */
+    public Object getValue(String path) {
+        return snapshot.get().getValue(path);
+    }
+    
+    /**
+     * Gets a nested integer configuration value.
+     * 
+     * @param path the dot-separated configuration path
+     * @param defaultValue the default value if the path is not found
+     * @return the configuration value or default value
+     */
+    public int getInt(String path, int defaultValue) {
+        Object value = getValue(path);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Integer.parseInt(((String) value).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid integer for {}: {}", path, value);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Gets a nested long configuration value.
+     * 
+     * @param path the dot-separated configuration path
+     * @param defaultValue the default value if the path is not found
+     * @return the configuration value or default value
+     */
+    public long getLong(String path, long defaultValue) {
+        Object value = getValue(path);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong(((String) value).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid long for {}: {}", path, value);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Gets a nested double configuration value.
+     * 
+     * @param path the dot-separated configuration path
+     * @param defaultValue the default value if the path is not found
+     * @return the configuration value or default value
+     */
+    public double getDouble(String path, double defaultValue) {
+        Object value = getValue(path);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid double for {}: {}", path, value);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Gets a nested boolean configuration value.
+     * 
+     * @param path the dot-separated configuration path
+     * @param defaultValue the default value if the path is not found
+     * @return the configuration value or default value
+     */
+    public boolean getBoolean(String path, boolean defaultValue) {
+        Object value = getValue(path);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            return Boolean.parseBoolean(((String) value).trim());
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Gets a nested string configuration value.
+     * 
+     * @param path the dot-separated configuration path
+     * @param defaultValue the default value if the path is not found
+     * @return the configuration value or default value
+     */
+    public String getString(String path, String defaultValue) {
+        Object value = getValue(path);
+        return value != null ? value.toString() : defaultValue;
+    }
+    
+    private static Path externalConfigFile() {
+        String file = System.getProperty("bics.config.file", System.getenv("BICS_CONFIG_FILE"));
+        return file != null && !file.isBlank() ? Paths.get(file) : null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> loadConfiguration(Path source) throws ConfigurationException {
         try {
             logger.info("Loading configuration from {}", DEFAULT_CONFIG_FILE);
             
-            ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-            
-            try (InputStream configStream = getClass().getClassLoader().getResourceAsStream(DEFAULT_CONFIG_FILE)) {
+            Map<String, Object> config;
+            try (InputStream configStream = AgentConfiguration.class.getClassLoader().getResourceAsStream(DEFAULT_CONFIG_FILE)) {
                 if (configStream == null) {
                     throw new ConfigurationException("Configuration file not found: " + DEFAULT_CONFIG_FILE);
                 }
-                
-                config = mapper.readValue(configStream, Map.class);
-                logger.info("Configuration loaded successfully");
-                
-                // Initialize API endpoints
-                initializeApiEndpoints();
-                
+                config = yamlMapper.readValue(configStream, Map.class);
             }
+            
+            if (source != null) {
+                logger.info("Applying external configuration from {}", source);
+                try (InputStream externalStream = Files.newInputStream(source)) {
+                    Map<String, Object> external = yamlMapper.readValue(externalStream, Map.class);
+                    if (external != null) {
+                        config = ConfigSnapshot.merge(config, external);
+                    }
+                }
+            }
+            logger.info("Configuration loaded successfully");
+            return config;
+            
+        } catch (ConfigurationException e) {
+            throw e;
         } catch (Exception e) {
             throw new ConfigurationException("Failed to load configuration", e);
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private void initializeApiEndpoints() {
-        Map<String, Object> endpoints = (Map<String, Object>) config.get("api.endpoints");
-        if (endpoints != null) {
-            this.apiEndpoints = new ApiEndpoints(endpoints);
-            logger.debug("API endpoints initialized");
-        } else {
-            logger.warn("No API endpoints configuration found");
-            this.apiEndpoints = new ApiEndpoints(Map.of());
-        }
-    }
-    
     /**
      * API endpoints configuration class that holds all the API base URLs.
+     * The URLs are resolved once, when the snapshot is compiled.
      */
     public static class ApiEndpoints {
-        private final Map<String, Object> endpoints;
+        private final String connectApiUrl;
+        private final String myNumbersApiUrl;
+        private final String myNumbersAddressManagementApiUrl;
+        private final String myNumbersCdrApiUrl;
+        private final String myNumbersDisconnectionApiUrl;
+        private final String myNumbersEmergencyServicesApiUrl;
+        private final String myNumbersNumberPortingApiUrl;
+        private final String smsApiUrl;
         
         public ApiEndpoints(Map<String, Object> endpoints) {
-            this.endpoints = endpoints;
+            this.connectApiUrl = url(endpoints, "connect", "https://connect.api.bics.com");
+            this.myNumbersApiUrl = url(endpoints, "mynumbers", "https://mynumbers.api.bics.com");
+            this.myNumbersAddressManagementApiUrl = url(endpoints, "mynumbers-address", "https://mynumbers-address.api.bics.com");
+            this.myNumbersCdrApiUrl = url(endpoints, "mynumbers-cdr", "https://mynumbers-cdr.api.bics.com");
+            this.myNumbersDisconnectionApiUrl = url(endpoints, "mynumbers-disconnection", "https://mynumbers-disconnection.api.bics.com");
+            this.myNumbersEmergencyServicesApiUrl = url(endpoints, "mynumbers-emergency", "https://mynumbers-emergency.api.bics.com");
+            this.myNumbersNumberPortingApiUrl = url(endpoints, "mynumbers-porting", "https://mynumbers-porting.api.bics.com");
+            this.smsApiUrl = url(endpoints, "sms", "https://sms.api.bics.com");
+        }
+        
+        private static String url(Map<String, Object> endpoints, String name, String defaultUrl) {
+            Object url = endpoints.get(name);
+            return url != null ? url.toString() : defaultUrl;
         }
         
         public String getConnectApiUrl() {
-            return (String) endpoints.getOrDefault("connect", "https://connect.api.bics.com");
+            return connectApiUrl;
         }
         
         public String getMyNumbersApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers", "https://mynumbers.api.bics.com");
+            return myNumbersApiUrl;
         }
         
         public String getMyNumbersAddressManagementApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers-address", "https://mynumbers-address.api.bics.com");
+            return myNumbersAddressManagementApiUrl;
         }
         
         public String getMyNumbersCdrApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers-cdr", "https://mynumbers-cdr.api.bics.com");
+            return myNumbersCdrApiUrl;
         }
         
         public String getMyNumbersDisconnectionApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers-disconnection", "https://mynumbers-disconnection.api.bics.com");
+            return myNumbersDisconnectionApiUrl;
         }
         
         public String getMyNumbersEmergencyServicesApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers-emergency", "https://mynumbers-emergency.api.bics.com");
+            return myNumbersEmergencyServicesApiUrl;
         }
         
         public String getMyNumbersNumberPortingApiUrl() {
-            return (String) endpoints.getOrDefault("mynumbers-porting", "https://mynumbers-porting.api.bics.com");
+            return myNumbersNumberPortingApiUrl;
         }
         
         public String getSmsApiUrl() {
-            return (String) endpoints.getOrDefault("sms", "https://sms.api.bics.com");
+            return smsApiUrl;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.bics.agent.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, compiled view of one version of the agent configuration.
+ * The settings tree is deep-copied into unmodifiable collections and every dot-separated
+ * path, such as {@code http.timeout.connection}, is indexed at compile time, so a lookup is
+ * a single hash probe. The API endpoint URLs are resolved into an {@link AgentConfiguration.ApiEndpoints}
+ * once per snapshot instead of on every request.
+ */
+public final class ConfigSnapshot {
+    private static final AtomicLong versions = new AtomicLong();
+    
+    private final long version;
+    private final Map<String, Object> tree;
+    private final Map<String, Object> values;
+    private final AgentConfiguration.ApiEndpoints apiEndpoints;
+    
+    private ConfigSnapshot(Map<String, Object> tree) {
+        this.version = versions.incrementAndGet();
+        this.tree = tree;
+        Map<String, Object> index = new HashMap<>();
+        indexPaths("", tree, index);
+        this.values = index;
+        Object endpoints = values.get("api.endpoints");
+        this.apiEndpoints = new AgentConfiguration.ApiEndpoints(endpoints instanceof Map ? asTree(endpoints) : Map.of());
+    }
+    
+    /**
+     * Compiles a parsed settings tree into a snapshot. The tree is copied, so later changes
+     * to it do not affect the snapshot.
+     * 
+     * @param tree the settings tree, as read from {@code application.yml}
+     * @return the compiled snapshot
+     */
+    public static ConfigSnapshot compile(Map<String, Object> tree) {
+        return new ConfigSnapshot(asTree(freeze(tree != null ? tree : Map.of())));
+    }
+    
+    /**
+     * Merges an overriding settings tree into a base tree. Nested maps are merged key by key;
+     * any other value in the override replaces the base value.
+     * 
+     * @param base the base tree
+     * @param override the overriding tree
+     * @return a new, mutable merged tree
+     */
+    public static Map<String, Object> merge(Map<String, Object> base, Map<String, Object> override) {
+        Map<String, Object> merged = new LinkedHashMap<>(base);
+        for (Map.Entry<String, Object> entry : override.entrySet()) {
+            Object current = merged.get(entry.getKey());
+            if (current instanceof Map && entry.getValue() instanceof Map) {
+                merged.put(entry.getKey(), merge(asTree(current), asTree(entry.getValue())));
+            } else {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Gets the version of this snapshot; later snapshots have higher versions.
+     * 
+     * @return the snapshot version
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Gets the settings tree.
+     * 
+     * @return the unmodifiable settings tree
+     */
+    public Map<String, Object> getTree() {
+        return tree;
+    }
+    
+    /**
+     * Gets the value at a dot-separated path.
+     * 
+     * @param path the dot-separated configuration path
+     * @return the value, an unmodifiable map or list for sections, or null if absent
+     */
+    public Object getValue(String path) {
+        return values.get(path);
+    }
+    
+    /**
+     * Gets the API endpoint URLs of this snapshot.
+     * 
+     * @return the resolved API endpoints
+     */
+    public AgentConfiguration.ApiEndpoints getApiEndpoints() {
+        return apiEndpoints;
+    }
+    
+    /**
+     * Checks whether a setting or section differs between this snapshot and another one.
+     * 
+     * @param other the snapshot to compare with (can be null)
+     * @param path the dot-separated path of the setting or section
+     * @return true if the values at the path differ
+     */
+    public boolean differs(ConfigSnapshot other, String path) {
+        return other == null || !Objects.equals(getValue(path), other.getValue(path));
+    }
+    
+    private static void indexPaths(String prefix, Map<String, Object> node, Map<String, Object> index) {
+        for (Map.Entry<String, Object> entry : node.entrySet()) {
+            String path = prefix.isEmpty() ? entry.getKey() : prefix + "." + entry.getKey();
+            index.put(path, entry.getValue());
+            if (entry.getValue() instanceof Map) {
+                indexPaths(path, asTree(entry.getValue()), index);
+            }
+        }
+    }
+    
+    private static Object freeze(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), freeze(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                copy.add(freeze(element));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asTree(Object value) {
+        return (Map<String, Object>) value;
+    }
+}
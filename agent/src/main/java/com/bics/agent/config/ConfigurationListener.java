@@ -0,0 +1,18 @@
+package com.bics.agent.config;
+
+/**
+ * Callback for components that reconfigure themselves in place when a new configuration
+ * snapshot is published. Listeners run on the thread that reloads the configuration and
+ * must not block.
+ */
+@FunctionalInterface
+public interface ConfigurationListener {
+    
+    /**
+     * Called after a new snapshot has been published.
+     * 
+     * @param previous the snapshot that was replaced
+     * @param current the snapshot now in effect
+     */
+    void onConfigurationChanged(ConfigSnapshot previous, ConfigSnapshot current);
+}
@@ -0,0 +1,145 @@
+package com.bics.agent.config;
+
+import com.bics.agent.exceptions.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the external configuration file and reloads the {@link AgentConfiguration} when
+ * it changes. Bursts of file system events, as produced by editors and by configuration
+ * management tools that write a file in several steps, are collapsed by waiting for the
+ * file to settle for {@code config.watch.debounceMs}. A file that fails to parse is logged
+ * and ignored; the current snapshot stays in effect until the next valid change.
+ */
+public class ConfigurationWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationWatcher.class);
+    
+    private final AgentConfiguration configuration;
+    private final Path file;
+    private final long debounceMs;
+    private WatchService watchService;
+    private Thread thread;
+    
+    /**
+     * Creates a watcher for the external file of the given configuration, using the
+     * {@code config.watch.debounceMs} setting.
+     * 
+     * @param configuration the configuration to reload; must have an external source
+     */
+    public ConfigurationWatcher(AgentConfiguration configuration) {
+        this(configuration, configuration.getLong("config.watch.debounceMs", 500L));
+    }
+    
+    /**
+     * Creates a watcher with an explicit debounce interval.
+     * 
+     * @param configuration the configuration to reload; must have an external source
+     * @param debounceMs the quiet period after the last change before reloading
+     */
+    public ConfigurationWatcher(AgentConfiguration configuration, long debounceMs) {
+        if (configuration.getSource() == null) {
+            throw new IllegalArgumentException("Configuration has no external source to watch");
+        }
+        this.configuration = configuration;
+        this.file = configuration.getSource().toAbsolutePath();
+        this.debounceMs = Math.max(0L, debounceMs);
+    }
+    
+    /**
+     * Starts watching the file.
+     * 
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        WatchService service = FileSystems.getDefault().newWatchService();
+        try {
+            file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        watchService = service;
+        thread = new Thread(() -> watch(service), "bics-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching configuration file {}", file);
+    }
+    
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = pollChanged(key);
+                // Wait until the file has settled before reading it
+                while (changed) {
+                    key = service.poll(debounceMs, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    pollChanged(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Configuration watcher stopped");
+        }
+    }
+    
+    private boolean pollChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (context instanceof Path && file.getFileName().equals(context))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+    
+    private void reload() {
+        try {
+            if (!configuration.reload()) {
+                logger.debug("Configuration file {} changed without effective changes", file);
+            }
+        } catch (ConfigurationException e) {
+            logger.error("Ignoring invalid configuration in {}: {}", file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close watch service: {}", e.getMessage());
+        }
+        thread.interrupt();
+        thread = null;
+        watchService = null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.bics.agent.execution;
+
+/**
+ * Thread model used to run plugin invocations.
+ */
+public enum ExecutionMode {
+    /**
+     * Bounded pool of platform threads (default).
+     */
+    PLATFORM,
+    
+    /**
+     * One virtual thread per invocation; requires a JDK 21+ runtime.
+     */
+    VIRTUAL;
+    
+    /**
+     * Parses an execution mode from its configuration value.
+     * 
+     * @param value the configured value (case-insensitive), may be null
+     * @return the matching mode, or PLATFORM if the value is missing or unknown
+     */
+    public static ExecutionMode fromString(String value) {
+        if (value != null) {
+            for (ExecutionMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value.trim())) {
+                    return mode;
+                }
+            }
+        }
+        return PLATFORM;
+    }
+}
@@ -0,0 +1,163 @@
+package com.bics.agent.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel delivering expired items in batches.
+ * Scheduling is O(1) and lock-free for callers: new items are queued and moved into their
+ * bucket by the single worker thread at the next tick. Each tick only visits one bucket, so
+ * the cost of idle items is a round counter decrement once per wheel revolution. All items
+ * expiring in the same tick are handed to the expiry handler as one list, on the worker
+ * thread; the handler should not block.
+ * 
+ * @param <T> the item type
+ */
+public class HashedTimingWheel<T> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+    
+    private final long tickNanos;
+    private final int mask;
+    private final List<ArrayDeque<Timeout<T>>> buckets;
+    private final ConcurrentLinkedQueue<Timeout<T>> incoming = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> onExpired;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+    
+    /**
+     * Creates and starts a timing wheel.
+     * 
+     * @param name the worker thread name
+     * @param tickMs the tick duration, which is the timer resolution
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     * @param onExpired handler receiving the items expiring in one tick
+     */
+    public HashedTimingWheel(String name, long tickMs, int wheelSize, Consumer<List<T>> onExpired) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, tickMs));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.onExpired = onExpired;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    /**
+     * Schedules an item to expire after the given delay.
+     * 
+     * @param item the item
+     * @param delayMs the delay in milliseconds
+     * @return a handle that can cancel the timeout
+     */
+    public Timeout<T> schedule(T item, long delayMs) {
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, delayMs));
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        incoming.add(timeout);
+        return timeout;
+    }
+    
+    /**
+     * Stops the worker thread. Pending items are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+    
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            transferIncoming();
+            List<T> expired = expire(buckets.get((int) (tick & mask)), deadline);
+            tick++;
+            if (!expired.isEmpty()) {
+                try {
+                    onExpired.accept(expired);
+                } catch (RuntimeException e) {
+                    logger.warn("Timing wheel expiry handler failed", e);
+                }
+            }
+        }
+    }
+    
+    private void transferIncoming() {
+        Timeout<T> timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (ticks - tick) / buckets.size();
+            buckets.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+    
+    private List<T> expire(ArrayDeque<Timeout<T>> bucket, long deadline) {
+        List<T> expired = new ArrayList<>();
+        Iterator<Timeout<T>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout<T> timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                iterator.remove();
+                expired.add(timeout.item);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+        return expired;
+    }
+    
+    /**
+     * Handle of a scheduled item.
+     * 
+     * @param <T> the item type
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled = false;
+        
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * Cancels the timeout; the item will not be delivered.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
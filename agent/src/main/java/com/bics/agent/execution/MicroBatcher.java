@@ -0,0 +1,197 @@
+package com.bics.agent.execution;
+
+import com.bics.agent.exceptions.PluginException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups individually submitted items into batches.
+ * A batch is flushed as soon as it holds {@code maxBatchSize} items, or {@code lingerMs}
+ * after its first item arrived, whichever comes first. The flush function receives the items
+ * in submission order and must complete with one result per item, in the same order; each
+ * submitter's future is then completed with its own result. A failed flush fails every
+ * future of the batch. {@link #drain()} lets an owner that is shutting down wait for every
+ * batch to be sent and answered.
+ * 
+ * @param <T> the item type
+ * @param <R> the per-item result type
+ */
+public class MicroBatcher<T, R> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatcher.class);
+    
+    private final String name;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final Function<List<T>, CompletableFuture<List<R>>> flusher;
+    private final ScheduledExecutorService scheduler;
+    private final Object lock = new Object();
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    private List<T> items;
+    private List<CompletableFuture<R>> futures;
+    private ScheduledFuture<?> lingerTimer;
+    private boolean closed = false;
+    
+    /**
+     * Creates a new batcher.
+     * 
+     * @param name the batcher name, used for logging and the timer thread
+     * @param maxBatchSize the number of items that triggers an immediate flush
+     * @param lingerMs the maximum time the first item of a batch waits for more items
+     * @param flusher function sending a batch and completing with the per-item results
+     */
+    public MicroBatcher(String name, int maxBatchSize, long lingerMs,
+                        Function<List<T>, CompletableFuture<List<R>>> flusher) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMs = Math.max(0L, lingerMs);
+        this.flusher = flusher;
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name + "-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        this.scheduler = timer;
+        resetBuffer();
+    }
+    
+    /**
+     * Adds an item to the current batch.
+     * 
+     * @param item the item
+     * @return a future completed with the item's result, or exceptionally with a PluginException
+     */
+    public CompletableFuture<R> submit(T item) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        List<T> fullItems = null;
+        List<CompletableFuture<R>> fullFutures = null;
+        CompletableFuture<Void> sent = null;
+        synchronized (lock) {
+            if (closed) {
+                future.completeExceptionally(new PluginException(name + " is closed"));
+                return future;
+            }
+            items.add(item);
+            futures.add(future);
+            if (items.size() >= maxBatchSize) {
+                fullItems = items;
+                fullFutures = futures;
+                sent = track();
+                cancelTimer();
+                resetBuffer();
+            } else if (items.size() == 1) {
+                lingerTimer = scheduler.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullItems != null) {
+            send(fullItems, fullFutures, sent);
+        }
+        return future;
+    }
+    
+    /**
+     * Sends the current batch immediately, if it holds any items.
+     */
+    public void flush() {
+        List<T> batchItems;
+        List<CompletableFuture<R>> batchFutures;
+        CompletableFuture<Void> sent;
+        synchronized (lock) {
+            if (items.isEmpty()) {
+                return;
+            }
+            batchItems = items;
+            batchFutures = futures;
+            sent = track();
+            cancelTimer();
+            resetBuffer();
+        }
+        send(batchItems, batchFutures, sent);
+    }
+    
+    /**
+     * Flushes the pending batch and rejects further submissions.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * Closes the batcher, sending the pending batch, and reports when every batch sent so far
+     * has been answered.
+     * 
+     * @return a future completed once the futures of all sent batches are complete
+     */
+    public CompletableFuture<Void> drain() {
+        close();
+        return CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    /**
+     * Registers a batch as in flight; called under the lock, so that a batch taken from the
+     * buffer is visible to {@link #drain()} before it is sent.
+     */
+    private CompletableFuture<Void> track() {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        inFlight.add(sent);
+        sent.whenComplete((ignored, failure) -> inFlight.remove(sent));
+        return sent;
+    }
+    
+    private void send(List<T> batchItems, List<CompletableFuture<R>> batchFutures, CompletableFuture<Void> sent) {
+        logger.debug("{} flushing batch of {} items", name, batchItems.size());
+        CompletableFuture<List<R>> results;
+        try {
+            results = flusher.apply(batchItems);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((values, failure) -> {
+            Throwable error = failure;
+            if (error == null && (values == null || values.size() != batchFutures.size())) {
+                error = new PluginException(String.format("%s expected %d results but received %d",
+                        name, batchFutures.size(), values == null ? 0 : values.size()));
+            }
+            for (int i = 0; i < batchFutures.size(); i++) {
+                if (error != null) {
+                    batchFutures.get(i).completeExceptionally(error);
+                } else {
+                    batchFutures.get(i).complete(values.get(i));
+                }
+            }
+            sent.complete(null);
+        });
+    }
+    
+    private void cancelTimer() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+    }
+    
+    private void resetBuffer() {
+        items = new ArrayList<>(maxBatchSize);
+        futures = new ArrayList<>(maxBatchSize);
+    }
+}
@@ -0,0 +1,20 @@
+package com.bics.agent.execution;
+
+import com.bics.agent.exceptions.PluginException;
+
+/**
+ * A blocking plugin invocation that can be scheduled on a {@link PluginExecutor}.
+ * 
+ * @param <T> the result type of the invocation
+ */
+@FunctionalInterface
+public interface PluginCall<T> {
+    
+    /**
+     * Performs the plugin invocation.
+     * 
+     * @return the invocation result
+     * @throws PluginException if the invocation fails
+     */
+    T call() throws PluginException;
+}
@@ -0,0 +1,125 @@
+package com.bics.agent.execution;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for blocking plugin invocations.
+ * In {@link ExecutionMode#VIRTUAL} mode every invocation runs on its own virtual thread, so
+ * throughput of the blocking request path scales with in-flight I/O rather than with the
+ * size of a thread pool. Virtual threads are looked up reflectively so that the agent still
+ * builds for Java 17; on an older runtime the executor falls back to platform threads.
+ */
+public class PluginExecutor implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PluginExecutor.class);
+    
+    private final ExecutionMode mode;
+    private final ExecutorService executorService;
+    
+    /**
+     * Creates an executor from the {@code agent.execution} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     */
+    public PluginExecutor(AgentConfiguration configuration) {
+        this(ExecutionMode.fromString(configuration.getString("agent.execution.mode", "platform")),
+             configuration.getInt("agent.execution.platformThreads", 64));
+    }
+    
+    /**
+     * Creates an executor with an explicit mode.
+     * 
+     * @param requestedMode the requested execution mode
+     * @param platformThreads the pool size used in platform mode
+     */
+    public PluginExecutor(ExecutionMode requestedMode, int platformThreads) {
+        ExecutorService virtualExecutor = requestedMode == ExecutionMode.VIRTUAL ? createVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.mode = ExecutionMode.VIRTUAL;
+            this.executorService = virtualExecutor;
+        } else {
+            this.mode = ExecutionMode.PLATFORM;
+            this.executorService = Executors.newFixedThreadPool(platformThreads, new PluginThreadFactory());
+        }
+        logger.info("Plugin executor initialized in {} mode", mode);
+    }
+    
+    /**
+     * Gets the effective execution mode.
+     * 
+     * @return VIRTUAL if virtual threads are in use, PLATFORM otherwise
+     */
+    public ExecutionMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Schedules a blocking plugin invocation.
+     * 
+     * @param call the invocation to run
+     * @param <T> the result type
+     * @return a future completed with the result, or exceptionally with the PluginException thrown
+     */
+    public <T> CompletableFuture<T> submit(PluginCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executorService.execute(() -> {
+                try {
+                    result.complete(call.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (Exception e) {
+            result.completeExceptionally(new PluginException("Plugin executor rejected the invocation", e));
+        }
+        return result;
+    }
+    
+    /**
+     * Stops accepting invocations and waits briefly for running ones to finish.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Virtual threads are not available on Java {}; falling back to platform threads",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+    
+    private static class PluginThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "plugin-call-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.bics.agent.http;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Concurrency limit that adapts to the backend using additive increase, multiplicative
+ * decrease (AIMD). Every call that completes without signs of overload raises the limit by
+ * {@code 1/limit}, so it grows by about one per round of calls while the limit is in use.
+ * A call that was rejected (429/503), timed out, or took longer than
+ * {@code latencyTolerance} times the lowest recent latency multiplies the limit by
+ * {@code backoffRatio}, at most once per lowest recent latency. Callers beyond the limit
+ * wait in FIFO order for a released permit.
+ */
+public class AdaptiveConcurrencyLimit {
+    
+    private static final int MIN_RTT_RESET_SAMPLES = 1000;
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+    
+    private int minLimit;
+    private int maxLimit;
+    private double backoffRatio;
+    private double latencyTolerance;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samplesSinceMinReset;
+    private long lastDecreaseNanos;
+    
+    /**
+     * Creates a new limit.
+     * 
+     * @param initialLimit the starting limit
+     * @param minLimit the lowest the limit can shrink to
+     * @param maxLimit the highest the limit can grow to
+     * @param backoffRatio the factor applied to the limit on overload
+     * @param latencyTolerance the latency, relative to the lowest recent one, treated as overload
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+    
+    /**
+     * Acquires a permit.
+     * 
+     * @param maxWaitMs the longest the caller is willing to wait; 0 fails fast
+     * @return a future completed when the permit is granted, or exceptionally with a
+     *         TimeoutException if none became available in time; a caller that gives up
+     *         earlier cancels it, and a permit granted despite that must be released unused
+     */
+    public CompletableFuture<Void> acquire(long maxWaitMs) {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return GRANTED;
+            }
+            if (maxWaitMs <= 0) {
+                return CompletableFuture.failedFuture(new TimeoutException());
+            }
+            waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+        }
+        // A waiter that times out or is cancelled leaves the queue at once
+        waiter.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            }
+        });
+        return waiter.orTimeout(maxWaitMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Returns a permit and adapts the limit to the outcome of the call.
+     * 
+     * @param rttNanos the duration of the call
+     * @param dropped whether the call showed overload (rejected or timed out)
+     */
+    public void release(long rttNanos, boolean dropped) {
+        synchronized (this) {
+            inFlight--;
+            adapt(rttNanos, dropped);
+        }
+        grantWaiters();
+    }
+    
+    /**
+     * Returns a permit that was not used for a call, without adapting the limit.
+     */
+    public void releaseUnused() {
+        synchronized (this) {
+            inFlight--;
+        }
+        grantWaiters();
+    }
+    
+    /**
+     * Changes the bounds and the adaptation parameters in place. The current limit is kept
+     * within the new bounds; permits in flight are not affected.
+     * 
+     * @param minLimit the lowest the limit can shrink to
+     * @param maxLimit the highest the limit can grow to
+     * @param backoffRatio the factor applied to the limit on overload
+     * @param latencyTolerance the latency, relative to the lowest recent one, treated as overload
+     */
+    public void setBounds(int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        synchronized (this) {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.backoffRatio = backoffRatio;
+            this.latencyTolerance = latencyTolerance;
+            this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, limit));
+        }
+        grantWaiters();
+    }
+    
+    /**
+     * Gets the current limit.
+     * 
+     * @return the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+    
+    /**
+     * Gets the number of permits in use.
+     * 
+     * @return the number of calls in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+    
+    private void adapt(long rttNanos, boolean dropped) {
+        if (!dropped) {
+            if (++samplesSinceMinReset >= MIN_RTT_RESET_SAMPLES) {
+                samplesSinceMinReset = 0;
+                minRttNanos = rttNanos;
+            } else {
+                minRttNanos = Math.min(minRttNanos, rttNanos);
+            }
+        }
+        boolean overloaded = dropped || rttNanos > minRttNanos * latencyTolerance;
+        long now = System.nanoTime();
+        if (overloaded) {
+            long window = minRttNanos == Long.MAX_VALUE ? 0L : minRttNanos;
+            if (now - lastDecreaseNanos >= window) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+    
+    private void grantWaiters() {
+        while (true) {
+            CompletableFuture<Void> waiter;
+            synchronized (this) {
+                if (inFlight >= (int) limit || (waiter = waiters.poll()) == null) {
+                    return;
+                }
+                inFlight++;
+            }
+            if (!waiter.complete(null)) {
+                // The waiter timed out in the meantime; hand the permit to the next one.
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+}
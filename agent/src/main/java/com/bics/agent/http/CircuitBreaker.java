@@ -0,0 +1,264 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker for a single plugin operation.
+ * Outcomes of the last {@code slidingWindowSize} calls are kept in a ring buffer. Once at
+ * least {@code minimumCalls} are recorded and either the failure rate or the slow-call rate
+ * reaches its threshold, the breaker opens and rejects calls for {@code openStateDurationMs}.
+ * It then moves to half-open, lets {@code halfOpenPermittedCalls} probes through and closes
+ * again or re-opens depending on their outcome.
+ */
+public class CircuitBreaker {
+    
+    /**
+     * Circuit breaker states.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+    
+    private final String name;
+    private final Settings settings;
+    private final byte[] outcomes;
+    private int position;
+    private int recordedCalls;
+    private int failedCalls;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenPermitsIssued;
+    private int halfOpenCallsRecorded;
+    private int halfOpenFailures;
+    
+    /**
+     * Creates a circuit breaker.
+     * 
+     * @param name the breaker name, usually {@code Plugin:METHOD /template}
+     * @param settings the breaker settings
+     */
+    public CircuitBreaker(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.outcomes = new byte[settings.slidingWindowSize];
+    }
+    
+    /**
+     * Gets the breaker name.
+     * 
+     * @return the breaker name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets the current state, moving from open to half-open if the wait has elapsed.
+     * 
+     * @return the current state
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && openWaitElapsed()) {
+            transitionToHalfOpen();
+        }
+        return state;
+    }
+    
+    /**
+     * Asks for permission to perform a call.
+     * 
+     * @return true if the call may proceed, false if it must fail fast
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!settings.enabled) {
+            return true;
+        }
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (halfOpenPermitsIssued < settings.halfOpenPermittedCalls) {
+                    halfOpenPermitsIssued++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Gives back a permission whose call ended without an outcome, for example because it
+     * was cancelled. A half-open probe permit becomes available again; nothing is recorded.
+     */
+    public synchronized void releasePermission() {
+        if (settings.enabled && state == State.HALF_OPEN && halfOpenPermitsIssued > halfOpenCallsRecorded) {
+            halfOpenPermitsIssued--;
+        }
+    }
+    
+    /**
+     * Records a successful call.
+     * 
+     * @param durationNanos the call duration
+     */
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos);
+    }
+    
+    /**
+     * Records a failed call.
+     * 
+     * @param durationNanos the call duration
+     */
+    public void onFailure(long durationNanos) {
+        record(true, durationNanos);
+    }
+    
+    /**
+     * Gets the failure rate of the current window.
+     * 
+     * @return the failure rate in percent, or -1 if fewer than minimumCalls are recorded
+     */
+    public synchronized float getFailureRate() {
+        return recordedCalls < settings.minimumCalls ? -1f : failedCalls * 100f / recordedCalls;
+    }
+    
+    /**
+     * Gets the slow-call rate of the current window.
+     * 
+     * @return the slow-call rate in percent, or -1 if fewer than minimumCalls are recorded
+     */
+    public synchronized float getSlowCallRate() {
+        return recordedCalls < settings.minimumCalls ? -1f : slowCalls * 100f / recordedCalls;
+    }
+    
+    private synchronized void record(boolean failed, long durationNanos) {
+        if (!settings.enabled) {
+            return;
+        }
+        boolean slow = durationNanos >= settings.slowCallDurationNanos;
+        
+        if (state == State.HALF_OPEN) {
+            halfOpenCallsRecorded++;
+            if (failed || slow) {
+                halfOpenFailures++;
+            }
+            if (halfOpenCallsRecorded >= settings.halfOpenPermittedCalls) {
+                float failureRate = halfOpenFailures * 100f / halfOpenCallsRecorded;
+                if (failureRate >= settings.failureRateThreshold) {
+                    transitionToOpen();
+                } else {
+                    transitionToClosed();
+                }
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        
+        byte outcome = (byte) ((failed ? FAILURE : SUCCESS) | (slow ? SLOW : SUCCESS));
+        if (recordedCalls == outcomes.length) {
+            byte evicted = outcomes[position];
+            if ((evicted & FAILURE) != 0) {
+                failedCalls--;
+            }
+            if ((evicted & SLOW) != 0) {
+                slowCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % outcomes.length;
+        if ((outcome & FAILURE) != 0) {
+            failedCalls++;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls++;
+        }
+        
+        if (recordedCalls >= settings.minimumCalls
+                && (failedCalls * 100f / recordedCalls >= settings.failureRateThreshold
+                    || slowCalls * 100f / recordedCalls >= settings.slowCallRateThreshold)) {
+            transitionToOpen();
+        }
+    }
+    
+    private boolean openWaitElapsed() {
+        return System.nanoTime() - openedAtNanos >= settings.openStateDurationNanos;
+    }
+    
+    private void transitionToOpen() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        resetWindow();
+    }
+    
+    private void transitionToHalfOpen() {
+        state = State.HALF_OPEN;
+        halfOpenPermitsIssued = 0;
+        halfOpenCallsRecorded = 0;
+        halfOpenFailures = 0;
+    }
+    
+    private void transitionToClosed() {
+        state = State.CLOSED;
+        resetWindow();
+    }
+    
+    private void resetWindow() {
+        position = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+    }
+    
+    /**
+     * Immutable circuit breaker settings, read from the {@code http.circuitBreaker} configuration.
+     */
+    public static class Settings {
+        final boolean enabled;
+        final int slidingWindowSize;
+        final int minimumCalls;
+        final float failureRateThreshold;
+        final float slowCallRateThreshold;
+        final long slowCallDurationNanos;
+        final long openStateDurationNanos;
+        final int halfOpenPermittedCalls;
+        
+        public Settings(AgentConfiguration configuration) {
+            this(configuration.getBoolean("http.circuitBreaker.enabled", true),
+                 configuration.getInt("http.circuitBreaker.slidingWindowSize", 50),
+                 configuration.getInt("http.circuitBreaker.minimumCalls", 20),
+                 (float) configuration.getDouble("http.circuitBreaker.failureRateThreshold", 50.0),
+                 (float) configuration.getDouble("http.circuitBreaker.slowCallRateThreshold", 80.0),
+                 configuration.getLong("http.circuitBreaker.slowCallDurationMs", 10000L),
+                 configuration.getLong("http.circuitBreaker.openStateDurationMs", 30000L),
+                 configuration.getInt("http.circuitBreaker.halfOpenPermittedCalls", 5));
+        }
+        
+        public Settings(boolean enabled, int slidingWindowSize, int minimumCalls, float failureRateThreshold,
+                        float slowCallRateThreshold, long slowCallDurationMs, long openStateDurationMs,
+                        int halfOpenPermittedCalls) {
+            this.enabled = enabled;
+            this.slidingWindowSize = Math.max(1, slidingWindowSize);
+            this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.slidingWindowSize));
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs);
+            this.openStateDurationNanos = TimeUnit.MILLISECONDS.toNanos(openStateDurationMs);
+            this.halfOpenPermittedCalls = Math.max(1, halfOpenPermittedCalls);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bics.agent.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the circuit breakers of one plugin, created on demand per operation template.
+ */
+public class CircuitBreakerRegistry {
+    
+    private final String pluginName;
+    private final CircuitBreaker.Settings settings;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a registry for a plugin.
+     * 
+     * @param pluginName the plugin name used to prefix breaker names
+     * @param settings the settings shared by all breakers of the plugin
+     */
+    public CircuitBreakerRegistry(String pluginName, CircuitBreaker.Settings settings) {
+        this.pluginName = pluginName;
+        this.settings = settings;
+    }
+    
+    /**
+     * Gets the breaker for an operation, creating it on first use.
+     * 
+     * @param method the HTTP method
+     * @param endpoint the concrete endpoint path
+     * @return the breaker guarding the operation
+     */
+    public CircuitBreaker forOperation(String method, String endpoint) {
+        return forOperationKey(EndpointTemplates.operationKey(method, endpoint));
+    }
+    
+    /**
+     * Gets the breaker for an operation by its precomputed key, creating it on first use.
+     * 
+     * @param key the operation key, as built by {@link EndpointTemplates#operationKey}
+     * @return the breaker guarding the operation
+     */
+    public CircuitBreaker forOperationKey(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        return breaker != null ? breaker
+                : breakers.computeIfAbsent(key, k -> new CircuitBreaker(pluginName + ":" + k, settings));
+    }
+    
+    /**
+     * Gets all breakers created so far.
+     * 
+     * @return read-only map of operation keys to breakers
+     */
+    public Map<String, CircuitBreaker> getBreakers() {
+        return Collections.unmodifiableMap(breakers);
+    }
+}
@@ -0,0 +1,162 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-warms the shared connection pools for the hot API endpoints at startup.
+ * Every configured endpoint is resolved and gets a number of pooled connections opened
+ * in parallel, so that the first requests after a deploy see steady-state latency. The
+ * async pool, which the non-blocking request path and SMS submission use, is warmed too
+ * unless {@code startup.warmup.async} is off.
+ * Warm-up is best effort: an unreachable endpoint is logged and skipped, and warm-up
+ * finishes at the latest after its timeout.
+ * <p>
+ * Warm connections are still subject to idle eviction: blocking-pool connections are put
+ * into the pool when warm-up finishes and are closed once idle for
+ * {@code http.pool.idleEvictionMs}; async connections count their idle time from their
+ * warm-up response. Traffic arriving later than that after readiness finds cold pools.
+ */
+public class ConnectionWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+    private static final AtomicInteger threadSequence = new AtomicInteger();
+    
+    private final boolean enabled;
+    private final boolean async;
+    private final Map<String, String> endpoints;
+    private final int connections;
+    private final long timeoutMs;
+    
+    /**
+     * Creates a warmer from the {@code startup.warmup} settings of the given configuration.
+     * Endpoints are listed by their {@code api.endpoints} name or as URLs.
+     * 
+     * @param configuration the agent configuration
+     */
+    public ConnectionWarmer(AgentConfiguration configuration) {
+        this(configuration.getBoolean("startup.warmup.enabled", false),
+             configuration.getBoolean("startup.warmup.async", true),
+             resolveEndpoints(configuration),
+             configuration.getInt("startup.warmup.connections", 4),
+             configuration.getLong("startup.warmup.timeoutMs", 10000L));
+    }
+    
+    /**
+     * Creates a warmer with explicit settings.
+     * 
+     * @param enabled whether warm-up runs at all
+     * @param async whether the async pool is warmed as well
+     * @param endpoints endpoint names to base URLs
+     * @param connections pooled connections to open per endpoint
+     * @param timeoutMs longest time warm-up may take
+     */
+    public ConnectionWarmer(boolean enabled, boolean async, Map<String, String> endpoints, int connections,
+                            long timeoutMs) {
+        this.enabled = enabled;
+        this.async = async;
+        this.endpoints = Collections.unmodifiableMap(new LinkedHashMap<>(endpoints));
+        this.connections = Math.max(1, connections);
+        this.timeoutMs = timeoutMs;
+    }
+    
+    /**
+     * Gets the endpoints to warm up.
+     * 
+     * @return read-only map of endpoint names to base URLs
+     */
+    public Map<String, String> getEndpoints() {
+        return endpoints;
+    }
+    
+    /**
+     * Starts warming up the transport's connection pool.
+     * 
+     * @param transport the transport to warm up
+     * @return a future completed, never exceptionally, once every endpoint is warm, has
+     *         failed, or the timeout has passed
+     */
+    public CompletableFuture<Void> warmUp(HttpTransport transport) {
+        if (!enabled || endpoints.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(16, endpoints.size() * connections), runnable -> {
+            Thread thread = new Thread(runnable, "bics-warmup-" + threadSequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        // Warm connections go into the pool together once warm-up is over
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        List<CompletableFuture<Void>> warmed = new ArrayList<>(endpoints.size() * 2);
+        for (Map.Entry<String, String> endpoint : endpoints.entrySet()) {
+            warmed.add(report(endpoint.getKey(), "blocking",
+                transport.preconnect(endpoint.getValue(), connections, executor, finished)));
+            if (async) {
+                warmed.add(report(endpoint.getKey(), "async",
+                    CompletableFuture.supplyAsync(() -> transport.preconnectAsync(endpoint.getValue(), connections),
+                        executor).thenCompose(opened -> opened)));
+            }
+        }
+        
+        return CompletableFuture.allOf(warmed.toArray(new CompletableFuture<?>[0]))
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((done, failure) -> {
+                    finished.complete(null);
+                    executor.shutdown();
+                    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    if (failure != null) {
+                        logger.warn("Connection warm-up did not finish within {} ms", timeoutMs);
+                    } else {
+                        logger.info("Connection warm-up of {} endpoints finished in {} ms", endpoints.size(), elapsedMs);
+                    }
+                    return null;
+                });
+    }
+    
+    private static CompletableFuture<Void> report(String endpoint, String pool, CompletableFuture<Integer> warming) {
+        return warming.handle((opened, failure) -> {
+            if (failure != null) {
+                Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                logger.warn("Warm-up of endpoint {} ({} pool) failed: {}", endpoint, pool, cause.getMessage());
+            } else {
+                logger.debug("Warmed up endpoint {} with {} {} connections", endpoint, opened, pool);
+            }
+            return null;
+        });
+    }
+    
+    private static Map<String, String> resolveEndpoints(AgentConfiguration configuration) {
+        Map<String, String> resolved = new LinkedHashMap<>();
+        Object configured = configuration.getValue("startup.warmup.endpoints");
+        if (!(configured instanceof List)) {
+            return resolved;
+        }
+        for (Object entry : (List<?>) configured) {
+            String name = String.valueOf(entry);
+            if (name.startsWith("http://") || name.startsWith("https://")) {
+                resolved.put(name, name);
+                continue;
+            }
+            Object url = configuration.getValue("api.endpoints." + name);
+            if (url != null) {
+                resolved.put(name, String.valueOf(url));
+            } else {
+                logger.warn("Ignoring unknown warm-up endpoint: {}", name);
+            }
+        }
+        return resolved;
+    }
+}
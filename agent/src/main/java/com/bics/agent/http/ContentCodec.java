@@ -0,0 +1,181 @@
+package com.bics.agent.http;
+
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Utility for HTTP content coding of JSON bodies: gzip and deflate decoding of responses,
+ * gzip encoding of request bodies, and byte counting on both sides of a decoder.
+ * Decoding is streaming, so a compressed response is inflated as the JSON parser reads it.
+ */
+public final class ContentCodec {
+    
+    /**
+     * Value of the {@code Accept-Encoding} header for the supported codings.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    
+    private ContentCodec() {
+    }
+    
+    /**
+     * Checks whether a content coding can be decoded.
+     * 
+     * @param contentEncoding the {@code Content-Encoding} value (can be null)
+     * @return true for gzip, x-gzip and deflate
+     */
+    public static boolean isSupported(String contentEncoding) {
+        if (contentEncoding == null) {
+            return false;
+        }
+        String coding = contentEncoding.trim();
+        return coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip") || coding.equalsIgnoreCase("deflate");
+    }
+    
+    /**
+     * Wraps a stream with a decoder for the given content coding.
+     * A deflate body may be zlib-wrapped, as the specification requires, or raw, as some
+     * servers send it; both are accepted.
+     * 
+     * @param contentEncoding a supported content coding
+     * @param in the encoded stream
+     * @return the decoded stream
+     * @throws IOException if the stream header is invalid
+     */
+    public static InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        String coding = contentEncoding.trim();
+        if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+            return new GZIPInputStream(in, 8192);
+        }
+        if (coding.equalsIgnoreCase("deflate")) {
+            PushbackInputStream pushback = new PushbackInputStream(in, 2);
+            byte[] header = new byte[2];
+            int read = pushback.readNBytes(header, 0, 2);
+            pushback.unread(header, 0, read);
+            boolean zlib = read == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+            return new InflaterInputStream(pushback, new Inflater(!zlib), 8192);
+        }
+        throw new IOException("Unsupported content encoding: " + contentEncoding);
+    }
+    
+    /**
+     * Decodes a complete body.
+     * 
+     * @param contentEncoding a supported content coding
+     * @param body the encoded body
+     * @return the decoded body
+     * @throws IOException if the body is corrupt
+     */
+    public static byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        try (InputStream in = decode(contentEncoding, new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+    
+    /**
+     * Compresses a body with gzip.
+     * 
+     * @param body the body to compress
+     * @return the gzip-encoded body
+     */
+    public static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory compression failed", e);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Wraps a response entity so that the bytes read from the wire are reported and, if the
+     * entity carries a supported content coding, its content is decoded. The decoded entity
+     * has an unknown length and no content encoding.
+     * 
+     * @param entity the response entity (can be null)
+     * @param wireBytes receives the number of encoded bytes read
+     * @param decodedBytes receives the number of decoded bytes read from a decoded entity
+     * @return the wrapped entity, or null for a null entity
+     */
+    public static HttpEntity wrapResponse(HttpEntity entity, LongConsumer wireBytes, LongConsumer decodedBytes) {
+        if (entity == null) {
+            return null;
+        }
+        String contentEncoding = entity.getContentEncoding();
+        boolean decoded = isSupported(contentEncoding);
+        return new HttpEntityWrapper(entity) {
+            @Override
+            public InputStream getContent() throws IOException {
+                InputStream wire = new CountingInputStream(super.getContent(), wireBytes);
+                return decoded ? new CountingInputStream(decode(contentEncoding, wire), decodedBytes) : wire;
+            }
+            
+            @Override
+            public long getContentLength() {
+                return decoded ? -1L : super.getContentLength();
+            }
+            
+            @Override
+            public String getContentEncoding() {
+                return decoded ? null : contentEncoding;
+            }
+            
+            @Override
+            public boolean isStreaming() {
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Stream reporting the number of bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LongConsumer counter;
+        
+        CountingInputStream(InputStream in, LongConsumer counter) {
+            super(in);
+            this.counter = counter;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.accept(1L);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                counter.accept(read);
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                counter.accept(skipped);
+            }
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client-side admission control for one BICS API endpoint.
+ * A call first takes a token from a static {@link TokenBucket}, configured per entry of
+ * {@code api.endpoints} under {@code http.limits.rate}, and then, when
+ * {@code http.limits.concurrency.enabled} is set, a permit from an
+ * {@link AdaptiveConcurrencyLimit}. Callers wait at most {@code http.limits.queueTimeoutMs}
+ * for each; beyond that the call fails fast with a PluginException instead of adding to the
+ * backend's load. Rates, bounds and the queue timeout can be changed in place with
+ * {@link #reconfigure(AgentConfiguration)}.
+ */
+public class EndpointLimiter {
+    
+    private final String pluginName;
+    private volatile String endpointName;
+    private final TokenBucket tokenBucket;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private volatile long queueTimeoutMs;
+    
+    /**
+     * Creates a limiter from the {@code http.limits} settings of the given configuration.
+     * 
+     * @param pluginName the plugin name, used in error messages
+     * @param endpointName the key of the endpoint in {@code api.endpoints}, or null for defaults
+     * @param configuration the agent configuration
+     */
+    public EndpointLimiter(String pluginName, String endpointName, AgentConfiguration configuration) {
+        this(pluginName, endpointName,
+             new TokenBucket(permitsPerSecond(configuration, endpointName), burst(configuration, endpointName)),
+             configuration.getBoolean("http.limits.concurrency.enabled", false)
+                 ? new AdaptiveConcurrencyLimit(
+                     configuration.getInt("http.limits.concurrency.initialLimit", 20),
+                     configuration.getInt("http.limits.concurrency.minLimit", 10),
+                     configuration.getInt("http.limits.concurrency.maxLimit", 200),
+                     configuration.getDouble("http.limits.concurrency.backoffRatio", 0.9),
+                     configuration.getDouble("http.limits.concurrency.latencyTolerance", 2.0))
+                 : null,
+             configuration.getLong("http.limits.queueTimeoutMs", 1000L));
+    }
+    
+    /**
+     * Creates a limiter from its parts.
+     * 
+     * @param pluginName the plugin name, used in error messages
+     * @param endpointName the key of the endpoint in {@code api.endpoints}
+     * @param tokenBucket the rate limit
+     * @param concurrencyLimit the concurrency limit, or null for none
+     * @param queueTimeoutMs the longest a caller waits for a token or a permit
+     */
+    public EndpointLimiter(String pluginName, String endpointName, TokenBucket tokenBucket,
+                           AdaptiveConcurrencyLimit concurrencyLimit, long queueTimeoutMs) {
+        this.pluginName = pluginName;
+        this.endpointName = endpointName;
+        this.tokenBucket = tokenBucket;
+        this.concurrencyLimit = concurrencyLimit;
+        this.queueTimeoutMs = Math.max(0L, queueTimeoutMs);
+    }
+    
+    /**
+     * Applies the current {@code http.limits} settings of the given configuration in place.
+     * Calls already admitted keep their permits. Enabling or disabling the concurrency
+     * limit only takes effect for limiters created afterwards.
+     * 
+     * @param configuration the agent configuration
+     */
+    public void reconfigure(AgentConfiguration configuration) {
+        reconfigure(configuration, endpointName);
+    }
+    
+    /**
+     * Applies the current {@code http.limits} settings in place for a possibly different
+     * endpoint, e.g. after the plugin's base URL moved to another {@code api.endpoints} entry.
+     * The adaptive concurrency limit keeps its current estimate.
+     * 
+     * @param configuration the agent configuration
+     * @param endpointName the key of the endpoint in {@code api.endpoints}, or null for defaults
+     */
+    public void reconfigure(AgentConfiguration configuration, String endpointName) {
+        this.endpointName = endpointName;
+        tokenBucket.setRate(permitsPerSecond(configuration, endpointName), burst(configuration, endpointName));
+        if (concurrencyLimit != null) {
+            concurrencyLimit.setBounds(
+                configuration.getInt("http.limits.concurrency.minLimit", 10),
+                configuration.getInt("http.limits.concurrency.maxLimit", 200),
+                configuration.getDouble("http.limits.concurrency.backoffRatio", 0.9),
+                configuration.getDouble("http.limits.concurrency.latencyTolerance", 2.0));
+        }
+        queueTimeoutMs = Math.max(0L, configuration.getLong("http.limits.queueTimeoutMs", 1000L));
+    }
+    
+    /**
+     * Gets the endpoint name.
+     * 
+     * @return the key of the endpoint in {@code api.endpoints}, or null
+     */
+    public String getEndpointName() {
+        return endpointName;
+    }
+    
+    /**
+     * Gets the concurrency limit.
+     * 
+     * @return the concurrency limit, or null if disabled
+     */
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+    
+    /**
+     * Admits a blocking call, waiting briefly if needed.
+     * 
+     * @param operation the operation, used in error messages
+     * @throws PluginException if the call cannot be admitted within the queue timeout
+     */
+    public void acquire(String operation) throws PluginException {
+        long timeoutMs = queueTimeoutMs;
+        long waitNanos = tokenBucket.reserve(TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        if (waitNanos < 0) {
+            throw rateLimited(operation);
+        }
+        CompletableFuture<Void> permit = null;
+        boolean admitted = false;
+        try {
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            if (concurrencyLimit != null) {
+                permit = concurrencyLimit.acquire(timeoutMs);
+                permit.get();
+            }
+            admitted = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginException(pluginName, operation, "Interrupted while waiting for admission", e);
+        } catch (ExecutionException e) {
+            throw concurrencyLimited(operation);
+        } finally {
+            if (!admitted) {
+                abandon(permit);
+            }
+        }
+    }
+    
+    /**
+     * Admits a non-blocking call.
+     * 
+     * @param operation the operation, used in error messages
+     * @return a future completed once the call is admitted, or exceptionally with a
+     *         PluginException if it cannot be admitted within the queue timeout
+     */
+    public CompletableFuture<Void> acquireAsync(String operation) {
+        long timeoutMs = queueTimeoutMs;
+        long waitNanos = tokenBucket.reserve(TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        if (waitNanos < 0) {
+            return CompletableFuture.failedFuture(rateLimited(operation));
+        }
+        CompletableFuture<Void> token = waitNanos == 0
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> { },
+                    CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+        if (concurrencyLimit == null) {
+            return token;
+        }
+        return token.thenCompose(ignored -> concurrencyLimit.acquire(timeoutMs))
+                .exceptionally(failure -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    tokenBucket.refund();
+                    if (cause instanceof TimeoutException) {
+                        throw new CompletionException(concurrencyLimited(operation));
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+    
+    /**
+     * Releases an admitted call and feeds its outcome to the adaptive limit.
+     * 
+     * @param durationNanos the duration of the call
+     * @param dropped whether the backend showed overload (429, 503 or a timeout)
+     */
+    public void release(long durationNanos, boolean dropped) {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.release(durationNanos, dropped);
+        }
+    }
+    
+    /**
+     * Releases an admitted call that was never sent.
+     */
+    public void releaseUnused() {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.releaseUnused();
+        }
+    }
+    
+    /**
+     * Gives back what a refused call took: its rate token, and its concurrency permit if it
+     * was granted after the caller stopped waiting. A pending permit request is cancelled.
+     */
+    private void abandon(CompletableFuture<Void> permit) {
+        tokenBucket.refund();
+        if (permit != null && !permit.cancel(false) && !permit.isCompletedExceptionally()) {
+            concurrencyLimit.releaseUnused();
+        }
+    }
+    
+    private PluginException rateLimited(String operation) {
+        return new PluginException(pluginName, operation,
+            "Client-side rate limit for endpoint '" + endpointName + "' exceeded");
+    }
+    
+    private PluginException concurrencyLimited(String operation) {
+        return new PluginException(pluginName, operation,
+            "Client-side concurrency limit of " + concurrencyLimit.getLimit() + " reached for endpoint '" + endpointName + "'");
+    }
+    
+    private static double permitsPerSecond(AgentConfiguration configuration, String endpointName) {
+        return configuration.getDouble(rateKey(endpointName, "permitsPerSecond"),
+            configuration.getDouble("http.limits.rate.default.permitsPerSecond", 0.0));
+    }
+    
+    private static int burst(AgentConfiguration configuration, String endpointName) {
+        return configuration.getInt(rateKey(endpointName, "burst"),
+            configuration.getInt("http.limits.rate.default.burst", 1));
+    }
+    
+    private static String rateKey(String endpointName, String setting) {
+        return "http.limits.rate." + (endpointName != null ? endpointName : "default") + "." + setting;
+    }
+}
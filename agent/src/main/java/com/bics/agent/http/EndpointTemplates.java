@@ -0,0 +1,179 @@
+package com.bics.agent.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Utility for turning concrete endpoint paths into low-cardinality templates.
+ * Paths of the known API routes are templated by position: the segments a route declares as
+ * {@code {id}} are replaced whatever they contain, so both {@code /customers/42} and
+ * {@code /customers/acme} become {@code /customers/{id}}. Other paths fall back to replacing
+ * segments that look like identifiers (anything containing a digit, '+' or '@'), and once
+ * {@value #MAX_UNMATCHED_TEMPLATES} such templates have been seen, further ones share the
+ * {@value #OVERFLOW_TEMPLATE} template. Templates key per-operation state such as circuit
+ * breakers, metrics and cache TTLs, so their number stays bounded.
+ */
+public final class EndpointTemplates {
+    private static final Logger logger = LoggerFactory.getLogger(EndpointTemplates.class);
+    
+    /**
+     * Template shared by unknown paths once the unmatched templates are exhausted.
+     */
+    public static final String OVERFLOW_TEMPLATE = "/{other}";
+    
+    static final int MAX_UNMATCHED_TEMPLATES = 256;
+    
+    private static final String ID = "{id}";
+    
+    private static final List<String> ROUTES = List.of(
+        "/addresses/{id}",
+        "/cdr/{id}",
+        "/customers",
+        "/customers/{id}",
+        "/disconnect/{id}",
+        "/disconnect/status/{id}",
+        "/emergency/{id}",
+        "/numbers",
+        "/numbers/reserve",
+        "/numbers/{id}",
+        "/numbers/{id}/activate",
+        "/numbers/{id}/deactivate",
+        "/portin/{id}",
+        "/porting/{id}",
+        "/porting/status/{id}",
+        "/portout/{id}",
+        "/products",
+        "/products/{id}",
+        "/sms/bulk",
+        "/sms/history/{id}",
+        "/sms/send",
+        "/sms/status/{id}",
+        "/usage/{id}");
+    
+    private static final Map<String, List<Route>> ROUTES_BY_ROOT = indexRoutes();
+    private static final Set<String> UNMATCHED = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean overflowReported = new AtomicBoolean();
+    
+    private EndpointTemplates() {
+    }
+    
+    /**
+     * Builds the template for an endpoint path; any query string is dropped.
+     * 
+     * @param endpoint the concrete endpoint path
+     * @return the endpoint template
+     */
+    public static String template(String endpoint) {
+        int queryStart = endpoint.indexOf('?');
+        String path = queryStart >= 0 ? endpoint.substring(0, queryStart) : endpoint;
+        String[] segments = path.split("/", -1);
+        
+        String route = matchRoute(segments);
+        if (route != null) {
+            return route;
+        }
+        
+        StringBuilder template = new StringBuilder(path.length());
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                template.append('/');
+            }
+            appendSegment(template, segments[i]);
+        }
+        return bounded(template.toString());
+    }
+    
+    /**
+     * Builds the operation key for a method and endpoint, e.g. {@code GET /customers/{id}}.
+     * 
+     * @param method the HTTP method
+     * @param endpoint the concrete endpoint path
+     * @return the operation key
+     */
+    public static String operationKey(String method, String endpoint) {
+        return method + " " + template(endpoint);
+    }
+    
+    /**
+     * Finds the known route with the same number of segments whose literal segments all match,
+     * preferring the route with the most literal segments ({@code /numbers/reserve} over
+     * {@code /numbers/{id}}).
+     */
+    private static String matchRoute(String[] segments) {
+        List<Route> candidates = segments.length > 1 ? ROUTES_BY_ROOT.get(segments[1]) : null;
+        if (candidates == null) {
+            return null;
+        }
+        Route best = null;
+        int bestLiterals = -1;
+        for (Route route : candidates) {
+            if (route.segments.length != segments.length) {
+                continue;
+            }
+            int literals = 0;
+            for (int i = 0; i < segments.length && literals >= 0; i++) {
+                if (!route.segments[i].equals(ID)) {
+                    literals = route.segments[i].equals(segments[i]) ? literals + 1 : -1;
+                }
+            }
+            if (literals > bestLiterals) {
+                best = route;
+                bestLiterals = literals;
+            }
+        }
+        return best != null ? best.template : null;
+    }
+    
+    private static String bounded(String template) {
+        if (UNMATCHED.contains(template)) {
+            return template;
+        }
+        if (UNMATCHED.size() < MAX_UNMATCHED_TEMPLATES) {
+            UNMATCHED.add(template);
+            return template;
+        }
+        if (overflowReported.compareAndSet(false, true)) {
+            logger.warn("More than {} endpoint templates outside the known routes, using {} for {} and further ones",
+                MAX_UNMATCHED_TEMPLATES, OVERFLOW_TEMPLATE, template);
+        }
+        return OVERFLOW_TEMPLATE;
+    }
+    
+    private static void appendSegment(StringBuilder template, String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (Character.isDigit(c) || c == '+' || c == '@') {
+                template.append(ID);
+                return;
+            }
+        }
+        template.append(segment);
+    }
+    
+    private static Map<String, List<Route>> indexRoutes() {
+        Map<String, List<Route>> byRoot = new HashMap<>();
+        for (String template : ROUTES) {
+            Route route = new Route(template);
+            byRoot.computeIfAbsent(route.segments[1], root -> new ArrayList<>()).add(route);
+        }
+        return byRoot;
+    }
+    
+    private static final class Route {
+        private final String template;
+        private final String[] segments;
+        
+        private Route(String template) {
+            this.template = template;
+            this.segments = template.split("/", -1);
+        }
+    }
+}
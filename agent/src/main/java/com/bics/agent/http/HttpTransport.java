@@ -0,0 +1,453 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.config.ConfigSnapshot;
+import com.bics.agent.config.ConfigurationListener;
+import com.bics.agent.metrics.ConnectionPoolGauge;
+import com.bics.agent.metrics.MetricsRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared HTTP transport for all BICS API plugins.
+ * This class owns a single pooling connection manager and the HTTP client built on top of it,
+ * so that every plugin draws connections from the same tunable pool instead of creating
+ * its own default client.
+ * A non-blocking client for the async request path is created lazily on first use; it
+ * negotiates HTTP/2 via ALPN where the endpoint supports it so that many in-flight
+ * requests are multiplexed over a few connections.
+ * The client's built-in retries are disabled; retries are handled by the plugins' retry policy.
+ * Its built-in content decompression is disabled as well; plugins negotiate and decode content
+ * codings themselves through {@link ContentCodec} so that both clients behave alike.
+ * Both pools are published as gauges in the {@link MetricsRegistry} until the transport is closed.
+ * Pool sizes and timeouts follow configuration reloads in place: new limits apply to the
+ * live pools, new connections get the new connection settings, and new requests the new
+ * request timeouts, while exchanges in flight complete under the settings they started with.
+ * Plugins pass every request through the transport's {@link RequestGate}, which lets an
+ * owner stop admitting requests and wait for those in flight before closing the transport.
+ */
+public class HttpTransport implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransport.class);
+    private static final AtomicInteger sequence = new AtomicInteger();
+    // Same as the client's default keep-alive strategy for servers that do not announce one
+    private static final TimeValue PRECONNECT_KEEP_ALIVE = TimeValue.ofMinutes(3);
+    
+    private final String name = "transport-" + sequence.incrementAndGet();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final AgentConfiguration configuration;
+    private final ConfigurationListener configurationListener = this::onConfigurationChanged;
+    private volatile ConnectionConfig connectionConfig;
+    private volatile RequestConfig requestConfig;
+    private volatile int maxTotal;
+    private volatile int maxPerRoute;
+    private final long idleEvictionMs;
+    private final int ioThreads;
+    private final int maxConcurrentStreams;
+    private final boolean http2Enabled;
+    private final ConnectionPoolGauge poolGauge;
+    private final ConnectionPoolGauge asyncPoolGauge;
+    private final RequestGate requestGate = new RequestGate();
+    private volatile PoolingAsyncClientConnectionManager asyncConnectionManager;
+    private volatile CloseableHttpAsyncClient asyncClient;
+    private volatile boolean closed = false;
+    
+    /**
+     * Creates a new transport using the {@code http.timeout} and {@code http.pool}
+     * settings from the given configuration.
+     * 
+     * @param configuration the agent configuration
+     */
+    public HttpTransport(AgentConfiguration configuration) {
+        this.configuration = configuration;
+        this.maxTotal = configuration.getInt("http.pool.maxTotal", 200);
+        this.maxPerRoute = configuration.getInt("http.pool.maxPerRoute", 50);
+        this.idleEvictionMs = configuration.getLong("http.pool.idleEvictionMs", 30000L);
+        this.ioThreads = configuration.getInt("http.async.ioThreads", Runtime.getRuntime().availableProcessors());
+        this.maxConcurrentStreams = configuration.getInt("http.async.maxConcurrentStreams", 100);
+        this.http2Enabled = configuration.getBoolean("http.async.http2", true);
+        
+        this.connectionConfig = connectionConfig(configuration);
+        
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+        
+        this.requestConfig = requestConfig(configuration);
+        
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableAutomaticRetries()
+                .disableContentCompression()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictionMs))
+                .build();
+        
+        this.poolGauge = new ConnectionPoolGauge(name, "classic", this::getPoolStats);
+        this.asyncPoolGauge = new ConnectionPoolGauge(name, "async", this::getAsyncPoolStats);
+        MetricsRegistry.getInstance().registerPool(poolGauge);
+        MetricsRegistry.getInstance().registerPool(asyncPoolGauge);
+        configuration.addListener(configurationListener);
+        
+        logger.info("HTTP transport initialized (maxTotal={}, maxPerRoute={}, connectTimeout={}, readTimeout={})",
+                maxTotal, maxPerRoute, connectionConfig.getConnectTimeout(), connectionConfig.getSocketTimeout());
+    }
+    
+    private static ConnectionConfig connectionConfig(AgentConfiguration configuration) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(configuration.getInt("http.timeout.connection", 30000)))
+                .setSocketTimeout(Timeout.ofMilliseconds(configuration.getInt("http.timeout.read", 60000)))
+                .setTimeToLive(TimeValue.ofMilliseconds(configuration.getLong("http.pool.timeToLiveMs", 300000L)))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(
+                    configuration.getLong("http.pool.validateAfterInactivityMs", 2000L)))
+                .build();
+    }
+    
+    private static RequestConfig requestConfig(AgentConfiguration configuration) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(
+                    configuration.getInt("http.timeout.connectionRequest", 10000)))
+                .setResponseTimeout(Timeout.ofMilliseconds(configuration.getInt("http.timeout.read", 60000)))
+                .build();
+    }
+    
+    private void onConfigurationChanged(ConfigSnapshot previous, ConfigSnapshot current) {
+        if (current.differs(previous, "http.pool") || current.differs(previous, "http.timeout")) {
+            reconfigure();
+        }
+    }
+    
+    /**
+     * Applies the current {@code http.pool} and {@code http.timeout} settings to the live
+     * pools. The idle eviction interval and the async client settings are fixed at creation.
+     */
+    public synchronized void reconfigure() {
+        if (closed) {
+            return;
+        }
+        maxTotal = configuration.getInt("http.pool.maxTotal", 200);
+        maxPerRoute = configuration.getInt("http.pool.maxPerRoute", 50);
+        connectionConfig = connectionConfig(configuration);
+        requestConfig = requestConfig(configuration);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setDefaultConnectionConfig(connectionConfig);
+        PoolingAsyncClientConnectionManager manager = asyncConnectionManager;
+        if (manager != null) {
+            manager.setMaxTotal(maxTotal);
+            manager.setDefaultMaxPerRoute(maxPerRoute);
+            manager.setDefaultConnectionConfig(connectionConfig);
+        }
+        logger.info("HTTP transport reconfigured (maxTotal={}, maxPerRoute={}, connectTimeout={}, readTimeout={})",
+                maxTotal, maxPerRoute, connectionConfig.getConnectTimeout(), connectionConfig.getSocketTimeout());
+    }
+    
+    /**
+     * Gets the request settings currently in effect. Plugins set them on every request, so
+     * that reconfigured timeouts apply to new requests without rebuilding the clients.
+     * 
+     * @return the current request settings
+     */
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+    
+    /**
+     * Gets the gate that admits the requests made on this transport.
+     * 
+     * @return the request gate
+     */
+    public RequestGate getRequestGate() {
+        return requestGate;
+    }
+    
+    /**
+     * Gets the shared blocking HTTP client.
+     * 
+     * @return the HTTP client backed by the shared connection pool
+     */
+    public CloseableHttpClient getClient() {
+        return httpClient;
+    }
+    
+    /**
+     * Gets the shared non-blocking HTTP client, starting it on first use.
+     * 
+     * @return the started async HTTP client
+     * @throws IllegalStateException if the transport has been closed
+     */
+    public CloseableHttpAsyncClient getAsyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("HTTP transport is closed");
+                }
+                client = asyncClient;
+                if (client == null) {
+                    client = createAsyncClient();
+                    client.start();
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+    
+    private CloseableHttpAsyncClient createAsyncClient() {
+        HttpVersionPolicy versionPolicy = http2Enabled ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1;
+        
+        asyncConnectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(connectionConfig)
+                .setDefaultTlsConfig(TlsConfig.custom().setVersionPolicy(versionPolicy).build())
+                .build();
+        
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setSoTimeout(connectionConfig.getSocketTimeout())
+                .build();
+        
+        H2Config h2Config = H2Config.custom()
+                .setPushEnabled(false)
+                .setMaxConcurrentStreams(maxConcurrentStreams)
+                .build();
+        
+        logger.info("Starting async HTTP client (ioThreads={}, http2={}, maxConcurrentStreams={})",
+                ioThreads, http2Enabled, maxConcurrentStreams);
+        
+        return HttpAsyncClients.custom()
+                .setConnectionManager(asyncConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setIOReactorConfig(ioReactorConfig)
+                .setH2Config(h2Config)
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictionMs))
+                .build();
+    }
+    
+    /**
+     * Opens connections to the host of the given URL ahead of the first request and puts
+     * them idle into the shared pool, so that the first requests skip DNS resolution, TCP and
+     * TLS setup. The host name is resolved first; the connections are then opened in
+     * parallel on the given executor. Idle connections already in the pool count towards
+     * the requested number.
+     * <p>
+     * Opened connections stay leased until {@code releaseWhen} completes, so that their idle
+     * time, and with it idle eviction after {@code http.pool.idleEvictionMs}, starts only then.
+     * 
+     * @param url a URL of the host, e.g. an API base URL
+     * @param connections the number of pooled connections wanted, capped at the per-route maximum
+     * @param executor the executor that resolves the host and opens the connections
+     * @param releaseWhen stage after whose completion the connections are put into the pool
+     * @return a future completed with the number of connections opened, before they are released
+     */
+    public CompletableFuture<Integer> preconnect(String url, int connections, Executor executor,
+                                                 CompletionStage<?> releaseWhen) {
+        return CompletableFuture.supplyAsync(() -> leaseForPreconnect(url, connections), executor)
+                .thenCompose(endpoints -> {
+                    List<CompletableFuture<Boolean>> opened = new ArrayList<>(endpoints.size());
+                    for (ConnectionEndpoint endpoint : endpoints) {
+                        opened.add(CompletableFuture.supplyAsync(() -> open(endpoint, releaseWhen), executor));
+                    }
+                    return CompletableFuture.allOf(opened.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(done -> (int) opened.stream().filter(CompletableFuture::join).count());
+                });
+    }
+    
+    /**
+     * Opens connections of the async client to the host of the given URL by sending
+     * {@code OPTIONS} requests to it, starting the async client if needed. The response status
+     * is ignored. With HTTP/2 the requests share one multiplexed connection; with HTTP/1.1
+     * each opens its own. The connections go idle into the async pool once answered, so idle
+     * eviction after {@code http.pool.idleEvictionMs} counts from the response.
+     * 
+     * @param url a URL of the host, e.g. an API base URL
+     * @param requests the number of concurrent requests, capped at the per-route maximum
+     * @return a future completed with the number of requests that received a response
+     */
+    public CompletableFuture<Integer> preconnectAsync(String url, int requests) {
+        CloseableHttpAsyncClient client = getAsyncClient();
+        List<CompletableFuture<Boolean>> answered = new ArrayList<>();
+        for (int i = 0; i < Math.min(requests, maxPerRoute); i++) {
+            CompletableFuture<Boolean> response = new CompletableFuture<>();
+            SimpleHttpRequest request = SimpleRequestBuilder.options(url).build();
+            request.setConfig(requestConfig);
+            client.execute(request, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse result) {
+                    response.complete(true);
+                }
+                
+                @Override
+                public void failed(Exception e) {
+                    logger.debug("Failed to preconnect async client: {}", e.getMessage());
+                    response.complete(false);
+                }
+                
+                @Override
+                public void cancelled() {
+                    response.complete(false);
+                }
+            });
+            answered.add(response);
+        }
+        return CompletableFuture.allOf(answered.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> (int) answered.stream().filter(CompletableFuture::join).count());
+    }
+    
+    private List<ConnectionEndpoint> leaseForPreconnect(String url, int connections) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+        HttpRoute route = new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure);
+        List<ConnectionEndpoint> endpoints = new ArrayList<>();
+        try {
+            InetAddress.getAllByName(uri.getHost());
+            // Holding every lease until all are opened forces distinct connections
+            for (int i = 0; i < Math.min(connections, maxPerRoute); i++) {
+                Timeout timeout = requestConfig.getConnectionRequestTimeout();
+                endpoints.add(connectionManager.lease(name + "-preconnect", route, timeout, null).get(timeout));
+            }
+            return endpoints;
+        } catch (IOException e) {
+            releaseAll(endpoints);
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            releaseAll(endpoints);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while leasing connections to " + route, e);
+        } catch (Exception e) {
+            releaseAll(endpoints);
+            throw new IllegalStateException("Failed to lease connections to " + route, e);
+        }
+    }
+    
+    private boolean open(ConnectionEndpoint endpoint, CompletionStage<?> releaseWhen) {
+        try {
+            if (!endpoint.isConnected()) {
+                connectionManager.connect(endpoint, null, HttpClientContext.create());
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to preconnect: {}", e.getMessage());
+            connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS);
+            return false;
+        }
+        releaseWhen.whenComplete((done, failure) ->
+            connectionManager.release(endpoint, null, PRECONNECT_KEEP_ALIVE));
+        return true;
+    }
+    
+    private void releaseAll(List<ConnectionEndpoint> endpoints) {
+        for (ConnectionEndpoint endpoint : endpoints) {
+            connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Gets the current statistics of the shared connection pool.
+     * 
+     * @return pool statistics (leased, available, pending and max connections)
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+    
+    /**
+     * Gets the current statistics of the async connection pool.
+     * 
+     * @return pool statistics, or null if the async client has not been started
+     */
+    public PoolStats getAsyncPoolStats() {
+        PoolingAsyncClientConnectionManager manager = asyncConnectionManager;
+        return manager != null ? manager.getTotalStats() : null;
+    }
+    
+    /**
+     * Checks whether this transport has been closed.
+     * 
+     * @return true if the transport is closed, false otherwise
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * Closes the HTTP client and its connection pool, letting in-flight exchanges complete.
+     */
+    @Override
+    public void close() {
+        close(CloseMode.GRACEFUL);
+    }
+    
+    /**
+     * Closes the HTTP clients and their connection pools. New requests are refused by the
+     * request gate from then on.
+     * 
+     * @param closeMode GRACEFUL to let in-flight exchanges complete, IMMEDIATE to abort them
+     */
+    public synchronized void close(CloseMode closeMode) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        requestGate.close();
+        configuration.removeListener(configurationListener);
+        MetricsRegistry.getInstance().unregisterPool(poolGauge);
+        MetricsRegistry.getInstance().unregisterPool(asyncPoolGauge);
+        httpClient.close(closeMode);
+        if (asyncClient != null) {
+            asyncClient.close(closeMode);
+        }
+        logger.info("HTTP transport closed");
+    }
+}
@@ -0,0 +1,214 @@
+package com.bics.agent.http;
+
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.execution.PluginCall;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical in-flight requests.
+ * The first caller for a key becomes the leader and performs the exchange; callers arriving
+ * while it is outstanding wait for and share its result or failure. The key is removed as
+ * soon as the exchange completes, so results are never reused afterwards and no staleness
+ * is introduced.
+ * <p>
+ * Mutations are reported through {@link #mutated(String)}. A caller does not join an exchange
+ * for a path that began before a mutation of that path (or of one of its descendants)
+ * completed; it starts a new exchange instead, so a caller never reads around its own write.
+ */
+public class RequestCoalescer {
+    
+    private static final int MAX_MUTATED_PATHS = 10000;
+    
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> mutatedAt = new ConcurrentHashMap<>();
+    private volatile long forgottenGeneration;
+    
+    /**
+     * Creates a request coalescer.
+     * 
+     * @param enabled whether coalescing is enabled; when disabled every call runs on its own
+     */
+    public RequestCoalescer(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Runs a blocking call, or waits for the identical call already in flight.
+     * 
+     * Calls producing different result types must use distinct keys.
+     * 
+     * @param key the request key, normally the final URL
+     * @param path the endpoint path read by the call, checked against {@link #mutated(String)}
+     * @param call the call performing the exchange
+     * @param <T> the result type
+     * @return the (possibly shared) result
+     * @throws PluginException the (possibly shared) failure
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String path, PluginCall<T> call) throws PluginException {
+        if (!enabled) {
+            return call.call();
+        }
+        InFlight leader = new InFlight(path, generation.get());
+        InFlight existing = join(key, leader);
+        if (existing != null) {
+            return (T) await(existing.future);
+        }
+        
+        try {
+            T result = call.call();
+            leader.future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors too: followers would otherwise wait on the shared future forever
+            leader.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, leader);
+        }
+    }
+    
+    /**
+     * Starts a non-blocking call, or joins the identical call already in flight.
+     * 
+     * @param key the request key, normally the final URL
+     * @param path the endpoint path read by the call, checked against {@link #mutated(String)}
+     * @param call supplier starting the exchange
+     * @return a future for the (possibly shared) result
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<String> executeAsync(String key, String path, Supplier<CompletableFuture<String>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        InFlight leader = new InFlight(path, generation.get());
+        InFlight existing = join(key, leader);
+        if (existing != null) {
+            return (CompletableFuture<String>) (CompletableFuture<?>) existing.future.copy();
+        }
+        
+        CompletableFuture<String> exchange;
+        try {
+            exchange = call.get();
+        } catch (Throwable e) {
+            inFlight.remove(key, leader);
+            leader.future.completeExceptionally(e);
+            return (CompletableFuture<String>) (CompletableFuture<?>) leader.future.copy();
+        }
+        exchange.whenComplete((result, failure) -> {
+            inFlight.remove(key, leader);
+            if (failure != null) {
+                leader.future.completeExceptionally(failure);
+            } else {
+                leader.future.complete(result);
+            }
+        });
+        return (CompletableFuture<String>) (CompletableFuture<?>) leader.future.copy();
+    }
+    
+    /**
+     * Records a completed mutation of a path. Exchanges for the path and its ancestors that
+     * are already in flight are no longer joined by later callers.
+     * 
+     * @param endpoint the endpoint that was mutated; any query string is ignored
+     */
+    public void mutated(String endpoint) {
+        if (!enabled) {
+            return;
+        }
+        long mutation = generation.incrementAndGet();
+        if (mutatedAt.size() >= MAX_MUTATED_PATHS) {
+            // Forget the paths; exchanges that began before now are treated as outdated
+            forgottenGeneration = mutation;
+            mutatedAt.clear();
+        }
+        String path = stripQuery(endpoint);
+        while (!path.isEmpty()) {
+            mutatedAt.merge(path, mutation, Math::max);
+            int lastSlash = path.lastIndexOf('/');
+            path = lastSlash > 0 ? path.substring(0, lastSlash) : "";
+        }
+    }
+    
+    /**
+     * Gets the number of distinct requests currently in flight.
+     * 
+     * @return the in-flight request count
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    /**
+     * Registers the leader for a key, or returns the in-flight exchange to join. An exchange
+     * that began before a mutation of its path is replaced by the new leader instead.
+     */
+    private InFlight join(String key, InFlight leader) {
+        InFlight existing = inFlight.putIfAbsent(key, leader);
+        while (existing != null && isOutdated(existing)) {
+            if (inFlight.replace(key, existing, leader)) {
+                return null;
+            }
+            existing = inFlight.putIfAbsent(key, leader);
+        }
+        return existing;
+    }
+    
+    private boolean isOutdated(InFlight exchange) {
+        if (exchange.path == null) {
+            return false;
+        }
+        if (exchange.generation < forgottenGeneration) {
+            return true;
+        }
+        Long mutation = mutatedAt.get(stripQuery(exchange.path));
+        return mutation != null && mutation > exchange.generation;
+    }
+    
+    private static String stripQuery(String endpoint) {
+        int queryStart = endpoint.indexOf('?');
+        return queryStart >= 0 ? endpoint.substring(0, queryStart) : endpoint;
+    }
+    
+    private static Object await(CompletableFuture<Object> shared) throws PluginException {
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginException("Interrupted while waiting for a coalesced request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PluginException) {
+                throw (PluginException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PluginException("Coalesced request failed", cause);
+        }
+    }
+    
+    /**
+     * An exchange in flight, with the path it reads and the generation it began at.
+     */
+    private static final class InFlight {
+        private final String path;
+        private final long generation;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        
+        private InFlight(String path, long generation) {
+            this.path = path;
+            this.generation = generation;
+        }
+    }
+}
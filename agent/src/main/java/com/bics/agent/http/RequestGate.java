@@ -0,0 +1,206 @@
+package com.bics.agent.http;
+
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.execution.PluginCall;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission gate in front of a transport that counts the requests in flight, so that a
+ * shutdown can refuse new work and wait for the running requests to finish.
+ * A plugin invocation is admitted as a whole through an {@link Admission}: the requests made
+ * on its behalf are let through even after the gate has closed, so an invocation accepted
+ * before the shutdown is not cut off between two of its requests. The admission is carried
+ * with the work rather than with a thread: it is visible through {@link #current()} while
+ * {@link #callAdmitted(Admission, PluginCall)} runs, and work that continues elsewhere, such
+ * as async requests or lazily fetched pages, captures it when it starts and passes it to
+ * {@link #tryEnter(Admission)} or holds a {@link #extend(Admission) extension} of it.
+ * <p>
+ * Admission is lock-free; only {@link #awaitDrained} waits on a monitor.
+ */
+public class RequestGate {
+    private final Object drained = new Object();
+    // Scope of callAdmitted only; work leaving the thread carries the admission itself
+    private final ThreadLocal<Admission> current = new ThreadLocal<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean open = true;
+    
+    /**
+     * Admits a request or invocation; every successful call must be paired with {@link #exit()}.
+     * 
+     * @return true if admitted, false if the gate is closed
+     */
+    public boolean tryEnter() {
+        inFlight.incrementAndGet();
+        // Counted before checking, so a drain that saw the gate closed also sees this request
+        if (!open) {
+            exit();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Admits a request made on behalf of an admission, which is let through even if the gate
+     * has closed as long as the admission has not been released. Every successful call must be
+     * paired with {@link #exit()}.
+     * 
+     * @param admission the admission the request belongs to, or null for a new request
+     * @return true if admitted, false if the gate is closed
+     */
+    public boolean tryEnter(Admission admission) {
+        if (admission == null || !admission.isActive()) {
+            return tryEnter();
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Marks an admitted request or invocation as finished.
+     */
+    public void exit() {
+        if (inFlight.decrementAndGet() <= 0 && !open) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Admits an invocation.
+     * 
+     * @return the admission, to be released when the invocation completes, or null if the
+     *         gate is closed
+     */
+    public Admission tryAdmit() {
+        return tryEnter() ? new Admission() : null;
+    }
+    
+    /**
+     * Admits work that outlives the invocation it was started by, such as a lazily consumed
+     * stream, on behalf of that invocation's admission. The extension is counted in flight
+     * until it is released.
+     * 
+     * @param admission the admission of the invocation, or null
+     * @return the extension, or null if there is no active admission to extend
+     */
+    public Admission extend(Admission admission) {
+        if (admission == null || !admission.isActive()) {
+            return null;
+        }
+        inFlight.incrementAndGet();
+        return new Admission();
+    }
+    
+    /**
+     * Gets the admission of the invocation running on the current thread.
+     * 
+     * @return the admission, or null if the thread runs no admitted invocation
+     */
+    public Admission current() {
+        return current.get();
+    }
+    
+    /**
+     * Runs an invocation under its admission, making it visible through {@link #current()}.
+     * 
+     * @param admission the admission obtained from {@link #tryAdmit()}
+     * @param call the invocation
+     * @param <T> the result type
+     * @return the result of the invocation
+     * @throws PluginException if the invocation fails
+     */
+    public <T> T callAdmitted(Admission admission, PluginCall<T> call) throws PluginException {
+        Admission previous = current.get();
+        current.set(admission);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+    
+    /**
+     * Stops admitting new requests. Requests in flight, and the requests of admitted
+     * invocations, are not affected.
+     */
+    public void close() {
+        open = false;
+    }
+    
+    /**
+     * Checks whether the gate still admits new requests.
+     * 
+     * @return true if the gate is open
+     */
+    public boolean isOpen() {
+        return open;
+    }
+    
+    /**
+     * Gets the number of requests and invocations in flight.
+     * 
+     * @return the in-flight count
+     */
+    public int getInFlight() {
+        return Math.max(0, inFlight.get());
+    }
+    
+    /**
+     * Waits until nothing is in flight any more.
+     * 
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the gate drained, false if the timeout elapsed first
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (drained) {
+            while (inFlight.get() > 0) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                // Exits only signal once the gate is closed; poll in case it is still open
+                TimeUnit.NANOSECONDS.timedWait(drained, open ? Math.min(remainingNanos, 10_000_000L) : remainingNanos);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * The admission of an invocation, counted in flight until released.
+     */
+    public final class Admission {
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        private Admission() {
+        }
+        
+        /**
+         * Checks whether the admission still lets its requests through.
+         * 
+         * @return true until the admission is released
+         */
+        public boolean isActive() {
+            return !released.get();
+        }
+        
+        /**
+         * Releases the admission; later calls have no effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                exit();
+            }
+        }
+    }
+}
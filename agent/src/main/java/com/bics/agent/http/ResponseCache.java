@@ -0,0 +1,351 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded in-memory cache of GET responses for one plugin.
+ * Only endpoints with a TTL configured under {@code http.cache.ttlMs.<PluginName>} are cached,
+ * keyed by their endpoint template (e.g. {@code /numbers/{id}}). Entries are evicted in LRU
+ * order once {@code http.cache.maxEntries} is reached. Expired entries that carry an ETag are
+ * kept so they can be revalidated with {@code If-None-Match}, and entries read after
+ * {@code refreshAheadRatio} of their TTL are flagged for a background refresh.
+ * <p>
+ * A mutation on a path invalidates the cached entries for that path and all its ancestors,
+ * so {@code POST /numbers/123/activate} drops both {@code /numbers/123} and {@code /numbers}.
+ * Each invalidation also advances a generation counter recorded per path. A GET captures
+ * the {@link #generation()} before it is sent and stores its response with
+ * {@link #put(String, String, String, String, long, long)}, which drops the response if its
+ * path has been invalidated since, so a read that raced a write never caches the old body.
+ * <p>
+ * The settings can be changed in place with {@link #reconfigure(String, AgentConfiguration)}.
+ */
+public class ResponseCache {
+    
+    private volatile boolean enabled;
+    private volatile int maxEntries;
+    private volatile double refreshAheadRatio;
+    private volatile Map<String, Long> ttlNanosByTemplate;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Set<String>> keysByPath = new HashMap<>();
+    private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+    private long generation;
+    private long forgottenGeneration;
+    
+    /**
+     * Creates the response cache of a plugin from the {@code http.cache} settings.
+     * 
+     * @param pluginName the plugin name selecting the per-endpoint TTLs
+     * @param configuration the agent configuration
+     */
+    public ResponseCache(String pluginName, AgentConfiguration configuration) {
+        this(configuration.getBoolean("http.cache.enabled", true),
+             configuration.getInt("http.cache.maxEntries", 10000),
+             configuration.getDouble("http.cache.refreshAheadRatio", 0.8),
+             readTtls(configuration, pluginName));
+    }
+    
+    /**
+     * Creates a response cache with explicit settings.
+     * 
+     * @param enabled whether caching is enabled at all
+     * @param maxEntries maximum number of entries before LRU eviction
+     * @param refreshAheadRatio fraction of the TTL after which reads trigger a refresh (0 disables)
+     * @param ttlMsByTemplate TTL in milliseconds per endpoint template
+     */
+    public ResponseCache(boolean enabled, int maxEntries, double refreshAheadRatio, Map<String, Long> ttlMsByTemplate) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        apply(enabled, maxEntries, refreshAheadRatio, ttlMsByTemplate);
+    }
+    
+    /**
+     * Applies the current {@code http.cache} settings of the given configuration in place.
+     * Cached entries are kept unless the TTLs changed, in which case the cache is cleared;
+     * a lower {@code maxEntries} evicts the least recently used entries.
+     * 
+     * @param pluginName the plugin name selecting the per-endpoint TTLs
+     * @param configuration the agent configuration
+     */
+    public synchronized void reconfigure(String pluginName, AgentConfiguration configuration) {
+        Map<String, Long> previousTtls = ttlNanosByTemplate;
+        apply(configuration.getBoolean("http.cache.enabled", true),
+              configuration.getInt("http.cache.maxEntries", 10000),
+              configuration.getDouble("http.cache.refreshAheadRatio", 0.8),
+              readTtls(configuration, pluginName));
+        if (!enabled || !ttlNanosByTemplate.equals(previousTtls)) {
+            entries.clear();
+            keysByPath.clear();
+            forgottenGeneration = ++generation;
+            invalidatedAt.clear();
+        }
+        evictIfNeeded();
+    }
+    
+    private synchronized void apply(boolean enabled, int maxEntries, double refreshAheadRatio,
+                                    Map<String, Long> ttlMsByTemplate) {
+        Map<String, Long> ttls = new HashMap<>();
+        for (Map.Entry<String, Long> ttl : ttlMsByTemplate.entrySet()) {
+            if (ttl.getValue() != null && ttl.getValue() > 0) {
+                ttls.put(ttl.getKey(), TimeUnit.MILLISECONDS.toNanos(ttl.getValue()));
+            }
+        }
+        this.maxEntries = Math.max(1, maxEntries);
+        this.refreshAheadRatio = refreshAheadRatio;
+        this.ttlNanosByTemplate = ttls;
+        this.enabled = enabled && !ttls.isEmpty();
+    }
+    
+    /**
+     * Gets the TTL for an endpoint.
+     * 
+     * @param endpoint the concrete endpoint path
+     * @return the TTL in nanoseconds, or 0 if responses of this endpoint are not cached
+     */
+    public long ttlNanos(String endpoint) {
+        if (!enabled) {
+            return 0L;
+        }
+        return ttlNanosByTemplate.getOrDefault(EndpointTemplates.template(endpoint), 0L);
+    }
+    
+    /**
+     * Looks up an entry, dropping it if it has expired and cannot be revalidated.
+     * 
+     * @param key the cache key (endpoint path plus query)
+     * @return the entry, possibly stale, or null if absent
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.isFresh() && entry.etag == null) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+    
+    /**
+     * Stores a response.
+     * 
+     * @param key the cache key (endpoint path plus query)
+     * @param path the endpoint path, used for invalidation
+     * @param body the response body
+     * @param etag the response ETag, or null
+     * @param ttlNanos the time to live
+     */
+    public synchronized void put(String key, String path, String body, String etag, long ttlNanos) {
+        Entry previous = entries.put(key, new Entry(path, body, etag, ttlNanos, refreshAheadRatio));
+        if (previous == null) {
+            keysByPath.computeIfAbsent(path, p -> new HashSet<>()).add(key);
+        }
+        evictIfNeeded();
+    }
+    
+    /**
+     * Stores the response of a GET unless its path was invalidated after the GET started.
+     * 
+     * @param key the cache key (endpoint path plus query)
+     * @param path the endpoint path, used for invalidation
+     * @param body the response body
+     * @param etag the response ETag, or null
+     * @param ttlNanos the time to live
+     * @param startGeneration the {@link #generation()} captured before the GET was sent
+     * @return true if the response was stored
+     */
+    public synchronized boolean put(String key, String path, String body, String etag, long ttlNanos,
+                                    long startGeneration) {
+        if (invalidatedSince(path, startGeneration)) {
+            return false;
+        }
+        put(key, path, body, etag, ttlNanos);
+        return true;
+    }
+    
+    /**
+     * Gets the current invalidation generation, to be captured before sending a GET whose
+     * response will be cached.
+     * 
+     * @return the generation
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+    
+    /**
+     * Extends the lifetime of an entry after the server confirmed it is unchanged (HTTP 304).
+     * 
+     * @param key the cache key
+     * @param ttlNanos the new time to live
+     * @return the renewed entry, or null if it was evicted or invalidated meanwhile
+     */
+    public synchronized Entry renew(String key, long ttlNanos) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Entry renewed = new Entry(entry.path, entry.body, entry.etag, ttlNanos, refreshAheadRatio);
+        entries.put(key, renewed);
+        return renewed;
+    }
+    
+    /**
+     * Extends the lifetime of an entry after a 304, unless its path was invalidated after the
+     * revalidating GET started; the entry found then is not the one that was revalidated.
+     * 
+     * @param key the cache key
+     * @param ttlNanos the new time to live
+     * @param startGeneration the {@link #generation()} captured before the GET was sent
+     * @return the renewed entry, or null if it was evicted or invalidated meanwhile
+     */
+    public synchronized Entry renew(String key, long ttlNanos, long startGeneration) {
+        Entry entry = entries.get(key);
+        if (entry == null || invalidatedSince(entry.path, startGeneration)) {
+            return null;
+        }
+        return renew(key, ttlNanos);
+    }
+    
+    /**
+     * Invalidates the entries of a mutated path and of all its ancestor paths.
+     * 
+     * @param endpoint the endpoint that was mutated
+     */
+    public synchronized void invalidate(String endpoint) {
+        if (!enabled) {
+            return;
+        }
+        long invalidation = ++generation;
+        int queryStart = endpoint.indexOf('?');
+        String path = queryStart >= 0 ? endpoint.substring(0, queryStart) : endpoint;
+        while (!path.isEmpty()) {
+            invalidatedAt.remove(path);
+            invalidatedAt.put(path, invalidation);
+            Set<String> keys = keysByPath.remove(path);
+            if (keys != null) {
+                for (String key : keys) {
+                    entries.remove(key);
+                }
+            }
+            int lastSlash = path.lastIndexOf('/');
+            path = lastSlash > 0 ? path.substring(0, lastSlash) : "";
+        }
+        // Keep the per-path generations bounded; a forgotten path counts as invalidated by the
+        // most recent generation forgotten, which only drops a few more racing responses
+        Iterator<Map.Entry<String, Long>> iterator = invalidatedAt.entrySet().iterator();
+        while (invalidatedAt.size() > maxEntries && iterator.hasNext()) {
+            forgottenGeneration = Math.max(forgottenGeneration, iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Gets the number of cached entries.
+     * 
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> readTtls(AgentConfiguration configuration, String pluginName) {
+        Map<String, Long> ttls = new HashMap<>();
+        Object configured = configuration.getValue("http.cache.ttlMs." + pluginName);
+        if (configured instanceof Map) {
+            for (Map.Entry<String, Object> ttl : ((Map<String, Object>) configured).entrySet()) {
+                if (ttl.getValue() instanceof Number) {
+                    ttls.put(ttl.getKey(), ((Number) ttl.getValue()).longValue());
+                }
+            }
+        }
+        return ttls;
+    }
+    
+    private boolean invalidatedSince(String path, long startGeneration) {
+        Long invalidation = invalidatedAt.get(path);
+        return startGeneration < forgottenGeneration || (invalidation != null && invalidation > startGeneration);
+    }
+    
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            removeFromIndex(eldest.getKey(), eldest.getValue().path);
+        }
+    }
+    
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            removeFromIndex(key, removed.path);
+        }
+    }
+    
+    private void removeFromIndex(String key, String path) {
+        Set<String> keys = keysByPath.get(path);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByPath.remove(path);
+            }
+        }
+    }
+    
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+        private final String path;
+        private final String body;
+        private final String etag;
+        private final long expiresAtNanos;
+        private final long refreshAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        
+        Entry(String path, String body, String etag, long ttlNanos, double refreshAheadRatio) {
+            long now = System.nanoTime();
+            this.path = path;
+            this.body = body;
+            this.etag = etag;
+            this.expiresAtNanos = now + ttlNanos;
+            this.refreshAtNanos = refreshAheadRatio > 0 && refreshAheadRatio < 1
+                    ? now + (long) (ttlNanos * refreshAheadRatio) : Long.MAX_VALUE;
+        }
+        
+        public String getBody() {
+            return body;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+        
+        public boolean isFresh() {
+            return System.nanoTime() - expiresAtNanos < 0;
+        }
+        
+        /**
+         * Claims the background refresh of a fresh entry that is close to expiry.
+         * 
+         * @return true if the caller should refresh the entry
+         */
+        public boolean claimRefresh() {
+            return System.nanoTime() - refreshAtNanos >= 0 && refreshing.compareAndSet(false, true);
+        }
+        
+        /**
+         * Releases a refresh claim after a refresh that did not replace the entry.
+         */
+        public void releaseRefresh() {
+            refreshing.set(false);
+        }
+    }
+}
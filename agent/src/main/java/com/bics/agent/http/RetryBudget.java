@@ -0,0 +1,81 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry budget that caps retries to a fraction of the request volume.
+ * Every request deposits {@code ratio} tokens and every retry withdraws one, with a small
+ * reserve so low-traffic clients can still retry. During a brownout the budget drains and
+ * further failures are surfaced immediately instead of multiplying load on the backend.
+ * Tokens are tracked in thousandths in a single atomic counter, so the budget is lock-free.
+ */
+public class RetryBudget {
+    private static final long SCALE = 1000L;
+    
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+    
+    /**
+     * Creates a retry budget from the {@code http.retry.budget} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     */
+    public RetryBudget(AgentConfiguration configuration) {
+        this(configuration.getDouble("http.retry.budget.ratio", 0.2),
+             configuration.getInt("http.retry.budget.minReserve", 10));
+    }
+    
+    /**
+     * Creates a retry budget with explicit settings.
+     * 
+     * @param ratio retries allowed per request (e.g. 0.2 allows one retry per five requests)
+     * @param minReserve retries available before any request has been recorded
+     */
+    public RetryBudget(double ratio, int minReserve) {
+        this.depositPerRequest = Math.round(Math.max(0.0, ratio) * SCALE);
+        long reserve = Math.max(0, minReserve) * SCALE;
+        this.maxBalance = reserve + Math.max(SCALE, depositPerRequest * 100);
+        this.balance = new AtomicLong(reserve);
+    }
+    
+    /**
+     * Records a new request, earning retry credit.
+     */
+    public void recordRequest() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + depositPerRequest)));
+    }
+    
+    /**
+     * Attempts to withdraw credit for one retry.
+     * 
+     * @return true if the retry is allowed, false if the budget is exhausted
+     */
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+    
+    /**
+     * Gets the number of retries currently available.
+     * 
+     * @return the whole number of retries left in the budget
+     */
+    public long getAvailableRetries() {
+        return balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,141 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.HttpHostConnectException;
+import org.apache.hc.client5.http.utils.DateUtils;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for BICS API requests, driven by the {@code http.retry} settings.
+ * Failures are classified as retryable (I/O errors and HTTP 429/502/503/504) or permanent,
+ * and retry delays follow the "decorrelated jitter" scheme:
+ * {@code delay = min(maxBackoff, random(backoff, previousDelay * 3))}, never shorter than a
+ * server supplied {@code Retry-After}.
+ * <p>
+ * Non-idempotent requests (POST) are only retried when the request was provably not
+ * processed: the connection could not be established, or the server answered 429 or 503.
+ */
+public class RetryPolicy {
+    
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final long maxRetryAfterMs;
+    
+    /**
+     * Creates a retry policy from the {@code http.retry} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     */
+    public RetryPolicy(AgentConfiguration configuration) {
+        this(configuration.getInt("http.retry.maxAttempts", 3),
+             configuration.getLong("http.retry.backoffMs", 1000L),
+             configuration.getLong("http.retry.maxBackoffMs", 20000L),
+             configuration.getLong("http.retry.maxRetryAfterMs", 30000L));
+    }
+    
+    /**
+     * Creates a retry policy with explicit settings.
+     * 
+     * @param maxAttempts total attempts including the first one (1 disables retries)
+     * @param backoffMs base delay before the first retry
+     * @param maxBackoffMs upper bound for any computed delay
+     * @param maxRetryAfterMs longest Retry-After the client is willing to wait for
+     */
+    public RetryPolicy(int maxAttempts, long backoffMs, long maxBackoffMs, long maxRetryAfterMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(1L, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+        this.maxRetryAfterMs = maxRetryAfterMs;
+    }
+    
+    /**
+     * Gets the maximum number of attempts, including the initial one.
+     * 
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    
+    /**
+     * Checks whether a response status is worth retrying for the given method.
+     * 
+     * @param method the HTTP method
+     * @param statusCode the response status code
+     * @return true if the request may be retried
+     */
+    public boolean isRetryable(String method, int statusCode) {
+        if (isIdempotent(method)) {
+            return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+        return statusCode == 429 || statusCode == 503;
+    }
+    
+    /**
+     * Checks whether a transport failure is worth retrying for the given method.
+     * 
+     * @param method the HTTP method
+     * @param failure the failure raised while executing the request
+     * @return true if the request may be retried
+     */
+    public boolean isRetryable(String method, Throwable failure) {
+        if (failure instanceof UnknownHostException || failure instanceof SSLException) {
+            return false;
+        }
+        if (failure instanceof ConnectException
+                || failure instanceof ConnectTimeoutException
+                || failure instanceof HttpHostConnectException) {
+            return true;
+        }
+        return isIdempotent(method) && failure instanceof IOException;
+    }
+    
+    /**
+     * Computes the delay before the next attempt.
+     * 
+     * @param previousDelayMs the previous delay, or 0 before the first retry
+     * @param retryAfterMs the server supplied Retry-After in milliseconds, or -1 if absent
+     * @return the delay in milliseconds, or -1 if the server asked to wait longer than allowed
+     */
+    public long nextDelayMs(long previousDelayMs, long retryAfterMs) {
+        if (retryAfterMs > maxRetryAfterMs) {
+            return -1L;
+        }
+        long upper = Math.max(backoffMs, previousDelayMs * 3);
+        long delay = Math.min(maxBackoffMs, upper > backoffMs
+                ? ThreadLocalRandom.current().nextLong(backoffMs, upper + 1)
+                : backoffMs);
+        return Math.max(delay, retryAfterMs);
+    }
+    
+    /**
+     * Parses a {@code Retry-After} header value in delta-seconds or HTTP-date form.
+     * 
+     * @param value the header value, may be null
+     * @return the delay in milliseconds, or -1 if absent or malformed
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1L;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0L, Long.parseLong(trimmed) * 1000L);
+        } catch (NumberFormatException e) {
+            Instant date = DateUtils.parseStandardDate(trimmed);
+            return date != null ? Math.max(0L, date.toEpochMilli() - System.currentTimeMillis()) : -1L;
+        }
+    }
+    
+    private static boolean isIdempotent(String method) {
+        return !"POST".equals(method);
+    }
+}
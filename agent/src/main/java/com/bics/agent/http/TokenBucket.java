@@ -0,0 +1,93 @@
+package com.bics.agent.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Tokens accrue at {@code permitsPerSecond} up to {@code burst};
+ * a caller either takes a token immediately or reserves the next one and waits for it.
+ * Reservations are only granted when the wait stays within the caller's limit, so a queue
+ * of waiting callers never grows beyond what can be served in that time.
+ */
+public class TokenBucket {
+    
+    private double permitsPerNano;
+    private double burst;
+    private double tokens;
+    private long lastRefillNanos;
+    
+    /**
+     * Creates a full bucket.
+     * 
+     * @param permitsPerSecond the sustained rate; 0 or less means unlimited
+     * @param burst the bucket capacity
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+    
+    /**
+     * Checks whether the bucket limits anything.
+     * 
+     * @return false if the bucket was created with an unlimited rate
+     */
+    public synchronized boolean isLimited() {
+        return permitsPerNano > 0;
+    }
+    
+    /**
+     * Changes the rate and capacity in place. Tokens accrued so far are kept, up to the
+     * new capacity; reservations already granted are not affected.
+     * 
+     * @param permitsPerSecond the sustained rate; 0 or less means unlimited
+     * @param burst the bucket capacity
+     */
+    public synchronized void setRate(double permitsPerSecond, int burst) {
+        long now = System.nanoTime();
+        if (isLimited()) {
+            tokens = Math.min(this.burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+        }
+        lastRefillNanos = now;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(tokens, this.burst);
+    }
+    
+    /**
+     * Takes or reserves one token.
+     * 
+     * @param maxWaitNanos the longest the caller is willing to wait
+     * @return the time to wait before using the token, 0 if it is available now,
+     *         or -1 if it would not be available within {@code maxWaitNanos}
+     */
+    public synchronized long reserve(long maxWaitNanos) {
+        if (!isLimited()) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return 0L;
+        }
+        long waitNanos = (long) Math.ceil((1.0 - tokens) / permitsPerNano);
+        if (waitNanos > maxWaitNanos) {
+            return -1L;
+        }
+        tokens -= 1.0;
+        return waitNanos;
+    }
+    
+    /**
+     * Returns a token that was taken or reserved but not used, e.g. because the call was
+     * refused by a later admission check.
+     */
+    public synchronized void refund() {
+        if (isLimited()) {
+            tokens = Math.min(burst, tokens + 1.0);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.bics.agent.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator that decodes the elements of a JSON array one at a time from a streaming parser.
+ * Only the current element is materialized, so memory use stays constant regardless of the
+ * size of the response. The array may be the document root, or the first array-valued
+ * field of a root object (for example {@code {"total": 2, "items": [...]}}).
+ * 
+ * @param <T> the element type
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+    
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final Closeable resource;
+    private boolean positioned = false;
+    private boolean finished = false;
+    private T next;
+    
+    /**
+     * Creates a new iterator.
+     * 
+     * @param parser the parser positioned before the document
+     * @param reader the reader used to bind each element
+     * @param resource an additional resource released on close (can be null)
+     */
+    public JsonArrayIterator(JsonParser parser, ObjectReader reader, Closeable resource) {
+        this.parser = parser;
+        this.reader = reader;
+        this.resource = resource;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            if (!positioned) {
+                positioned = true;
+                if (!moveToArray()) {
+                    close();
+                    return false;
+                }
+            }
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                close();
+                return false;
+            }
+            next = reader.readValue(parser);
+            return next != null;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed to read JSON array element", e);
+        }
+    }
+    
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T current = next;
+        next = null;
+        return current;
+    }
+    
+    /**
+     * Wraps this iterator in a sequential stream that releases the underlying resources on close.
+     * 
+     * @return a stream of the array elements
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+    
+    @Override
+    public void close() {
+        finished = true;
+        next = null;
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // Nothing sensible to do while releasing a response
+        }
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException ignored) {
+                // Nothing sensible to do while releasing a response
+            }
+        }
+    }
+    
+    private boolean moveToArray() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return true;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.bics.agent.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes JSON request bodies with a streaming generator into a per-thread scratch buffer.
+ * The buffer is reused across calls, so encoding a body costs one exact-size array for the
+ * result and no intermediate strings. Buffers that grew beyond {@value #MAX_RETAINED_BYTES}
+ * bytes are dropped after use rather than retained by the thread.
+ */
+public final class JsonBodyEncoder {
+    
+    static final int MAX_RETAINED_BYTES = 64 * 1024;
+    private static final int INITIAL_BYTES = 1024;
+    private static final ThreadLocal<ScratchBuffer> BUFFERS = ThreadLocal.withInitial(ScratchBuffer::new);
+    
+    private JsonBodyEncoder() {
+    }
+    
+    /**
+     * Encodes a body written by the given writer.
+     * 
+     * @param writer the body writer
+     * @return the UTF-8 encoded body
+     * @throws IOException if writing fails
+     */
+    public static byte[] encode(JsonBodyWriter writer) throws IOException {
+        ScratchBuffer buffer = BUFFERS.get();
+        if (buffer.inUse) {
+            buffer = new ScratchBuffer();
+        }
+        buffer.inUse = true;
+        try {
+            buffer.reset();
+            try (JsonGenerator generator = JsonMappers.mapper().getFactory().createGenerator(buffer)) {
+                writer.write(generator);
+            }
+            return buffer.toByteArray();
+        } finally {
+            buffer.inUse = false;
+            if (buffer.capacity() > MAX_RETAINED_BYTES) {
+                BUFFERS.remove();
+            }
+        }
+    }
+    
+    /**
+     * Encodes a value with the cached writer for its type.
+     * 
+     * @param value the value to encode
+     * @return the UTF-8 encoded body
+     * @throws IOException if writing fails
+     */
+    public static byte[] encodeValue(Object value) throws IOException {
+        return encode(generator -> JsonMappers.writer(value.getClass()).writeValue(generator, value));
+    }
+    
+    private static final class ScratchBuffer extends ByteArrayOutputStream {
+        private boolean inUse = false;
+        
+        ScratchBuffer() {
+            super(INITIAL_BYTES);
+        }
+        
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
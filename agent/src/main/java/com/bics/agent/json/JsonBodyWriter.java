@@ -0,0 +1,20 @@
+package com.bics.agent.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes a JSON request body directly to a streaming generator.
+ */
+@FunctionalInterface
+public interface JsonBodyWriter {
+    
+    /**
+     * Writes the body.
+     * 
+     * @param generator the generator to write to; it is flushed and closed by the caller
+     * @throws IOException if writing fails
+     */
+    void write(JsonGenerator generator) throws IOException;
+}
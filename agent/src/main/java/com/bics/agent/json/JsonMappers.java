@@ -0,0 +1,76 @@
+package com.bics.agent.json;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM-wide JSON mapper shared by all plugins.
+ * The mapper is configured once and never changed afterwards; callers bind through the
+ * immutable {@link ObjectReader} and {@link ObjectWriter} instances cached per type, so
+ * serializer lookup and introspection are paid once per type rather than once per call.
+ * The Blackbird module is registered when it is on the classpath ({@code -Pblackbird}).
+ */
+public final class JsonMappers {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JsonMappers.class);
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+    
+    private static final ObjectMapper MAPPER = createMapper();
+    private static final ConcurrentHashMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+    
+    private JsonMappers() {
+    }
+    
+    /**
+     * Gets the shared mapper. It must not be reconfigured.
+     * 
+     * @return the shared mapper
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+    
+    /**
+     * Gets the cached reader for a type. Unknown properties are ignored.
+     * 
+     * @param type the target type
+     * @return the reader
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+    
+    /**
+     * Gets the cached writer for a type.
+     * 
+     * @param type the source type
+     * @return the writer
+     */
+    public static ObjectWriter writer(Class<?> type) {
+        return WRITERS.computeIfAbsent(type, MAPPER::writerFor);
+    }
+    
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        try {
+            mapper.registerModule((Module) Class.forName(BLACKBIRD_MODULE).getDeclaredConstructor().newInstance());
+            logger.info("Registered Jackson Blackbird module");
+        } catch (ClassNotFoundException e) {
+            logger.debug("Jackson Blackbird module not on classpath");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Failed to register Jackson Blackbird module: {}", e.getMessage());
+        }
+        return mapper;
+    }
+}
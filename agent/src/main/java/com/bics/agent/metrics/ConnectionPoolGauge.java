@@ -0,0 +1,71 @@
+package com.bics.agent.metrics;
+
+import org.apache.hc.core5.pool.PoolStats;
+
+import java.util.function.Supplier;
+
+/**
+ * Gauges of an HTTP connection pool, read from its {@link PoolStats} on demand.
+ * The supplier may return null while the pool has not been created yet.
+ */
+public class ConnectionPoolGauge implements ConnectionPoolMXBean {
+    
+    private final String transport;
+    private final String kind;
+    private final Supplier<PoolStats> stats;
+    
+    /**
+     * Creates a gauge.
+     * 
+     * @param transport the name of the owning transport
+     * @param kind the pool kind, e.g. {@code classic} or {@code async}
+     * @param stats supplier of the current pool statistics
+     */
+    public ConnectionPoolGauge(String transport, String kind, Supplier<PoolStats> stats) {
+        this.transport = transport;
+        this.kind = kind;
+        this.stats = stats;
+    }
+    
+    /**
+     * Gets the name of the owning transport.
+     * 
+     * @return the transport name
+     */
+    public String getTransport() {
+        return transport;
+    }
+    
+    /**
+     * Gets the pool kind.
+     * 
+     * @return the pool kind
+     */
+    public String getKind() {
+        return kind;
+    }
+    
+    @Override
+    public int getLeased() {
+        PoolStats current = stats.get();
+        return current != null ? current.getLeased() : 0;
+    }
+    
+    @Override
+    public int getAvailable() {
+        PoolStats current = stats.get();
+        return current != null ? current.getAvailable() : 0;
+    }
+    
+    @Override
+    public int getPending() {
+        PoolStats current = stats.get();
+        return current != null ? current.getPending() : 0;
+    }
+    
+    @Override
+    public int getMax() {
+        PoolStats current = stats.get();
+        return current != null ? current.getMax() : 0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.bics.agent.metrics;
+
+/**
+ * JMX view of an HTTP connection pool.
+ */
+public interface ConnectionPoolMXBean {
+    
+    int getLeased();
+    
+    int getAvailable();
+    
+    int getPending();
+    
+    int getMax();
+}
@@ -0,0 +1,115 @@
+package com.bics.agent.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram with log-linear buckets.
+ * Values are recorded in microseconds. Every power of two is split into
+ * {@value #SUB_BUCKETS_PER_POWER} linear sub-buckets, which bounds the relative error of a
+ * reported percentile to about 3% over the whole range, as in HdrHistogram with two
+ * significant digits. Recording is a couple of atomic increments on a preallocated array.
+ */
+public class LatencyHistogram {
+    
+    static final int SUB_BUCKETS_PER_POWER = 32;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int LINEAR_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+    
+    /**
+     * Records a duration.
+     * 
+     * @param nanos the duration in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.min(MAX_VALUE, Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        counts.incrementAndGet(indexOf(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // retry until the maximum is at least this value
+        }
+    }
+    
+    /**
+     * Gets the number of recorded values.
+     * 
+     * @return the count
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+    
+    /**
+     * Gets the sum of recorded values.
+     * 
+     * @return the sum in microseconds
+     */
+    public long getSumMicros() {
+        return totalMicros.get();
+    }
+    
+    /**
+     * Gets the largest recorded value.
+     * 
+     * @return the maximum in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+    
+    /**
+     * Gets the value at a percentile. Concurrent recording may make the result slightly
+     * inconsistent with {@link #getCount()}, which is acceptable for monitoring.
+     * 
+     * @param percentile the percentile, between 0 and 100
+     * @return the value in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+    
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift);
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS_PER_POWER + (subBucket - SUB_BUCKETS_PER_POWER);
+    }
+    
+    static long highestEquivalent(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int offset = index - LINEAR_BUCKETS;
+        int shift = offset / SUB_BUCKETS_PER_POWER + 1;
+        long subBucket = offset % SUB_BUCKETS_PER_POWER + SUB_BUCKETS_PER_POWER;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bics.agent.metrics;
+
+import com.bics.agent.config.AgentConfiguration;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.AsyncServerBootstrap;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Embedded HTTP endpoint serving the {@link MetricsRegistry} in the Prometheus text format
+ * on {@code GET <path>}. It binds to the loopback interface by default.
+ * A readiness probe on {@code GET <readinessPath>} answers 200 once the readiness check
+ * passes and 503 before.
+ */
+public class MetricsEndpoint implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEndpoint.class);
+    private static final ContentType TEXT_FORMAT = ContentType.create("text/plain", StandardCharsets.UTF_8);
+    
+    private final MetricsRegistry registry;
+    private final String host;
+    private final int port;
+    private final String path;
+    private final String readinessPath;
+    private volatile BooleanSupplier readinessCheck = () -> true;
+    private HttpAsyncServer server;
+    private InetSocketAddress address;
+    
+    /**
+     * Creates an endpoint from the {@code metrics.scrape} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     * @param registry the registry to serve
+     */
+    public MetricsEndpoint(AgentConfiguration configuration, MetricsRegistry registry) {
+        this(registry,
+             configuration.getString("metrics.scrape.host", "127.0.0.1"),
+             configuration.getInt("metrics.scrape.port", 9464),
+             configuration.getString("metrics.scrape.path", "/metrics"),
+             configuration.getString("metrics.scrape.readinessPath", "/ready"));
+    }
+    
+    /**
+     * Creates an endpoint with explicit settings.
+     * 
+     * @param registry the registry to serve
+     * @param host the address to bind to
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @param path the scrape path
+     * @param readinessPath the readiness probe path
+     */
+    public MetricsEndpoint(MetricsRegistry registry, String host, int port, String path, String readinessPath) {
+        this.registry = registry;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.readinessPath = readinessPath;
+    }
+    
+    /**
+     * Sets the check answered by the readiness probe.
+     * 
+     * @param readinessCheck returns true once the agent is ready
+     */
+    public void setReadinessCheck(BooleanSupplier readinessCheck) {
+        this.readinessCheck = readinessCheck;
+    }
+    
+    /**
+     * Starts listening.
+     * 
+     * @throws IOException if the endpoint cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpAsyncServer created = AsyncServerBootstrap.bootstrap()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(1)
+                        .setSoReuseAddress(true)
+                        .build())
+                .register(path, new ScrapeHandler(false))
+                .register(readinessPath, new ScrapeHandler(true))
+                .create();
+        created.start();
+        try {
+            ListenerEndpoint endpoint = created.listen(new InetSocketAddress(host, port), URIScheme.HTTP).get();
+            address = (InetSocketAddress) endpoint.getAddress();
+        } catch (InterruptedException e) {
+            created.close(CloseMode.IMMEDIATE);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while binding metrics endpoint", e);
+        } catch (ExecutionException e) {
+            created.close(CloseMode.IMMEDIATE);
+            throw new IOException("Failed to bind metrics endpoint to " + host + ":" + port, e.getCause());
+        }
+        server = created;
+        logger.info("Metrics endpoint listening on {}{}", address, path);
+    }
+    
+    /**
+     * Gets the bound address.
+     * 
+     * @return the bound address, or null if the endpoint is not started
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return address;
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.initiateShutdown();
+            try {
+                server.awaitShutdown(TimeValue.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server.close(CloseMode.GRACEFUL);
+            server = null;
+            address = null;
+            logger.info("Metrics endpoint stopped");
+        }
+    }
+    
+    private final class ScrapeHandler implements AsyncServerRequestHandler<Message<HttpRequest, Void>> {
+        private final boolean readiness;
+        
+        ScrapeHandler(boolean readiness) {
+            this.readiness = readiness;
+        }
+        
+        @Override
+        public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                          HttpContext context) {
+            return new BasicRequestConsumer<>(entityDetails != null ? new DiscardingEntityConsumer<>() : null);
+        }
+        
+        @Override
+        public void handle(Message<HttpRequest, Void> message, ResponseTrigger responseTrigger, HttpContext context)
+                throws HttpException, IOException {
+            AsyncResponseBuilder response;
+            if (!"GET".equalsIgnoreCase(message.getHead().getMethod())) {
+                response = AsyncResponseBuilder.create(HttpStatus.SC_METHOD_NOT_ALLOWED);
+            } else if (readiness) {
+                boolean ready = readinessCheck.getAsBoolean();
+                response = AsyncResponseBuilder.create(ready ? HttpStatus.SC_OK : HttpStatus.SC_SERVICE_UNAVAILABLE)
+                        .setEntity(ready ? "ready" : "warming up", TEXT_FORMAT);
+            } else {
+                StringBuilder text = new StringBuilder(4096);
+                registry.writeText(text);
+                response = AsyncResponseBuilder.create(HttpStatus.SC_OK).setEntity(text.toString(), TEXT_FORMAT);
+            }
+            responseTrigger.submitResponse(response.build(), context);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.bics.agent.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Process-wide registry of plugin and connection pool metrics.
+ * Plugins with the same name share their metrics. Once {@link #enableJmx()} has been called,
+ * every operation and pool is also registered as an MXBean under {@code com.bics.agent}.
+ * {@link #writeText(Appendable)} renders all metrics in the Prometheus text format.
+ */
+public final class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final String DOMAIN = "com.bics.agent";
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    
+    private final Map<String, PluginMetrics> plugins = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionPoolGauge> pools = new ConcurrentHashMap<>();
+    private volatile MBeanServer mbeanServer;
+    
+    MetricsRegistry() {
+    }
+    
+    /**
+     * Gets the process-wide registry.
+     * 
+     * @return the registry
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Gets the metrics of a plugin, creating them on first use.
+     * 
+     * @param pluginName the plugin name
+     * @return the plugin metrics
+     */
+    public PluginMetrics forPlugin(String pluginName) {
+        return plugins.computeIfAbsent(pluginName, name -> new PluginMetrics(name, this));
+    }
+    
+    /**
+     * Gets the metrics of all plugins.
+     * 
+     * @return read-only view of the plugin metrics
+     */
+    public Collection<PluginMetrics> getPlugins() {
+        return Collections.unmodifiableCollection(plugins.values());
+    }
+    
+    /**
+     * Registers the gauges of a connection pool.
+     * 
+     * @param gauge the pool gauge
+     */
+    public void registerPool(ConnectionPoolGauge gauge) {
+        pools.put(poolKey(gauge), gauge);
+        if (mbeanServer != null) {
+            register(poolName(gauge), gauge);
+        }
+    }
+    
+    /**
+     * Removes the gauges of a connection pool.
+     * 
+     * @param gauge the pool gauge
+     */
+    public void unregisterPool(ConnectionPoolGauge gauge) {
+        if (pools.remove(poolKey(gauge), gauge) && mbeanServer != null) {
+            unregister(poolName(gauge));
+        }
+    }
+    
+    /**
+     * Gets the gauges of all registered pools.
+     * 
+     * @return read-only view of the pool gauges
+     */
+    public Collection<ConnectionPoolGauge> getPools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+    
+    /**
+     * Registers all current and future metrics with the platform MBean server.
+     */
+    public synchronized void enableJmx() {
+        if (mbeanServer != null) {
+            return;
+        }
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (PluginMetrics plugin : plugins.values()) {
+            for (OperationMetrics operation : plugin.getOperations().values()) {
+                register(operationName(operation), operation);
+            }
+        }
+        for (ConnectionPoolGauge gauge : pools.values()) {
+            register(poolName(gauge), gauge);
+        }
+        logger.info("Metrics registered with JMX under {}", DOMAIN);
+    }
+    
+    /**
+     * Checks whether metrics are exposed over JMX.
+     * 
+     * @return true if {@link #enableJmx()} has been called
+     */
+    public boolean isJmxEnabled() {
+        return mbeanServer != null;
+    }
+    
+    void onOperationCreated(OperationMetrics operation) {
+        if (mbeanServer != null) {
+            register(operationName(operation), operation);
+        }
+    }
+    
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     * 
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void writeText(Appendable out) throws IOException {
+        writeCounter(out, "bics_plugin_requests_total", "Attempts sent, including retries",
+            OperationMetrics::getRequests);
+        writeCounter(out, "bics_plugin_io_errors_total", "Attempts that failed without a response",
+            OperationMetrics::getIoErrors);
+        writeCounter(out, "bics_plugin_cancellations_total", "Attempts cancelled before completing",
+            OperationMetrics::getCancellations);
+        writeCounter(out, "bics_plugin_retries_total", "Attempts retried after a failure",
+            OperationMetrics::getRetries);
+        writeCounter(out, "bics_plugin_bytes_sent_total", "Request body bytes sent",
+            OperationMetrics::getBytesOut);
+        writeCounter(out, "bics_plugin_bytes_received_total", "Response body bytes received",
+            OperationMetrics::getBytesIn);
+        writeDirectional(out, "bics_plugin_compressed_bytes_total", "Content-encoded body bytes on the wire",
+            OperationMetrics::getCompressedBytesIn, OperationMetrics::getCompressedBytesOut);
+        writeDirectional(out, "bics_plugin_uncompressed_bytes_total", "Size of content-encoded bodies before encoding",
+            OperationMetrics::getDecodedBytesIn, OperationMetrics::getUncompressedBytesOut);
+        
+        header(out, "bics_plugin_responses_total", "counter", "Responses by status class");
+        for (PluginMetrics plugin : plugins.values()) {
+            for (OperationMetrics operation : plugin.getOperations().values()) {
+                for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                    sample(out, "bics_plugin_responses_total", operation, "class", statusClass + "xx",
+                        operation.getResponses(statusClass));
+                }
+            }
+        }
+        
+        writeSummary(out, "bics_plugin_latency_seconds", "Attempt latency", true);
+        writeSummary(out, "bics_plugin_queue_delay_seconds", "Time waiting for admission by the endpoint limiter", false);
+        
+        header(out, "bics_http_pool_connections", "gauge", "HTTP connection pool connections by state");
+        for (ConnectionPoolGauge gauge : pools.values()) {
+            poolSample(out, gauge, "leased", gauge.getLeased());
+            poolSample(out, gauge, "available", gauge.getAvailable());
+            poolSample(out, gauge, "pending", gauge.getPending());
+            poolSample(out, gauge, "max", gauge.getMax());
+        }
+    }
+    
+    private void writeCounter(Appendable out, String name, String help, ToLongFunction<OperationMetrics> reader) throws IOException {
+        header(out, name, "counter", help);
+        for (PluginMetrics plugin : plugins.values()) {
+            for (OperationMetrics operation : plugin.getOperations().values()) {
+                sample(out, name, operation, null, null, reader.applyAsLong(operation));
+            }
+        }
+    }
+    
+    private void writeDirectional(Appendable out, String name, String help, ToLongFunction<OperationMetrics> responses,
+                                  ToLongFunction<OperationMetrics> requests) throws IOException {
+        header(out, name, "counter", help);
+        for (PluginMetrics plugin : plugins.values()) {
+            for (OperationMetrics operation : plugin.getOperations().values()) {
+                sample(out, name, operation, "direction", "response", responses.applyAsLong(operation));
+                sample(out, name, operation, "direction", "request", requests.applyAsLong(operation));
+            }
+        }
+    }
+    
+    private void writeSummary(Appendable out, String name, String help, boolean latency) throws IOException {
+        header(out, name, "summary", help);
+        for (PluginMetrics plugin : plugins.values()) {
+            for (OperationMetrics operation : plugin.getOperations().values()) {
+                LatencyHistogram histogram = latency ? operation.getLatency() : operation.getQueueDelay();
+                for (double quantile : QUANTILES) {
+                    out.append(name);
+                    labels(out, operation, "quantile", Double.toString(quantile));
+                    out.append(' ').append(seconds(histogram.getPercentileMicros(quantile * 100.0))).append('\n');
+                }
+                out.append(name).append("_sum");
+                labels(out, operation, null, null);
+                out.append(' ').append(seconds(histogram.getSumMicros())).append('\n');
+                out.append(name).append("_count");
+                labels(out, operation, null, null);
+                out.append(' ').append(Long.toString(histogram.getCount())).append('\n');
+            }
+        }
+    }
+    
+    private static void header(Appendable out, String name, String type, String help) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void sample(Appendable out, String name, OperationMetrics operation,
+                               String extraLabel, String extraValue, long value) throws IOException {
+        out.append(name);
+        labels(out, operation, extraLabel, extraValue);
+        out.append(' ').append(Long.toString(value)).append('\n');
+    }
+    
+    private static void labels(Appendable out, OperationMetrics operation, String extraLabel, String extraValue)
+            throws IOException {
+        out.append("{plugin=\"");
+        escape(out, operation.getPluginName());
+        out.append("\",operation=\"");
+        escape(out, operation.getOperation());
+        out.append('"');
+        if (extraLabel != null) {
+            out.append(',').append(extraLabel).append("=\"");
+            escape(out, extraValue);
+            out.append('"');
+        }
+        out.append('}');
+    }
+    
+    private static void poolSample(Appendable out, ConnectionPoolGauge gauge, String state, int value)
+            throws IOException {
+        out.append("bics_http_pool_connections{transport=\"");
+        escape(out, gauge.getTransport());
+        out.append("\",kind=\"");
+        escape(out, gauge.getKind());
+        out.append("\",state=\"").append(state).append("\"} ").append(Integer.toString(value)).append('\n');
+    }
+    
+    private static void escape(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+    
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+    
+    private static String poolKey(ConnectionPoolGauge gauge) {
+        return gauge.getTransport() + "/" + gauge.getKind();
+    }
+    
+    private static ObjectName operationName(OperationMetrics operation) {
+        return objectName("type=PluginOperation,plugin=" + ObjectName.quote(operation.getPluginName())
+            + ",operation=" + ObjectName.quote(operation.getOperation()));
+    }
+    
+    private static ObjectName poolName(ConnectionPoolGauge gauge) {
+        return objectName("type=ConnectionPool,transport=" + ObjectName.quote(gauge.getTransport())
+            + ",kind=" + ObjectName.quote(gauge.getKind()));
+    }
+    
+    private static ObjectName objectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + properties, e);
+        }
+    }
+    
+    private synchronized void register(ObjectName name, Object bean) {
+        try {
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to register MBean {}: {}", name, e.getMessage());
+        }
+    }
+    
+    private synchronized void unregister(ObjectName name) {
+        try {
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to unregister MBean {}: {}", name, e.getMessage());
+        }
+    }
+}
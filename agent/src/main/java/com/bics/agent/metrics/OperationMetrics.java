@@ -0,0 +1,310 @@
+package com.bics.agent.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one plugin operation, such as {@code GET /numbers/{id}}.
+ * Every attempt records its latency, its status class or I/O error and the bytes it moved;
+ * the time spent waiting for admission by the endpoint limiter is recorded separately as
+ * queueing delay. Compressed responses and requests additionally record their encoded and
+ * decoded sizes, which show the bandwidth saved by content coding. All recording is lock-free
+ * and does not allocate.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    
+    private final String pluginName;
+    private final String operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram queueDelay = new LatencyHistogram();
+    private final AtomicLongArray statusClasses = new AtomicLongArray(6);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder compressedBytesIn = new LongAdder();
+    private final LongAdder decodedBytesIn = new LongAdder();
+    private final LongAdder compressedBytesOut = new LongAdder();
+    private final LongAdder uncompressedBytesOut = new LongAdder();
+    
+    /**
+     * Creates the metrics of an operation.
+     * 
+     * @param pluginName the plugin name
+     * @param operation the operation key
+     */
+    public OperationMetrics(String pluginName, String operation) {
+        this.pluginName = pluginName;
+        this.operation = operation;
+    }
+    
+    /**
+     * Gets the plugin name.
+     * 
+     * @return the plugin name
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+    
+    /**
+     * Gets the operation key.
+     * 
+     * @return the operation key, e.g. {@code GET /numbers/{id}}
+     */
+    public String getOperation() {
+        return operation;
+    }
+    
+    /**
+     * Records the time an attempt waited before being admitted.
+     * 
+     * @param nanos the queueing delay in nanoseconds
+     */
+    public void recordQueueDelay(long nanos) {
+        queueDelay.recordNanos(nanos);
+    }
+    
+    /**
+     * Records an attempt that received a response.
+     * 
+     * @param statusCode the HTTP status code
+     * @param durationNanos the attempt latency in nanoseconds
+     * @param sentBytes the request body size
+     * @param receivedBytes the response body size, or a negative value if unknown
+     */
+    public void recordResponse(int statusCode, long durationNanos, long sentBytes, long receivedBytes) {
+        requests.increment();
+        latency.recordNanos(durationNanos);
+        int statusClass = statusCode / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            statusClasses.incrementAndGet(statusClass);
+        }
+        bytesOut.add(sentBytes);
+        if (receivedBytes > 0) {
+            bytesIn.add(receivedBytes);
+        }
+    }
+    
+    /**
+     * Records an attempt that failed without a response.
+     * 
+     * @param durationNanos the attempt latency in nanoseconds
+     * @param sentBytes the request body size
+     */
+    public void recordIoError(long durationNanos, long sentBytes) {
+        requests.increment();
+        ioErrors.increment();
+        latency.recordNanos(durationNanos);
+        bytesOut.add(sentBytes);
+    }
+    
+    /**
+     * Records an attempt that was cancelled before it completed.
+     * 
+     * @param durationNanos the time until the cancellation in nanoseconds
+     * @param sentBytes the request body size
+     */
+    public void recordCancellation(long durationNanos, long sentBytes) {
+        requests.increment();
+        cancellations.increment();
+        latency.recordNanos(durationNanos);
+        bytesOut.add(sentBytes);
+    }
+    
+    /**
+     * Records response bytes read from the wire after the response was recorded.
+     * 
+     * @param bytes the number of bytes
+     */
+    public void recordBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+    
+    /**
+     * Records content-encoded response bytes read from the wire.
+     * 
+     * @param bytes the number of encoded bytes
+     */
+    public void recordCompressedBytesIn(long bytes) {
+        bytesIn.add(bytes);
+        compressedBytesIn.add(bytes);
+    }
+    
+    /**
+     * Records bytes decoded from a content-encoded response.
+     * 
+     * @param bytes the number of decoded bytes
+     */
+    public void recordDecodedBytesIn(long bytes) {
+        decodedBytesIn.add(bytes);
+    }
+    
+    /**
+     * Records a request body that was compressed before sending.
+     * 
+     * @param originalBytes the body size before compression
+     * @param compressedBytes the body size after compression
+     */
+    public void recordCompressedRequest(long originalBytes, long compressedBytes) {
+        uncompressedBytesOut.add(originalBytes);
+        compressedBytesOut.add(compressedBytes);
+    }
+    
+    /**
+     * Records that a failed attempt is retried.
+     */
+    public void recordRetry() {
+        retries.increment();
+    }
+    
+    /**
+     * Gets the attempt latency histogram.
+     * 
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    /**
+     * Gets the admission queueing delay histogram.
+     * 
+     * @return the queueing delay histogram
+     */
+    public LatencyHistogram getQueueDelay() {
+        return queueDelay;
+    }
+    
+    /**
+     * Gets the number of responses in a status class.
+     * 
+     * @param statusClass the status class, 1 to 5
+     * @return the response count
+     */
+    public long getResponses(int statusClass) {
+        return statusClass >= 1 && statusClass <= 5 ? statusClasses.get(statusClass) : 0L;
+    }
+    
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    @Override
+    public long getResponses1xx() {
+        return getResponses(1);
+    }
+    
+    @Override
+    public long getResponses2xx() {
+        return getResponses(2);
+    }
+    
+    @Override
+    public long getResponses3xx() {
+        return getResponses(3);
+    }
+    
+    @Override
+    public long getResponses4xx() {
+        return getResponses(4);
+    }
+    
+    @Override
+    public long getResponses5xx() {
+        return getResponses(5);
+    }
+    
+    @Override
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+    
+    @Override
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+    
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+    
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+    
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+    
+    @Override
+    public long getCompressedBytesIn() {
+        return compressedBytesIn.sum();
+    }
+    
+    @Override
+    public long getDecodedBytesIn() {
+        return decodedBytesIn.sum();
+    }
+    
+    @Override
+    public long getCompressedBytesOut() {
+        return compressedBytesOut.sum();
+    }
+    
+    @Override
+    public long getUncompressedBytesOut() {
+        return uncompressedBytesOut.sum();
+    }
+    
+    @Override
+    public long getBytesSavedIn() {
+        return Math.max(0L, getDecodedBytesIn() - getCompressedBytesIn());
+    }
+    
+    @Override
+    public long getBytesSavedOut() {
+        return Math.max(0L, getUncompressedBytesOut() - getCompressedBytesOut());
+    }
+    
+    @Override
+    public long getLatencyP50Micros() {
+        return latency.getPercentileMicros(50.0);
+    }
+    
+    @Override
+    public long getLatencyP99Micros() {
+        return latency.getPercentileMicros(99.0);
+    }
+    
+    @Override
+    public long getLatencyP999Micros() {
+        return latency.getPercentileMicros(99.9);
+    }
+    
+    @Override
+    public long getLatencyMaxMicros() {
+        return latency.getMaxMicros();
+    }
+    
+    @Override
+    public long getQueueDelayP50Micros() {
+        return queueDelay.getPercentileMicros(50.0);
+    }
+    
+    @Override
+    public long getQueueDelayP99Micros() {
+        return queueDelay.getPercentileMicros(99.0);
+    }
+    
+    @Override
+    public long getQueueDelayMaxMicros() {
+        return queueDelay.getMaxMicros();
+    }
+}
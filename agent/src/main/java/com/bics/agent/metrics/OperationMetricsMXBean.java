@@ -0,0 +1,55 @@
+package com.bics.agent.metrics;
+
+/**
+ * JMX view of the metrics of one plugin operation.
+ */
+public interface OperationMetricsMXBean {
+    
+    long getRequests();
+    
+    long getResponses1xx();
+    
+    long getResponses2xx();
+    
+    long getResponses3xx();
+    
+    long getResponses4xx();
+    
+    long getResponses5xx();
+    
+    long getIoErrors();
+    
+    long getCancellations();
+    
+    long getRetries();
+    
+    long getBytesIn();
+    
+    long getBytesOut();
+    
+    long getCompressedBytesIn();
+    
+    long getDecodedBytesIn();
+    
+    long getCompressedBytesOut();
+    
+    long getUncompressedBytesOut();
+    
+    long getBytesSavedIn();
+    
+    long getBytesSavedOut();
+    
+    long getLatencyP50Micros();
+    
+    long getLatencyP99Micros();
+    
+    long getLatencyP999Micros();
+    
+    long getLatencyMaxMicros();
+    
+    long getQueueDelayP50Micros();
+    
+    long getQueueDelayP99Micros();
+    
+    long getQueueDelayMaxMicros();
+}
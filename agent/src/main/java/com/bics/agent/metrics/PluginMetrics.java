@@ -0,0 +1,70 @@
+package com.bics.agent.metrics;
+
+import com.bics.agent.http.EndpointTemplates;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics of one plugin, created on demand per operation template.
+ */
+public class PluginMetrics {
+    
+    private final String pluginName;
+    private final MetricsRegistry registry;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    
+    PluginMetrics(String pluginName, MetricsRegistry registry) {
+        this.pluginName = pluginName;
+        this.registry = registry;
+    }
+    
+    /**
+     * Gets the plugin name.
+     * 
+     * @return the plugin name
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+    
+    /**
+     * Gets the metrics of an operation, creating them on first use.
+     * 
+     * @param method the HTTP method
+     * @param endpoint the concrete endpoint path
+     * @return the operation metrics
+     */
+    public OperationMetrics forOperation(String method, String endpoint) {
+        return forOperationKey(EndpointTemplates.operationKey(method, endpoint));
+    }
+    
+    /**
+     * Gets the metrics of an operation by its precomputed key, creating them on first use.
+     * 
+     * @param key the operation key, as built by {@link EndpointTemplates#operationKey}
+     * @return the operation metrics
+     */
+    public OperationMetrics forOperationKey(String key) {
+        OperationMetrics metrics = operations.get(key);
+        if (metrics == null) {
+            OperationMetrics created = new OperationMetrics(pluginName, key);
+            metrics = operations.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+                registry.onOperationCreated(created);
+            }
+        }
+        return metrics;
+    }
+    
+    /**
+     * Gets all operation metrics created so far.
+     * 
+     * @return read-only map of operation keys to metrics
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+}
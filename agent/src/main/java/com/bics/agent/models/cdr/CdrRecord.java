@@ -0,0 +1,173 @@
+package com.bics.agent.models.cdr;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * CdrRecord model representing a call detail record in the MyNumbers CDR API.
+ * This class is based on the OpenAPI specification response examples.
+ */
+public class CdrRecord {
+    
+    @JsonProperty("record_id")
+    private String recordId;
+    
+    @JsonProperty("phone_number")
+    private String phoneNumber;
+    
+    @JsonProperty("customer_id")
+    private String customerId;
+    
+    @JsonProperty("call_type")
+    private String callType;
+    
+    @JsonProperty("direction")
+    private String direction;
+    
+    @JsonProperty("destination")
+    private String destination;
+    
+    @JsonProperty("start_time")
+    private String startTime;
+    
+    @JsonProperty("end_time")
+    private String endTime;
+    
+    @JsonProperty("duration")
+    private long duration;
+    
+    @JsonProperty("cost")
+    private double cost;
+    
+    @JsonProperty("currency")
+    private String currency;
+    
+    @JsonProperty("status")
+    private String status;
+    
+    // Default constructor
+    public CdrRecord() {}
+    
+    // Constructor with parameters
+    public CdrRecord(String recordId, String phoneNumber, String callType, String startTime, long duration) {
+        this.recordId = recordId;
+        this.phoneNumber = phoneNumber;
+        this.callType = callType;
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+    
+    // Getters and setters
+    public String getRecordId() {
+        return recordId;
+    }
+    
+    public void setRecordId(String recordId) {
+        this.recordId = recordId;
+    }
+    
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+    
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+    
+    public String getCustomerId() {
+        return customerId;
+    }
+    
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+    
+    public String getCallType() {
+        return callType;
+    }
+    
+    public void setCallType(String callType) {
+        this.callType = callType;
+    }
+    
+    public String getDirection() {
+        return direction;
+    }
+    
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+    
+    public String getDestination() {
+        return destination;
+    }
+    
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+    
+    public String getStartTime() {
+        return startTime;
+    }
+    
+    public void setStartTime(String startTime) {
+        this.startTime = startTime;
+    }
+    
+    public String getEndTime() {
+        return endTime;
+    }
+    
+    public void setEndTime(String endTime) {
+        this.endTime = endTime;
+    }
+    
+    public long getDuration() {
+        return duration;
+    }
+    
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+    
+    public double getCost() {
+        return cost;
+    }
+    
+    public void setCost(double cost) {
+        this.cost = cost;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    @Override
+    public String toString() {
+        return "CdrRecord{" +
+                "recordId='" + recordId + '\'' +
+                ", phoneNumber='" + phoneNumber + '\'' +
+                ", customerId='" + customerId + '\'' +
+                ", callType='" + callType + '\'' +
+                ", direction='" + direction + '\'' +
+                ", destination='" + destination + '\'' +
+                ", startTime='" + startTime + '\'' +
+                ", endTime='" + endTime + '\'' +
+                ", duration=" + duration +
+                ", cost=" + cost +
+                ", currency='" + currency + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
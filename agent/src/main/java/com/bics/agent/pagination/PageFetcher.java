@@ -0,0 +1,22 @@
+package com.bics.agent.pagination;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches one page of a limit/offset collection without blocking the caller.
+ * 
+ * @param <T> the element type
+ */
+@FunctionalInterface
+public interface PageFetcher<T> {
+    
+    /**
+     * Starts fetching a page.
+     * 
+     * @param offset number of elements to skip
+     * @param limit maximum number of elements in the page
+     * @return a future completed with the page elements, or exceptionally with a PluginException
+     */
+    CompletableFuture<List<T>> fetchPage(long offset, int limit);
+}
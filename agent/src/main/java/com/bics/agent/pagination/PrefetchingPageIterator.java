@@ -0,0 +1,127 @@
+package com.bics.agent.pagination;
+
+import com.bics.agent.exceptions.PluginException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator that walks a whole limit/offset collection lazily, page by page.
+ * Up to {@code prefetchPages} page requests are kept in flight ahead of the consumer, so a
+ * long traversal is bounded by bandwidth rather than by per-page latency. Elements are
+ * returned in collection order. The first page shorter than {@code pageSize} marks the end
+ * of the collection; requests already issued beyond it are discarded.
+ * <p>
+ * A failed page surfaces as a RuntimeException wrapping the PluginException.
+ * 
+ * @param <T> the element type
+ */
+public class PrefetchingPageIterator<T> implements Iterator<T>, Closeable {
+    
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final ArrayDeque<CompletableFuture<List<T>>> pending = new ArrayDeque<>();
+    private Iterator<T> current = Collections.emptyIterator();
+    private long nextOffset;
+    private boolean lastPageSeen = false;
+    
+    /**
+     * Creates a new iterator starting at offset 0.
+     * 
+     * @param fetcher the page fetcher
+     * @param pageSize the number of elements requested per page
+     * @param prefetchPages the maximum number of page requests in flight
+     */
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, int pageSize, int prefetchPages) {
+        this.fetcher = fetcher;
+        this.pageSize = Math.max(1, pageSize);
+        this.prefetchPages = Math.max(1, prefetchPages);
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (lastPageSeen) {
+                return false;
+            }
+            fillWindow();
+            List<T> page = await(pending.poll());
+            if (page.size() < pageSize) {
+                lastPageSeen = true;
+                cancelPending();
+            }
+            current = page.iterator();
+        }
+        return true;
+    }
+    
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+    
+    /**
+     * Wraps this iterator in a sequential stream that cancels outstanding prefetches on close.
+     * 
+     * @return a stream of all elements of the collection
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+    
+    @Override
+    public void close() {
+        lastPageSeen = true;
+        current = Collections.emptyIterator();
+        cancelPending();
+    }
+    
+    private void fillWindow() {
+        while (pending.size() < prefetchPages) {
+            pending.add(fetcher.fetchPage(nextOffset, pageSize));
+            nextOffset += pageSize;
+        }
+    }
+    
+    private void cancelPending() {
+        CompletableFuture<List<T>> future;
+        while ((future = pending.poll()) != null) {
+            future.cancel(false);
+        }
+    }
+    
+    private List<T> await(CompletableFuture<List<T>> future) {
+        try {
+            List<T> page = future.get();
+            return page != null ? page : Collections.emptyList();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(new PluginException("Interrupted while waiting for a page", e));
+        } catch (ExecutionException e) {
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause instanceof PluginException
+                    ? cause : new PluginException("Failed to fetch page", cause));
+        }
+    }
+}
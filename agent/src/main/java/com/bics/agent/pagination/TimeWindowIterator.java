@@ -0,0 +1,250 @@
+package com.bics.agent.pagination;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator that fetches a large time range as consecutive sub-windows, several at a time.
+ * Up to {@code maxConcurrent} window requests are kept in flight ahead of the consumer.
+ * Window sizes adapt to the density observed so far: each new window is sized to hold about
+ * {@code targetRecords} elements, so windows shrink over busy periods and grow (at most
+ * doubling per window) over quiet ones. A window that times out is split in half and
+ * fetched again, down to {@code minWindowMs}.
+ * <p>
+ * Elements are returned in time order: windows are consumed in range order, each window is
+ * sorted by timestamp, and elements outside their window's bounds are dropped, so records on
+ * a window boundary are not returned twice. Elements without a timestamp are kept and sorted
+ * last within their window. A failed window surfaces as a RuntimeException wrapping the
+ * PluginException.
+ * 
+ * @param <T> the element type
+ */
+public class TimeWindowIterator<T> implements Iterator<T>, Closeable {
+    
+    private final WindowFetcher<T> fetcher;
+    private final Function<T, Instant> timestampOf;
+    private final Comparator<T> timeOrder;
+    private final Settings settings;
+    private final Instant end;
+    private final ArrayDeque<Window<T>> pending = new ArrayDeque<>();
+    private Iterator<T> current = Collections.emptyIterator();
+    private Instant nextFrom;
+    private long windowMs;
+    private double recordsPerMs = -1.0;
+    private boolean closed = false;
+    
+    /**
+     * Creates a new iterator over {@code [from, to]}.
+     * 
+     * @param fetcher the window fetcher
+     * @param timestampOf extracts the timestamp of an element (may return null)
+     * @param from start of the range (inclusive)
+     * @param to end of the range (inclusive)
+     * @param settings the window sizing settings
+     */
+    public TimeWindowIterator(WindowFetcher<T> fetcher, Function<T, Instant> timestampOf,
+                              Instant from, Instant to, Settings settings) {
+        this.fetcher = fetcher;
+        this.timestampOf = timestampOf;
+        this.timeOrder = Comparator.comparing(timestampOf, Comparator.nullsLast(Comparator.naturalOrder()));
+        this.settings = settings;
+        this.nextFrom = from;
+        this.end = to;
+        this.windowMs = settings.initialWindowMs;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed) {
+                return false;
+            }
+            fillWindows();
+            Window<T> window = pending.poll();
+            if (window == null) {
+                return false;
+            }
+            List<T> records = await(window);
+            if (records != null) {
+                current = ordered(window, records).iterator();
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+    
+    /**
+     * Wraps this iterator in a sequential stream that cancels outstanding windows on close.
+     * 
+     * @return a stream of all elements of the range, in time order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyIterator();
+        Window<T> window;
+        while ((window = pending.poll()) != null) {
+            window.future.cancel(false);
+        }
+    }
+    
+    private void fillWindows() {
+        while (pending.size() < settings.maxConcurrent && nextFrom.isBefore(end)) {
+            Instant to = nextFrom.plusMillis(nextWindowMs());
+            if (to.isAfter(end)) {
+                to = end;
+            }
+            pending.add(issue(nextFrom, to));
+            nextFrom = to;
+        }
+    }
+    
+    private Window<T> issue(Instant from, Instant to) {
+        Window<T> window = new Window<>(from, to, fetcher.fetchWindow(from, to));
+        window.future.thenAccept(records -> observe(window, records.size()));
+        return window;
+    }
+    
+    private synchronized long nextWindowMs() {
+        if (recordsPerMs >= 0.0) {
+            long sized = recordsPerMs > 0.0 ? (long) (settings.targetRecords / recordsPerMs) : Long.MAX_VALUE;
+            windowMs = Math.min(sized, windowMs * 2);
+        }
+        windowMs = Math.max(settings.minWindowMs, Math.min(settings.maxWindowMs, windowMs));
+        return windowMs;
+    }
+    
+    private synchronized void observe(Window<T> window, int records) {
+        long spanMs = Math.max(1L, window.to.toEpochMilli() - window.from.toEpochMilli());
+        double density = (double) records / spanMs;
+        // Weight the latest window most, but keep one dense window from collapsing all sizes
+        recordsPerMs = recordsPerMs < 0.0 ? density : 0.5 * recordsPerMs + 0.5 * density;
+    }
+    
+    private List<T> ordered(Window<T> window, List<T> records) {
+        boolean last = !window.to.isBefore(end);
+        List<T> inWindow = new ArrayList<>(records.size());
+        for (T record : records) {
+            Instant timestamp = timestampOf.apply(record);
+            if (timestamp == null || (!timestamp.isBefore(window.from)
+                    && (timestamp.isBefore(window.to) || (last && timestamp.equals(window.to))))) {
+                inWindow.add(record);
+            }
+        }
+        inWindow.sort(timeOrder);
+        return inWindow;
+    }
+    
+    /**
+     * Waits for a window; returns null if it timed out and was replaced by its two halves.
+     */
+    private List<T> await(Window<T> window) {
+        try {
+            List<T> records = window.future.get();
+            return records != null ? records : Collections.emptyList();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(new PluginException("Interrupted while waiting for a time window", e));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            long spanMs = window.to.toEpochMilli() - window.from.toEpochMilli();
+            if (isTimeout(cause) && spanMs >= 2 * settings.minWindowMs) {
+                Instant middle = window.from.plusMillis(spanMs / 2);
+                synchronized (this) {
+                    windowMs = Math.max(settings.minWindowMs, spanMs / 4);
+                }
+                pending.addFirst(issue(middle, window.to));
+                pending.addFirst(issue(window.from, middle));
+                return null;
+            }
+            close();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause instanceof PluginException
+                    ? cause : new PluginException("Failed to fetch time window", cause));
+        }
+    }
+    
+    private static boolean isTimeout(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static final class Window<T> {
+        final Instant from;
+        final Instant to;
+        final CompletableFuture<List<T>> future;
+        
+        Window(Instant from, Instant to, CompletableFuture<List<T>> future) {
+            this.from = from;
+            this.to = to;
+            this.future = future;
+        }
+    }
+    
+    /**
+     * Immutable window sizing settings, read from the {@code http.pagination.timeWindows} configuration.
+     */
+    public static class Settings {
+        final int targetRecords;
+        final long initialWindowMs;
+        final long minWindowMs;
+        final long maxWindowMs;
+        final int maxConcurrent;
+        
+        public Settings(AgentConfiguration configuration) {
+            this(configuration.getInt("http.pagination.timeWindows.targetRecords", 1000),
+                 configuration.getLong("http.pagination.timeWindows.initialWindowMs", 21600000L),
+                 configuration.getLong("http.pagination.timeWindows.minWindowMs", 60000L),
+                 configuration.getLong("http.pagination.timeWindows.maxWindowMs", 604800000L),
+                 configuration.getInt("http.pagination.timeWindows.maxConcurrent", 4));
+        }
+        
+        public Settings(int targetRecords, long initialWindowMs, long minWindowMs, long maxWindowMs,
+                        int maxConcurrent) {
+            this.targetRecords = Math.max(1, targetRecords);
+            this.minWindowMs = Math.max(1L, minWindowMs);
+            this.maxWindowMs = Math.max(this.minWindowMs, maxWindowMs);
+            this.initialWindowMs = Math.max(this.minWindowMs, Math.min(this.maxWindowMs, initialWindowMs));
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bics.agent.pagination;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches the elements of one time window of a range without blocking the caller.
+ * 
+ * @param <T> the element type
+ */
+@FunctionalInterface
+public interface WindowFetcher<T> {
+    
+    /**
+     * Starts fetching a window.
+     * 
+     * @param from start of the window (inclusive)
+     * @param to end of the window
+     * @return a future completed with the window elements, or exceptionally with a PluginException
+     */
+    CompletableFuture<List<T>> fetchWindow(Instant from, Instant to);
+}
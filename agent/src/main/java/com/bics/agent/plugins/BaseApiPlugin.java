@@ -1,33 +1,128 @@
 package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.config.ConfigSnapshot;
+import com.bics.agent.config.ConfigurationListener;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.CircuitBreaker;
+import com.bics.agent.http.CircuitBreakerRegistry;
+import com.bics.agent.http.ContentCodec;
+import com.bics.agent.http.EndpointLimiter;
+import com.bics.agent.http.EndpointTemplates;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.http.RequestCoalescer;
+import com.bics.agent.http.RequestGate;
+import com.bics.agent.http.ResponseCache;
+import com.bics.agent.http.RetryBudget;
+import com.bics.agent.http.RetryPolicy;
+import com.bics.agent.json.JsonArrayIterator;
+import com.bics.agent.json.JsonBodyEncoder;
+import com.bics.agent.json.JsonBodyWriter;
+import com.bics.agent.json.JsonMappers;
+import com.bics.agent.metrics.MetricsRegistry;
+import com.bics.agent.metrics.OperationMetrics;
+import com.bics.agent.metrics.PluginMetrics;
+import com.bics.agent.pagination.PrefetchingPageIterator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
 import org.apache.hc.client5.http.classic.methods.*;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Base class for all BICS API plugins.
  * This class provides common functionality for HTTP communication,
  * error handling, and configuration management.
+ * Plugins normally share a single {@link HttpTransport}; a plugin created without one
+ * owns a private transport and releases it on {@link #close()}.
+ * Each request passes through the transport's {@link RequestGate} and the
+ * {@link EndpointLimiter} of its API endpoint, is retried per the {@link RetryPolicy},
+ * guarded by the {@link CircuitBreakerRegistry} and, for cacheable GETs, served from the
+ * {@link ResponseCache}. These components are reconfigured in place when the configuration
+ * is reloaded.
  */
-public abstract class BaseApiPlugin {
+public abstract class BaseApiPlugin implements Closeable {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     protected final AgentConfiguration configuration;
     protected final ObjectMapper objectMapper;
     protected final CloseableHttpClient httpClient;
+    protected final HttpTransport transport;
+    protected final RetryPolicy retryPolicy;
+    protected final RetryBudget retryBudget;
+    protected final CircuitBreakerRegistry circuitBreakers;
+    protected final ResponseCache responseCache;
+    protected final RequestCoalescer requestCoalescer;
+    protected final EndpointLimiter limiter;
+    protected final PluginMetrics metrics;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final boolean compressResponses;
+    private final boolean compressRequests;
+    private final int compressionThresholdBytes;
+    private final boolean ownsTransport;
+    private final Map<String, Map<String, ResolvedOperation>> staticOperations = new ConcurrentHashMap<>();
+    private final ConfigurationListener configurationListener = this::onConfigurationChanged;
     
     protected BaseApiPlugin(AgentConfiguration configuration) {
+        this(configuration, new HttpTransport(configuration), true);
+    }
+    
+    protected BaseApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        this(configuration, transport, false);
+    }
+    
+    private BaseApiPlugin(AgentConfiguration configuration, HttpTransport transport, boolean ownsTransport) {
         this.configuration = configuration;
-        this.objectMapper = new ObjectMapper();
-        this.httpClient = HttpClients.createDefault();
+        this.objectMapper = JsonMappers.mapper();
+        this.transport = transport;
+        this.httpClient = transport.getClient();
+        this.retryPolicy = new RetryPolicy(configuration);
+        this.retryBudget = new RetryBudget(configuration);
+        this.circuitBreakers = new CircuitBreakerRegistry(getPluginName(), new CircuitBreaker.Settings(configuration));
+        this.responseCache = new ResponseCache(getPluginName(), configuration);
+        this.requestCoalescer = new RequestCoalescer(configuration.getBoolean("http.coalescing.enabled", true));
+        this.limiter = new EndpointLimiter(getPluginName(), resolveEndpointName(), configuration);
+        this.metrics = MetricsRegistry.getInstance().forPlugin(getPluginName());
+        this.pageSize = configuration.getInt("http.pagination.pageSize", 200);
+        this.prefetchPages = configuration.getInt("http.pagination.prefetchPages", 4);
+        this.compressResponses = configuration.getBoolean("http.compression.responses", true);
+        this.compressRequests = configuration.getBoolean("http.compression.requests", false);
+        this.compressionThresholdBytes = configuration.getInt("http.compression.requestThresholdBytes", 8192);
+        this.ownsTransport = ownsTransport;
+        configuration.addListener(configurationListener);
     }
     
     /**
@@ -44,6 +139,16 @@ public abstract class BaseApiPlugin {
      */
     protected abstract String getPluginName();
     
+    /**
+     * Gets the circuit breakers of this plugin, keyed by operation template
+     * such as {@code GET /numbers/{id}}.
+     * 
+     * @return read-only map of operation keys to circuit breakers
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return circuitBreakers.getBreakers();
+    }
+    
     /**
      * Performs a GET request to the specified endpoint.
      * 
@@ -57,6 +162,9 @@ public abstract class BaseApiPlugin {
     
     /**
      * Performs a GET request to the specified endpoint with query parameters.
+     * If the endpoint has a cache TTL, a fresh cached response is returned without a round
+     * trip, and a stale one is revalidated with {@code If-None-Match} when it has an ETag.
+     * Concurrent calls for the same URL share a single outstanding exchange.
      * 
      * @param endpoint the API endpoint (relative to base URL)
      * @param queryParams query parameters to append (can be null)
@@ -64,38 +172,139 @@ public abstract class BaseApiPlugin {
      * @throws PluginException if the request fails
      */
     protected String performGet(String endpoint, String queryParams) throws PluginException {
+        long ttlNanos = responseCache.ttlNanos(endpoint);
+        String url = buildUrl(endpoint, queryParams);
+        if (ttlNanos <= 0) {
+            return requestCoalescer.execute(url, endpoint,
+                () -> execute("GET", endpoint, queryParams, null, null, this::readBodyAndClose));
+        }
+        
+        String key = cacheKey(endpoint, queryParams);
+        ResponseCache.Entry cached = responseCache.get(key);
+        if (cached != null && cached.isFresh()) {
+            if (cached.claimRefresh()) {
+                refreshAhead(endpoint, queryParams, key, cached, ttlNanos);
+            }
+            return cached.getBody();
+        }
+        return requestCoalescer.execute(url, endpoint, () -> fetchAndCache(endpoint, queryParams, key, cached, ttlNanos));
+    }
+    
+    /**
+     * Performs a GET request and binds the JSON response to the given type.
+     * Responses of cacheable endpoints are bound from the cached body; others are bound from
+     * the raw response bytes. Concurrent identical calls share the bytes of one exchange and
+     * each bind their own instance, so no caller sees another caller's changes.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param queryParams query parameters to append (can be null)
+     * @param type the target type
+     * @param <T> the target type
+     * @return the bound response
+     * @throws PluginException if the request fails or the response cannot be bound
+     */
+    protected <T> T performGetObject(String endpoint, String queryParams, Class<T> type) throws PluginException {
+        ObjectReader reader = JsonMappers.reader(type);
         try {
-            String url = buildUrl(endpoint, queryParams);
-            HttpGet request = new HttpGet(url);
-            addCommonHeaders(request);
-            
-            logger.debug("Performing GET request to: {}", url);
-            
-            return httpClient.execute(request, response -> {
-                int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
-                
-                if (statusCode >= 200 && statusCode < 300) {
-                    logger.debug("GET request successful. Status: {}", statusCode);
-                    return responseBody;
-                } else {
-                    throw new RuntimeException(new PluginException(getPluginName(), "GET " + endpoint, 
-                        String.format("HTTP %d: %s", statusCode, responseBody)));
-                }
-            });
-            
-        } catch (IOException e) {
-            throw new PluginException(getPluginName(), "GET " + endpoint, "IO error", e);
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof PluginException) {
-                throw (PluginException) e.getCause();
+            if (responseCache.ttlNanos(endpoint) > 0) {
+                return reader.readValue(performGet(endpoint, queryParams));
             }
-            throw new PluginException(getPluginName(), "GET " + endpoint, "Unexpected error", e);
-        } catch (Exception e) {
-            throw new PluginException(getPluginName(), "GET " + endpoint, "Unexpected error", e);
+            String key = "bytes " + buildUrl(endpoint, queryParams);
+            byte[] body = requestCoalescer.execute(key, endpoint,
+                () -> execute("GET", endpoint, queryParams, null, null, BaseApiPlugin::readBytesAndClose));
+            return body != null ? reader.<T>readValue(body) : null;
+        } catch (JsonProcessingException e) {
+            throw new PluginException(getPluginName(), "GET " + endpoint, "Invalid response: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new PluginException(getPluginName(), "GET " + endpoint, "Invalid response: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Performs a GET request and binds every element of the JSON array in the response.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param queryParams query parameters to append (can be null)
+     * @param elementType the type of each array element
+     * @param <T> the element type
+     * @return the bound elements
+     * @throws PluginException if the request fails or the response cannot be bound
+     */
+    protected <T> List<T> performGetList(String endpoint, String queryParams, Class<T> elementType)
+            throws PluginException {
+        try (Stream<T> elements = performGetStream(endpoint, queryParams, elementType)) {
+            return elements.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw new PluginException(getPluginName(), "GET " + endpoint, "Invalid response: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Performs a GET request and decodes the JSON array in the response incrementally.
+     * Elements are bound one at a time while the stream is consumed, so a large list
+     * response is never buffered in full. The returned stream holds the HTTP connection, its
+     * admission by the endpoint limiter and its place in the transport's request gate until it
+     * is exhausted or closed, and should be used in a try-with-resources block.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param queryParams query parameters to append (can be null)
+     * @param elementType the type of each array element
+     * @param <T> the element type
+     * @return a lazily decoded stream of elements
+     * @throws PluginException if the request fails or returns a non-2xx status
+     */
+    protected <T> Stream<T> performGetStream(String endpoint, String queryParams, Class<T> elementType)
+            throws PluginException {
+        ObjectReader reader = JsonMappers.reader(elementType);
+        StreamPermits permits = new StreamPermits();
+        
+        return execute("GET", endpoint, queryParams, null, null, permits, response -> {
+            permits.add(() -> closeQuietly(response));
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                permits.close();
+                return Stream.empty();
+            }
+            return new JsonArrayIterator<T>(objectMapper.getFactory().createParser(entity.getContent()), reader, permits)
+                    .stream();
+        });
+    }
+    
+    /**
+     * Walks every element of a limit/offset collection using the configured page size.
+     * The next pages are requested in parallel on the async client while the current one
+     * is consumed; traversal stops at the first short page. Failures surface as a
+     * RuntimeException wrapping the PluginException. A stream obtained by an admitted
+     * invocation keeps fetching while the agent drains, until the stream is closed.
+     * 
+     * @param endpoint the collection endpoint (relative to base URL)
+     * @param elementType the type of each array element
+     * @param <T> the element type
+     * @return a lazy stream over the whole collection
+     */
+    protected <T> Stream<T> performGetAllPages(String endpoint, Class<T> elementType) {
+        return performGetAllPages(endpoint, elementType, pageSize, prefetchPages);
+    }
+    
+    /**
+     * Walks every element of a limit/offset collection.
+     * 
+     * @param endpoint the collection endpoint (relative to base URL)
+     * @param elementType the type of each array element
+     * @param pageSize the number of elements requested per page
+     * @param prefetchPages the maximum number of page requests in flight
+     * @param <T> the element type
+     * @return a lazy stream over the whole collection
+     */
+    protected <T> Stream<T> performGetAllPages(String endpoint, Class<T> elementType, int pageSize, int prefetchPages) {
+        RequestGate.Admission pages = extendAdmission();
+        Stream<T> stream = new PrefetchingPageIterator<T>((offset, limit) ->
+                performGetAsync(endpoint, buildPagingQuery(String.valueOf(limit), String.valueOf(offset)), pages)
+                        .thenApply(body -> decodeArray(endpoint, body, elementType)),
+                pageSize, prefetchPages).stream();
+        return pages != null ? stream.onClose(pages::release) : stream;
+    }
+    
     /**
      * Performs a POST request to the specified endpoint with JSON body.
      * 
@@ -105,40 +314,20 @@ public abstract class BaseApiPlugin {
      * @throws PluginException if the request fails
      */
     protected String performPost(String endpoint, String jsonBody) throws PluginException {
-        try {
-            String url = buildUrl(endpoint, null);
-            HttpPost request = new HttpPost(url);
-            addCommonHeaders(request);
-            
-            if (jsonBody != null) {
-                request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
-            }
-            
-            logger.debug("Performing POST request to: {}", url);
-            
-            return httpClient.execute(request, response -> {
-                int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
-                
-                if (statusCode >= 200 && statusCode < 300) {
-                    logger.debug("POST request successful. Status: {}", statusCode);
-                    return responseBody;
-                } else {
-                    throw new RuntimeException(new PluginException(getPluginName(), "POST " + endpoint, 
-                        String.format("HTTP %d: %s", statusCode, responseBody)));
-                }
-            });
-            
-        } catch (IOException e) {
-            throw new PluginException(getPluginName(), "POST " + endpoint, "IO error", e);
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof PluginException) {
-                throw (PluginException) e.getCause();
-            }
-            throw new PluginException(getPluginName(), "POST " + endpoint, "Unexpected error", e);
-        } catch (Exception e) {
-            throw new PluginException(getPluginName(), "POST " + endpoint, "Unexpected error", e);
-        }
+        return performPost(endpoint, utf8(jsonBody));
+    }
+    
+    /**
+     * Performs a POST request to the specified endpoint with a JSON body written by a
+     * streaming generator.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param body writer producing the JSON request body
+     * @return the response body as a string
+     * @throws PluginException if the body cannot be encoded or the request fails
+     */
+    protected String performPost(String endpoint, JsonBodyWriter body) throws PluginException {
+        return performPost(endpoint, encodeBody("POST", endpoint, body));
     }
     
     /**
@@ -150,82 +339,833 @@ public abstract class BaseApiPlugin {
      * @throws PluginException if the request fails
      */
     protected String performPut(String endpoint, String jsonBody) throws PluginException {
+        return performPut(endpoint, utf8(jsonBody));
+    }
+    
+    /**
+     * Performs a PUT request to the specified endpoint with a JSON body written by a
+     * streaming generator.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param body writer producing the JSON request body
+     * @return the response body as a string
+     * @throws PluginException if the body cannot be encoded or the request fails
+     */
+    protected String performPut(String endpoint, JsonBodyWriter body) throws PluginException {
+        return performPut(endpoint, encodeBody("PUT", endpoint, body));
+    }
+    
+    /**
+     * Performs a DELETE request to the specified endpoint.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @return the response body as a string
+     * @throws PluginException if the request fails
+     */
+    protected String performDelete(String endpoint) throws PluginException {
         try {
-            String url = buildUrl(endpoint, null);
-            HttpPut request = new HttpPut(url);
-            addCommonHeaders(request);
-            
-            if (jsonBody != null) {
-                request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+            return execute("DELETE", endpoint, null, null, null, this::readBodyAndClose);
+        } finally {
+            invalidate(endpoint);
+        }
+    }
+    
+    /**
+     * Performs a non-blocking GET request to the specified endpoint.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performGetAsync(String endpoint) {
+        return performGetAsync(endpoint, null);
+    }
+    
+    /**
+     * Performs a non-blocking GET request to the specified endpoint with query parameters.
+     * Concurrent calls for the same URL share a single outstanding exchange.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param queryParams query parameters to append (can be null)
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performGetAsync(String endpoint, String queryParams) {
+        return performGetAsync(endpoint, queryParams, null);
+    }
+    
+    /**
+     * Performs a non-blocking GET request on behalf of an admission, as obtained from
+     * {@link #extendAdmission()}, so that work continuing after its invocation returned is let
+     * through the request gate while the agent drains.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param queryParams query parameters to append (can be null)
+     * @param admission the admission the request belongs to, or null for that of the current invocation
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performGetAsync(String endpoint, String queryParams,
+                                                        RequestGate.Admission admission) {
+        String url = buildUrl(endpoint, queryParams);
+        return requestCoalescer.executeAsync(url, endpoint,
+            () -> executeAsync("GET", endpoint, resolve("GET", endpoint), admission,
+                () -> SimpleRequestBuilder.get(url).build()));
+    }
+    
+    /**
+     * Extends the admission of the invocation running on the current thread to work that
+     * outlives it, such as a lazily consumed stream. The extension must be released when the
+     * work ends.
+     * 
+     * @return the extension, or null if the current thread runs no admitted invocation
+     */
+    protected RequestGate.Admission extendAdmission() {
+        RequestGate gate = transport.getRequestGate();
+        return gate.extend(gate.current());
+    }
+    
+    /**
+     * Performs a non-blocking POST request to the specified endpoint with JSON body.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param jsonBody the JSON request body
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performPostAsync(String endpoint, String jsonBody) {
+        return performPostAsync(endpoint, utf8(jsonBody));
+    }
+    
+    /**
+     * Performs a non-blocking POST request to the specified endpoint with a JSON body written
+     * by a streaming generator. The body is encoded on the calling thread.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param body writer producing the JSON request body
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performPostAsync(String endpoint, JsonBodyWriter body) {
+        try {
+            return performPostAsync(endpoint, encodeBody("POST", endpoint, body));
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Performs a non-blocking PUT request to the specified endpoint with JSON body.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @param jsonBody the JSON request body
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performPutAsync(String endpoint, String jsonBody) {
+        String url = buildUrl(endpoint, null);
+        byte[] body = utf8(jsonBody);
+        ResolvedOperation resolved = resolve("PUT", endpoint);
+        byte[] payload = compressBody(resolved.metrics, body);
+        return executeAsync("PUT", endpoint, resolved, null,
+                () -> withBody(SimpleRequestBuilder.put(url), payload, payload != body))
+                .whenComplete((response, failure) -> invalidate(endpoint));
+    }
+    
+    /**
+     * Performs a non-blocking DELETE request to the specified endpoint.
+     * 
+     * @param endpoint the API endpoint (relative to base URL)
+     * @return a future completed with the response body, or exceptionally with a PluginException
+     */
+    protected CompletableFuture<String> performDeleteAsync(String endpoint) {
+        String url = buildUrl(endpoint, null);
+        return executeAsync("DELETE", endpoint, resolve("DELETE", endpoint), null,
+                () -> SimpleRequestBuilder.delete(url).build())
+                .whenComplete((body, failure) -> invalidate(endpoint));
+    }
+    
+    /**
+     * Builds a {@code limit}/{@code offset} query string, omitting empty values.
+     * 
+     * @param limit maximum number of items to return (optional)
+     * @param offset number of items to skip (optional)
+     * @return the query string (may be empty)
+     */
+    protected String buildPagingQuery(String limit, String offset) {
+        StringBuilder queryParams = new StringBuilder();
+        if (limit != null && !limit.isEmpty()) {
+            queryParams.append("limit=").append(limit);
+        }
+        if (offset != null && !offset.isEmpty()) {
+            if (queryParams.length() > 0) {
+                queryParams.append("&");
             }
-            
-            logger.debug("Performing PUT request to: {}", url);
-            
-            return httpClient.execute(request, response -> {
+            queryParams.append("offset=").append(offset);
+        }
+        return queryParams.toString();
+    }
+    
+    /**
+     * Binds a response body to the given type, for use inside future stages.
+     * 
+     * @param endpoint the endpoint the body was received from
+     * @param body the response body
+     * @param type the target type
+     * @param <T> the target type
+     * @return the bound value
+     * @throws CompletionException wrapping a PluginException if the body is not valid
+     */
+    protected <T> T decodeObject(String endpoint, String body, Class<T> type) {
+        try {
+            return JsonMappers.reader(type).readValue(body);
+        } catch (IOException e) {
+            throw new CompletionException(new PluginException(getPluginName(), endpoint,
+                    "Invalid response: " + e.getMessage(), e));
+        }
+    }
+    
+    /**
+     * Decodes the JSON array of a response body, for use inside future stages.
+     * The array may be the document root or the first array field of a root object.
+     * 
+     * @param endpoint the endpoint the body was received from
+     * @param body the response body
+     * @param elementType the type of each array element
+     * @param <T> the element type
+     * @return the decoded elements
+     * @throws CompletionException wrapping a PluginException if the body is not valid
+     */
+    protected <T> List<T> decodeArray(String endpoint, String body, Class<T> elementType) {
+        List<T> elements = new ArrayList<>();
+        if (body == null || body.isEmpty()) {
+            return elements;
+        }
+        try (JsonArrayIterator<T> iterator = new JsonArrayIterator<T>(
+                objectMapper.getFactory().createParser(body), JsonMappers.reader(elementType), null)) {
+            iterator.forEachRemaining(elements::add);
+            return elements;
+        } catch (IOException | UncheckedIOException e) {
+            throw new CompletionException(new PluginException(getPluginName(), endpoint,
+                    "Invalid response: " + e.getMessage(), e));
+        }
+    }
+    
+    private String performPost(String endpoint, byte[] body) throws PluginException {
+        try {
+            return execute("POST", endpoint, null, body, null, this::readBodyAndClose);
+        } finally {
+            invalidate(endpoint);
+        }
+    }
+    
+    private String performPut(String endpoint, byte[] body) throws PluginException {
+        try {
+            return execute("PUT", endpoint, null, body, null, this::readBodyAndClose);
+        } finally {
+            invalidate(endpoint);
+        }
+    }
+    
+    private CompletableFuture<String> performPostAsync(String endpoint, byte[] body) {
+        String url = buildUrl(endpoint, null);
+        ResolvedOperation resolved = resolve("POST", endpoint);
+        byte[] payload = compressBody(resolved.metrics, body);
+        return executeAsync("POST", endpoint, resolved, null,
+                () -> withBody(SimpleRequestBuilder.post(url), payload, payload != body))
+                .whenComplete((response, failure) -> invalidate(endpoint));
+    }
+    
+    private byte[] encodeBody(String method, String endpoint, JsonBodyWriter body) throws PluginException {
+        try {
+            return JsonBodyEncoder.encode(body);
+        } catch (IOException e) {
+            throw new PluginException(getPluginName(), method + " " + endpoint,
+                    "Failed to encode request body: " + e.getMessage(), e);
+        }
+    }
+    
+    private static byte[] utf8(String jsonBody) {
+        return jsonBody != null ? jsonBody.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    /**
+     * Compresses a request body with gzip when request compression is enabled and the body
+     * reaches the threshold. Bodies that would not shrink are sent as they are.
+     */
+    private byte[] compressBody(OperationMetrics operationMetrics, byte[] body) {
+        if (!compressRequests || body == null || body.length < compressionThresholdBytes) {
+            return body;
+        }
+        byte[] compressed = ContentCodec.gzip(body);
+        if (compressed.length >= body.length) {
+            return body;
+        }
+        operationMetrics.recordCompressedRequest(body.length, compressed.length);
+        return compressed;
+    }
+    
+    /**
+     * Executes a blocking request, retrying transient failures, and hands the successful
+     * response to the given reader. The reader takes ownership of the response. When
+     * {@code ifNoneMatch} is set, a 304 Not Modified response is also passed to the reader.
+     */
+    private <T> T execute(String method, String endpoint, String queryParams, byte[] body,
+                          String ifNoneMatch, ResponseReader<T> reader) throws PluginException {
+        return execute(method, endpoint, queryParams, body, ifNoneMatch, null, reader);
+    }
+    
+    /**
+     * Executes a blocking request as above. When {@code permits} is set, the gate and limiter
+     * permits of a successful response are handed over to it and released when it is closed.
+     */
+    private <T> T execute(String method, String endpoint, String queryParams, byte[] body,
+                          String ifNoneMatch, StreamPermits permits, ResponseReader<T> reader) throws PluginException {
+        RequestGate gate = transport.getRequestGate();
+        if (!gate.tryEnter(gate.current())) {
+            throw shuttingDown(method + " " + endpoint);
+        }
+        boolean handedOver = false;
+        try {
+            T value = executeAdmitted(method, endpoint, queryParams, body, ifNoneMatch, permits, reader);
+            if (permits != null) {
+                permits.add(gate::exit);
+                handedOver = true;
+            }
+            return value;
+        } finally {
+            if (!handedOver) {
+                gate.exit();
+            }
+        }
+    }
+    
+    private <T> T executeAdmitted(String method, String endpoint, String queryParams, byte[] body,
+                                  String ifNoneMatch, StreamPermits permits, ResponseReader<T> reader)
+            throws PluginException {
+        String operation = method + " " + endpoint;
+        String url = buildUrl(endpoint, queryParams);
+        ResolvedOperation resolved = resolve(method, endpoint);
+        CircuitBreaker breaker = resolved.breaker;
+        OperationMetrics operationMetrics = resolved.metrics;
+        byte[] payload = compressBody(operationMetrics, body);
+        boolean compressed = payload != body;
+        long sentBytes = payload != null ? payload.length : 0L;
+        long delayMs = 0L;
+        retryBudget.recordRequest();
+        
+        for (int attempt = 1; ; attempt++) {
+            long queuedNanos = System.nanoTime();
+            limiter.acquire(operation);
+            operationMetrics.recordQueueDelay(System.nanoTime() - queuedNanos);
+            if (!breaker.tryAcquirePermission()) {
+                limiter.releaseUnused();
+                throw circuitOpen(operation, breaker);
+            }
+            ClassicHttpResponse response = null;
+            long startNanos = System.nanoTime();
+            // The limiter adapts to the time until the response head, not the body transfer
+            long headNanos = -1L;
+            boolean recorded = false;
+            boolean dropped = false;
+            boolean handedOver = false;
+            try {
+                logger.debug("Performing {} request to: {} (attempt {})", method, url, attempt);
+                
+                response = httpClient.executeOpen(null,
+                    createRequest(method, url, payload, compressed, ifNoneMatch), null);
+                headNanos = System.nanoTime() - startNanos;
+                response.setEntity(countingEntity(response.getEntity(), operationMetrics));
                 int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
+                // Response bytes are counted by the entity as they are read
+                long receivedBytes = -1L;
                 
-                if (statusCode >= 200 && statusCode < 300) {
-                    logger.debug("PUT request successful. Status: {}", statusCode);
-                    return responseBody;
-                } else {
-                    throw new RuntimeException(new PluginException(getPluginName(), "PUT " + endpoint, 
-                        String.format("HTTP %d: %s", statusCode, responseBody)));
+                if ((statusCode >= 200 && statusCode < 300) || (statusCode == 304 && ifNoneMatch != null)) {
+                    logger.debug("{} request successful. Status: {}", method, statusCode);
+                    T value = reader.read(response);
+                    recordOutcome(breaker, operationMetrics, statusCode, startNanos, sentBytes, receivedBytes);
+                    recorded = true;
+                    if (permits != null) {
+                        // The limiter learns the response latency, but the permit is held while streaming
+                        long latencyNanos = headNanos;
+                        permits.add(() -> limiter.release(latencyNanos, false));
+                        handedOver = true;
+                    }
+                    return value;
                 }
-            });
+                recordOutcome(breaker, operationMetrics, statusCode, startNanos, sentBytes, receivedBytes);
+                recorded = true;
+                dropped = isOverloaded(statusCode);
+                
+                long retryAfterMs = RetryPolicy.parseRetryAfter(headerValue(response, HttpHeaders.RETRY_AFTER));
+                String responseBody = readBodyAndClose(response);
+                PluginException failure = new PluginException(getPluginName(), operation,
+                    String.format("HTTP %d: %s", statusCode, responseBody));
+                
+                long nextDelayMs = retryPolicy.isRetryable(method, statusCode)
+                        ? retryDelay(attempt, delayMs, retryAfterMs) : -1L;
+                if (nextDelayMs < 0) {
+                    throw failure;
+                }
+                logger.warn("{} failed with HTTP {}, retrying in {} ms", operation, statusCode, nextDelayMs);
+                operationMetrics.recordRetry();
+                delayMs = nextDelayMs;
+                
+            } catch (PluginException e) {
+                throw e;
+            } catch (JsonProcessingException e) {
+                closeQuietly(response);
+                throw new PluginException(getPluginName(), operation, "Invalid response: " + e.getOriginalMessage(), e);
+            } catch (IOException e) {
+                closeQuietly(response);
+                dropped = e instanceof InterruptedIOException;
+                if (!recorded) {
+                    recordFailure(breaker, operationMetrics, startNanos, sentBytes);
+                    recorded = true;
+                }
+                long nextDelayMs = retryPolicy.isRetryable(method, e) ? retryDelay(attempt, delayMs, -1L) : -1L;
+                if (nextDelayMs < 0) {
+                    throw new PluginException(getPluginName(), operation, "IO error", e);
+                }
+                logger.warn("{} failed with {}, retrying in {} ms", operation, e.toString(), nextDelayMs);
+                operationMetrics.recordRetry();
+                delayMs = nextDelayMs;
+                
+            } catch (Exception e) {
+                closeQuietly(response);
+                throw new PluginException(getPluginName(), operation, "Unexpected error", e);
+            } finally {
+                if (!recorded) {
+                    recordFailure(breaker, operationMetrics, startNanos, sentBytes);
+                }
+                if (!handedOver) {
+                    limiter.release(headNanos >= 0 ? headNanos : System.nanoTime() - startNanos, dropped);
+                }
+            }
             
-        } catch (IOException e) {
-            throw new PluginException(getPluginName(), "PUT " + endpoint, "IO error", e);
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof PluginException) {
-                throw (PluginException) e.getCause();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PluginException(getPluginName(), operation, "Interrupted while waiting to retry", e);
             }
-            throw new PluginException(getPluginName(), "PUT " + endpoint, "Unexpected error", e);
-        } catch (Exception e) {
-            throw new PluginException(getPluginName(), "PUT " + endpoint, "Unexpected error", e);
         }
     }
     
     /**
-     * Performs a DELETE request to the specified endpoint.
-     * 
-     * @param endpoint the API endpoint (relative to base URL)
-     * @return the response body as a string
-     * @throws PluginException if the request fails
+     * Starts a non-blocking request. It is admitted on behalf of the given admission, or of
+     * the invocation running on the calling thread if there is none; retries stay admitted.
      */
-    protected String performDelete(String endpoint) throws PluginException {
+    private CompletableFuture<String> executeAsync(String method, String endpoint, ResolvedOperation resolved,
+                                                   RequestGate.Admission admission,
+                                                   Supplier<SimpleHttpRequest> requestFactory) {
+        RequestGate gate = transport.getRequestGate();
+        if (!gate.tryEnter(admission != null ? admission : gate.current())) {
+            return CompletableFuture.failedFuture(shuttingDown(method + " " + endpoint));
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        result.whenComplete((body, failure) -> gate.exit());
+        retryBudget.recordRequest();
+        attemptAsync(method, method + " " + endpoint, resolved.breaker, resolved.metrics, requestFactory, 1, 0L, result);
+        return result;
+    }
+    
+    private void attemptAsync(String method, String operation, CircuitBreaker breaker, OperationMetrics operationMetrics,
+                              Supplier<SimpleHttpRequest> requestFactory,
+                              int attempt, long delayMs, CompletableFuture<String> result) {
+        long queuedNanos = System.nanoTime();
+        limiter.acquireAsync(operation).whenComplete((admitted, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                operationMetrics.recordQueueDelay(System.nanoTime() - queuedNanos);
+                sendAsync(method, operation, breaker, operationMetrics, requestFactory, attempt, delayMs, result);
+            }
+        });
+    }
+    
+    private void sendAsync(String method, String operation, CircuitBreaker breaker, OperationMetrics operationMetrics,
+                           Supplier<SimpleHttpRequest> requestFactory,
+                           int attempt, long delayMs, CompletableFuture<String> result) {
+        if (!breaker.tryAcquirePermission()) {
+            limiter.releaseUnused();
+            result.completeExceptionally(circuitOpen(operation, breaker));
+            return;
+        }
+        long startNanos = System.nanoTime();
         try {
-            String url = buildUrl(endpoint, null);
-            HttpDelete request = new HttpDelete(url);
+            SimpleHttpRequest request = requestFactory.get();
             addCommonHeaders(request);
+            request.setConfig(transport.getRequestConfig());
+            byte[] requestBody = request.getBodyBytes();
+            long requestBytes = requestBody != null ? requestBody.length : 0L;
             
-            logger.debug("Performing DELETE request to: {}", url);
+            logger.debug("Performing async {} request to: {} (attempt {})", method, request.getRequestUri(), attempt);
             
-            return httpClient.execute(request, response -> {
-                int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
+            transport.getAsyncClient().execute(request, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    int statusCode = response.getCode();
+                    recordOutcome(breaker, operationMetrics, statusCode, startNanos, requestBytes, -1L);
+                    limiter.release(System.nanoTime() - startNanos, isOverloaded(statusCode));
+                    String responseBody;
+                    try {
+                        responseBody = decodeBody(response, operationMetrics);
+                    } catch (IOException e) {
+                        result.completeExceptionally(new PluginException(getPluginName(), operation,
+                            "Invalid response: " + e.getMessage(), e));
+                        return;
+                    }
+                    
+                    if (statusCode >= 200 && statusCode < 300) {
+                        logger.debug("Async {} request successful. Status: {}", method, statusCode);
+                        result.complete(responseBody != null ? responseBody : "");
+                        return;
+                    }
+                    
+                    PluginException failure = new PluginException(getPluginName(), operation,
+                        String.format("HTTP %d: %s", statusCode, responseBody));
+                    long retryAfterMs = RetryPolicy.parseRetryAfter(headerValue(response, HttpHeaders.RETRY_AFTER));
+                    long nextDelayMs = retryPolicy.isRetryable(method, statusCode)
+                            ? retryDelay(attempt, delayMs, retryAfterMs) : -1L;
+                    retryOrFail(nextDelayMs, failure);
+                }
+                
+                @Override
+                public void failed(Exception e) {
+                    recordFailure(breaker, operationMetrics, startNanos, requestBytes);
+                    limiter.release(System.nanoTime() - startNanos, e instanceof InterruptedIOException);
+                    long nextDelayMs = retryPolicy.isRetryable(method, e) ? retryDelay(attempt, delayMs, -1L) : -1L;
+                    retryOrFail(nextDelayMs, new PluginException(getPluginName(), operation, "IO error", e));
+                }
                 
-                if (statusCode >= 200 && statusCode < 300) {
-                    logger.debug("DELETE request successful. Status: {}", statusCode);
-                    return responseBody;
-                } else {
-                    throw new RuntimeException(new PluginException(getPluginName(), "DELETE " + endpoint, 
-                        String.format("HTTP %d: %s", statusCode, responseBody)));
+                @Override
+                public void cancelled() {
+                    // A cancelled exchange says nothing about the backend, so the breaker
+                    // only gets its permit back
+                    operationMetrics.recordCancellation(System.nanoTime() - startNanos, requestBytes);
+                    breaker.releasePermission();
+                    limiter.releaseUnused();
+                    result.completeExceptionally(new PluginException(getPluginName(), operation, "Request cancelled"));
+                }
+                
+                private void retryOrFail(long nextDelayMs, PluginException failure) {
+                    if (nextDelayMs < 0) {
+                        result.completeExceptionally(failure);
+                        return;
+                    }
+                    logger.warn("{} failed, retrying in {} ms: {}", operation, nextDelayMs, failure.getMessage());
+                    operationMetrics.recordRetry();
+                    CompletableFuture.delayedExecutor(nextDelayMs, TimeUnit.MILLISECONDS).execute(() ->
+                        attemptAsync(method, operation, breaker, operationMetrics, requestFactory,
+                            attempt + 1, nextDelayMs, result));
                 }
             });
-            
-        } catch (IOException e) {
-            throw new PluginException(getPluginName(), "DELETE " + endpoint, "IO error", e);
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof PluginException) {
-                throw (PluginException) e.getCause();
+        } catch (Exception e) {
+            recordFailure(breaker, operationMetrics, startNanos, 0L);
+            limiter.releaseUnused();
+            result.completeExceptionally(new PluginException(getPluginName(), operation, "Unexpected error", e));
+        }
+    }
+    
+    /**
+     * Computes the delay before another attempt, or -1 if the attempt limit, the
+     * Retry-After limit or the retry budget forbids retrying.
+     */
+    private long retryDelay(int attempt, long previousDelayMs, long retryAfterMs) {
+        if (attempt >= retryPolicy.getMaxAttempts()) {
+            return -1L;
+        }
+        long nextDelayMs = retryPolicy.nextDelayMs(previousDelayMs, retryAfterMs);
+        if (nextDelayMs < 0) {
+            return -1L;
+        }
+        if (!retryBudget.tryAcquire()) {
+            logger.warn("Retry budget of {} exhausted, not retrying", getPluginName());
+            return -1L;
+        }
+        return nextDelayMs;
+    }
+    
+    /**
+     * Whether a response status shows that the backend is shedding load.
+     */
+    private static boolean isOverloaded(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+    
+    /**
+     * Resolves the circuit breaker and metrics of an operation. The operation key is built
+     * once per call; endpoints without identifier segments are its own template and are
+     * cached, so their lookups neither build the key nor allocate.
+     */
+    private ResolvedOperation resolve(String method, String endpoint) {
+        Map<String, ResolvedOperation> byEndpoint = staticOperations.get(method);
+        ResolvedOperation resolved = byEndpoint != null ? byEndpoint.get(endpoint) : null;
+        if (resolved != null) {
+            return resolved;
+        }
+        String key = EndpointTemplates.operationKey(method, endpoint);
+        resolved = new ResolvedOperation(circuitBreakers.forOperationKey(key), metrics.forOperationKey(key));
+        if (key.length() == method.length() + 1 + endpoint.length() && key.endsWith(endpoint)) {
+            staticOperations.computeIfAbsent(method, m -> new ConcurrentHashMap<>()).putIfAbsent(endpoint, resolved);
+        }
+        return resolved;
+    }
+    
+    /**
+     * Finds the {@code api.endpoints} entry whose URL is this plugin's base URL.
+     */
+    private String resolveEndpointName() {
+        Object endpoints = configuration.getValue("api.endpoints");
+        String baseUrl = getBaseUrl();
+        if (endpoints instanceof Map && baseUrl != null) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) endpoints).entrySet()) {
+                if (baseUrl.equals(String.valueOf(entry.getValue()))) {
+                    return String.valueOf(entry.getKey());
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Records a completed exchange; server errors count as failures, anything else
+     * (including client errors) shows the backend is responsive.
+     */
+    private void recordOutcome(CircuitBreaker breaker, OperationMetrics operationMetrics, int statusCode,
+                               long startNanos, long sentBytes, long receivedBytes) {
+        long durationNanos = System.nanoTime() - startNanos;
+        operationMetrics.recordResponse(statusCode, durationNanos, sentBytes, receivedBytes);
+        if (statusCode >= 500) {
+            breaker.onFailure(durationNanos);
+        } else {
+            breaker.onSuccess(durationNanos);
+        }
+    }
+    
+    /**
+     * Records an attempt that failed without a response.
+     */
+    private void recordFailure(CircuitBreaker breaker, OperationMetrics operationMetrics, long startNanos,
+                               long sentBytes) {
+        long durationNanos = System.nanoTime() - startNanos;
+        operationMetrics.recordIoError(durationNanos, sentBytes);
+        breaker.onFailure(durationNanos);
+    }
+    
+    private void onConfigurationChanged(ConfigSnapshot previous, ConfigSnapshot current) {
+        if (current.differs(previous, "http.limits") || current.differs(previous, "api.endpoints")) {
+            // The base URL may now match another api.endpoints entry, with other limits
+            limiter.reconfigure(configuration, resolveEndpointName());
+        }
+        if (current.differs(previous, "http.cache")) {
+            responseCache.reconfigure(getPluginName(), configuration);
+        }
+    }
+    
+    private PluginException shuttingDown(String operation) {
+        return new PluginException(getPluginName(), operation, "Transport is shutting down and no longer admits requests");
+    }
+    
+    private PluginException circuitOpen(String operation, CircuitBreaker breaker) {
+        return new PluginException(getPluginName(), operation,
+            String.format("Circuit breaker '%s' is %s, failing fast", breaker.getName(), breaker.getState()));
+    }
+    
+    /**
+     * Drops cached responses of a mutated path and stops later reads from joining exchanges
+     * for it that began before the mutation.
+     */
+    private void invalidate(String endpoint) {
+        responseCache.invalidate(endpoint);
+        requestCoalescer.mutated(endpoint);
+    }
+    
+    /**
+     * Fetches a cacheable GET, revalidating the stale entry if it carries an ETag.
+     */
+    private String fetchAndCache(String endpoint, String queryParams, String key, ResponseCache.Entry cached,
+                                 long ttlNanos) throws PluginException {
+        String etag = cached != null ? cached.getEtag() : null;
+        long generation = responseCache.generation();
+        String body = execute("GET", endpoint, queryParams, null, etag,
+            response -> cacheResponse(response, key, endpoint, ttlNanos, generation));
+        if (body == null) {
+            // The entry was invalidated while being revalidated; fetch it unconditionally
+            long refetchGeneration = responseCache.generation();
+            body = execute("GET", endpoint, queryParams, null, null,
+                response -> cacheResponse(response, key, endpoint, ttlNanos, refetchGeneration));
+        }
+        return body;
+    }
+    
+    /**
+     * Stores a successful GET response in the cache, or renews the cached entry on 304.
+     * Returns null if a 304 arrives for an entry that has been invalidated meanwhile. A
+     * response is not cached if its path was invalidated after the given generation.
+     */
+    private String cacheResponse(ClassicHttpResponse response, String key, String endpoint, long ttlNanos,
+                                 long generation) throws IOException {
+        if (response.getCode() == 304) {
+            response.close();
+            ResponseCache.Entry renewed = responseCache.renew(key, ttlNanos, generation);
+            return renewed != null ? renewed.getBody() : null;
+        }
+        String etag = headerValue(response, HttpHeaders.ETAG);
+        String body = readBodyAndClose(response);
+        responseCache.put(key, endpoint, body, etag, ttlNanos, generation);
+        return body;
+    }
+    
+    /**
+     * Refreshes a hot cache entry in the background before it expires, using the async
+     * client so that no caller thread waits on it. Skipped while the breaker is not closed.
+     */
+    private void refreshAhead(String endpoint, String queryParams, String key, ResponseCache.Entry cached,
+                              long ttlNanos) {
+        ResolvedOperation resolved = resolve("GET", endpoint);
+        CircuitBreaker breaker = resolved.breaker;
+        OperationMetrics operationMetrics = resolved.metrics;
+        RequestGate gate = transport.getRequestGate();
+        if (breaker.getState() != CircuitBreaker.State.CLOSED || !gate.tryEnter()) {
+            cached.releaseRefresh();
+            return;
+        }
+        
+        logger.debug("Refreshing cached GET {} ahead of expiry", key);
+        
+        long startNanos = System.nanoTime();
+        long generation = responseCache.generation();
+        try {
+            SimpleHttpRequest request = SimpleRequestBuilder.get(buildUrl(endpoint, queryParams)).build();
+            addCommonHeaders(request);
+            request.setConfig(transport.getRequestConfig());
+            if (cached.getEtag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
             }
-            throw new PluginException(getPluginName(), "DELETE " + endpoint, "Unexpected error", e);
+            
+            transport.getAsyncClient().execute(request, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    int statusCode = response.getCode();
+                    recordOutcome(breaker, operationMetrics, statusCode, startNanos, 0L, -1L);
+                    try {
+                        String body = decodeBody(response, operationMetrics);
+                        if (statusCode == 304) {
+                            responseCache.renew(key, ttlNanos, generation);
+                        } else if (statusCode >= 200 && statusCode < 300) {
+                            responseCache.put(key, endpoint, body != null ? body : "",
+                                headerValue(response, HttpHeaders.ETAG), ttlNanos, generation);
+                        } else {
+                            cached.releaseRefresh();
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Discarding refresh of {}: {}", key, e.getMessage());
+                        cached.releaseRefresh();
+                    } finally {
+                        gate.exit();
+                    }
+                }
+                
+                @Override
+                public void failed(Exception e) {
+                    recordFailure(breaker, operationMetrics, startNanos, 0L);
+                    cached.releaseRefresh();
+                    gate.exit();
+                }
+                
+                @Override
+                public void cancelled() {
+                    operationMetrics.recordCancellation(System.nanoTime() - startNanos, 0L);
+                    cached.releaseRefresh();
+                    gate.exit();
+                }
+            });
         } catch (Exception e) {
-            throw new PluginException(getPluginName(), "DELETE " + endpoint, "Unexpected error", e);
+            logger.debug("Failed to start refresh of {}: {}", key, e.getMessage());
+            cached.releaseRefresh();
+            gate.exit();
         }
     }
     
+    private static String cacheKey(String endpoint, String queryParams) {
+        return queryParams == null || queryParams.isEmpty() ? endpoint : endpoint + "?" + queryParams;
+    }
+    
+    private HttpUriRequestBase createRequest(String method, String url, byte[] body, boolean compressed,
+                                             String ifNoneMatch) {
+        HttpUriRequestBase request;
+        switch (method) {
+            case "GET":
+                request = new HttpGet(url);
+                break;
+            case "POST":
+                request = new HttpPost(url);
+                break;
+            case "PUT":
+                request = new HttpPut(url);
+                break;
+            case "DELETE":
+                request = new HttpDelete(url);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        }
+        addCommonHeaders(request);
+        request.setConfig(transport.getRequestConfig());
+        if (ifNoneMatch != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        
+        if (body != null) {
+            request.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON, compressed ? "gzip" : null));
+        }
+        return request;
+    }
+    
+    private SimpleHttpRequest withBody(SimpleRequestBuilder builder, byte[] body, boolean compressed) {
+        if (body != null) {
+            builder.setBody(body, ContentType.APPLICATION_JSON);
+            if (compressed) {
+                builder.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Wraps a classic response entity so that its wire bytes are recorded as they are read and
+     * a gzip or deflate body is decoded on the fly.
+     */
+    private static HttpEntity countingEntity(HttpEntity entity, OperationMetrics operationMetrics) {
+        if (entity == null) {
+            return null;
+        }
+        boolean encoded = ContentCodec.isSupported(entity.getContentEncoding());
+        return ContentCodec.wrapResponse(entity,
+            encoded ? operationMetrics::recordCompressedBytesIn : operationMetrics::recordBytesIn,
+            operationMetrics::recordDecodedBytesIn);
+    }
+    
+    /**
+     * Records the wire size of an async response body and decodes it if it is content-encoded.
+     * Returns null if the response has no body.
+     */
+    private static String decodeBody(SimpleHttpResponse response, OperationMetrics operationMetrics)
+            throws IOException {
+        byte[] body = response.getBodyBytes();
+        if (body == null) {
+            return null;
+        }
+        ContentType contentType = response.getContentType();
+        Charset charset = contentType != null && contentType.getCharset() != null
+                ? contentType.getCharset() : StandardCharsets.UTF_8;
+        String contentEncoding = headerValue(response, HttpHeaders.CONTENT_ENCODING);
+        if (!ContentCodec.isSupported(contentEncoding)) {
+            operationMetrics.recordBytesIn(body.length);
+            return new String(body, charset);
+        }
+        operationMetrics.recordCompressedBytesIn(body.length);
+        byte[] decoded = ContentCodec.decode(contentEncoding, body);
+        operationMetrics.recordDecodedBytesIn(decoded.length);
+        return new String(decoded, charset);
+    }
+    
     private String buildUrl(String endpoint, String queryParams) {
         String url = getBaseUrl();
         if (!url.endsWith("/") && !endpoint.startsWith("/")) {
@@ -240,12 +1180,127 @@ public abstract class BaseApiPlugin {
         return url;
     }
     
-    private void addCommonHeaders(HttpUriRequestBase request) {
+    private String readBodyAndClose(ClassicHttpResponse response) throws IOException {
+        try {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return "";
+            }
+            return EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        } catch (ParseException e) {
+            throw new IOException("Failed to parse response body", e);
+        } finally {
+            response.close();
+        }
+    }
+    
+    private static byte[] readBytesAndClose(ClassicHttpResponse response) throws IOException {
+        try (response) {
+            HttpEntity entity = response.getEntity();
+            return entity != null ? EntityUtils.toByteArray(entity) : null;
+        }
+    }
+    
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+    
+    private void closeQuietly(ClassicHttpResponse response) {
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close response: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private void addCommonHeaders(HttpRequest request) {
         request.setHeader("Accept", "application/json");
         request.setHeader("Content-Type", "application/json");
         request.setHeader("User-Agent", "BICS-Semantic-Kernel-Agent/1.0.0");
+        if (compressResponses) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, ContentCodec.ACCEPT_ENCODING);
+        }
         
         // Add authentication headers here when needed
         // For example: request.setHeader("Authorization", "Bearer " + token);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Sends any work this plugin holds back, such as batched messages, and stops accepting
+     * more. Called by the agent before it closes the request gate, so that queued work is
+     * still admitted. Plugins without queues have nothing to send.
+     * 
+     * @return a future completed once the queued work has been sent and answered
+     */
+    public CompletableFuture<Void> drainQueued() {
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Releases the HTTP transport if this plugin owns it.
+     * A shared transport is left open and must be closed by its owner.
+     */
+    @Override
+    public void close() {
+        configuration.removeListener(configurationListener);
+        if (ownsTransport) {
+            transport.close();
+        }
+    }
+    
+    /**
+     * Resources of a streamed response, released together and only once when the stream is
+     * closed or exhausted. Resources added after that are released immediately.
+     */
+    private static final class StreamPermits implements Closeable {
+        private final List<Runnable> releases = new ArrayList<>(3);
+        private boolean closed;
+        
+        void add(Runnable release) {
+            synchronized (this) {
+                if (!closed) {
+                    releases.add(release);
+                    return;
+                }
+            }
+            release.run();
+        }
+        
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            for (Runnable release : releases) {
+                release.run();
+            }
+        }
+    }
+    
+    /**
+     * Circuit breaker and metrics of one operation.
+     */
+    private static final class ResolvedOperation {
+        private final CircuitBreaker breaker;
+        private final OperationMetrics metrics;
+        
+        private ResolvedOperation(CircuitBreaker breaker, OperationMetrics metrics) {
+            this.breaker = breaker;
+            this.metrics = metrics;
+        }
+    }
+    
+    /**
+     * Consumes a successful response; implementations own (and must eventually close) it.
+     */
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(ClassicHttpResponse response) throws IOException;
+    }
+}
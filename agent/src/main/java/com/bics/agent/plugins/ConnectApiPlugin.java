@@ -2,6 +2,14 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.json.JsonMappers;
+import com.bics.agent.models.connect.Customer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Connect API plugin for customer and product management operations.
@@ -14,6 +22,10 @@ public class ConnectApiPlugin extends BaseApiPlugin {
         super(configuration);
     }
     
+    public ConnectApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+    }
+    
     @Override
     protected String getBaseUrl() {
         return configuration.getApiEndpoints().getConnectApiUrl();
@@ -34,18 +46,43 @@ public class ConnectApiPlugin extends BaseApiPlugin {
      */
     public String getCustomers(String limit, String offset) throws PluginException {
         
-        StringBuilder queryParams = new StringBuilder();
-        if (limit != null && !limit.isEmpty()) {
-            queryParams.append("limit=").append(limit);
-        }
-        if (offset != null && !offset.isEmpty()) {
-            if (queryParams.length() > 0) {
-                queryParams.append("&");
-            }
-            queryParams.append("offset=").append(offset);
-        }
-        
-        return performGet("/customers", queryParams.toString());
+        return performGet("/customers", buildPagingQuery(limit, offset));
+    }
+    
+    /**
+     * Retrieves a list of customers as typed models.
+     * 
+     * @param limit Maximum number of customers to return (optional)
+     * @param offset Number of customers to skip (optional)
+     * @return the customers
+     * @throws PluginException if the request fails
+     */
+    public List<Customer> getCustomerList(String limit, String offset) throws PluginException {
+        return performGetList("/customers", buildPagingQuery(limit, offset), Customer.class);
+    }
+    
+    /**
+     * Streams a list of customers, decoding them incrementally from the response.
+     * The returned stream must be closed to release the connection.
+     * 
+     * @param limit Maximum number of customers to return (optional)
+     * @param offset Number of customers to skip (optional)
+     * @return lazily decoded stream of customers
+     * @throws PluginException if the request fails
+     */
+    public Stream<Customer> streamCustomers(String limit, String offset) throws PluginException {
+        return performGetStream("/customers", buildPagingQuery(limit, offset), Customer.class);
+    }
+    
+    /**
+     * Streams every customer, fetching the following pages in parallel while the
+     * current one is consumed. Request failures surface as a RuntimeException
+     * wrapping the PluginException.
+     * 
+     * @return lazy stream over all customers
+     */
+    public Stream<Customer> streamAllCustomers() {
+        return performGetAllPages("/customers", Customer.class);
     }
     
     /**
@@ -64,6 +101,38 @@ public class ConnectApiPlugin extends BaseApiPlugin {
         return performGet("/customers/" + customerId);
     }
     
+    /**
+     * Retrieves a specific customer by ID as a typed model.
+     * 
+     * @param customerId The unique identifier of the customer
+     * @return the customer
+     * @throws PluginException if the request fails
+     */
+    public Customer getCustomer(String customerId) throws PluginException {
+        
+        if (customerId == null || customerId.isEmpty()) {
+            throw new PluginException(getPluginName(), "getCustomer", "Customer ID is required");
+        }
+        
+        return performGetObject("/customers/" + customerId, null, Customer.class);
+    }
+    
+    /**
+     * Retrieves details of a specific customer by ID without blocking the caller.
+     * 
+     * @param customerId The unique identifier of the customer
+     * @return future completed with the JSON customer details, or exceptionally with a PluginException
+     */
+    public CompletableFuture<String> getCustomerByIdAsync(String customerId) {
+        
+        if (customerId == null || customerId.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                new PluginException(getPluginName(), "getCustomerById", "Customer ID is required"));
+        }
+        
+        return performGetAsync("/customers/" + customerId);
+    }
+    
     /**
      * Creates a new customer.
      * 
@@ -80,6 +149,22 @@ public class ConnectApiPlugin extends BaseApiPlugin {
         return performPost("/customers", customerData);
     }
     
+    /**
+     * Creates a new customer from a typed model.
+     * 
+     * @param customer the customer to create
+     * @return JSON string containing the created customer details
+     * @throws PluginException if the request fails
+     */
+    public String createCustomer(Customer customer) throws PluginException {
+        
+        if (customer == null) {
+            throw new PluginException(getPluginName(), "createCustomer", "Customer data is required");
+        }
+        
+        return performPost("/customers", generator -> JsonMappers.writer(Customer.class).writeValue(generator, customer));
+    }
+    
     /**
      * Updates an existing customer.
      * 
@@ -101,6 +186,27 @@ public class ConnectApiPlugin extends BaseApiPlugin {
         return performPut("/customers/" + customerId, customerData);
     }
     
+    /**
+     * Updates an existing customer from a typed model.
+     * 
+     * @param customerId The unique identifier of the customer
+     * @param customer the updated customer
+     * @return JSON string containing the updated customer details
+     * @throws PluginException if the request fails
+     */
+    public String updateCustomer(String customerId, Customer customer) throws PluginException {
+        
+        if (customerId == null || customerId.isEmpty()) {
+            throw new PluginException(getPluginName(), "updateCustomer", "Customer ID is required");
+        }
+        
+        if (customer == null) {
+            throw new PluginException(getPluginName(), "updateCustomer", "Customer data is required");
+        }
+        
+        return performPut("/customers/" + customerId, generator -> JsonMappers.writer(Customer.class).writeValue(generator, customer));
+    }
+    
     /**
      * Deletes a customer by ID.
      * 
@@ -127,18 +233,18 @@ public class ConnectApiPlugin extends BaseApiPlugin {
      */
     public String getProducts(String limit, String offset) throws PluginException {
         
-        StringBuilder queryParams = new StringBuilder();
-        if (limit != null && !limit.isEmpty()) {
-            queryParams.append("limit=").append(limit);
-        }
-        if (offset != null && !offset.isEmpty()) {
-            if (queryParams.length() > 0) {
-                queryParams.append("&");
-            }
-            queryParams.append("offset=").append(offset);
-        }
-        
-        return performGet("/products", queryParams.toString());
+        return performGet("/products", buildPagingQuery(limit, offset));
+    }
+    
+    /**
+     * Streams every product, fetching the following pages in parallel while the
+     * current one is consumed. Request failures surface as a RuntimeException
+     * wrapping the PluginException.
+     * 
+     * @return lazy stream over all products as JSON nodes
+     */
+    public Stream<JsonNode> streamAllProducts() {
+        return performGetAllPages("/products", JsonNode.class);
     }
     
     /**
@@ -156,4 +262,20 @@ public class ConnectApiPlugin extends BaseApiPlugin {
         
         return performGet("/products/" + productId);
     }
+    
+    /**
+     * Retrieves details of a specific product by ID without blocking the caller.
+     * 
+     * @param productId The unique identifier of the product
+     * @return future completed with the JSON product details, or exceptionally with a PluginException
+     */
+    public CompletableFuture<String> getProductByIdAsync(String productId) {
+        
+        if (productId == null || productId.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                new PluginException(getPluginName(), "getProductById", "Product ID is required"));
+        }
+        
+        return performGetAsync("/products/" + productId);
+    }
 }
\ No newline at end of file
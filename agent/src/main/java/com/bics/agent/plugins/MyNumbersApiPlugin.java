@@ -2,6 +2,12 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.models.mynumbers.PhoneNumber;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * MyNumbers API plugin for number management services.
@@ -14,6 +20,10 @@ public class MyNumbersApiPlugin extends BaseApiPlugin {
         super(configuration);
     }
     
+    public MyNumbersApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+    }
+    
     @Override
     protected String getBaseUrl() {
         return configuration.getApiEndpoints().getMyNumbersApiUrl();
@@ -34,18 +44,43 @@ public class MyNumbersApiPlugin extends BaseApiPlugin {
      */
     public String getNumbers(String limit, String offset) throws PluginException {
         
-        StringBuilder queryParams = new StringBuilder();
-        if (limit != null && !limit.isEmpty()) {
-            queryParams.append("limit=").append(limit);
-        }
-        if (offset != null && !offset.isEmpty()) {
-            if (queryParams.length() > 0) {
-                queryParams.append("&");
-            }
-            queryParams.append("offset=").append(offset);
-        }
-        
-        return performGet("/numbers", queryParams.toString());
+        return performGet("/numbers", buildPagingQuery(limit, offset));
+    }
+    
+    /**
+     * Retrieves a list of phone numbers as typed models.
+     * 
+     * @param limit Maximum number of numbers to return (optional)
+     * @param offset Number of numbers to skip (optional)
+     * @return the phone numbers
+     * @throws PluginException if the request fails
+     */
+    public List<PhoneNumber> getNumberList(String limit, String offset) throws PluginException {
+        return performGetList("/numbers", buildPagingQuery(limit, offset), PhoneNumber.class);
+    }
+    
+    /**
+     * Streams a list of phone numbers, decoding them incrementally from the response.
+     * The returned stream must be closed to release the connection.
+     * 
+     * @param limit Maximum number of numbers to return (optional)
+     * @param offset Number of numbers to skip (optional)
+     * @return lazily decoded stream of phone numbers
+     * @throws PluginException if the request fails
+     */
+    public Stream<PhoneNumber> streamNumbers(String limit, String offset) throws PluginException {
+        return performGetStream("/numbers", buildPagingQuery(limit, offset), PhoneNumber.class);
+    }
+    
+    /**
+     * Streams every phone number, fetching the following pages in parallel while the
+     * current one is consumed. Request failures surface as a RuntimeException
+     * wrapping the PluginException.
+     * 
+     * @return lazy stream over all phone numbers
+     */
+    public Stream<PhoneNumber> streamAllNumbers() {
+        return performGetAllPages("/numbers", PhoneNumber.class);
     }
     
     /**
@@ -64,6 +99,38 @@ public class MyNumbersApiPlugin extends BaseApiPlugin {
         return performGet("/numbers/" + phoneNumber);
     }
     
+    /**
+     * Retrieves details of a specific phone number as a typed model.
+     * 
+     * @param phoneNumber The phone number to retrieve details for
+     * @return the phone number details
+     * @throws PluginException if the request fails
+     */
+    public PhoneNumber getNumber(String phoneNumber) throws PluginException {
+        
+        if (phoneNumber == null || phoneNumber.isEmpty()) {
+            throw new PluginException(getPluginName(), "getNumber", "Phone number is required");
+        }
+        
+        return performGetObject("/numbers/" + phoneNumber, null, PhoneNumber.class);
+    }
+    
+    /**
+     * Retrieves details of a specific phone number without blocking the caller.
+     * 
+     * @param phoneNumber The phone number to retrieve details for
+     * @return future completed with the JSON phone number details, or exceptionally with a PluginException
+     */
+    public CompletableFuture<String> getNumberDetailsAsync(String phoneNumber) {
+        
+        if (phoneNumber == null || phoneNumber.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                new PluginException(getPluginName(), "getNumberDetails", "Phone number is required"));
+        }
+        
+        return performGetAsync("/numbers/" + phoneNumber);
+    }
+    
     /**
      * Reserves a new phone number.
      * 
@@ -2,15 +2,38 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.http.RequestGate;
+import com.bics.agent.models.cdr.CdrRecord;
+import com.bics.agent.pagination.TimeWindowIterator;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * MyNumbers CDR API plugin for Call Detail Record services.
  * This plugin provides access to call detail records and usage information.
+ * Long date ranges can be fetched as adaptive sub-windows in parallel with
+ * {@link #streamCdrRecordsWindowed(String, String, String)}.
  */
 public class MyNumbersCdrApiPlugin extends BaseApiPlugin {
     
+    private final TimeWindowIterator.Settings windowSettings;
+    
     public MyNumbersCdrApiPlugin(AgentConfiguration configuration) {
         super(configuration);
+        this.windowSettings = new TimeWindowIterator.Settings(configuration);
+    }
+    
+    public MyNumbersCdrApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+        this.windowSettings = new TimeWindowIterator.Settings(configuration);
     }
     
     @Override
@@ -27,19 +50,106 @@ public class MyNumbersCdrApiPlugin extends BaseApiPlugin {
             String phoneNumber,
             String startDate,
             String endDate) throws PluginException {
-        
-        StringBuilder queryParams = new StringBuilder();
-        if (startDate != null) queryParams.append("startDate=").append(startDate);
-        if (endDate != null) {
-            if (queryParams.length() > 0) queryParams.append("&");
-            queryParams.append("endDate=").append(endDate);
+        return performGet("/cdr/" + phoneNumber, buildDateRangeQuery(startDate, endDate));
+    }
+    
+    public List<CdrRecord> getCdrRecordList(
+            String phoneNumber,
+            String startDate,
+            String endDate) throws PluginException {
+        return performGetList("/cdr/" + phoneNumber, buildDateRangeQuery(startDate, endDate), CdrRecord.class);
+    }
+    
+    /**
+     * Streams call detail records, decoding them incrementally from the response.
+     * The returned stream must be closed to release the connection.
+     * 
+     * @param phoneNumber The phone number to retrieve records for
+     * @param startDate Start of the range (optional)
+     * @param endDate End of the range (optional)
+     * @return lazily decoded stream of CDR records
+     * @throws PluginException if the request fails
+     */
+    public Stream<CdrRecord> streamCdrRecords(
+            String phoneNumber,
+            String startDate,
+            String endDate) throws PluginException {
+        return performGetStream("/cdr/" + phoneNumber, buildDateRangeQuery(startDate, endDate), CdrRecord.class);
+    }
+    
+    /**
+     * Streams call detail records of a long date range, split into sub-windows that are
+     * fetched concurrently and merged in time order. Window sizes follow the density of the
+     * records seen so far ({@code http.pagination.timeWindows} settings). A date without a
+     * time covers the whole day (UTC). Without both bounds the range cannot be split and a
+     * single request is made, as in {@link #streamCdrRecords(String, String, String)}.
+     * The returned stream should be closed to cancel windows still in flight.
+     * 
+     * @param phoneNumber The phone number to retrieve records for
+     * @param startDate Start of the range, as a date or an ISO-8601 date-time
+     * @param endDate End of the range (inclusive), as a date or an ISO-8601 date-time
+     * @return stream of CDR records ordered by start time
+     * @throws PluginException if a bound cannot be parsed or the single request fails
+     */
+    public Stream<CdrRecord> streamCdrRecordsWindowed(
+            String phoneNumber,
+            String startDate,
+            String endDate) throws PluginException {
+        if (startDate == null || endDate == null) {
+            return streamCdrRecords(phoneNumber, startDate, endDate);
         }
-        
-        return performGet("/cdr/" + phoneNumber, queryParams.toString());
+        Instant from = parseBound(startDate, false);
+        Instant to = parseBound(endDate, true);
+        String endpoint = "/cdr/" + phoneNumber;
+        RequestGate.Admission windows = extendAdmission();
+        Stream<CdrRecord> records = new TimeWindowIterator<CdrRecord>(
+                (windowFrom, windowTo) -> performGetAsync(endpoint,
+                        buildDateRangeQuery(windowFrom.toString(), windowTo.toString()), windows)
+                        .thenApply(body -> decodeArray(endpoint, body, CdrRecord.class)),
+                MyNumbersCdrApiPlugin::startTimeOf, from, to, windowSettings).stream();
+        return windows != null ? records.onClose(windows::release) : records;
+    }
+    
+    public CompletableFuture<String> getCdrRecordsAsync(
+            String phoneNumber,
+            String startDate,
+            String endDate) {
+        return performGetAsync("/cdr/" + phoneNumber, buildDateRangeQuery(startDate, endDate));
     }
     
     public String getUsageSummary(
             String phoneNumber) throws PluginException {
         return performGet("/usage/" + phoneNumber);
     }
+    
+    private Instant parseBound(String value, boolean end) throws PluginException {
+        try {
+            if (value.length() == 10) {
+                LocalDate day = LocalDate.parse(value);
+                return end ? day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusMillis(1)
+                        : day.atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new PluginException(getPluginName(), "GET /cdr/{phoneNumber}", "Invalid date: " + value, e);
+        }
+    }
+    
+    private static Instant startTimeOf(CdrRecord record) {
+        try {
+            return record.getStartTime() != null ? OffsetDateTime.parse(record.getStartTime()).toInstant() : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    private String buildDateRangeQuery(String startDate, String endDate) {
+        StringBuilder queryParams = new StringBuilder();
+        if (startDate != null) queryParams.append("startDate=").append(startDate);
+        if (endDate != null) {
+            if (queryParams.length() > 0) queryParams.append("&");
+            queryParams.append("endDate=").append(endDate);
+        }
+        return queryParams.toString();
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
 
 /**
  * MyNumbers Disconnection API plugin for number disconnection services.
@@ -13,6 +14,10 @@ public class MyNumbersDisconnectionApiPlugin extends BaseApiPlugin {
         super(configuration);
     }
     
+    public MyNumbersDisconnectionApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+    }
+    
     @Override
     protected String getBaseUrl() {
         return configuration.getApiEndpoints().getMyNumbersDisconnectionApiUrl();
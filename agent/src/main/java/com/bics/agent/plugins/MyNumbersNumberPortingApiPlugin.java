@@ -2,6 +2,7 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.HttpTransport;
 
 /**
  * MyNumbers Number Porting API plugin.
@@ -13,6 +14,10 @@ public class MyNumbersNumberPortingApiPlugin extends BaseApiPlugin {
         super(configuration);
     }
     
+    public MyNumbersNumberPortingApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+    }
+    
     @Override
     protected String getBaseUrl() {
         return configuration.getApiEndpoints().getMyNumbersNumberPortingApiUrl();
@@ -2,15 +2,44 @@ package com.bics.agent.plugins;
 
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.execution.MicroBatcher;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.json.JsonMappers;
+import com.bics.agent.models.sms.SmsMessage;
+import com.bics.agent.sms.DeliveryStatusTable;
+import com.bics.agent.sms.DeliveryStatusTracker;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * SMS API plugin for SMS messaging services.
  * This plugin provides access to SMS sending and management operations.
+ * Messages passed to {@link #submitSms} are grouped by a {@link MicroBatcher} and sent
+ * through {@code /sms/bulk}, configured by the {@code sms.batching} settings. Delivery of
+ * sent messages is followed by a shared {@link DeliveryStatusTracker}. Status lookups are
+ * answered from the {@link DeliveryStatusTable} fed by pushed delivery reports once it holds
+ * a final status, and from the API otherwise.
  */
 public class SmsApiPlugin extends BaseApiPlugin {
     
+    private final MicroBatcher<SmsMessage, SmsMessage> batcher;
+    private final DeliveryStatusTable statusTable;
+    private DeliveryStatusTracker deliveryTracker;
+    
     public SmsApiPlugin(AgentConfiguration configuration) {
         super(configuration);
+        this.batcher = createBatcher();
+        this.statusTable = new DeliveryStatusTable(configuration.getInt("sms.receiver.statusTableSize", 100000));
+    }
+    
+    public SmsApiPlugin(AgentConfiguration configuration, HttpTransport transport) {
+        super(configuration, transport);
+        this.batcher = createBatcher();
+        this.statusTable = new DeliveryStatusTable(configuration.getInt("sms.receiver.statusTableSize", 100000));
     }
     
     @Override
@@ -28,29 +57,251 @@ public class SmsApiPlugin extends BaseApiPlugin {
             String to,
             String message) throws PluginException {
         
-        String requestBody = String.format("{\"from\":\"%s\",\"to\":\"%s\",\"message\":\"%s\"}", from, to, message);
-        return performPost("/sms/send", requestBody);
+        return performPost("/sms/send", generator -> writeSendRequest(generator, from, to, message));
+    }
+    
+    /**
+     * Queues a message for batched delivery through {@code /sms/bulk}. The batch is sent when
+     * it is full or when its linger time expires. When batching is disabled the message is
+     * sent on its own.
+     * 
+     * @param from The sender
+     * @param to The recipient
+     * @param message The message text
+     * @return future completed with the accepted message as reported by the bulk response,
+     *         or exceptionally with a PluginException if the batch or this message was rejected
+     */
+    public CompletableFuture<SmsMessage> submitSms(
+            String from,
+            String to,
+            String message) {
+        SmsMessage sms = new SmsMessage();
+        sms.setFrom(from);
+        sms.setTo(to);
+        sms.setMessage(message);
+        
+        CompletableFuture<SmsMessage> accepted = batcher != null
+                ? batcher.submit(sms)
+                : sendBatch(List.of(sms)).thenApply(results -> results.isEmpty() ? null : results.get(0));
+        return accepted.thenCompose(this::checkAccepted);
+    }
+    
+    public CompletableFuture<String> sendSmsAsync(
+            String from,
+            String to,
+            String message) {
+        return performPostAsync("/sms/send", generator -> writeSendRequest(generator, from, to, message));
     }
     
     public String getSmsStatus(
             String messageId) throws PluginException {
+        SmsMessage reported = statusTable.getFinal(messageId);
+        if (reported != null) {
+            return encodeReported(reported);
+        }
         return performGet("/sms/status/" + messageId);
     }
     
+    public SmsMessage getSmsMessage(
+            String messageId) throws PluginException {
+        SmsMessage reported = statusTable.getFinal(messageId);
+        if (reported != null) {
+            return reported;
+        }
+        return performGetObject("/sms/status/" + messageId, null, SmsMessage.class);
+    }
+    
+    public CompletableFuture<SmsMessage> getSmsMessageAsync(
+            String messageId) {
+        SmsMessage reported = statusTable.getFinal(messageId);
+        if (reported != null) {
+            return CompletableFuture.completedFuture(reported);
+        }
+        return fetchSmsMessageAsync(messageId);
+    }
+    
+    /**
+     * Fetches the status of a message from the SMS API, without consulting reported statuses.
+     * Used by the delivery tracker, whose polls must reach the API while reports are missing.
+     * 
+     * @param messageId the message ID
+     * @return future completed with the message as reported by the API
+     */
+    public CompletableFuture<SmsMessage> fetchSmsMessageAsync(
+            String messageId) {
+        String endpoint = "/sms/status/" + messageId;
+        return performGetAsync(endpoint).thenApply(body -> decodeObject(endpoint, body, SmsMessage.class));
+    }
+    
+    /**
+     * Records a pushed delivery report. The status becomes visible to status lookups and
+     * completes delivery tracking of the message if it is final.
+     * 
+     * @param report the reported message status
+     */
+    public void onDeliveryReport(SmsMessage report) {
+        statusTable.update(report);
+        DeliveryStatusTracker tracker;
+        synchronized (this) {
+            tracker = deliveryTracker;
+        }
+        if (tracker != null) {
+            tracker.onStatus(report);
+        }
+    }
+    
+    /**
+     * Gets the table of statuses received through delivery reports.
+     * 
+     * @return the delivery status table
+     */
+    public DeliveryStatusTable getStatusTable() {
+        return statusTable;
+    }
+    
+    /**
+     * Gets the delivery status tracker of this plugin, creating it on first use.
+     * 
+     * @return the delivery status tracker
+     */
+    public synchronized DeliveryStatusTracker getDeliveryTracker() {
+        if (deliveryTracker == null) {
+            deliveryTracker = new DeliveryStatusTracker(this, configuration);
+        }
+        return deliveryTracker;
+    }
+    
+    public CompletableFuture<String> getSmsStatusAsync(
+            String messageId) {
+        SmsMessage reported = statusTable.getFinal(messageId);
+        if (reported != null) {
+            try {
+                return CompletableFuture.completedFuture(encodeReported(reported));
+            } catch (PluginException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return performGetAsync("/sms/status/" + messageId);
+    }
+    
     public String getSmsHistory(
             String phoneNumber,
             String limit) throws PluginException {
         
-        StringBuilder queryParams = new StringBuilder();
-        if (limit != null && !limit.isEmpty()) {
-            queryParams.append("limit=").append(limit);
-        }
-        
-        return performGet("/sms/history/" + phoneNumber, queryParams.toString());
+        return performGet("/sms/history/" + phoneNumber, buildPagingQuery(limit, null));
+    }
+    
+    public List<SmsMessage> getSmsHistoryList(
+            String phoneNumber,
+            String limit) throws PluginException {
+        return performGetList("/sms/history/" + phoneNumber, buildPagingQuery(limit, null), SmsMessage.class);
+    }
+    
+    /**
+     * Streams the SMS history of a number, decoding messages incrementally from the response.
+     * The returned stream must be closed to release the connection.
+     * 
+     * @param phoneNumber The phone number to retrieve history for
+     * @param limit Maximum number of messages to return (optional)
+     * @return lazily decoded stream of SMS messages
+     * @throws PluginException if the request fails
+     */
+    public Stream<SmsMessage> streamSmsHistory(
+            String phoneNumber,
+            String limit) throws PluginException {
+        return performGetStream("/sms/history/" + phoneNumber, buildPagingQuery(limit, null), SmsMessage.class);
     }
     
     public String sendBulkSms(
             String bulkSmsData) throws PluginException {
         return performPost("/sms/bulk", bulkSmsData);
     }
+    
+    /**
+     * Sends several messages in one request. Only the {@code from}, {@code to} and
+     * {@code message} fields of each message are sent.
+     * 
+     * @param messages the messages to send
+     * @return JSON string containing the bulk send result
+     * @throws PluginException if the request fails
+     */
+    public String sendBulkSms(
+            List<SmsMessage> messages) throws PluginException {
+        return performPost("/sms/bulk", generator -> writeBulkRequest(generator, messages));
+    }
+    
+    /**
+     * Sends the pending batch and rejects further submissions.
+     */
+    @Override
+    public CompletableFuture<Void> drainQueued() {
+        return batcher != null ? batcher.drain() : super.drainQueued();
+    }
+    
+    @Override
+    public void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        synchronized (this) {
+            if (deliveryTracker != null) {
+                deliveryTracker.close();
+                deliveryTracker = null;
+            }
+        }
+        super.close();
+    }
+    
+    private MicroBatcher<SmsMessage, SmsMessage> createBatcher() {
+        if (!configuration.getBoolean("sms.batching.enabled", true)) {
+            return null;
+        }
+        return new MicroBatcher<>(getPluginName() + "-batcher",
+                configuration.getInt("sms.batching.maxBatchSize", 100),
+                configuration.getLong("sms.batching.lingerMs", 20L),
+                this::sendBatch);
+    }
+    
+    private CompletableFuture<List<SmsMessage>> sendBatch(List<SmsMessage> messages) {
+        return performPostAsync("/sms/bulk", generator -> writeBulkRequest(generator, messages))
+                .thenApply(body -> decodeArray("/sms/bulk", body, SmsMessage.class));
+    }
+    
+    private String encodeReported(SmsMessage reported) throws PluginException {
+        try {
+            return JsonMappers.writer(SmsMessage.class).writeValueAsString(reported);
+        } catch (IOException e) {
+            throw new PluginException(getPluginName(), "getSmsStatus", "Failed to encode reported status", e);
+        }
+    }
+    
+    private CompletableFuture<SmsMessage> checkAccepted(SmsMessage result) {
+        if (result == null) {
+            return CompletableFuture.failedFuture(
+                new PluginException(getPluginName(), "sendSms", "Missing result in bulk response"));
+        }
+        if (result.getErrorCode() != null) {
+            return CompletableFuture.failedFuture(new PluginException(getPluginName(), "sendSms",
+                result.getErrorCode() + ": " + result.getErrorMessage()));
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+    
+    static void writeSendRequest(JsonGenerator generator, String from, String to, String message) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("from", from);
+        generator.writeStringField("to", to);
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+    }
+    
+    static void writeBulkRequest(JsonGenerator generator, List<SmsMessage> messages) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("messages");
+        for (SmsMessage message : messages) {
+            writeSendRequest(generator, message.getFrom(), message.getTo(), message.getMessage());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.models.sms.SmsMessage;
+
+/**
+ * Receives the final delivery status of tracked messages.
+ */
+@FunctionalInterface
+public interface DeliveryListener {
+    
+    /**
+     * Called once when a tracked message reaches a final state.
+     * Runs on the tracker's callback path and should return quickly.
+     * 
+     * @param message the message with its final status
+     */
+    void onFinalStatus(SmsMessage message);
+}
@@ -0,0 +1,412 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.json.JsonMappers;
+import com.bics.agent.models.sms.SmsMessage;
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.AsyncServerBootstrap;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AbstractBinAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Embedded non-blocking HTTP listener accepting SMS delivery-report callbacks.
+ * Reports are POSTed as JSON, either a single {@link SmsMessage} object or an array of them,
+ * and handed to the sink on the I/O reactor threads; the sink must not block. The listener
+ * answers 204 on success, 400 for malformed bodies, 405 for other methods and 413 for bodies
+ * above {@code maxBodyBytes}. A batch is parsed in full before any report reaches the sink,
+ * so a malformed batch is rejected as a whole.
+ * <p>
+ * Every callback must be authenticated with the configured shared secret, either as
+ * {@code Authorization: Bearer <secret>} or as an {@code X-Signature: sha256=<hex>} header
+ * carrying the HMAC-SHA256 of the body keyed with the secret. Other callbacks are answered
+ * with 401 and never reach the sink. Callbacks that carry neither a valid bearer token nor a
+ * signature are rejected from their headers, and their bodies are discarded unbuffered.
+ */
+public class DeliveryReportReceiver implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryReportReceiver.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String SIGNATURE_PREFIX = "sha256=";
+    private static final String REJECTION_ATTRIBUTE = "bics.delivery-report.rejection";
+    private static final int DEFAULT_MAX_BODY_BYTES = 1048576;
+    
+    /**
+     * Header carrying the HMAC-SHA256 signature of a callback body.
+     */
+    public static final String SIGNATURE_HEADER = "X-Signature";
+    
+    private final String host;
+    private final int port;
+    private final String path;
+    private final int ioThreads;
+    private final int maxBodyBytes;
+    private final Consumer<SmsMessage> sink;
+    private final byte[] secret;
+    private final SecretKeySpec signingKey;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong unauthorized = new AtomicLong();
+    private HttpAsyncServer server;
+    private InetSocketAddress address;
+    
+    /**
+     * Creates a receiver from the {@code sms.receiver} settings of the given configuration.
+     * 
+     * @param configuration the agent configuration
+     * @param sink consumer of parsed status updates
+     * @throws IllegalArgumentException if {@code sms.receiver.secret} is not set
+     */
+    public DeliveryReportReceiver(AgentConfiguration configuration, Consumer<SmsMessage> sink) {
+        this(configuration.getString("sms.receiver.host", "127.0.0.1"),
+             configuration.getInt("sms.receiver.port", 8089),
+             configuration.getString("sms.receiver.path", "/sms/delivery-reports"),
+             configuration.getInt("sms.receiver.ioThreads", 2),
+             configuration.getString("sms.receiver.secret", null),
+             configuration.getInt("sms.receiver.maxBodyBytes", DEFAULT_MAX_BODY_BYTES),
+             sink);
+    }
+    
+    /**
+     * Creates a receiver with explicit settings.
+     * 
+     * @param host the address to bind to
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @param path the callback path
+     * @param ioThreads the number of I/O reactor threads
+     * @param secret the shared secret callbacks must be authenticated with
+     * @param sink consumer of parsed status updates
+     * @throws IllegalArgumentException if the secret is null or empty
+     */
+    public DeliveryReportReceiver(String host, int port, String path, int ioThreads, String secret,
+                                  Consumer<SmsMessage> sink) {
+        this(host, port, path, ioThreads, secret, DEFAULT_MAX_BODY_BYTES, sink);
+    }
+    
+    /**
+     * Creates a receiver with explicit settings and body size limit.
+     * 
+     * @param host the address to bind to
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @param path the callback path
+     * @param ioThreads the number of I/O reactor threads
+     * @param secret the shared secret callbacks must be authenticated with
+     * @param maxBodyBytes the largest callback body accepted
+     * @param sink consumer of parsed status updates
+     * @throws IllegalArgumentException if the secret is null or empty
+     */
+    public DeliveryReportReceiver(String host, int port, String path, int ioThreads, String secret,
+                                  int maxBodyBytes, Consumer<SmsMessage> sink) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A shared secret (sms.receiver.secret) is required to receive delivery reports");
+        }
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.ioThreads = Math.max(1, ioThreads);
+        this.maxBodyBytes = Math.max(1, maxBodyBytes);
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.signingKey = new SecretKeySpec(this.secret, HMAC_ALGORITHM);
+        this.sink = sink;
+    }
+    
+    /**
+     * Starts listening.
+     * 
+     * @throws IOException if the listener cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpAsyncServer created = AsyncServerBootstrap.bootstrap()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads)
+                        .setSoReuseAddress(true)
+                        .setTcpNoDelay(true)
+                        .build())
+                .register(path, new ReportHandler())
+                .create();
+        created.start();
+        try {
+            ListenerEndpoint endpoint = created.listen(new InetSocketAddress(host, port), URIScheme.HTTP).get();
+            address = (InetSocketAddress) endpoint.getAddress();
+        } catch (InterruptedException e) {
+            created.close(CloseMode.IMMEDIATE);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while binding delivery report receiver", e);
+        } catch (ExecutionException e) {
+            created.close(CloseMode.IMMEDIATE);
+            throw new IOException("Failed to bind delivery report receiver to " + host + ":" + port, e.getCause());
+        }
+        server = created;
+        logger.info("Delivery report receiver listening on {}{}", address, path);
+    }
+    
+    /**
+     * Gets the bound address.
+     * 
+     * @return the bound address, or null if the receiver is not started
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return address;
+    }
+    
+    /**
+     * Gets the number of status updates accepted.
+     * 
+     * @return the number of accepted updates
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+    
+    /**
+     * Gets the number of callbacks rejected as malformed.
+     * 
+     * @return the number of rejected callbacks
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    
+    /**
+     * Gets the number of callbacks rejected because they were not authenticated.
+     * 
+     * @return the number of unauthenticated callbacks
+     */
+    public long getUnauthorizedCount() {
+        return unauthorized.get();
+    }
+    
+    /**
+     * Computes the {@value #SIGNATURE_HEADER} header value of a callback body.
+     * 
+     * @param secret the shared secret
+     * @param body the callback body
+     * @return the signature header value, {@code sha256=<hex>}
+     */
+    public static String sign(String secret, byte[] body) {
+        return SIGNATURE_PREFIX + HexFormat.of().formatHex(
+            hmac(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM), body));
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.initiateShutdown();
+            try {
+                server.awaitShutdown(TimeValue.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server.close(CloseMode.GRACEFUL);
+            server = null;
+            address = null;
+            logger.info("Delivery report receiver stopped");
+        }
+    }
+    
+    private boolean hasValidBearer(HttpRequest request) {
+        Header authorization = request.getFirstHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.getValue().startsWith(BEARER_PREFIX)) {
+            byte[] token = authorization.getValue().substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8);
+            return MessageDigest.isEqual(secret, token);
+        }
+        return false;
+    }
+    
+    private boolean isAuthenticated(HttpRequest request, byte[] body) {
+        if (hasValidBearer(request)) {
+            return true;
+        }
+        Header signature = request.getFirstHeader(SIGNATURE_HEADER);
+        if (signature != null && signature.getValue().startsWith(SIGNATURE_PREFIX)) {
+            try {
+                byte[] expected = hmac(signingKey, body != null ? body : new byte[0]);
+                byte[] actual = HexFormat.of().parseHex(signature.getValue().substring(SIGNATURE_PREFIX.length()));
+                return MessageDigest.isEqual(expected, actual);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    private static byte[] hmac(SecretKeySpec key, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+    
+    private int accept(byte[] body) {
+        if (body == null || body.length == 0) {
+            rejected.incrementAndGet();
+            return HttpStatus.SC_BAD_REQUEST;
+        }
+        List<SmsMessage> batch = new ArrayList<>();
+        try (MappingIterator<SmsMessage> reports = JsonMappers.reader(SmsMessage.class).readValues(body)) {
+            while (reports.hasNextValue()) {
+                batch.add(reports.nextValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            rejected.incrementAndGet();
+            logger.debug("Rejected malformed delivery report: {}", e.getMessage());
+            return HttpStatus.SC_BAD_REQUEST;
+        }
+        for (SmsMessage report : batch) {
+            sink.accept(report);
+            received.incrementAndGet();
+        }
+        return HttpStatus.SC_NO_CONTENT;
+    }
+    
+    /**
+     * Decides from the request head alone whether a callback is rejected, so that the body of
+     * a rejected callback is never buffered.
+     * 
+     * @return the rejection status, or 0 if the body is to be read
+     */
+    private int precheck(HttpRequest request, EntityDetails entityDetails) {
+        if (!"POST".equalsIgnoreCase(request.getMethod())) {
+            return HttpStatus.SC_METHOD_NOT_ALLOWED;
+        }
+        if (!hasValidBearer(request) && request.getFirstHeader(SIGNATURE_HEADER) == null) {
+            return HttpStatus.SC_UNAUTHORIZED;
+        }
+        if (entityDetails != null && entityDetails.getContentLength() > maxBodyBytes) {
+            return HttpStatus.SC_REQUEST_TOO_LONG;
+        }
+        return 0;
+    }
+    
+    private final class ReportHandler implements AsyncServerRequestHandler<Message<HttpRequest, byte[]>> {
+        
+        @Override
+        public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                            HttpContext context) {
+            int rejection = precheck(request, entityDetails);
+            if (rejection != 0) {
+                context.setAttribute(REJECTION_ATTRIBUTE, rejection);
+                return new BasicRequestConsumer<>(entityDetails != null ? new DiscardingEntityConsumer<>() : null);
+            }
+            return new BasicRequestConsumer<>(entityDetails != null ? new BoundedBodyConsumer(context) : null);
+        }
+        
+        @Override
+        public void handle(Message<HttpRequest, byte[]> message, ResponseTrigger responseTrigger, HttpContext context)
+                throws HttpException, IOException {
+            Object rejection = context.getAttribute(REJECTION_ATTRIBUTE);
+            int status;
+            if (rejection != null) {
+                status = (Integer) rejection;
+                if (status == HttpStatus.SC_UNAUTHORIZED) {
+                    unauthorized.incrementAndGet();
+                    logger.debug("Rejected unauthenticated delivery report");
+                } else if (status == HttpStatus.SC_REQUEST_TOO_LONG) {
+                    rejected.incrementAndGet();
+                    logger.debug("Rejected delivery report larger than {} bytes", maxBodyBytes);
+                }
+            } else if (!isAuthenticated(message.getHead(), message.getBody())) {
+                unauthorized.incrementAndGet();
+                logger.debug("Rejected unauthenticated delivery report");
+                status = HttpStatus.SC_UNAUTHORIZED;
+            } else {
+                status = accept(message.getBody());
+            }
+            AsyncResponseBuilder response = AsyncResponseBuilder.create(status);
+            if (status == HttpStatus.SC_BAD_REQUEST) {
+                response.setEntity("Malformed delivery report", ContentType.TEXT_PLAIN);
+            }
+            responseTrigger.submitResponse(response.build(), context);
+        }
+    }
+    
+    /**
+     * Buffers a callback body up to {@code maxBodyBytes}. A longer body, for example a chunked
+     * one without Content-Length, is discarded as it arrives and the callback rejected.
+     */
+    private final class BoundedBodyConsumer extends AbstractBinAsyncEntityConsumer<byte[]> {
+        private final HttpContext context;
+        private final ByteArrayBuffer buffer = new ByteArrayBuffer(1024);
+        private boolean oversized;
+        
+        private BoundedBodyConsumer(HttpContext context) {
+            this.context = context;
+        }
+        
+        @Override
+        protected void streamStart(ContentType contentType) {
+        }
+        
+        @Override
+        protected int capacityIncrement() {
+            return Integer.MAX_VALUE;
+        }
+        
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) {
+            if (!oversized && buffer.length() + src.remaining() > maxBodyBytes) {
+                oversized = true;
+                buffer.clear();
+                context.setAttribute(REJECTION_ATTRIBUTE, HttpStatus.SC_REQUEST_TOO_LONG);
+            }
+            if (oversized) {
+                src.position(src.limit());
+            } else {
+                buffer.append(src);
+            }
+        }
+        
+        @Override
+        protected byte[] generateContent() {
+            return oversized ? null : buffer.toByteArray();
+        }
+        
+        @Override
+        public void releaseResources() {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.json.JsonBodyEncoder;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator posting synthetic delivery reports to a {@link DeliveryReportReceiver}.
+ * Reports are sent in arrays of {@code reportsPerRequest}, with at most {@code concurrency}
+ * requests outstanding. Every request is signed with the receiver's shared secret.
+ * <p>
+ * Usage: {@code DeliveryReportStubSender [url] [totalReports] [reportsPerRequest] [concurrency] [secret]}
+ */
+public final class DeliveryReportStubSender {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryReportStubSender.class);
+    
+    private DeliveryReportStubSender() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://127.0.0.1:8089/sms/delivery-reports";
+        int totalReports = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int reportsPerRequest = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        String secret = args.length > 4 ? args[4] : System.getenv("BICS_SMS_RECEIVER_SECRET");
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("The receiver secret must be passed as fifth argument or BICS_SMS_RECEIVER_SECRET");
+        }
+        
+        Result result = send(url, secret, totalReports, reportsPerRequest, concurrency);
+        logger.info("Sent {} reports in {} requests ({} failed) in {} ms: {} reports/s",
+            result.getReports(), result.getRequests(), result.getFailedRequests(),
+            TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()), String.format("%.0f", result.getReportsPerSecond()));
+    }
+    
+    /**
+     * Sends synthetic reports and waits for all responses.
+     * 
+     * @param url the receiver URL
+     * @param secret the shared secret of the receiver
+     * @param totalReports the number of reports to send
+     * @param reportsPerRequest the number of reports per request
+     * @param concurrency the maximum number of outstanding requests
+     * @return the run statistics
+     * @throws IOException if a request body cannot be encoded
+     * @throws InterruptedException if interrupted while waiting for responses
+     */
+    public static Result send(String url, String secret, int totalReports, int reportsPerRequest, int concurrency)
+            throws IOException, InterruptedException {
+        int window = Math.max(1, concurrency);
+        int batch = Math.max(1, reportsPerRequest);
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(window)
+                .setMaxConnPerRoute(window)
+                .build();
+        Semaphore outstanding = new Semaphore(window);
+        AtomicLong requests = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        
+        try (CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                        .build())
+                .disableAutomaticRetries()
+                .build()) {
+            client.start();
+            long startNanos = System.nanoTime();
+            for (int sent = 0; sent < totalReports; sent += batch) {
+                byte[] body = encodeReports(sent, Math.min(batch, totalReports - sent));
+                SimpleHttpRequest request = SimpleRequestBuilder.post(url)
+                        .setBody(body, ContentType.APPLICATION_JSON)
+                        .setHeader(DeliveryReportReceiver.SIGNATURE_HEADER, DeliveryReportReceiver.sign(secret, body))
+                        .build();
+                outstanding.acquire();
+                client.execute(request, new FutureCallback<SimpleHttpResponse>() {
+                    @Override
+                    public void completed(SimpleHttpResponse response) {
+                        if (response.getCode() >= 300) {
+                            failed.incrementAndGet();
+                        }
+                        done();
+                    }
+                    
+                    @Override
+                    public void failed(Exception ex) {
+                        failed.incrementAndGet();
+                        done();
+                    }
+                    
+                    @Override
+                    public void cancelled() {
+                        failed.incrementAndGet();
+                        done();
+                    }
+                    
+                    private void done() {
+                        requests.incrementAndGet();
+                        outstanding.release();
+                    }
+                });
+            }
+            outstanding.acquire(window);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            client.close(CloseMode.GRACEFUL);
+            return new Result(totalReports, requests.get(), failed.get(), elapsedNanos);
+        }
+    }
+    
+    private static byte[] encodeReports(int firstId, int count) throws IOException {
+        return JsonBodyEncoder.encode(generator -> {
+            generator.writeStartArray();
+            for (int i = firstId; i < firstId + count; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("message_id", "stub-" + i);
+                generator.writeStringField("status", "delivered");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        });
+    }
+    
+    /**
+     * Statistics of a stub sender run.
+     */
+    public static final class Result {
+        private final long reports;
+        private final long requests;
+        private final long failedRequests;
+        private final long elapsedNanos;
+        
+        Result(long reports, long requests, long failedRequests, long elapsedNanos) {
+            this.reports = reports;
+            this.requests = requests;
+            this.failedRequests = failedRequests;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getReports() {
+            return reports;
+        }
+        
+        public long getRequests() {
+            return requests;
+        }
+        
+        public long getFailedRequests() {
+            return failedRequests;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public double getReportsPerSecond() {
+            return elapsedNanos > 0 ? reports * 1e9 / elapsedNanos : 0.0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.models.sms.SmsMessage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory table of the latest known status per message, fed by delivery reports.
+ * Lookups are lock-free and updates lock only the entry of their message. When the table
+ * holds more than {@code maxEntries} messages, the entries inserted first are evicted.
+ */
+public class DeliveryStatusTable {
+    
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, SmsMessage> statuses = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    
+    /**
+     * Creates a new table.
+     * 
+     * @param maxEntries the maximum number of messages kept
+     */
+    public DeliveryStatusTable(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+    
+    /**
+     * Records the status of a message. A final status is never replaced by a non-final one,
+     * so reports arriving out of order cannot move a message backwards.
+     * 
+     * @param message the message with its current status
+     */
+    public void update(SmsMessage message) {
+        String messageId = message.getMessageId();
+        if (messageId == null) {
+            return;
+        }
+        boolean[] inserted = new boolean[1];
+        // Applied atomically per message, so concurrent reports cannot undo a final status
+        statuses.compute(messageId, (id, previous) -> {
+            if (previous == null) {
+                inserted[0] = true;
+                return message;
+            }
+            if (DeliveryStatusTracker.isFinal(previous.getStatus())
+                    && !DeliveryStatusTracker.isFinal(message.getStatus())) {
+                return previous;
+            }
+            return message;
+        });
+        if (inserted[0]) {
+            insertionOrder.add(messageId);
+            if (size.incrementAndGet() > maxEntries) {
+                evictOldest();
+            }
+        }
+    }
+    
+    /**
+     * Gets the latest known status of a message.
+     * 
+     * @param messageId the message ID
+     * @return the message, or null if no report was received for it
+     */
+    public SmsMessage get(String messageId) {
+        return statuses.get(messageId);
+    }
+    
+    /**
+     * Gets the status of a message if a final one has been reported. A non-final report may
+     * be followed by a callback that is lost, so it does not answer a status lookup.
+     * 
+     * @param messageId the message ID
+     * @return the message, or null if no final status was reported for it
+     */
+    public SmsMessage getFinal(String messageId) {
+        SmsMessage reported = statuses.get(messageId);
+        return reported != null && DeliveryStatusTracker.isFinal(reported.getStatus()) ? reported : null;
+    }
+    
+    /**
+     * Gets the number of messages in the table.
+     * 
+     * @return the number of messages
+     */
+    public int size() {
+        return size.get();
+    }
+    
+    private void evictOldest() {
+        String oldest = insertionOrder.poll();
+        if (oldest != null && statuses.remove(oldest) != null) {
+            size.decrementAndGet();
+        }
+    }
+}
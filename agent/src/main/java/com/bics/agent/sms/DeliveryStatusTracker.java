@@ -0,0 +1,231 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.execution.HashedTimingWheel;
+import com.bics.agent.models.sms.SmsMessage;
+import com.bics.agent.plugins.SmsApiPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks outstanding SMS messages until they reach a final delivery state.
+ * Registered messages are polled on a {@link HashedTimingWheel}. The poll interval grows with
+ * the age of the message ({@code sms.tracking.ageRatio} of its age, between
+ * {@code initialIntervalMs} and {@code maxIntervalMs}), so old undelivered messages cost
+ * little, and at most {@code maxConcurrentPolls} status requests are in flight at a time.
+ * Messages that stay pending longer than {@code maxAgeMs} are abandoned. Statuses pushed
+ * through {@link #onStatus} complete tracking without waiting for the next poll.
+ */
+public class DeliveryStatusTracker implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryStatusTracker.class);
+    
+    private static final Set<String> FINAL_STATES = Set.of(
+        "delivered", "failed", "rejected", "expired", "undeliverable", "deleted");
+    
+    private final SmsApiPlugin plugin;
+    private final long initialIntervalMs;
+    private final long maxIntervalMs;
+    private final double ageRatio;
+    private final long maxAgeNanos;
+    private final Semaphore pollPermits;
+    private final HashedTimingWheel<Tracked> wheel;
+    private final ConcurrentHashMap<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<DeliveryListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Creates a tracker from the {@code sms.tracking} settings of the given configuration.
+     * 
+     * @param plugin the SMS plugin used to poll statuses
+     * @param configuration the agent configuration
+     */
+    public DeliveryStatusTracker(SmsApiPlugin plugin, AgentConfiguration configuration) {
+        this(plugin,
+             configuration.getLong("sms.tracking.tickMs", 100L),
+             configuration.getInt("sms.tracking.wheelSize", 512),
+             configuration.getLong("sms.tracking.initialIntervalMs", 1000L),
+             configuration.getLong("sms.tracking.maxIntervalMs", 60000L),
+             configuration.getDouble("sms.tracking.ageRatio", 0.25),
+             configuration.getLong("sms.tracking.maxAgeMs", 86400000L),
+             configuration.getInt("sms.tracking.maxConcurrentPolls", 32));
+    }
+    
+    /**
+     * Creates a tracker with explicit settings.
+     * 
+     * @param plugin the SMS plugin used to poll statuses
+     * @param tickMs the timing wheel resolution
+     * @param wheelSize the number of timing wheel buckets
+     * @param initialIntervalMs the poll interval of a new message
+     * @param maxIntervalMs the upper bound of the poll interval
+     * @param ageRatio the poll interval as a fraction of the message age
+     * @param maxAgeMs the age after which a pending message is abandoned
+     * @param maxConcurrentPolls the maximum number of status requests in flight
+     */
+    public DeliveryStatusTracker(SmsApiPlugin plugin, long tickMs, int wheelSize, long initialIntervalMs,
+                                 long maxIntervalMs, double ageRatio, long maxAgeMs, int maxConcurrentPolls) {
+        this.plugin = plugin;
+        this.initialIntervalMs = initialIntervalMs;
+        this.maxIntervalMs = Math.max(initialIntervalMs, maxIntervalMs);
+        this.ageRatio = ageRatio;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+        this.pollPermits = new Semaphore(Math.max(1, maxConcurrentPolls));
+        this.wheel = new HashedTimingWheel<>("sms-delivery-tracker", tickMs, wheelSize, this::pollDue);
+    }
+    
+    /**
+     * Registers a listener notified of every tracked message reaching a final state.
+     * 
+     * @param listener the listener
+     */
+    public void addListener(DeliveryListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener.
+     * 
+     * @param listener the listener
+     */
+    public void removeListener(DeliveryListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Starts tracking a message. Tracking the same message twice returns the same future.
+     * 
+     * @param messageId the message ID returned when the message was sent
+     * @return future completed with the message in its final state, or exceptionally with a
+     *         PluginException if tracking is abandoned
+     */
+    public CompletableFuture<SmsMessage> track(String messageId) {
+        Tracked entry = tracked.computeIfAbsent(messageId, id -> {
+            Tracked created = new Tracked(id);
+            wheel.schedule(created, initialIntervalMs);
+            return created;
+        });
+        onStatus(plugin.getStatusTable().getFinal(messageId));
+        return entry.future;
+    }
+    
+    /**
+     * Reports a status obtained elsewhere, for example from a delivery receipt.
+     * A final status completes tracking of the message immediately.
+     * 
+     * @param message the message with its current status
+     */
+    public void onStatus(SmsMessage message) {
+        if (message == null || message.getMessageId() == null || !isFinal(message.getStatus())) {
+            return;
+        }
+        Tracked entry = tracked.remove(message.getMessageId());
+        if (entry != null) {
+            complete(entry, message);
+        }
+    }
+    
+    /**
+     * Gets the number of messages being tracked.
+     * 
+     * @return the number of tracked messages
+     */
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+    
+    /**
+     * Checks whether a status is final.
+     * 
+     * @param status the status reported by the SMS API
+     * @return true if the message will not change state anymore
+     */
+    public static boolean isFinal(String status) {
+        return status != null && FINAL_STATES.contains(status.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Stops polling and fails the futures of all messages still being tracked.
+     */
+    @Override
+    public void close() {
+        wheel.close();
+        for (Tracked entry : tracked.values()) {
+            if (tracked.remove(entry.messageId, entry)) {
+                entry.future.completeExceptionally(new PluginException(
+                    "SMSAPI", "trackDelivery", "Tracker closed before message " + entry.messageId + " completed"));
+            }
+        }
+    }
+    
+    private void pollDue(List<Tracked> due) {
+        for (Tracked entry : due) {
+            if (tracked.get(entry.messageId) != entry) {
+                continue;
+            }
+            long ageNanos = System.nanoTime() - entry.registeredNanos;
+            if (ageNanos > maxAgeNanos) {
+                if (tracked.remove(entry.messageId, entry)) {
+                    entry.future.completeExceptionally(new PluginException(
+                        "SMSAPI", "trackDelivery", "Message " + entry.messageId + " did not reach a final state"));
+                }
+                continue;
+            }
+            if (!pollPermits.tryAcquire()) {
+                // Too many polls in flight: retry on the next tick instead of queueing requests.
+                wheel.schedule(entry, 0L);
+                continue;
+            }
+            plugin.fetchSmsMessageAsync(entry.messageId).whenComplete((message, failure) -> {
+                pollPermits.release();
+                if (failure != null) {
+                    logger.debug("Status poll for message {} failed: {}", entry.messageId, failure.getMessage());
+                } else if (isFinal(message.getStatus())) {
+                    if (tracked.remove(entry.messageId, entry)) {
+                        complete(entry, message);
+                    }
+                    return;
+                }
+                if (tracked.get(entry.messageId) == entry) {
+                    wheel.schedule(entry, nextIntervalMs(entry));
+                }
+            });
+        }
+    }
+    
+    private long nextIntervalMs(Tracked entry) {
+        long ageMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.registeredNanos);
+        return Math.min(maxIntervalMs, Math.max(initialIntervalMs, (long) (ageMs * ageRatio)));
+    }
+    
+    private void complete(Tracked entry, SmsMessage message) {
+        // Listeners run first, so a caller waiting on the future sees them notified
+        for (DeliveryListener listener : listeners) {
+            try {
+                listener.onFinalStatus(message);
+            } catch (RuntimeException e) {
+                logger.warn("Delivery listener failed for message {}", entry.messageId, e);
+            }
+        }
+        entry.future.complete(message);
+    }
+    
+    private static final class Tracked {
+        private final String messageId;
+        private final long registeredNanos = System.nanoTime();
+        private final CompletableFuture<SmsMessage> future = new CompletableFuture<>();
+        
+        private Tracked(String messageId) {
+            this.messageId = messageId;
+        }
+    }
+}
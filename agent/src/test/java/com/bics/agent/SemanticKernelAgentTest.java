@@ -1,12 +1,31 @@
 package com.bics.agent;
 
+import com.bics.agent.cdr.CdrStore;
 import com.bics.agent.config.AgentConfiguration;
 import com.bics.agent.exceptions.AgentException;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.models.cdr.CdrRecord;
+import com.bics.agent.models.sms.SmsMessage;
+import com.bics.agent.plugins.SmsApiPlugin;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -61,6 +80,38 @@ public class SemanticKernelAgentTest {
         agent.stop();
     }
     
+    @Test
+    void shouldCloseSharedTransportOnStop() throws AgentException {
+        // When
+        agent.start();
+        HttpTransport transport = agent.getTransport();
+        
+        // Then
+        assertNotNull(transport);
+        assertFalse(transport.isClosed());
+        
+        // When
+        agent.stop();
+        
+        // Then
+        assertTrue(transport.isClosed());
+        assertNull(agent.getTransport());
+    }
+    
+    @Test
+    void shouldRunSubmittedCallsOnlyWhileRunning() throws AgentException {
+        // Given
+        assertTrue(agent.submit(() -> "early").isCompletedExceptionally());
+        
+        // When
+        agent.start();
+        
+        // Then
+        assertEquals("result", agent.submit(() -> "result").join());
+        
+        agent.stop();
+    }
+    
     @Test
     void shouldReturnNullForNonExistentPlugin() throws AgentException {
         // When
@@ -71,4 +122,168 @@ public class SemanticKernelAgentTest {
         
         agent.stop();
     }
-}
\ No newline at end of file
+    
+    @Test
+    void shouldRefusePluginLookupsOnceStopped() throws AgentException {
+        // Given
+        agent.start();
+        SmsApiPlugin sms = (SmsApiPlugin) agent.getPlugin("SMSAPI");
+        
+        // When
+        agent.stop();
+        
+        // Then
+        assertThrows(IllegalStateException.class, () -> agent.getPlugin("SMSAPI"));
+        assertThrows(IllegalStateException.class, () -> agent.getPlugin("MyNumbersAPI"));
+        assertTrue(sms.submitSms("from", "to", "text").isCompletedExceptionally());
+    }
+    
+    @Test
+    void shouldReportReadyAfterWarmingUpConnections() throws Exception {
+        // Given
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        SemanticKernelAgent warmed = new SemanticKernelAgent(AgentConfiguration.fromMap(Map.of(
+            "api", Map.of("endpoints", Map.of("sms", url)),
+            "startup", Map.of("warmup", Map.of("enabled", true, "endpoints", List.of("sms"), "connections", 3)))));
+        
+        try {
+            // When
+            warmed.start();
+            warmed.whenReady().get(10, TimeUnit.SECONDS);
+            
+            // Then
+            assertTrue(warmed.isReady());
+            assertEquals(3, warmed.getTransport().getPoolStats().getAvailable());
+        } finally {
+            warmed.stop();
+            server.stop(0);
+        }
+        assertFalse(warmed.isReady());
+    }
+    
+    @Test
+    void shouldDrainInFlightCallsBeforeStopping() throws Exception {
+        // Given
+        agent.start();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = agent.submit(() -> {
+            started.countDown();
+            release.join();
+            return "done";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        HttpTransport transport = agent.getTransport();
+        
+        // When
+        CompletableFuture<Void> stopping = CompletableFuture.runAsync(() -> agent.stop(Duration.ofSeconds(10)));
+        while (agent.getState() != SemanticKernelAgent.State.DRAINING) {
+            Thread.sleep(5);
+        }
+        
+        // Then
+        assertFalse(agent.isRunning());
+        assertTrue(agent.submit(() -> "late").isCompletedExceptionally());
+        assertFalse(stopping.isDone());
+        assertFalse(transport.isClosed());
+        
+        // When
+        release.complete(null);
+        stopping.get(10, TimeUnit.SECONDS);
+        
+        // Then
+        assertEquals("done", inFlight.join());
+        assertEquals(SemanticKernelAgent.State.STOPPED, agent.getState());
+        assertTrue(transport.isClosed());
+        assertTrue(agent.getAllPlugins().isEmpty());
+    }
+    
+    @Test
+    void shouldSendQueuedSmsBeforeStopping() throws Exception {
+        // Given
+        AtomicInteger bulkRequests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sms/bulk", exchange -> {
+            bulkRequests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "[{\"message_id\":\"m1\",\"status\":\"queued\"}]".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        SemanticKernelAgent smsAgent = new SemanticKernelAgent(AgentConfiguration.fromMap(Map.of(
+            "api", Map.of("endpoints", Map.of("sms", "http://127.0.0.1:" + server.getAddress().getPort())),
+            "sms", Map.of("batching", Map.of("enabled", true, "lingerMs", 60000)))));
+        
+        try {
+            smsAgent.start();
+            SmsApiPlugin sms = (SmsApiPlugin) smsAgent.getPlugin("SMSAPI");
+            CompletableFuture<SmsMessage> accepted = sms.submitSms("BICS", "+3221", "hello");
+            
+            // When
+            smsAgent.stop(Duration.ofSeconds(10));
+            
+            // Then
+            assertEquals("m1", accepted.get(1, TimeUnit.SECONDS).getMessageId());
+            assertEquals(1, bulkRequests.get());
+        } finally {
+            smsAgent.stop();
+            server.stop(0);
+        }
+    }
+    
+    @Test
+    void shouldRebuildUsageFromCdrStoreAtStartup(@TempDir Path directory) throws Exception {
+        // Given
+        try (CdrStore store = new CdrStore(directory, 0L, 1000)) {
+            CdrRecord record = new CdrRecord("r-1", "+3221100001", "voice", "2024-06-01T00:00:00Z", 60);
+            record.setCustomerId("c-1");
+            store.ingest("+3221100001", Stream.of(record));
+        }
+        SemanticKernelAgent cdrAgent = new SemanticKernelAgent(AgentConfiguration.fromMap(Map.of(
+            "cdr", Map.of("store", Map.of("enabled", true, "directory", directory.toString()),
+                          "aggregation", Map.of("enabled", true)))));
+        
+        try {
+            // When
+            cdrAgent.start();
+            
+            // Then
+            assertEquals(1, cdrAgent.getUsageAggregator().getCustomerUsage("c-1").getCalls());
+        } finally {
+            cdrAgent.stop();
+        }
+    }
+    
+    @Test
+    void shouldRefuseUsageAggregationWithoutCdrStore() {
+        SemanticKernelAgent cdrAgent = new SemanticKernelAgent(AgentConfiguration.fromMap(Map.of(
+            "cdr", Map.of("aggregation", Map.of("enabled", true)))));
+        
+        assertThrows(AgentException.class, cdrAgent::start);
+        assertEquals(SemanticKernelAgent.State.STOPPED, cdrAgent.getState());
+    }
+    
+    @Test
+    void shouldStopAfterDrainTimeout() throws Exception {
+        // Given
+        agent.start();
+        CountDownLatch started = new CountDownLatch(1);
+        agent.submit(() -> {
+            started.countDown();
+            return new CompletableFuture<Void>().completeOnTimeout(null, 1, TimeUnit.SECONDS).join();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        // When
+        long startNanos = System.nanoTime();
+        agent.stop(Duration.ofMillis(100));
+        
+        // Then
+        assertEquals(SemanticKernelAgent.State.STOPPED, agent.getState());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+    }
+}
@@ -0,0 +1,114 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.models.cdr.CdrRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CdrStore and CdrSegment.
+ */
+public class CdrStoreTest {
+    
+    private static final Instant DAY_1 = Instant.parse("2024-06-01T00:00:00Z");
+    private static final Instant DAY_2 = Instant.parse("2024-06-02T00:00:00Z");
+    private static final Instant DAY_3 = Instant.parse("2024-06-03T00:00:00Z");
+    private static final long TEN_MINUTES_MS = 600000L;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void shouldDownloadOnlyMissingRangesAndScanInTimeOrder() throws Exception {
+        List<Instant[]> fetched = new ArrayList<>();
+        CdrSource source = (number, from, to) -> {
+            fetched.add(new Instant[] {from, to});
+            // One call every ten minutes up to the inclusive end, newest first
+            long first = (from.toEpochMilli() + TEN_MINUTES_MS - 1) / TEN_MINUTES_MS * TEN_MINUTES_MS;
+            return LongStream.iterate(first, start -> start <= to.toEpochMilli(), start -> start + TEN_MINUTES_MS)
+                    .boxed()
+                    .sorted(Comparator.reverseOrder())
+                    .map(start -> record(number, start));
+        };
+        
+        try (CdrStore store = new CdrStore(directory, 0L, 50)) {
+            assertEquals(144, store.topUp(source, "+3221100001", DAY_1, DAY_2));
+            assertEquals(144, store.topUp(source, "+3221100001", DAY_1, DAY_3));
+            assertEquals(0, store.topUp(source, "+3221100001", DAY_2, DAY_3));
+            assertEquals(2, fetched.size());
+            assertEquals(DAY_2, fetched.get(1)[0]);
+        }
+        
+        try (CdrStore reopened = new CdrStore(directory, 0L, 50)) {
+            List<CdrRecord> voice = reopened.query("+3221100001", DAY_1, DAY_3,
+                row -> "voice".equals(row.getCallType()));
+            assertEquals(144, voice.size());
+            List<Instant> starts = voice.stream().map(r -> Instant.parse(r.getStartTime())).collect(Collectors.toList());
+            assertEquals(starts.stream().sorted().collect(Collectors.toList()), starts);
+            
+            CdrRecord first = voice.get(0);
+            assertEquals("r-" + DAY_1.toEpochMilli(), first.getRecordId());
+            assertEquals("2024-06-01T00:01:00Z", first.getEndTime());
+            assertEquals(0.05, first.getCost());
+            assertEquals("EUR", first.getCurrency());
+            
+            long[] totalDuration = new long[1];
+            assertEquals(72, reopened.scan("+3221100001", DAY_2, DAY_3,
+                row -> row.getDuration() > 60, row -> totalDuration[0] += row.getDuration()));
+            assertEquals(72 * 120, totalDuration[0]);
+        }
+    }
+    
+    @Test
+    void shouldStoreNothingOfRangeWhoseDownloadFails() throws Exception {
+        CdrSource failing = (number, from, to) -> LongStream.range(0, 144)
+                .mapToObj(i -> {
+                    if (i == 100) {
+                        throw new RuntimeException(new PluginException("Failed to fetch time window"));
+                    }
+                    return record(number, from.toEpochMilli() + i * TEN_MINUTES_MS);
+                });
+        CdrSource working = (number, from, to) -> LongStream.range(0, 144)
+                .mapToObj(i -> record(number, from.toEpochMilli() + i * TEN_MINUTES_MS));
+        
+        try (CdrStore store = new CdrStore(directory, 0L, 50)) {
+            List<Integer> notified = new ArrayList<>();
+            store.addListener((number, records) -> notified.add(records.size()));
+            
+            assertThrows(PluginException.class, () -> store.topUp(failing, "+3221100001", DAY_1, DAY_2));
+            assertEquals(0, store.query("+3221100001", DAY_1, DAY_2, row -> true).size());
+            assertTrue(notified.isEmpty());
+            try (Stream<Path> files = Files.walk(directory)) {
+                assertTrue(files.noneMatch(file -> file.toString().endsWith(".staged")));
+            }
+            
+            assertEquals(144, store.topUp(working, "+3221100001", DAY_1, DAY_2));
+            assertEquals(144, store.query("+3221100001", DAY_1, DAY_2, row -> true).size());
+            assertEquals(144, notified.stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+    
+    private static CdrRecord record(String number, long start) {
+        boolean voice = (start / TEN_MINUTES_MS) % 2 == 0;
+        long duration = (start / TEN_MINUTES_MS) % 2 == 0 ? 60 : 120;
+        CdrRecord record = new CdrRecord("r-" + start, number, voice ? "voice" : "sms",
+            Instant.ofEpochMilli(start).toString(), duration);
+        record.setEndTime(voice ? Instant.ofEpochMilli(start + 60000L).toString() : null);
+        record.setCost(voice ? 0.05 : 0.1 / 3);
+        record.setCurrency("EUR");
+        record.setStatus("completed");
+        return record;
+    }
+}
@@ -0,0 +1,102 @@
+package com.bics.agent.cdr;
+
+import com.bics.agent.models.cdr.CdrRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UsageAggregator and its primitive tables.
+ */
+public class UsageAggregatorTest {
+    
+    private static final Instant START = Instant.parse("2024-06-01T00:00:00Z");
+    private static final long HOUR_MS = 3600000L;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void shouldAggregatePerNumberCustomerAndBucket() {
+        UsageAggregator aggregator = new UsageAggregator(HOUR_MS, 16);
+        // 10,000 numbers, far beyond the initial sizing, three calls each in consecutive hours
+        for (int n = 0; n < 10000; n++) {
+            for (int hour = 0; hour < 3; hour++) {
+                aggregator.add(record("+32" + n, "c-" + (n % 10), START.plusMillis(hour * HOUR_MS + n), 60, 0.05));
+            }
+        }
+        
+        assertEquals(10000, aggregator.getNumberCount());
+        UsageSummary total = aggregator.getNumberUsage("+327");
+        assertEquals(3, total.getCalls());
+        assertEquals(180, total.getDuration());
+        assertEquals(150000, total.getCostMicros());
+        
+        UsageSummary firstTwoHours = aggregator.getNumberUsage("+327", START, START.plusMillis(2 * HOUR_MS));
+        assertEquals(2, firstTwoHours.getCalls());
+        
+        assertEquals(3000, aggregator.getCustomerUsage("c-7").getCalls());
+        assertEquals(1000, aggregator.getCustomerUsage("c-7", START.plusMillis(2 * HOUR_MS),
+            START.plusMillis(3 * HOUR_MS)).getCalls());
+        assertEquals(150.0, aggregator.getCustomerUsage("c-7").getCost(), 1e-9);
+        assertSame(UsageSummary.EMPTY, aggregator.getNumberUsage("+99"));
+    }
+    
+    @Test
+    void shouldFollowTheStoreAndRebuildFromIt() throws Exception {
+        UsageAggregator live = new UsageAggregator(HOUR_MS, 16);
+        try (CdrStore store = new CdrStore(directory, 0L, 1000)) {
+            store.addListener(live);
+            store.topUp((number, from, to) -> IntStream.range(0, 48)
+                    .mapToObj(hour -> record(number, "c-1", START.plusMillis(hour * HOUR_MS), 30, 0.01))
+                    .filter(record -> !Instant.parse(record.getStartTime()).isAfter(to)),
+                "+3221100001", START, START.plusMillis(48 * HOUR_MS));
+            store.ingest("+3221100002", Stream.of(record("+3221100002", null, START, 10, 1.0)));
+            
+            UsageAggregator rebuilt = new UsageAggregator(HOUR_MS, 16);
+            rebuilt.rebuild(store, "+3221100001", START, START.plusMillis(48 * HOUR_MS));
+            
+            for (UsageAggregator aggregator : new UsageAggregator[] {live, rebuilt}) {
+                UsageSummary usage = aggregator.getNumberUsage("+3221100001", START.plusMillis(24 * HOUR_MS),
+                    START.plusMillis(48 * HOUR_MS));
+                assertEquals(24, usage.getCalls());
+                assertEquals(720, usage.getDuration());
+                assertEquals(0.24, usage.getCost(), 1e-9);
+                assertEquals(48, aggregator.getCustomerUsage("c-1").getCalls());
+            }
+            assertEquals(1, live.getNumberUsage("+3221100002").getCalls());
+        }
+    }
+    
+    @Test
+    void shouldRebuildWholeStoreAfterReopening() throws Exception {
+        try (CdrStore store = new CdrStore(directory, 0L, 1000)) {
+            store.ingest("+3221100001", IntStream.range(0, 30)
+                    .mapToObj(day -> record("+3221100001", "c-1", START.plusMillis(day * 24 * HOUR_MS), 30, 0.01)));
+            store.ingest("+32 2 110 0002", Stream.of(record("+32 2 110 0002", "c-1", START, 10, 1.0)));
+        }
+        
+        try (CdrStore reopened = new CdrStore(directory, 0L, 1000)) {
+            UsageAggregator aggregator = new UsageAggregator(HOUR_MS, 16);
+            
+            assertEquals(31, aggregator.rebuild(reopened));
+            assertEquals(30, aggregator.getNumberUsage("+3221100001").getCalls());
+            assertEquals(1, aggregator.getNumberUsage("+32 2 110 0002").getCalls());
+            assertEquals(31, aggregator.getCustomerUsage("c-1").getCalls());
+        }
+    }
+    
+    private static CdrRecord record(String number, String customerId, Instant start, long duration, double cost) {
+        CdrRecord record = new CdrRecord("r-" + number + "-" + start.toEpochMilli(), number, "voice",
+            start.toString(), duration);
+        record.setCustomerId(customerId);
+        record.setCost(cost);
+        return record;
+    }
+}
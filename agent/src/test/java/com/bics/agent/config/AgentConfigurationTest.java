@@ -0,0 +1,77 @@
+package com.bics.agent.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AgentConfiguration snapshots, reloading and the ConfigurationWatcher.
+ */
+public class AgentConfigurationTest {
+    
+    @Test
+    void shouldCompileImmutableSnapshot() {
+        Map<String, Object> pool = new HashMap<>();
+        pool.put("maxTotal", 10);
+        Map<String, Object> tree = new HashMap<>(Map.of(
+            "http", Map.of("pool", pool),
+            "api", Map.of("endpoints", Map.of("sms", "http://localhost:1"))));
+        AgentConfiguration configuration = AgentConfiguration.fromMap(tree);
+        pool.put("maxTotal", 20);
+        
+        assertEquals(10, configuration.getInt("http.pool.maxTotal", 0));
+        assertEquals("http://localhost:1", configuration.getApiEndpoints().getSmsApiUrl());
+        assertEquals("https://connect.api.bics.com", configuration.getApiEndpoints().getConnectApiUrl());
+        assertThrows(UnsupportedOperationException.class,
+            () -> configuration.getSnapshot().getTree().put("http", Map.of()));
+    }
+    
+    @Test
+    void shouldPublishChangedSnapshotsToListeners() {
+        AgentConfiguration configuration = AgentConfiguration.fromMap(Map.of("http", Map.of("pool", Map.of("maxTotal", 10))));
+        AtomicReference<ConfigSnapshot> notified = new AtomicReference<>();
+        configuration.addListener((previous, current) -> {
+            assertTrue(current.differs(previous, "http.pool"));
+            assertFalse(current.differs(previous, "http.timeout"));
+            notified.set(current);
+        });
+        
+        assertFalse(configuration.reload(Map.of("http", Map.of("pool", Map.of("maxTotal", 10)))));
+        assertNull(notified.get());
+        assertTrue(configuration.reload(Map.of("http", Map.of("pool", Map.of("maxTotal", 30)))));
+        assertSame(configuration.getSnapshot(), notified.get());
+        assertEquals(30, configuration.getInt("http.pool.maxTotal", 0));
+    }
+    
+    @Test
+    void shouldReloadWatchedExternalFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("application.yml");
+        Files.write(file, List.of("http:", "  pool:", "    maxTotal: 10"), StandardCharsets.UTF_8);
+        AgentConfiguration configuration = AgentConfiguration.fromFile(file);
+        CountDownLatch reloaded = new CountDownLatch(1);
+        configuration.addListener((previous, current) -> reloaded.countDown());
+        
+        assertEquals(10, configuration.getInt("http.pool.maxTotal", 0));
+        assertEquals(50, configuration.getInt("http.pool.maxPerRoute", 0));
+        
+        try (ConfigurationWatcher watcher = new ConfigurationWatcher(configuration, 50L)) {
+            watcher.start();
+            Files.write(file, List.of("http:", "  pool:", "    maxTotal: 40"), StandardCharsets.UTF_8);
+            
+            assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+            assertEquals(40, configuration.getInt("http.pool.maxTotal", 0));
+            assertEquals(50, configuration.getInt("http.pool.maxPerRoute", 0));
+        }
+    }
+}
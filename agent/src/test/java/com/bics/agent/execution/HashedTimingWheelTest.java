@@ -0,0 +1,50 @@
+package com.bics.agent.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HashedTimingWheel.
+ */
+public class HashedTimingWheelTest {
+    
+    @Test
+    void shouldExpireItemsInDeadlineOrder() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        try (HashedTimingWheel<String> wheel = new HashedTimingWheel<>("test-wheel", 5L, 8, items -> {
+            expired.addAll(items);
+            items.forEach(item -> done.countDown());
+        })) {
+            // 120 ms spans several revolutions of an 8 x 5 ms wheel
+            wheel.schedule("late", 120L);
+            wheel.schedule("early", 10L);
+            wheel.schedule("middle", 50L);
+            
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+            assertEquals(List.of("early", "middle", "late"), expired);
+        }
+    }
+    
+    @Test
+    void shouldNotDeliverCancelledItems() throws Exception {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try (HashedTimingWheel<String> wheel = new HashedTimingWheel<>("test-wheel", 5L, 8, items -> {
+            expired.addAll(items);
+            done.countDown();
+        })) {
+            wheel.schedule("cancelled", 10L).cancel();
+            wheel.schedule("kept", 30L);
+            
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+            assertEquals(List.of("kept"), expired);
+        }
+    }
+}
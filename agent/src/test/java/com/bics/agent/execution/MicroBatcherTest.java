@@ -0,0 +1,74 @@
+package com.bics.agent.execution;
+
+import com.bics.agent.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MicroBatcher.
+ */
+public class MicroBatcherTest {
+    
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    
+    private CompletableFuture<List<String>> echo(List<String> items) {
+        batches.add(items);
+        return CompletableFuture.completedFuture(
+            items.stream().map(String::toUpperCase).collect(Collectors.toList()));
+    }
+    
+    @Test
+    void shouldFlushWhenBatchIsFull() throws Exception {
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 3, 60000L, this::echo)) {
+            CompletableFuture<String> a = batcher.submit("a");
+            CompletableFuture<String> b = batcher.submit("b");
+            assertFalse(a.isDone());
+            CompletableFuture<String> c = batcher.submit("c");
+            
+            assertEquals("A", a.get(1, TimeUnit.SECONDS));
+            assertEquals("B", b.get(1, TimeUnit.SECONDS));
+            assertEquals("C", c.get(1, TimeUnit.SECONDS));
+            assertEquals(List.of(List.of("a", "b", "c")), batches);
+        }
+    }
+    
+    @Test
+    void shouldFlushPartialBatchAfterLinger() throws Exception {
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 100, 20L, this::echo)) {
+            CompletableFuture<String> a = batcher.submit("a");
+            assertEquals("A", a.get(5, TimeUnit.SECONDS));
+            assertEquals(1, batches.size());
+        }
+    }
+    
+    @Test
+    void shouldFailEveryItemWhenBatchFails() {
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 2, 60000L,
+                items -> CompletableFuture.failedFuture(new PluginException("bulk rejected")))) {
+            CompletableFuture<String> a = batcher.submit("a");
+            CompletableFuture<String> b = batcher.submit("b");
+            
+            ExecutionException e = assertThrows(ExecutionException.class, () -> a.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(PluginException.class, e.getCause());
+            assertTrue(b.isCompletedExceptionally());
+        }
+    }
+    
+    @Test
+    void shouldFlushPendingItemsOnClose() throws Exception {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 100, 60000L, this::echo);
+        CompletableFuture<String> a = batcher.submit("a");
+        batcher.close();
+        
+        assertEquals("A", a.get(1, TimeUnit.SECONDS));
+        assertTrue(batcher.submit("b").isCompletedExceptionally());
+    }
+}
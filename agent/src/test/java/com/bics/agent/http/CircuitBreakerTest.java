@@ -0,0 +1,86 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CircuitBreaker state machine.
+ */
+public class CircuitBreakerTest {
+    
+    private static final long FAST = 1_000_000L;
+    
+    @Test
+    void shouldOpenWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Settings(
+                true, 10, 4, 50f, 100f, 1000L, 60000L, 2));
+        
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onFailure(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        
+        breaker.onFailure(FAST);
+        
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+    
+    @Test
+    void shouldOpenWhenSlowCallRateReachesThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Settings(
+                true, 10, 2, 100f, 50f, 1L, 60000L, 2));
+        
+        breaker.onSuccess(5_000_000L);
+        breaker.onSuccess(5_000_000L);
+        
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+    
+    @Test
+    void shouldReissueReleasedHalfOpenPermitWithoutRecordingOutcome() {
+        CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Settings(
+                true, 4, 2, 50f, 100f, 1000L, 0L, 2));
+        breaker.onFailure(FAST);
+        breaker.onFailure(FAST);
+        
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.releasePermission();
+        breaker.onSuccess(FAST);
+        
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.onSuccess(FAST);
+        
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    void shouldCloseAfterSuccessfulHalfOpenProbes() {
+        CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Settings(
+                true, 4, 2, 50f, 100f, 1000L, 0L, 2));
+        breaker.onFailure(FAST);
+        breaker.onFailure(FAST);
+        
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+    
+    @Test
+    void shouldTemplateIdentifierSegments() {
+        assertEquals("GET /numbers/{id}/activate", EndpointTemplates.operationKey("GET", "/numbers/+3221234567/activate"));
+        assertEquals("GET /sms/history/{id}", EndpointTemplates.operationKey("GET", "/sms/history/32470000000?limit=5"));
+        assertEquals("GET /customers", EndpointTemplates.operationKey("GET", "/customers"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.bics.agent.http;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConnectionWarmer against an in-process HTTP stub.
+ */
+public class ConnectionWarmerTest {
+    
+    private HttpServer server;
+    private HttpTransport transport;
+    private String url;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+        transport = new HttpTransport(AgentConfiguration.fromMap(Map.of()));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        server.stop(0);
+    }
+    
+    @Test
+    void shouldWarmBothPoolsAndReleaseConnectionsWhenFinished() throws Exception {
+        new ConnectionWarmer(true, true, Map.of("stub", url), 2, 5000L).warmUp(transport).get(5, TimeUnit.SECONDS);
+        
+        assertEquals(2, transport.getPoolStats().getAvailable());
+        assertEquals(0, transport.getPoolStats().getLeased());
+        assertTrue(transport.getAsyncPoolStats().getAvailable() >= 1);
+    }
+    
+    @Test
+    void shouldSkipWarmUpWhenDisabled() throws Exception {
+        new ConnectionWarmer(false, true, Map.of("stub", url), 2, 5000L).warmUp(transport).get(1, TimeUnit.SECONDS);
+        
+        assertEquals(0, transport.getPoolStats().getAvailable());
+        assertNull(transport.getAsyncPoolStats());
+    }
+}
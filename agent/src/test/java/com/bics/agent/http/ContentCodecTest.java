@@ -0,0 +1,48 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ContentCodec.
+ */
+public class ContentCodecTest {
+    
+    private static final byte[] BODY = "{\"items\":[1,2,3,4,5,6,7,8,9,10]}".repeat(20).getBytes(StandardCharsets.UTF_8);
+    
+    @Test
+    void shouldRoundTripGzip() throws Exception {
+        byte[] compressed = ContentCodec.gzip(BODY);
+        
+        assertTrue(compressed.length < BODY.length);
+        assertArrayEquals(BODY, ContentCodec.decode("gzip", compressed));
+        assertArrayEquals(BODY, ContentCodec.decode("X-GZIP", compressed));
+    }
+    
+    @Test
+    void shouldDecodeZlibAndRawDeflate() throws Exception {
+        assertArrayEquals(BODY, ContentCodec.decode("deflate", deflate(false)));
+        assertArrayEquals(BODY, ContentCodec.decode("deflate", deflate(true)));
+    }
+    
+    @Test
+    void shouldOnlySupportKnownCodings() {
+        assertTrue(ContentCodec.isSupported(" gzip"));
+        assertFalse(ContentCodec.isSupported("br"));
+        assertFalse(ContentCodec.isSupported(null));
+    }
+    
+    private static byte[] deflate(boolean raw) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflater.write(BODY);
+        }
+        return out.toByteArray();
+    }
+}
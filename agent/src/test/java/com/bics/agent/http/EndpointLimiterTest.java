@@ -0,0 +1,114 @@
+package com.bics.agent.http;
+
+import com.bics.agent.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EndpointLimiter, TokenBucket and AdaptiveConcurrencyLimit.
+ */
+public class EndpointLimiterTest {
+    
+    @Test
+    void shouldReserveTokensOnlyWithinMaxWait() {
+        TokenBucket bucket = new TokenBucket(10.0, 2);
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(150);
+        
+        assertEquals(0L, bucket.reserve(maxWait));
+        assertEquals(0L, bucket.reserve(maxWait));
+        long wait = bucket.reserve(maxWait);
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(-1L, bucket.reserve(0L));
+    }
+    
+    @Test
+    void shouldQueueCallersBeyondConcurrencyLimit() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 10, 0.5, 2.0);
+        
+        assertTrue(limit.acquire(0L).isDone());
+        assertTrue(limit.acquire(0L).isCompletedExceptionally());
+        
+        CompletableFuture<Void> waiter = limit.acquire(1000L);
+        assertFalse(waiter.isDone());
+        limit.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        waiter.get(1, TimeUnit.SECONDS);
+        assertEquals(1, limit.getInFlight());
+    }
+    
+    @Test
+    void shouldGrantWaitersWhenBoundsAreRaised() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1, 0.5, 2.0);
+        assertTrue(limit.acquire(0L).isDone());
+        CompletableFuture<Void> waiter = limit.acquire(1000L);
+        
+        limit.setBounds(2, 10, 0.5, 2.0);
+        
+        waiter.get(1, TimeUnit.SECONDS);
+        assertEquals(2, limit.getLimit());
+        assertEquals(2, limit.getInFlight());
+    }
+    
+    @Test
+    void shouldShrinkOnDropsAndGrowOnSuccess() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 40, 0.5, 2.0);
+        
+        limit.acquire(0L);
+        limit.release(TimeUnit.MILLISECONDS.toNanos(5), true);
+        assertEquals(10, limit.getLimit());
+        
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 10; j++) {
+                limit.acquire(0L);
+            }
+            for (int j = 0; j < 10; j++) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+            }
+        }
+        assertTrue(limit.getLimit() > 10);
+    }
+    
+    @Test
+    void shouldFailFastWhenRateLimited() throws PluginException {
+        EndpointLimiter limiter = new EndpointLimiter("StubAPI", "stub", new TokenBucket(1.0, 1), null, 0L);
+        
+        limiter.acquire("GET /numbers");
+        PluginException e = assertThrows(PluginException.class, () -> limiter.acquire("GET /numbers"));
+        assertTrue(e.getMessage().contains("rate limit"));
+        assertTrue(limiter.acquireAsync("GET /numbers").isCompletedExceptionally());
+    }
+    
+    @Test
+    void shouldGiveBackPermitAndTokenOfAbandonedAdmission() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1, 0.5, 2.0);
+        TokenBucket bucket = new TokenBucket(0.001, 2);
+        EndpointLimiter limiter = new EndpointLimiter("StubAPI", "stub", bucket, limit, 5000L);
+        limiter.acquire("GET /numbers");
+        
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                limiter.acquire("GET /numbers");
+            } catch (PluginException e) {
+                failure.set(e);
+            }
+        });
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        waiting.interrupt();
+        waiting.join(5000);
+        assertNotNull(failure.get());
+        
+        // The interrupted caller's permit is not granted to it later, and its token is back
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(5), false);
+        assertEquals(0, limit.getInFlight());
+        limiter.acquire("GET /numbers");
+        assertEquals(1, limit.getInFlight());
+    }
+}
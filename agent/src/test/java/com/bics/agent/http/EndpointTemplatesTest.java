@@ -0,0 +1,27 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EndpointTemplates.
+ */
+public class EndpointTemplatesTest {
+    
+    @Test
+    void shouldTemplateKnownRoutesByPosition() {
+        assertEquals("/customers/{id}", EndpointTemplates.template("/customers/acme"));
+        assertEquals("/customers/{id}", EndpointTemplates.template("/customers/42?expand=true"));
+        assertEquals("/numbers/{id}/activate", EndpointTemplates.template("/numbers/BEnumber/activate"));
+        assertEquals("/numbers/reserve", EndpointTemplates.template("/numbers/reserve"));
+        assertEquals("/sms/status/{id}", EndpointTemplates.template("/sms/status/abcdef"));
+        assertEquals("GET /customers", EndpointTemplates.operationKey("GET", "/customers?limit=10"));
+    }
+    
+    @Test
+    void shouldFallBackToIdentifierSegmentsOutsideKnownRoutes() {
+        assertEquals("/accounts/{id}/lines", EndpointTemplates.template("/accounts/+3221234567/lines"));
+        assertEquals("/accounts/lines", EndpointTemplates.template("/accounts/lines"));
+    }
+}
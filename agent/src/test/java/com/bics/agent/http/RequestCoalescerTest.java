@@ -0,0 +1,78 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RequestCoalescer.
+ */
+public class RequestCoalescerTest {
+    
+    private final RequestCoalescer coalescer = new RequestCoalescer(true);
+    private final ExecutorService leaders = Executors.newSingleThreadExecutor();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        leaders.shutdownNow();
+    }
+    
+    @Test
+    void shouldFailFollowersWhenLeaderThrowsAnError() throws Exception {
+        Future<String> leader = leaders.submit(() -> coalescer.execute("key", "/numbers/1", () -> {
+            awaitRelease();
+            throw new Error("boom");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = coalescer.executeAsync("key", "/numbers/1",
+            () -> CompletableFuture.completedFuture("own"));
+        assertFalse(follower.isDone());
+        
+        release.countDown();
+        
+        ExecutionException e = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertEquals("boom", e.getCause().getMessage());
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+    
+    @Test
+    void shouldNotJoinExchangeThatBeganBeforeAMutation() throws Exception {
+        Future<String> leader = leaders.submit(() -> coalescer.execute("key", "/numbers/1", () -> {
+            awaitRelease();
+            return "before";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> joined = coalescer.executeAsync("key", "/numbers/1",
+            () -> CompletableFuture.completedFuture("unused"));
+        
+        coalescer.mutated("/numbers/1/activate");
+        
+        assertEquals("after", coalescer.executeAsync("key", "/numbers/1",
+            () -> CompletableFuture.completedFuture("after")).get(1, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("before", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("before", joined.get(5, TimeUnit.SECONDS));
+    }
+    
+    private void awaitRelease() {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
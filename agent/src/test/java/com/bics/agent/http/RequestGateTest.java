@@ -0,0 +1,64 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RequestGate.
+ */
+public class RequestGateTest {
+    
+    @Test
+    void shouldRefuseNewRequestsButAdmitThoseOfAdmittedInvocations() throws Exception {
+        RequestGate gate = new RequestGate();
+        RequestGate.Admission admission = gate.tryAdmit();
+        assertNotNull(admission);
+        
+        CompletableFuture<RequestGate.Admission> captured = new CompletableFuture<>();
+        Thread invocation = new Thread(() -> {
+            try {
+                gate.callAdmitted(admission, () -> captured.complete(gate.current()));
+            } catch (Exception e) {
+                captured.completeExceptionally(e);
+            }
+        });
+        invocation.start();
+        invocation.join();
+        assertNull(gate.current());
+        
+        gate.close();
+        assertFalse(gate.tryEnter());
+        assertNull(gate.tryAdmit());
+        // A continuation on another thread is let through with the admission it carries
+        assertTrue(gate.tryEnter(captured.get(1, TimeUnit.SECONDS)));
+        gate.exit();
+        assertEquals(1, gate.getInFlight());
+        assertFalse(gate.awaitDrained(50, TimeUnit.MILLISECONDS));
+        
+        admission.release();
+        admission.release();
+        assertFalse(gate.tryEnter(admission));
+        assertTrue(gate.awaitDrained(1, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void shouldKeepExtendedAdmissionInFlightUntilReleased() throws Exception {
+        RequestGate gate = new RequestGate();
+        assertNull(gate.extend(null));
+        RequestGate.Admission admission = gate.tryAdmit();
+        RequestGate.Admission stream = gate.extend(admission);
+        admission.release();
+        gate.close();
+        
+        assertTrue(gate.tryEnter(stream));
+        gate.exit();
+        assertFalse(gate.awaitDrained(50, TimeUnit.MILLISECONDS));
+        
+        stream.release();
+        assertTrue(gate.awaitDrained(1, TimeUnit.SECONDS));
+    }
+}
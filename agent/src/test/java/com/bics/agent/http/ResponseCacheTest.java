@@ -0,0 +1,81 @@
+package com.bics.agent.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ResponseCache.
+ */
+public class ResponseCacheTest {
+    
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+    
+    @Test
+    void shouldOnlyCacheConfiguredTemplates() {
+        ResponseCache cache = new ResponseCache(true, 10, 0.8, Map.of("/numbers/{id}", 60000L));
+        
+        assertEquals(TTL, cache.ttlNanos("/numbers/+3221234567"));
+        assertEquals(0L, cache.ttlNanos("/numbers"));
+        assertEquals(0L, cache.ttlNanos("/numbers/+3221234567/activate"));
+        assertEquals(TTL, cache.ttlNanos("/numbers/BEnumber"));
+    }
+    
+    @Test
+    void shouldInvalidateMutatedPathAndAncestors() {
+        ResponseCache cache = new ResponseCache(true, 10, 0.8, Map.of("/numbers/{id}", 60000L));
+        cache.put("/numbers/123", "/numbers/123", "{}", null, TTL);
+        cache.put("/numbers?limit=5", "/numbers", "[]", null, TTL);
+        cache.put("/numbers/456", "/numbers/456", "{}", null, TTL);
+        
+        cache.invalidate("/numbers/123/activate");
+        
+        assertNull(cache.get("/numbers/123"));
+        assertNull(cache.get("/numbers?limit=5"));
+        assertNotNull(cache.get("/numbers/456"));
+    }
+    
+    @Test
+    void shouldEvictLeastRecentlyUsedEntries() {
+        ResponseCache cache = new ResponseCache(true, 2, 0.8, Map.of("/numbers/{id}", 60000L));
+        cache.put("/numbers/1", "/numbers/1", "one", null, TTL);
+        cache.put("/numbers/2", "/numbers/2", "two", null, TTL);
+        cache.get("/numbers/1");
+        
+        cache.put("/numbers/3", "/numbers/3", "three", null, TTL);
+        
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("/numbers/1"));
+        assertNull(cache.get("/numbers/2"));
+    }
+    
+    @Test
+    void shouldKeepExpiredEntriesWithEtagForRevalidation() {
+        ResponseCache cache = new ResponseCache(true, 10, 0.8, Map.of("/numbers/{id}", 60000L));
+        cache.put("/numbers/1", "/numbers/1", "tagged", "\"v1\"", 0L);
+        cache.put("/numbers/2", "/numbers/2", "untagged", null, 0L);
+        
+        ResponseCache.Entry tagged = cache.get("/numbers/1");
+        assertNotNull(tagged);
+        assertFalse(tagged.isFresh());
+        assertNull(cache.get("/numbers/2"));
+        
+        assertTrue(cache.renew("/numbers/1", TTL).isFresh());
+    }
+    
+    @Test
+    void shouldDropResponsesOfReadsThatStartedBeforeAWrite() {
+        ResponseCache cache = new ResponseCache(true, 10, 0.8, Map.of("/numbers/{id}", 60000L));
+        long beforeWrite = cache.generation();
+        
+        cache.invalidate("/numbers/123/activate");
+        
+        assertFalse(cache.put("/numbers/123", "/numbers/123", "old", null, TTL, beforeWrite));
+        assertNull(cache.get("/numbers/123"));
+        assertTrue(cache.put("/numbers/456", "/numbers/456", "other", null, TTL, beforeWrite));
+        assertTrue(cache.put("/numbers/123", "/numbers/123", "new", null, TTL, cache.generation()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.bics.agent.json;
+
+import com.bics.agent.models.connect.Customer;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JsonBodyEncoder.
+ */
+public class JsonBodyEncoderTest {
+    
+    @Test
+    void shouldEscapeStringsWrittenByGenerator() throws Exception {
+        String message = "Say \"hi\"\nnow \\ é";
+        byte[] body = JsonBodyEncoder.encode(generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+        });
+        
+        JsonNode node = JsonMappers.mapper().readTree(body);
+        assertEquals(message, node.get("message").asText());
+    }
+    
+    @Test
+    void shouldReuseBufferAcrossEncodes() throws Exception {
+        byte[] first = JsonBodyEncoder.encode(generator -> generator.writeString("a much longer first value"));
+        byte[] second = JsonBodyEncoder.encode(generator -> generator.writeString("b"));
+        
+        assertEquals("\"a much longer first value\"", new String(first, StandardCharsets.UTF_8));
+        assertEquals("\"b\"", new String(second, StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void shouldEncodeValueWithCachedWriter() throws Exception {
+        Customer customer = new Customer();
+        customer.setName("ACME");
+        
+        JsonNode node = JsonMappers.mapper().readTree(JsonBodyEncoder.encodeValue(customer));
+        assertEquals("ACME", node.get("name").asText());
+    }
+}
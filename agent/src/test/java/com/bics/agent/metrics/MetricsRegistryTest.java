@@ -0,0 +1,60 @@
+package com.bics.agent.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LatencyHistogram and MetricsRegistry.
+ */
+public class MetricsRegistryTest {
+    
+    @Test
+    void shouldReportPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        
+        assertEquals(10000L, histogram.getCount());
+        assertEquals(10000L, histogram.getMaxMicros());
+        assertEquals(5000.0, histogram.getPercentileMicros(50.0), 5000 * 0.04);
+        assertEquals(9900.0, histogram.getPercentileMicros(99.0), 9900 * 0.04);
+        assertEquals(10000L, histogram.getPercentileMicros(100.0));
+        assertEquals(0L, new LatencyHistogram().getPercentileMicros(99.0));
+    }
+    
+    @Test
+    void shouldMapEveryValueToTheBucketContainingIt() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < value);
+        }
+    }
+    
+    @Test
+    void shouldWritePerOperationMetricsAsText() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        OperationMetrics operation = registry.forPlugin("TestAPI").forOperation("GET", "/numbers/+3221234567");
+        operation.recordResponse(200, TimeUnit.MILLISECONDS.toNanos(3), 0L, 120L);
+        operation.recordResponse(503, TimeUnit.MILLISECONDS.toNanos(9), 0L, 20L);
+        operation.recordRetry();
+        registry.registerPool(new ConnectionPoolGauge("transport-test", "classic", () -> null));
+        
+        StringBuilder text = new StringBuilder();
+        registry.writeText(text);
+        String output = text.toString();
+        
+        assertSame(operation, registry.forPlugin("TestAPI").forOperation("GET", "/numbers/+3229999999"));
+        assertSame(operation, registry.forPlugin("TestAPI").forOperationKey("GET /numbers/{id}"));
+        assertTrue(output.contains("bics_plugin_requests_total{plugin=\"TestAPI\",operation=\"GET /numbers/{id}\"} 2\n"));
+        assertTrue(output.contains("bics_plugin_responses_total{plugin=\"TestAPI\",operation=\"GET /numbers/{id}\",class=\"5xx\"} 1\n"));
+        assertTrue(output.contains("bics_plugin_retries_total{plugin=\"TestAPI\",operation=\"GET /numbers/{id}\"} 1\n"));
+        assertTrue(output.contains("bics_plugin_bytes_received_total{plugin=\"TestAPI\",operation=\"GET /numbers/{id}\"} 140\n"));
+        assertTrue(output.contains("bics_plugin_latency_seconds_count{plugin=\"TestAPI\",operation=\"GET /numbers/{id}\"} 2\n"));
+        assertTrue(output.contains("bics_http_pool_connections{transport=\"transport-test\",kind=\"classic\",state=\"leased\"} 0\n"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.bics.agent.pagination;
+
+import com.bics.agent.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimeWindowIterator.
+ */
+public class TimeWindowIteratorTest {
+    
+    private static final Instant START = Instant.parse("2024-06-01T00:00:00Z");
+    private static final long HOUR_MS = 3600000L;
+    
+    @Test
+    void shouldMergeWindowsInTimeOrderAndAdaptTheirSize() {
+        // One event per hour for a day, then one per minute for the next three days
+        List<Instant> events = new ArrayList<>();
+        for (long t = 0; t < 24 * HOUR_MS; t += HOUR_MS) {
+            events.add(START.plusMillis(t));
+        }
+        for (long t = 24 * HOUR_MS; t < 96 * HOUR_MS; t += 60000L) {
+            events.add(START.plusMillis(t));
+        }
+        List<Long> windowSpans = Collections.synchronizedList(new ArrayList<>());
+        WindowFetcher<Instant> fetcher = (from, to) -> {
+            windowSpans.add(to.toEpochMilli() - from.toEpochMilli());
+            // Inclusive at both ends and unordered, like a server that does not sort
+            List<Instant> window = events.stream()
+                    .filter(event -> !event.isBefore(from) && !event.isAfter(to))
+                    .collect(Collectors.toList());
+            Collections.reverse(window);
+            return CompletableFuture.supplyAsync(() -> window);
+        };
+        TimeWindowIterator.Settings settings = new TimeWindowIterator.Settings(60, 4 * HOUR_MS, 60000L, 24 * HOUR_MS, 2);
+        
+        try (Stream<Instant> merged = new TimeWindowIterator<>(fetcher, event -> event,
+                START, START.plusMillis(96 * HOUR_MS - 1), settings).stream()) {
+            assertEquals(events, merged.collect(Collectors.toList()));
+        }
+        
+        assertTrue(windowSpans.stream().anyMatch(span -> span > 4 * HOUR_MS), "sparse windows should grow");
+        assertTrue(windowSpans.stream().anyMatch(span -> span < 2 * HOUR_MS), "dense windows should shrink");
+    }
+    
+    @Test
+    void shouldSplitWindowsThatTimeOut() {
+        List<Instant> events = List.of(START.plusMillis(HOUR_MS), START.plusMillis(3 * HOUR_MS));
+        WindowFetcher<Instant> fetcher = (from, to) -> {
+            if (to.toEpochMilli() - from.toEpochMilli() > 2 * HOUR_MS) {
+                return CompletableFuture.failedFuture(
+                    new PluginException("MyNumbersCDRAPI", "GET /cdr/1", "IO error", new SocketTimeoutException()));
+            }
+            return CompletableFuture.completedFuture(events.stream()
+                    .filter(event -> !event.isBefore(from) && !event.isAfter(to))
+                    .collect(Collectors.toList()));
+        };
+        TimeWindowIterator.Settings settings = new TimeWindowIterator.Settings(1000, 4 * HOUR_MS, 60000L, 4 * HOUR_MS, 2);
+        
+        try (Stream<Instant> merged = new TimeWindowIterator<>(fetcher, event -> event,
+                START, START.plusMillis(4 * HOUR_MS), settings).stream()) {
+            assertEquals(events, merged.collect(Collectors.toList()));
+        }
+    }
+}
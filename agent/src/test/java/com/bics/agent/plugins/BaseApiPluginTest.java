@@ -0,0 +1,400 @@
+package com.bics.agent.plugins;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.exceptions.PluginException;
+import com.bics.agent.http.ContentCodec;
+import com.bics.agent.http.HttpTransport;
+import com.bics.agent.http.RequestGate;
+import com.bics.agent.metrics.MetricsRegistry;
+import com.bics.agent.metrics.OperationMetrics;
+import com.bics.agent.models.mynumbers.PhoneNumber;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BaseApiPlugin request paths against an in-process HTTP stub.
+ */
+public class BaseApiPluginTest {
+    
+    private HttpServer server;
+    private HttpTransport transport;
+    private StubPlugin plugin;
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final AtomicInteger version = new AtomicInteger();
+    private final CountDownLatch versionedGetStarted = new CountDownLatch(1);
+    private final CountDownLatch versionedGetRelease = new CountDownLatch(1);
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] body = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/fail", exchange -> {
+            byte[] body = "boom".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/numbers", exchange -> {
+            byte[] body = ("{\"total\":2,\"items\":[{\"number\":\"+3221\",\"status\":\"active\"},"
+                    + "{\"number\":\"+3222\",\"unknown_field\":true}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/number", exchange -> {
+            byte[] body = "{\"number\":\"+3221\",\"country_code\":\"BE\",\"unknown_field\":1}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/flaky", exchange -> {
+            int call = flakyCalls.incrementAndGet();
+            byte[] body = (call == 1 ? "busy" : "recovered").getBytes(StandardCharsets.UTF_8);
+            if (call == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+            }
+            exchange.sendResponseHeaders(call == 1 ? 503 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            slowCalls.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "slow".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/slow-number", exchange -> {
+            slowCalls.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"number\":\"+3221\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/paged", exchange -> {
+            int offset = 0;
+            int limit = 0;
+            for (String param : exchange.getRequestURI().getQuery().split("&")) {
+                String[] pair = param.split("=");
+                if (pair[0].equals("offset")) {
+                    offset = Integer.parseInt(pair[1]);
+                } else if (pair[0].equals("limit")) {
+                    limit = Integer.parseInt(pair[1]);
+                }
+            }
+            StringBuilder json = new StringBuilder("[");
+            for (int i = offset; i < Math.min(offset + limit, 23); i++) {
+                json.append(i > offset ? "," : "").append("{\"number\":\"+32").append(i).append("\"}");
+            }
+            byte[] body = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/compressed", exchange -> {
+            byte[] body = "{\"number\":\"+3221\",\"country_code\":\"BE\"}".getBytes(StandardCharsets.UTF_8);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = ContentCodec.gzip(body);
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/versioned", exchange -> {
+            String value = "v" + (exchange.getRequestMethod().equals("GET") ? version.get() : version.incrementAndGet());
+            if (exchange.getRequestMethod().equals("GET") && versionedGetStarted.getCount() > 0) {
+                versionedGetStarted.countDown();
+                try {
+                    versionedGetRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = value.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/upload", exchange -> {
+            String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            byte[] received = exchange.getRequestBody().readAllBytes();
+            byte[] decoded = contentEncoding != null ? ContentCodec.decode(contentEncoding, received) : received;
+            byte[] body = (contentEncoding + ":" + decoded.length).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        
+        AgentConfiguration configuration = AgentConfiguration.getInstance();
+        transport = new HttpTransport(configuration);
+        plugin = new StubPlugin(configuration, transport, "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        server.stop(0);
+    }
+    
+    @Test
+    void shouldReturnBodyForSuccessfulGet() throws PluginException {
+        assertEquals("{\"status\":\"ok\"}", plugin.performGet("/ok"));
+    }
+    
+    @Test
+    void shouldReturnBodyForSuccessfulAsyncGet() {
+        assertEquals("{\"status\":\"ok\"}", plugin.performGetAsync("/ok").join());
+    }
+    
+    @Test
+    void shouldFailAsyncGetWithPluginException() {
+        CompletionException e = assertThrows(CompletionException.class, () -> plugin.performGetAsync("/fail").join());
+        
+        PluginException cause = assertInstanceOf(PluginException.class, e.getCause());
+        assertEquals("StubAPI", cause.getPluginName());
+        assertEquals("GET /fail", cause.getOperation());
+    }
+    
+    @Test
+    void shouldRetryTransientServiceUnavailable() throws PluginException {
+        assertEquals("recovered", plugin.performGet("/flaky"));
+        assertEquals(2, flakyCalls.get());
+    }
+    
+    @Test
+    void shouldNotRetryPostOnServerError() {
+        PluginException e = assertThrows(PluginException.class, () -> plugin.performPost("/fail", "{}"));
+        assertTrue(e.getMessage().contains("HTTP 500"));
+    }
+    
+    @Test
+    void shouldCoalesceConcurrentIdenticalGets() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> plugin.performGet("/slow")));
+            }
+            for (Future<String> result : results) {
+                assertEquals("slow", result.get());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        
+        assertEquals(1, slowCalls.get());
+    }
+    
+    @Test
+    void shouldBindOwnInstanceForEachCoalescedTypedGet() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PhoneNumber>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> plugin.performGetObject("/slow-number", null, PhoneNumber.class)));
+            }
+            List<PhoneNumber> numbers = new ArrayList<>();
+            for (Future<PhoneNumber> result : results) {
+                numbers.add(result.get());
+            }
+            numbers.get(0).setNumber("changed");
+            for (int i = 1; i < numbers.size(); i++) {
+                assertNotSame(numbers.get(0), numbers.get(i));
+                assertEquals("+3221", numbers.get(i).getNumber());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        
+        assertEquals(1, slowCalls.get());
+    }
+    
+    @Test
+    void shouldNotCacheGetResponseThatRacedAWrite() throws Exception {
+        AgentConfiguration configuration = AgentConfiguration.fromMap(Map.of("http",
+            Map.of("cache", Map.of("ttlMs", Map.of("StubAPI", Map.of("/versioned/{id}", 60000))))));
+        StubPlugin caching = new StubPlugin(configuration, transport,
+            "http://127.0.0.1:" + server.getAddress().getPort());
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> racingGet = caller.submit(() -> caching.performGet("/versioned/1"));
+            assertTrue(versionedGetStarted.await(5, TimeUnit.SECONDS));
+            
+            assertEquals("v1", caching.performPut("/versioned/1", "{}"));
+            versionedGetRelease.countDown();
+            
+            assertEquals("v0", racingGet.get(5, TimeUnit.SECONDS));
+            assertEquals("v1", caching.performGet("/versioned/1"));
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+    
+    @Test
+    void shouldStreamArrayElementsFromEnvelope() throws PluginException {
+        try (Stream<PhoneNumber> numbers = plugin.performGetStream("/numbers", null, PhoneNumber.class)) {
+            List<String> values = numbers.map(PhoneNumber::getNumber).collect(Collectors.toList());
+            assertEquals(List.of("+3221", "+3222"), values);
+        }
+    }
+    
+    @Test
+    void shouldHoldRequestGateUntilStreamIsClosed() throws PluginException {
+        Stream<PhoneNumber> numbers = plugin.performGetStream("/numbers", null, PhoneNumber.class);
+        assertEquals(1, transport.getRequestGate().getInFlight());
+        
+        numbers.close();
+        assertEquals(0, transport.getRequestGate().getInFlight());
+        
+        numbers.close();
+        assertEquals(0, transport.getRequestGate().getInFlight());
+    }
+    
+    @Test
+    void shouldBindTypedObjectAndList() throws PluginException {
+        PhoneNumber number = plugin.performGetObject("/number", null, PhoneNumber.class);
+        assertEquals("+3221", number.getNumber());
+        assertEquals("BE", number.getCountryCode());
+        
+        List<PhoneNumber> numbers = plugin.performGetList("/numbers", null, PhoneNumber.class);
+        assertEquals(2, numbers.size());
+    }
+    
+    @Test
+    void shouldFailTypedGetOnMismatchedResponse() {
+        PluginException e = assertThrows(PluginException.class,
+            () -> plugin.performGetObject("/ok", null, List.class));
+        assertTrue(e.getMessage().contains("Invalid response"));
+    }
+    
+    @Test
+    void shouldWalkAllPagesInOrder() {
+        try (Stream<PhoneNumber> numbers = plugin.performGetAllPages("/paged", PhoneNumber.class, 5, 3)) {
+            List<String> values = numbers.map(PhoneNumber::getNumber).collect(Collectors.toList());
+            assertEquals(23, values.size());
+            assertEquals("+320", values.get(0));
+            assertEquals("+3222", values.get(22));
+        }
+    }
+    
+    @Test
+    void shouldKeepFetchingPagesOfAdmittedInvocationWhileDraining() throws Exception {
+        RequestGate gate = transport.getRequestGate();
+        RequestGate.Admission admission = gate.tryAdmit();
+        Stream<PhoneNumber> numbers = gate.callAdmitted(admission,
+            () -> plugin.performGetAllPages("/paged", PhoneNumber.class, 5, 1));
+        admission.release();
+        gate.close();
+        
+        try (numbers) {
+            assertEquals(23, numbers.count());
+        }
+        assertTrue(gate.awaitDrained(1, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void shouldDecodeGzipResponsesOnBothPaths() throws PluginException {
+        String expected = "{\"number\":\"+3221\",\"country_code\":\"BE\"}";
+        assertEquals(expected, plugin.performGet("/compressed"));
+        assertEquals(expected, plugin.performGetAsync("/compressed").join());
+        assertEquals("BE", plugin.performGetObject("/compressed", null, PhoneNumber.class).getCountryCode());
+        
+        OperationMetrics operation = MetricsRegistry.getInstance().forPlugin("StubAPI")
+            .forOperation("GET", "/compressed");
+        assertTrue(operation.getCompressedBytesIn() > 0);
+        assertEquals(3L * expected.length(), operation.getDecodedBytesIn());
+    }
+    
+    @Test
+    void shouldCompressLargeRequestBodies() throws PluginException {
+        Map<String, Object> compression = new HashMap<>();
+        compression.put("requests", true);
+        compression.put("requestThresholdBytes", 1024);
+        AgentConfiguration configuration = AgentConfiguration.fromMap(Map.of("http", Map.of("compression", compression)));
+        StubPlugin compressing = new StubPlugin(configuration, transport,
+            "http://127.0.0.1:" + server.getAddress().getPort());
+        String large = "{\"text\":\"" + "a".repeat(4096) + "\"}";
+        
+        assertEquals("gzip:" + large.length(), compressing.performPost("/upload", large));
+        assertEquals("gzip:" + large.length(), compressing.performPostAsync("/upload", large).join());
+        assertEquals("null:" + 2, compressing.performPost("/upload", "{}"));
+    }
+    
+    @Test
+    void shouldResolveLimiterEndpointAgainAfterUrlChange() {
+        AgentConfiguration configuration = AgentConfiguration.fromMap(Map.of());
+        SmsApiPlugin sms = new SmsApiPlugin(configuration, transport);
+        try {
+            assertNull(sms.limiter.getEndpointName());
+            
+            configuration.reload(Map.of("api", Map.of("endpoints", Map.of("sms", "http://sms.test"))));
+            
+            assertEquals("http://sms.test", sms.getBaseUrl());
+            assertEquals("sms", sms.limiter.getEndpointName());
+        } finally {
+            sms.close();
+        }
+    }
+    
+    /**
+     * Minimal plugin pointing at the local stub server.
+     */
+    static class StubPlugin extends BaseApiPlugin {
+        private final String baseUrl;
+        
+        StubPlugin(AgentConfiguration configuration, HttpTransport transport, String baseUrl) {
+            super(configuration, transport);
+            this.baseUrl = baseUrl;
+        }
+        
+        @Override
+        protected String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        @Override
+        protected String getPluginName() {
+            return "StubAPI";
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.models.sms.SmsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeliveryReportReceiver and DeliveryStatusTable.
+ */
+public class DeliveryReportReceiverTest {
+    
+    private static final String SECRET = "test-secret";
+    
+    private final DeliveryStatusTable table = new DeliveryStatusTable(10000);
+    private DeliveryReportReceiver receiver;
+    private String url;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        receiver = new DeliveryReportReceiver("127.0.0.1", 0, "/reports", 1, SECRET, table::update);
+        receiver.start();
+        url = "http://127.0.0.1:" + receiver.getAddress().getPort() + "/reports";
+    }
+    
+    @AfterEach
+    void tearDown() {
+        receiver.close();
+    }
+    
+    @Test
+    void shouldRecordReportsSentByStubSender() throws Exception {
+        DeliveryReportStubSender.Result result = DeliveryReportStubSender.send(url, SECRET, 1000, 50, 4);
+        
+        assertEquals(20, result.getRequests());
+        assertEquals(0, result.getFailedRequests());
+        assertEquals(1000, receiver.getReceivedCount());
+        assertEquals("delivered", table.get("stub-999").getStatus());
+    }
+    
+    @Test
+    void shouldAcceptSingleReportAndRejectMalformedBody() throws Exception {
+        assertEquals(204, post("{\"message_id\":\"m-1\",\"status\":\"sent\"}", "Bearer " + SECRET, null));
+        assertEquals(400, post("{not json", "Bearer " + SECRET, null));
+        
+        assertEquals("sent", table.get("m-1").getStatus());
+        assertEquals(1, receiver.getRejectedCount());
+    }
+    
+    @Test
+    void shouldRejectUnauthenticatedReports() throws Exception {
+        String body = "{\"message_id\":\"m-3\",\"status\":\"delivered\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        
+        assertEquals(401, post(body, null, null));
+        assertEquals(401, post(body, "Bearer wrong", null));
+        assertEquals(401, post(body, null, DeliveryReportReceiver.sign("wrong", bytes)));
+        assertEquals(401, post(body, null, "sha256=not-hex"));
+        assertNull(table.get("m-3"));
+        assertEquals(4, receiver.getUnauthorizedCount());
+        
+        assertEquals(204, post(body, null, DeliveryReportReceiver.sign(SECRET, bytes)));
+        assertEquals("delivered", table.get("m-3").getStatus());
+    }
+    
+    @Test
+    void shouldRejectBatchWithMalformedElementAsAWhole() throws Exception {
+        String batch = "[{\"message_id\":\"m-4\",\"status\":\"sent\"},{\"message_id\":\"m-5\",\"status\":[}]";
+        
+        assertEquals(400, post(batch, "Bearer " + SECRET, null));
+        assertNull(table.get("m-4"));
+        assertEquals(0, receiver.getReceivedCount());
+    }
+    
+    @Test
+    void shouldRejectOversizedBodiesWithoutBufferingThem() throws Exception {
+        receiver.close();
+        receiver = new DeliveryReportReceiver("127.0.0.1", 0, "/reports", 1, SECRET, 64, table::update);
+        receiver.start();
+        url = "http://127.0.0.1:" + receiver.getAddress().getPort() + "/reports";
+        String body = "[" + "{\"message_id\":\"m-6\",\"status\":\"sent\"},".repeat(10) + "{}]";
+        
+        assertEquals(413, post(body, "Bearer " + SECRET, null));
+        assertEquals(413, post(body, "Bearer " + SECRET, null, true));
+        assertNull(table.get("m-6"));
+        assertEquals(2, receiver.getRejectedCount());
+    }
+    
+    @Test
+    void shouldRequireSecret() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new DeliveryReportReceiver("127.0.0.1", 0, "/reports", 1, "", table::update));
+    }
+    
+    @Test
+    void shouldNotReplaceFinalStatusWithEarlierOne() {
+        table.update(report("m-2", "delivered"));
+        table.update(report("m-2", "sent"));
+        
+        assertEquals("delivered", table.get("m-2").getStatus());
+    }
+    
+    private int post(String body, String authorization, String signature) throws Exception {
+        return post(body, authorization, signature, false);
+    }
+    
+    private int post(String body, String authorization, String signature, boolean chunked) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked) {
+            connection.setChunkedStreamingMode(16);
+        }
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        if (signature != null) {
+            connection.setRequestProperty(DeliveryReportReceiver.SIGNATURE_HEADER, signature);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+    
+    private static SmsMessage report(String messageId, String status) {
+        SmsMessage message = new SmsMessage();
+        message.setMessageId(messageId);
+        message.setStatus(status);
+        return message;
+    }
+}
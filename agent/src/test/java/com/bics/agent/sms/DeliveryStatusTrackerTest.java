@@ -0,0 +1,101 @@
+package com.bics.agent.sms;
+
+import com.bics.agent.config.AgentConfiguration;
+import com.bics.agent.models.sms.SmsMessage;
+import com.bics.agent.plugins.SmsApiPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeliveryStatusTracker.
+ */
+public class DeliveryStatusTrackerTest {
+    
+    private final AtomicInteger polls = new AtomicInteger();
+    private SmsApiPlugin plugin;
+    private DeliveryStatusTracker tracker;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        plugin = new SmsApiPlugin(AgentConfiguration.getInstance()) {
+            @Override
+            public CompletableFuture<SmsMessage> fetchSmsMessageAsync(String messageId) {
+                SmsMessage message = new SmsMessage();
+                message.setMessageId(messageId);
+                message.setStatus(polls.incrementAndGet() < 3 ? "sent" : "delivered");
+                return CompletableFuture.completedFuture(message);
+            }
+        };
+        tracker = new DeliveryStatusTracker(plugin, 5L, 16, 10L, 20L, 0.5, 60000L, 4);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        tracker.close();
+        plugin.close();
+    }
+    
+    @Test
+    void shouldPollUntilFinalStateAndNotifyListeners() throws Exception {
+        List<SmsMessage> notified = new CopyOnWriteArrayList<>();
+        tracker.addListener(notified::add);
+        
+        SmsMessage result = tracker.track("msg-1").get(5, TimeUnit.SECONDS);
+        
+        assertEquals("delivered", result.getStatus());
+        assertEquals(3, polls.get());
+        assertEquals(0, tracker.getTrackedCount());
+        assertEquals(List.of(result), notified);
+    }
+    
+    @Test
+    void shouldCompleteImmediatelyOnReportedFinalStatus() throws Exception {
+        CompletableFuture<SmsMessage> future = tracker.track("msg-2");
+        SmsMessage report = new SmsMessage();
+        report.setMessageId("msg-2");
+        report.setStatus("FAILED");
+        tracker.onStatus(report);
+        
+        assertSame(report, future.get(1, TimeUnit.SECONDS));
+        assertEquals(0, tracker.getTrackedCount());
+    }
+    
+    @Test
+    void shouldKeepPollingAfterNonFinalReportWhenFinalCallbackIsLost() throws Exception {
+        SmsMessage report = new SmsMessage();
+        report.setMessageId("msg-4");
+        report.setStatus("sent");
+        plugin.onDeliveryReport(report);
+        
+        SmsMessage result = tracker.track("msg-4").get(5, TimeUnit.SECONDS);
+        
+        assertEquals("delivered", result.getStatus());
+        assertEquals(3, polls.get());
+        assertEquals("delivered", plugin.getSmsMessageAsync("msg-4").get(1, TimeUnit.SECONDS).getStatus());
+    }
+    
+    @Test
+    void shouldNotifyListenersBeforeCompletingTheFuture() throws Exception {
+        AtomicReference<CompletableFuture<SmsMessage>> future = new AtomicReference<>();
+        List<Boolean> doneWhenNotified = new CopyOnWriteArrayList<>();
+        tracker.addListener(message -> doneWhenNotified.add(future.get().isDone()));
+        future.set(tracker.track("msg-3"));
+        SmsMessage report = new SmsMessage();
+        report.setMessageId("msg-3");
+        report.setStatus("DELIVERED");
+        tracker.onStatus(report);
+        
+        assertSame(report, future.get().get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(false), doneWhenNotified);
+    }
+}